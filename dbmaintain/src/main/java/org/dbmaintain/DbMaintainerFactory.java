@@ -17,7 +17,11 @@ package org.dbmaintain;
 
 import org.dbmaintain.config.FactoryWithDatabase;
 import org.dbmaintain.config.PropertyUtils;
+import org.dbmaintain.lock.UpdateLock;
+import org.dbmaintain.script.analyzer.PostprocessingScriptTriggerAnalyzer;
+import org.dbmaintain.script.analyzer.ScriptDependencyAnalyzer;
 import org.dbmaintain.script.analyzer.ScriptUpdatesFormatter;
+import org.dbmaintain.script.analyzer.UpdatedTablesAnalyzer;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
 import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
 import org.dbmaintain.script.repository.ScriptRepository;
@@ -25,6 +29,7 @@ import org.dbmaintain.script.runner.ScriptRunner;
 import org.dbmaintain.structure.clean.DBCleaner;
 import org.dbmaintain.structure.clear.DBClearer;
 import org.dbmaintain.structure.constraint.ConstraintsDisabler;
+import org.dbmaintain.structure.image.SchemaImageCache;
 import org.dbmaintain.structure.sequence.SequenceUpdater;
 
 import static org.dbmaintain.config.DbMaintainProperties.*;
@@ -46,21 +51,44 @@ public class DbMaintainerFactory extends FactoryWithDatabase<DbMaintainer> {
         boolean disableConstraintsEnabled = PropertyUtils.getBoolean(PROPERTY_DISABLE_CONSTRAINTS, getConfiguration());
         boolean updateSequencesEnabled = PropertyUtils.getBoolean(PROPERTY_UPDATE_SEQUENCES, getConfiguration());
         long maxNrOfCharsWhenLoggingScriptContent = PropertyUtils.getLong(PROPERTY_MAX_NR_CHARS_WHEN_LOGGING_SCRIPT_CONTENT, getConfiguration());
+        boolean parallelDatabaseLanesEnabled = PropertyUtils.getBoolean(PROPERTY_PARALLEL_DATABASE_LANES_ENABLED, getConfiguration());
+        String defaultDatabaseName = getDatabases().getDefaultDatabase().getDatabaseName();
+        int maxNrOfRepeatableScriptThreads = PropertyUtils.getInt(PROPERTY_REPEATABLE_SCRIPTS_MAX_THREADS, getConfiguration());
+        boolean inferRepeatableScriptDependencies = PropertyUtils.getBoolean(PROPERTY_REPEATABLE_SCRIPTS_INFER_DEPENDENCIES, getConfiguration());
+        boolean disableConstraintsOfUpdatedTablesOnly = PropertyUtils.getBoolean(PROPERTY_DISABLE_CONSTRAINTS_UPDATED_TABLES_ONLY, getConfiguration());
+        boolean selectivePostprocessingScriptExecution = PropertyUtils.getBoolean(PROPERTY_POSTPROCESSINGSCRIPT_SELECTIVE_EXECUTION, getConfiguration());
+        boolean semanticCheckSumsForRepeatableScripts = PropertyUtils.getBoolean(PROPERTY_SEMANTIC_CHECKSUM_REPEATABLE_SCRIPTS_ENABLED, getConfiguration());
+        boolean semanticCheckSumsForPostprocessingScripts = PropertyUtils.getBoolean(PROPERTY_SEMANTIC_CHECKSUM_POSTPROCESSING_SCRIPTS_ENABLED, getConfiguration());
         ScriptIndexes baseLineRevision = factoryWithDatabaseContext.getBaselineRevision();
 
         MainFactory mainFactory = factoryWithDatabaseContext.getMainFactory();
         DBCleaner dbCleaner = mainFactory.createDBCleaner();
         DBClearer dbClearer = mainFactory.createDBClearer();
+        SchemaImageCache schemaImageCache = mainFactory.createSchemaImageCache();
         ConstraintsDisabler constraintsDisabler = mainFactory.createConstraintsDisabler();
         SequenceUpdater sequenceUpdater = mainFactory.createSequenceUpdater();
         ScriptRunner scriptRunner = mainFactory.createScriptRunner();
         ScriptUpdatesFormatter scriptUpdatesFormatter = createScriptUpdatesFormatter();
         ExecutedScriptInfoSource executedScriptInfoSource = mainFactory.createExecutedScriptInfoSource();
+        UpdateLock updateLock = mainFactory.createUpdateLock();
 
 
-        return new DefaultDbMaintainer(scriptRunner, scriptRepository, executedScriptInfoSource, fromScratchEnabled, useScriptFileLastModificationDates,
+        DefaultDbMaintainer dbMaintainer = new DefaultDbMaintainer(scriptRunner, scriptRepository, executedScriptInfoSource, fromScratchEnabled, useScriptFileLastModificationDates,
                 allowOutOfSequenceExecutionOfPatchScripts, cleanDbEnabled, disableConstraintsEnabled, updateSequencesEnabled, dbClearer, dbCleaner,
                 constraintsDisabler, sequenceUpdater, scriptUpdatesFormatter, getSqlHandler(), maxNrOfCharsWhenLoggingScriptContent, baseLineRevision);
+        dbMaintainer.setParallelDatabaseLanes(parallelDatabaseLanesEnabled, defaultDatabaseName);
+        dbMaintainer.setRepeatableScriptThreads(maxNrOfRepeatableScriptThreads, new ScriptDependencyAnalyzer(inferRepeatableScriptDependencies));
+        dbMaintainer.setMetricsRecorder(getMetricsRecorder());
+        dbMaintainer.setSchemaImageCache(schemaImageCache);
+        if (disableConstraintsOfUpdatedTablesOnly) {
+            dbMaintainer.setUpdatedTablesAnalyzer(new UpdatedTablesAnalyzer(getDatabases()));
+        }
+        if (selectivePostprocessingScriptExecution) {
+            dbMaintainer.setPostprocessingScriptTriggerAnalyzer(new PostprocessingScriptTriggerAnalyzer());
+        }
+        dbMaintainer.setSemanticCheckSums(semanticCheckSumsForRepeatableScripts, semanticCheckSumsForPostprocessingScripts);
+        dbMaintainer.setUpdateLock(updateLock);
+        return dbMaintainer;
     }
 
 
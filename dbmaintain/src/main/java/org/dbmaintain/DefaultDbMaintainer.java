@@ -18,12 +18,20 @@ package org.dbmaintain;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.lock.UpdateLock;
+import org.dbmaintain.lock.impl.NoOpUpdateLock;
+import org.dbmaintain.metrics.MetricsRecorder;
+import org.dbmaintain.metrics.impl.NoOpMetricsRecorder;
 import org.dbmaintain.script.ExecutedScript;
 import org.dbmaintain.script.Script;
+import org.dbmaintain.script.ScriptContentHandle;
+import org.dbmaintain.script.analyzer.PostprocessingScriptTriggerAnalyzer;
+import org.dbmaintain.script.analyzer.ScriptDependencyAnalyzer;
 import org.dbmaintain.script.analyzer.ScriptUpdate;
 import org.dbmaintain.script.analyzer.ScriptUpdates;
 import org.dbmaintain.script.analyzer.ScriptUpdatesAnalyzer;
 import org.dbmaintain.script.analyzer.ScriptUpdatesFormatter;
+import org.dbmaintain.script.analyzer.UpdatedTablesAnalyzer;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
 import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
 import org.dbmaintain.script.repository.ScriptRepository;
@@ -31,13 +39,21 @@ import org.dbmaintain.script.runner.ScriptRunner;
 import org.dbmaintain.structure.clean.DBCleaner;
 import org.dbmaintain.structure.clear.DBClearer;
 import org.dbmaintain.structure.constraint.ConstraintsDisabler;
+import org.dbmaintain.structure.image.SchemaImageCache;
+import org.dbmaintain.structure.image.impl.NoOpSchemaImageCache;
 import org.dbmaintain.structure.sequence.SequenceUpdater;
 import org.dbmaintain.util.DbMaintainException;
 
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
+import static org.dbmaintain.metrics.Metric.SCRIPT_BYTES_HASHED;
+import static org.dbmaintain.metrics.Metric.SCRIPT_BYTES_READ;
+import static org.dbmaintain.metrics.Metric.SCRIPT_DURATION;
 import static org.dbmaintain.script.analyzer.ScriptUpdateType.REPEATABLE_SCRIPT_DELETED;
 import static org.dbmaintain.script.analyzer.ScriptUpdateType.REPEATABLE_SCRIPT_UPDATED;
 
@@ -98,10 +114,42 @@ public class DefaultDbMaintainer implements DbMaintainer {
     protected long maxNrOfCharsWhenLoggingScriptContent;
     /* The baseline revision. If set, all scripts with a lower revision will be ignored */
     protected ScriptIndexes baseLineRevision;
+    /**
+     * Indicates whether the scripts of the different target databases can be executed concurrently. If true, the scripts
+     * are split in one lane per target database. The scripts of a lane are executed in order, the lanes are executed in parallel.
+     */
+    protected boolean parallelDatabaseLanesEnabled;
+    /* The name of the default database, i.e. the target database of scripts that do not specify one */
+    protected String defaultDatabaseName;
+    /**
+     * The maximum nr of repeatable scripts that are executed concurrently. If 1, repeatable scripts are executed one
+     * after the other, in the order of their file names.
+     */
+    protected int maxNrOfRepeatableScriptThreads = 1;
+    /* Determines the dependencies between repeatable scripts when they are executed concurrently */
+    protected ScriptDependencyAnalyzer scriptDependencyAnalyzer;
+    /* Records the script durations and the nr of script bytes that were read */
+    protected MetricsRecorder metricsRecorder = new NoOpMetricsRecorder();
+    /* Stores and restores images of the database schemas, so that not all scripts need to be executed when updating from scratch */
+    protected SchemaImageCache schemaImageCache = new NoOpSchemaImageCache();
+    /* Determines the tables of which the constraints are disabled after an incremental update, null for all tables */
+    protected UpdatedTablesAnalyzer updatedTablesAnalyzer;
+    /* Determines which postprocessing scripts are executed after an incremental update, null for all postprocessing scripts */
+    protected PostprocessingScriptTriggerAnalyzer postprocessingScriptTriggerAnalyzer;
+    /* True if repeatable scripts of which only comments or formatting changed should not be executed again */
+    protected boolean semanticCheckSumsForRepeatableScripts;
+    /* True if postprocessing scripts of which only comments or formatting changed should not be executed again */
+    protected boolean semanticCheckSumsForPostprocessingScripts;
+    /* Makes sure that only one process at a time updates the database, not null */
+    protected UpdateLock updateLock = new NoOpUpdateLock();
+    /* The scripts that were executed during the current update */
+    protected List<Script> scriptsExecutedDuringUpdate = new ArrayList<Script>();
 
 
     /**
-     * Creates a new instance
+     * Creates a new instance. The optional collaborators, e.g. for executing scripts concurrently or caching schema
+     * images, can be set using the setters. By default scripts are executed one by one and nothing is cached, locked
+     * or recorded.
      *
      * @param scriptRunner             runner that executes the database scripts
      * @param scriptRepository         provides access to all database scripts
@@ -130,7 +178,6 @@ public class DefaultDbMaintainer implements DbMaintainer {
                                boolean fromScratchEnabled, boolean useScriptFileLastModificationDates, boolean allowOutOfSequenceExecutionOfPatchScripts,
                                boolean cleanDb, boolean disableConstraints, boolean updateSequences, DBClearer dbClearer, DBCleaner dbCleaner, ConstraintsDisabler constraintsDisabler,
                                SequenceUpdater sequenceUpdater, ScriptUpdatesFormatter scriptUpdatesFormatter, SQLHandler sqlHandler, long maxNrOfCharsWhenLoggingScriptContent, ScriptIndexes baseLineRevision) {
-
         this.scriptRunner = scriptRunner;
         this.scriptRepository = scriptRepository;
         this.executedScriptInfoSource = executedScriptInfoSource;
@@ -151,6 +198,78 @@ public class DefaultDbMaintainer implements DbMaintainer {
     }
 
 
+    /**
+     * Enables the concurrent execution of the scripts of the different target databases, see {@link #executeLanes}.
+     *
+     * @param parallelDatabaseLanesEnabled if true, the scripts of different target databases are executed concurrently
+     * @param defaultDatabaseName          the name of the default database, null if there is only one database
+     */
+    public void setParallelDatabaseLanes(boolean parallelDatabaseLanesEnabled, String defaultDatabaseName) {
+        this.parallelDatabaseLanesEnabled = parallelDatabaseLanesEnabled;
+        this.defaultDatabaseName = defaultDatabaseName;
+    }
+
+    /**
+     * Enables the concurrent execution of repeatable scripts, see {@link #executeRepeatableScriptUpdatesConcurrently}.
+     *
+     * @param maxNrOfRepeatableScriptThreads the maximum nr of repeatable scripts that are executed concurrently, 1 to execute them one by one
+     * @param scriptDependencyAnalyzer       determines the dependencies between repeatable scripts, not null if more than 1 thread is used
+     */
+    public void setRepeatableScriptThreads(int maxNrOfRepeatableScriptThreads, ScriptDependencyAnalyzer scriptDependencyAnalyzer) {
+        this.maxNrOfRepeatableScriptThreads = maxNrOfRepeatableScriptThreads;
+        this.scriptDependencyAnalyzer = scriptDependencyAnalyzer;
+    }
+
+    /**
+     * @param metricsRecorder records the script durations and the nr of script bytes that were read, not null
+     */
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+    }
+
+    /**
+     * @param schemaImageCache stores and restores images of the database schemas when updating from scratch, not null
+     */
+    public void setSchemaImageCache(SchemaImageCache schemaImageCache) {
+        this.schemaImageCache = schemaImageCache;
+    }
+
+    /**
+     * @param updatedTablesAnalyzer determines the tables that were created or altered by the scripts,
+     *                              null to disable the constraints of all tables after an incremental update
+     */
+    public void setUpdatedTablesAnalyzer(UpdatedTablesAnalyzer updatedTablesAnalyzer) {
+        this.updatedTablesAnalyzer = updatedTablesAnalyzer;
+    }
+
+    /**
+     * @param postprocessingScriptTriggerAnalyzer
+     *         determines which postprocessing scripts are triggered by the scripts, null to execute all postprocessing
+     *         scripts after each update
+     */
+    public void setPostprocessingScriptTriggerAnalyzer(PostprocessingScriptTriggerAnalyzer postprocessingScriptTriggerAnalyzer) {
+        this.postprocessingScriptTriggerAnalyzer = postprocessingScriptTriggerAnalyzer;
+    }
+
+    /**
+     * @param semanticCheckSumsForRepeatableScripts
+     *         if true, repeatable scripts of which only comments or formatting changed are not executed again
+     * @param semanticCheckSumsForPostprocessingScripts
+     *         if true, postprocessing scripts of which only comments or formatting changed are not executed again
+     */
+    public void setSemanticCheckSums(boolean semanticCheckSumsForRepeatableScripts, boolean semanticCheckSumsForPostprocessingScripts) {
+        this.semanticCheckSumsForRepeatableScripts = semanticCheckSumsForRepeatableScripts;
+        this.semanticCheckSumsForPostprocessingScripts = semanticCheckSumsForPostprocessingScripts;
+    }
+
+    /**
+     * @param updateLock makes sure that only one process at a time updates the database, not null
+     */
+    public void setUpdateLock(UpdateLock updateLock) {
+        this.updateLock = updateLock;
+    }
+
+
     /**
      * This operation can be used to bring the database to the latest version. First it checks which scripts were already
      * applied to the database and executes the new scripts or the updated repeatable scripts. If an existing incremental
@@ -163,8 +282,36 @@ public class DefaultDbMaintainer implements DbMaintainer {
      * @return whether updates were performed on the database
      */
     public boolean updateDatabase(boolean dryRun) {
+        if (dryRun) {
+            return doUpdateDatabase(true);
+        }
+        SortedSet<Script> scripts = scriptRepository.getAllScripts();
+        if (!updateLock.acquire(scripts)) {
+            return false;
+        }
+        boolean successful = false;
+        try {
+            // another process could have updated the database while waiting for the lock
+            executedScriptInfoSource.resetCachedState();
+            boolean updated = doUpdateDatabase(false);
+            successful = true;
+            return updated;
+        } finally {
+            updateLock.release(scripts, successful);
+        }
+    }
+
+
+    /**
+     * Performs the actual update, see {@link #updateDatabase}.
+     *
+     * @param dryRun if true, no updates have to be performed on the database
+     * @return whether updates were performed on the database
+     */
+    protected boolean doUpdateDatabase(boolean dryRun) {
         try {
             ScriptUpdates scriptUpdates = getScriptUpdates();
+            scriptsExecutedDuringUpdate.clear();
 
             if (!getIncrementalScriptsThatFailedDuringLastUpdate().isEmpty() && !scriptUpdates.hasIrregularScriptUpdates()) {
                 ExecutedScript failedExecutedScriptScript = getIncrementalScriptsThatFailedDuringLastUpdate().first();
@@ -208,6 +355,12 @@ public class DefaultDbMaintainer implements DbMaintainer {
                 }
             }
 
+            // only the constraints of the tables updated by the scripts of this update need to be disabled and only the
+            // postprocessing scripts triggered by these scripts need to be executed, if the previous update completed
+            boolean lastUpdateFailed = !getIncrementalScriptsThatFailedDuringLastUpdate().isEmpty() || !getRepeatableScriptsThatFailedDuringLastUpdate().isEmpty();
+            boolean disableConstraintsOfAllTables = updatedTablesAnalyzer == null || recreateFromScratch || lastUpdateFailed;
+            boolean executeAllPostprocessingScripts = postprocessingScriptTriggerAnalyzer == null || recreateFromScratch || lastUpdateFailed;
+
             if (recreateFromScratch) {
                 if (baseLineRevision != null) {
                     throw new DbMaintainException("Unable to recreate the database from scratch: a baseline revision is set.\n" +
@@ -219,13 +372,13 @@ public class DefaultDbMaintainer implements DbMaintainer {
                 if (!dryRun) {
                     dbClearer.clearDatabase();
                     executedScriptInfoSource.resetCachedState();
-                    executeScripts(scriptRepository.getAllUpdateScripts());
+                    executeScriptsFromScratch(scriptRepository.getAllUpdateScripts());
                 }
             } else {
                 logger.info("The database is updated incrementally, since following regular script updates were detected:\n" + scriptUpdatesFormatter.formatScriptUpdates(scriptUpdates.getRegularScriptUpdates()));
                 if (!dryRun) {
                     // If the disable constraints option is enabled, disable all FK and not null constraints
-                    if (disableConstraints) {
+                    if (disableConstraints && disableConstraintsOfAllTables) {
                         constraintsDisabler.disableConstraints();
                     }
                     // If cleandb is enabled, remove all data from the database.
@@ -249,12 +402,20 @@ public class DefaultDbMaintainer implements DbMaintainer {
             }
 
             if (!dryRun) {
-                // Execute all post processing scripts
-                executePostprocessingScripts();
+                // Execute all post processing scripts, or only the ones that were triggered by the executed scripts
+                if (executeAllPostprocessingScripts) {
+                    executePostprocessingScripts();
+                } else {
+                    executeTriggeredPostprocessingScripts(scriptUpdates);
+                }
 
                 // If the disable constraints option is enabled, disable all FK and not null constraints
                 if (disableConstraints) {
-                    constraintsDisabler.disableConstraints();
+                    if (disableConstraintsOfAllTables) {
+                        constraintsDisabler.disableConstraints();
+                    } else {
+                        constraintsDisabler.disableConstraints(updatedTablesAnalyzer.getUpdatedTables(scriptsExecutedDuringUpdate));
+                    }
                 }
                 // the scripts could have added data, if cleandb is enabled, remove all data from the database.
                 if (cleanDb) {
@@ -269,11 +430,31 @@ public class DefaultDbMaintainer implements DbMaintainer {
             return true;
 
         } finally {
+            recordScriptContentMetrics();
             sqlHandler.closeAllConnections();
         }
     }
 
 
+    /**
+     * Records the nr of bytes of script content that were read to analyze and execute the scripts and to calculate
+     * their check sums.
+     */
+    protected void recordScriptContentMetrics() {
+        long nrOfBytesRead = 0;
+        long nrOfBytesHashed = 0;
+        for (Script script : scriptRepository.getAllScripts()) {
+            ScriptContentHandle scriptContentHandle = script.getScriptContentHandle();
+            if (scriptContentHandle != null) {
+                nrOfBytesRead += scriptContentHandle.getNrOfBytesRead();
+                nrOfBytesHashed += scriptContentHandle.getNrOfBytesHashed();
+            }
+        }
+        metricsRecorder.recordCount(SCRIPT_BYTES_READ, null, nrOfBytesRead);
+        metricsRecorder.recordCount(SCRIPT_BYTES_HASHED, null, nrOfBytesHashed);
+    }
+
+
     /**
      * This operation calcutes and logs which script updates have been performed since the last database update.
      *
@@ -281,7 +462,7 @@ public class DefaultDbMaintainer implements DbMaintainer {
      */
     public ScriptUpdates getScriptUpdates() {
         return new ScriptUpdatesAnalyzer(scriptRepository, executedScriptInfoSource, useScriptFileLastModificationDates,
-                allowOutOfSequenceExecutionOfPatchScripts).calculateScriptUpdates();
+                allowOutOfSequenceExecutionOfPatchScripts, semanticCheckSumsForRepeatableScripts, semanticCheckSumsForPostprocessingScripts).calculateScriptUpdates();
     }
 
 
@@ -302,6 +483,36 @@ public class DefaultDbMaintainer implements DbMaintainer {
         executeScripts(scriptRepository.getPostProcessingScripts());
     }
 
+    /**
+     * Executes the postprocessing scripts that were added or modified, that failed during the previous update or that
+     * are triggered by one of the scripts executed during this update. The other postprocessing scripts are skipped,
+     * they remain registered as executed.
+     *
+     * @param scriptUpdates The script updates of this update, not null
+     */
+    protected void executeTriggeredPostprocessingScripts(ScriptUpdates scriptUpdates) {
+        Set<Script> updatedPostprocessingScripts = new HashSet<Script>();
+        for (ScriptUpdate scriptUpdate : scriptUpdates.getRegularPostprocessingScriptUpdates()) {
+            updatedPostprocessingScripts.add(scriptUpdate.getScript());
+        }
+        SortedSet<Script> postprocessingScripts = scriptRepository.getPostProcessingScripts();
+        SortedSet<Script> triggeredPostprocessingScripts = new TreeSet<Script>();
+        for (Script postprocessingScript : postprocessingScripts) {
+            if (updatedPostprocessingScripts.contains(postprocessingScript) || postprocessingScriptTriggerAnalyzer.isTriggered(postprocessingScript, scriptsExecutedDuringUpdate)) {
+                triggeredPostprocessingScripts.add(postprocessingScript);
+            }
+        }
+        // remove the registrations of the postprocessing scripts that are executed again or that no longer exist
+        for (ExecutedScript executedScript : new ArrayList<ExecutedScript>(executedScriptInfoSource.getExecutedScripts())) {
+            Script script = executedScript.getScript();
+            if (script.isPostProcessingScript() && (triggeredPostprocessingScripts.contains(script) || !postprocessingScripts.contains(script))) {
+                executedScriptInfoSource.deleteExecutedScript(executedScript);
+            }
+        }
+        logger.info("Executing " + triggeredPostprocessingScripts.size() + " of " + postprocessingScripts.size() + " postprocessing scripts, the other postprocessing scripts are not triggered by the executed scripts.");
+        executeScripts(triggeredPostprocessingScripts);
+    }
+
 
     /**
      * @return The already executed scripts, as a map from Script => ExecutedScript
@@ -370,11 +581,23 @@ public class DefaultDbMaintainer implements DbMaintainer {
     protected void executeScriptUpdates(SortedSet<ScriptUpdate> scriptUpdates) {
         scriptRunner.initialize();
         try {
-            for (ScriptUpdate scriptUpdate : scriptUpdates) {
-                long startTimeMs = currentTimeMillis();
-                executeScript(scriptUpdate.getScript());
-                long durationMs = currentTimeMillis() - startTimeMs;
-                logger.info("Executed " + scriptUpdatesFormatter.formatScriptUpdate(scriptUpdate) + " (" + durationMs + " ms)");
+            if (maxNrOfRepeatableScriptThreads > 1) {
+                // consecutive repeatable scripts are executed concurrently, incremental scripts in between them
+                // are executed as before
+                List<ScriptUpdate> group = new ArrayList<ScriptUpdate>();
+                boolean repeatableGroup = false;
+                for (ScriptUpdate scriptUpdate : scriptUpdates) {
+                    boolean repeatable = scriptUpdate.getScript().isRepeatable();
+                    if (repeatable != repeatableGroup && !group.isEmpty()) {
+                        executeScriptUpdateGroup(group, repeatableGroup);
+                        group = new ArrayList<ScriptUpdate>();
+                    }
+                    repeatableGroup = repeatable;
+                    group.add(scriptUpdate);
+                }
+                executeScriptUpdateGroup(group, repeatableGroup);
+            } else {
+                doExecuteScriptUpdates(scriptUpdates);
             }
         } finally {
             scriptRunner.close();
@@ -382,6 +605,173 @@ public class DefaultDbMaintainer implements DbMaintainer {
     }
 
 
+    protected void executeScriptUpdateGroup(List<ScriptUpdate> scriptUpdates, boolean repeatable) {
+        if (repeatable) {
+            executeRepeatableScriptUpdatesConcurrently(scriptUpdates);
+        } else {
+            doExecuteScriptUpdates(scriptUpdates);
+        }
+    }
+
+
+    /**
+     * Executes the given script updates, in one lane per target database if parallel database lanes are enabled.
+     *
+     * @param scriptUpdates the script updates to be executed, not null
+     */
+    protected void doExecuteScriptUpdates(Collection<ScriptUpdate> scriptUpdates) {
+        Map<Script, Runnable> tasks = new LinkedHashMap<Script, Runnable>();
+        for (final ScriptUpdate scriptUpdate : scriptUpdates) {
+            tasks.put(scriptUpdate.getScript(), new Runnable() {
+                public void run() {
+                    executeScriptUpdate(scriptUpdate);
+                }
+            });
+        }
+        executeTasks(tasks);
+    }
+
+
+    /**
+     * Executes the given repeatable script updates on a pool of at most maxNrOfRepeatableScriptThreads threads. A script
+     * is only started when all the scripts it depends on were executed successfully. Each thread is bound to one of
+     * maxNrOfRepeatableScriptThreads lanes, so that no more connections are used than there are threads. If a script fails, no new
+     * scripts are started: the scripts that are still running are completed, after which the exception of the failed
+     * script is thrown. If the dependencies contain a cycle, the scripts are executed one by one.
+     *
+     * @param scriptUpdates the repeatable script updates to be executed, not null
+     */
+    protected void executeRepeatableScriptUpdatesConcurrently(List<ScriptUpdate> scriptUpdates) {
+        Map<Script, ScriptUpdate> scriptUpdatesPerScript = new LinkedHashMap<Script, ScriptUpdate>();
+        for (ScriptUpdate scriptUpdate : scriptUpdates) {
+            scriptUpdatesPerScript.put(scriptUpdate.getScript(), scriptUpdate);
+        }
+        List<Script> scripts = new ArrayList<Script>(scriptUpdatesPerScript.keySet());
+        Map<Script, Set<Script>> dependencies = scriptDependencyAnalyzer.getDependencies(scripts);
+
+        Map<Script, Integer> nrOfRemainingDependencies = new HashMap<Script, Integer>();
+        Map<Script, List<Script>> dependentScripts = new HashMap<Script, List<Script>>();
+        for (Script script : scripts) {
+            nrOfRemainingDependencies.put(script, dependencies.get(script).size());
+            dependentScripts.put(script, new ArrayList<Script>());
+        }
+        for (Script script : scripts) {
+            for (Script dependency : dependencies.get(script)) {
+                dependentScripts.get(dependency).add(script);
+            }
+        }
+        if (containsCycle(scripts, nrOfRemainingDependencies, dependentScripts)) {
+            logger.warn("The dependencies between the repeatable scripts contain a cycle. The scripts are executed one by one.");
+            doExecuteScriptUpdates(scriptUpdates);
+            return;
+        }
+
+        int nrOfThreads = Math.min(maxNrOfRepeatableScriptThreads, scripts.size());
+        // the lanes have the same names for every group of repeatable scripts, so their connections are reused
+        BlockingQueue<String> lanes = new ArrayBlockingQueue<String>(nrOfThreads);
+        for (int i = 1; i <= nrOfThreads; i++) {
+            lanes.add("repeatable-" + i);
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(nrOfThreads);
+        CompletionService<Script> completionService = new ExecutorCompletionService<Script>(executorService);
+        try {
+            int nrOfRunningScripts = 0;
+            for (Script script : scripts) {
+                if (nrOfRemainingDependencies.get(script) == 0) {
+                    submitScriptUpdate(completionService, scriptUpdatesPerScript.get(script), lanes);
+                    nrOfRunningScripts++;
+                }
+            }
+            RuntimeException firstException = null;
+            while (nrOfRunningScripts > 0) {
+                Future<Script> future = completionService.take();
+                nrOfRunningScripts--;
+                try {
+                    Script executedScript = future.get();
+                    if (firstException != null) {
+                        continue;
+                    }
+                    for (Script dependentScript : dependentScripts.get(executedScript)) {
+                        int nrOfRemaining = nrOfRemainingDependencies.get(dependentScript) - 1;
+                        nrOfRemainingDependencies.put(dependentScript, nrOfRemaining);
+                        if (nrOfRemaining == 0) {
+                            submitScriptUpdate(completionService, scriptUpdatesPerScript.get(dependentScript), lanes);
+                            nrOfRunningScripts++;
+                        }
+                    }
+                } catch (ExecutionException e) {
+                    if (firstException == null) {
+                        firstException = getLaneException(e.getCause());
+                    }
+                }
+            }
+            if (firstException != null) {
+                throw firstException;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DbMaintainException("Interrupted while waiting for the scripts to be executed.", e);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+
+    private void submitScriptUpdate(CompletionService<Script> completionService, final ScriptUpdate scriptUpdate, final BlockingQueue<String> lanes) {
+        completionService.submit(new Callable<Script>() {
+            public Script call() {
+                // each thread uses the connections of its own lane
+                String lane = lanes.remove();
+                sqlHandler.bindLane(lane);
+                try {
+                    executeScriptUpdate(scriptUpdate);
+                    return scriptUpdate.getScript();
+                } finally {
+                    sqlHandler.unbindLane();
+                    lanes.add(lane);
+                }
+            }
+        });
+    }
+
+
+    private boolean containsCycle(List<Script> scripts, Map<Script, Integer> nrOfDependencies, Map<Script, List<Script>> dependentScripts) {
+        Map<Script, Integer> nrOfRemainingDependencies = new HashMap<Script, Integer>(nrOfDependencies);
+        LinkedList<Script> readyScripts = new LinkedList<Script>();
+        for (Script script : scripts) {
+            if (nrOfRemainingDependencies.get(script) == 0) {
+                readyScripts.add(script);
+            }
+        }
+        int nrOfOrderedScripts = 0;
+        while (!readyScripts.isEmpty()) {
+            Script script = readyScripts.removeFirst();
+            nrOfOrderedScripts++;
+            for (Script dependentScript : dependentScripts.get(script)) {
+                int nrOfRemaining = nrOfRemainingDependencies.get(dependentScript) - 1;
+                nrOfRemainingDependencies.put(dependentScript, nrOfRemaining);
+                if (nrOfRemaining == 0) {
+                    readyScripts.add(dependentScript);
+                }
+            }
+        }
+        return nrOfOrderedScripts != scripts.size();
+    }
+
+
+    /**
+     * Executes the script of the given script update and logs the duration of the execution.
+     *
+     * @param scriptUpdate the script update to be executed, not null
+     */
+    protected void executeScriptUpdate(ScriptUpdate scriptUpdate) {
+        long startTimeMs = currentTimeMillis();
+        executeScript(scriptUpdate.getScript());
+        long durationMs = currentTimeMillis() - startTimeMs;
+        logger.info("Executed " + scriptUpdatesFormatter.formatScriptUpdate(scriptUpdate) + " (" + durationMs + " ms)");
+    }
+
+
     /**
      * Executes the given scripts and updates the database execution registry appropriately. After
      * each successful script execution, the script execution is registered in the database and marked
@@ -393,16 +783,192 @@ public class DefaultDbMaintainer implements DbMaintainer {
     protected void executeScripts(SortedSet<Script> scripts) {
         scriptRunner.initialize();
         try {
-            for (Script script : scripts) {
-                logger.info("Executing script " + script.getFileName());
-                executeScript(script);
+            Map<Script, Runnable> tasks = new LinkedHashMap<Script, Runnable>();
+            for (final Script script : scripts) {
+                tasks.put(script, new Runnable() {
+                    public void run() {
+                        logger.info("Executing script " + script.getFileName());
+                        executeScript(script);
+                    }
+                });
             }
+            executeTasks(tasks);
         } finally {
             scriptRunner.close();
         }
     }
 
 
+    /**
+     * Executes the given update scripts on a cleared database. The longest prefix of the scripts for which a schema image
+     * exists is restored from that image, only the remaining scripts are executed. While executing, an image is
+     * stored at every checkpoint of the schema image cache.
+     *
+     * @param scripts The update scripts, not null
+     */
+    protected void executeScriptsFromScratch(SortedSet<Script> scripts) {
+        List<Script> scriptList = new ArrayList<Script>(scripts);
+        int nrOfExecutedScripts = restoreSchemaImage(scripts);
+        for (int checkpoint : schemaImageCache.getCheckpoints(scripts)) {
+            if (checkpoint <= nrOfExecutedScripts) {
+                continue;
+            }
+            executeScripts(new TreeSet<Script>(scriptList.subList(nrOfExecutedScripts, checkpoint)));
+            schemaImageCache.storeImage(new TreeSet<Script>(scriptList.subList(0, checkpoint)));
+            nrOfExecutedScripts = checkpoint;
+        }
+        if (nrOfExecutedScripts < scriptList.size()) {
+            executeScripts(new TreeSet<Script>(scriptList.subList(nrOfExecutedScripts, scriptList.size())));
+        }
+    }
+
+    /**
+     * Restores the schema image of the longest prefix of the given scripts, if there is one, and registers the scripts
+     * of that prefix as executed. If the image cannot be restored, the database is cleared again so that all scripts
+     * can be executed.
+     *
+     * @param scripts The update scripts, not null
+     * @return The nr of scripts that were restored from the image, 0 if all scripts should be executed
+     */
+    protected int restoreSchemaImage(SortedSet<Script> scripts) {
+        int nrOfRestoredScripts;
+        try {
+            nrOfRestoredScripts = schemaImageCache.restoreImage(scripts);
+        } catch (DbMaintainException e) {
+            logger.warn("Unable to restore the schema image. The database is cleared again and all scripts are executed.", e);
+            dbClearer.clearDatabase();
+            executedScriptInfoSource.resetCachedState();
+            return 0;
+        }
+        int index = 0;
+        for (Script script : scripts) {
+            if (index++ >= nrOfRestoredScripts) {
+                break;
+            }
+            executedScriptInfoSource.registerExecutedScript(new ExecutedScript(script, new Date(), true));
+        }
+        return nrOfRestoredScripts;
+    }
+
+
+    /**
+     * Executes the tasks of the given scripts in order, or in one lane per target database if parallel database lanes
+     * are enabled.
+     *
+     * @param tasks The task per script, in order of execution, not null
+     */
+    protected void executeTasks(Map<Script, Runnable> tasks) {
+        if (!parallelDatabaseLanesEnabled) {
+            for (Runnable task : tasks.values()) {
+                task.run();
+            }
+            return;
+        }
+        Map<String, List<Runnable>> lanes = new LinkedHashMap<String, List<Runnable>>();
+        for (Map.Entry<Script, Runnable> entry : tasks.entrySet()) {
+            getLane(lanes, entry.getKey()).add(entry.getValue());
+        }
+        executeLanes(lanes);
+    }
+
+    /**
+     * @param lanes  The lanes per target database name, not null
+     * @param script The script, not null
+     * @return The lane for the target database of the given script, created if it did not exist yet, not null
+     */
+    protected List<Runnable> getLane(Map<String, List<Runnable>> lanes, Script script) {
+        String targetDatabaseName = script.getTargetDatabaseName();
+        if (targetDatabaseName == null) {
+            targetDatabaseName = defaultDatabaseName;
+        }
+        List<Runnable> lane = lanes.get(targetDatabaseName);
+        if (lane == null) {
+            lane = new ArrayList<Runnable>();
+            lanes.put(targetDatabaseName, lane);
+        }
+        return lane;
+    }
+
+
+    /**
+     * Executes the given lanes concurrently, each lane in its own thread. The tasks of a lane are executed in order and
+     * use the connections of the lane.
+     * If a task fails, no new tasks are started in any of the lanes: the tasks that are running in the other lanes
+     * are completed, after which the exception of the failed task is thrown.
+     *
+     * @param lanes The tasks per lane, not null
+     */
+    protected void executeLanes(Map<String, List<Runnable>> lanes) {
+        if (lanes.size() <= 1) {
+            for (List<Runnable> lane : lanes.values()) {
+                for (Runnable task : lane) {
+                    task.run();
+                }
+            }
+            return;
+        }
+
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        ExecutorService executorService = Executors.newFixedThreadPool(lanes.size());
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (final Map.Entry<String, List<Runnable>> lane : lanes.entrySet()) {
+                futures.add(executorService.submit(new Runnable() {
+                    public void run() {
+                        // all tasks of the lane use the connections of the lane
+                        sqlHandler.bindLane(lane.getKey());
+                        try {
+                            for (Runnable task : lane.getValue()) {
+                                if (failed.get()) {
+                                    return;
+                                }
+                                try {
+                                    task.run();
+                                } catch (RuntimeException e) {
+                                    failed.set(true);
+                                    throw e;
+                                } catch (Error e) {
+                                    failed.set(true);
+                                    throw e;
+                                }
+                            }
+                        } finally {
+                            sqlHandler.unbindLane();
+                        }
+                    }
+                }));
+            }
+            RuntimeException firstException = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (firstException == null) {
+                        firstException = getLaneException(e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    failed.set(true);
+                    Thread.currentThread().interrupt();
+                    throw new DbMaintainException("Interrupted while waiting for the scripts to be executed.", e);
+                }
+            }
+            if (firstException != null) {
+                throw firstException;
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+
+    private RuntimeException getLaneException(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new DbMaintainException("Error while executing scripts.", cause);
+    }
+
+
     /**
      * Executes the given script and updates the database execution registry appropriately. If
      * successfully, the script execution is registered in the database and marked as successful.
@@ -415,13 +981,26 @@ public class DefaultDbMaintainer implements DbMaintainer {
         try {
             // We register the script execution, but we indicate it to be unsuccessful. If anything goes wrong or if the update is
             // interrupted before being completed, this will be the final state and the DbMaintainer will do a from-scratch update the next time
+            // The registry is shared by all lanes when scripts are executed in parallel
             ExecutedScript executedScript = new ExecutedScript(script, new Date(), false);
-            executedScriptInfoSource.registerExecutedScript(executedScript);
+            synchronized (executedScriptInfoSource) {
+                executedScriptInfoSource.registerExecutedScript(executedScript);
+            }
 
-            scriptRunner.execute(script);
+            long startTime = nanoTime();
+            try {
+                scriptRunner.execute(script);
+            } finally {
+                metricsRecorder.recordDuration(SCRIPT_DURATION, script.getFileName(), nanoTime() - startTime);
+            }
             // We now register the previously registered script execution as being successful
             executedScript.setSuccessful(true);
-            executedScriptInfoSource.updateExecutedScript(executedScript);
+            synchronized (executedScriptInfoSource) {
+                executedScriptInfoSource.updateExecutedScript(executedScript);
+            }
+            synchronized (scriptsExecutedDuringUpdate) {
+                scriptsExecutedDuringUpdate.add(script);
+            }
 
         } catch (DbMaintainException e) {
             String message = getErrorMessage(script, e);
@@ -23,13 +23,15 @@ import org.dbmaintain.database.SQLHandler;
 import org.dbmaintain.database.impl.DefaultDatabaseConnectionManager;
 import org.dbmaintain.database.impl.DefaultSQLHandler;
 import org.dbmaintain.datasource.DataSourceFactory;
-import org.dbmaintain.datasource.impl.SimpleDataSourceFactory;
+import org.dbmaintain.lock.UpdateLock;
+import org.dbmaintain.metrics.MetricsRecorder;
 import org.dbmaintain.script.archive.ScriptArchiveCreator;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
 import org.dbmaintain.script.runner.ScriptRunner;
 import org.dbmaintain.structure.clean.DBCleaner;
 import org.dbmaintain.structure.clear.DBClearer;
 import org.dbmaintain.structure.constraint.ConstraintsDisabler;
+import org.dbmaintain.structure.image.SchemaImageCache;
 import org.dbmaintain.structure.sequence.SequenceUpdater;
 
 import javax.sql.DataSource;
@@ -37,7 +39,9 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 
+import static org.dbmaintain.config.ConfigUtils.getConfiguredClass;
 import static org.dbmaintain.config.ConfigUtils.getFactoryClass;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_PREPARED_STATEMENT_CACHE_SIZE;
 import static org.dbmaintain.util.ReflectionUtils.createInstanceOfType;
 
 /**
@@ -51,9 +55,12 @@ public class MainFactory {
     protected DatabaseConnectionManager databaseConnectionManager;
     protected Map<String, DataSource> dataSourcesPerDatabaseName;
     protected Databases databases;
+    protected MetricsRecorder metricsRecorder;
 
     protected FactoryContext factoryContext;
     protected FactoryWithDatabaseContext factoryWithDatabaseContext;
+    /* The connection manager created by this factory, null if it was passed to this factory or not created yet */
+    protected DefaultDatabaseConnectionManager createdDatabaseConnectionManager;
 
 
     public MainFactory(Properties configuration) {
@@ -86,6 +93,14 @@ public class MainFactory {
         return createInstance(DBClearer.class);
     }
 
+    public SchemaImageCache createSchemaImageCache() {
+        return createInstance(SchemaImageCache.class);
+    }
+
+    public UpdateLock createUpdateLock() {
+        return createInstance(UpdateLock.class);
+    }
+
     public ConstraintsDisabler createConstraintsDisabler() {
         return createInstance(ConstraintsDisabler.class);
     }
@@ -106,6 +121,27 @@ public class MainFactory {
         return createInstance(ScriptArchiveCreator.class);
     }
 
+    /**
+     * @return The recorder of the metrics of the run, the same instance for all created objects, not null
+     */
+    public synchronized MetricsRecorder getMetricsRecorder() {
+        if (metricsRecorder == null) {
+            metricsRecorder = createMetricsRecorder();
+        }
+        return metricsRecorder;
+    }
+
+    /**
+     * Closes the connections and data sources that were created by this factory, e.g. connection pools. Data sources
+     * or a connection manager that were passed to this factory are left open.
+     */
+    public void close() {
+        if (createdDatabaseConnectionManager != null) {
+            sqlHandler.closeAllConnections();
+            createdDatabaseConnectionManager.close();
+        }
+    }
+
 
     @SuppressWarnings({"unchecked"})
     protected <S> S createInstance(Class<S> type) {
@@ -154,13 +190,25 @@ public class MainFactory {
 
     protected DatabaseConnectionManager getDatabaseConnectionManager() {
         if (databaseConnectionManager == null) {
-            DataSourceFactory dataSourceFactory = new SimpleDataSourceFactory();
-            databaseConnectionManager = new DefaultDatabaseConnectionManager(configuration, sqlHandler, dataSourceFactory, dataSourcesPerDatabaseName);
+            DataSourceFactory dataSourceFactory = createDataSourceFactory();
+            createdDatabaseConnectionManager = new DefaultDatabaseConnectionManager(configuration, sqlHandler, dataSourceFactory, dataSourcesPerDatabaseName);
+            databaseConnectionManager = createdDatabaseConnectionManager;
         }
         return databaseConnectionManager;
     }
 
+    protected DataSourceFactory createDataSourceFactory() {
+        Class<DataSourceFactory> clazz = getConfiguredClass(DataSourceFactory.class, configuration);
+        return createInstanceOfType(clazz, false, new Class<?>[]{Properties.class}, new Object[]{configuration});
+    }
+
     protected SQLHandler createSqlHandler() {
-        return new DefaultSQLHandler();
+        int preparedStatementCacheSize = PropertyUtils.getInt(PROPERTY_PREPARED_STATEMENT_CACHE_SIZE, DefaultSQLHandler.DEFAULT_PREPARED_STATEMENT_CACHE_SIZE, configuration);
+        return new DefaultSQLHandler(true, preparedStatementCacheSize, getMetricsRecorder());
+    }
+
+    protected MetricsRecorder createMetricsRecorder() {
+        Class<MetricsRecorder> clazz = getConfiguredClass(MetricsRecorder.class, configuration);
+        return createInstanceOfType(clazz, false, new Class<?>[]{Properties.class}, new Object[]{configuration});
     }
 }
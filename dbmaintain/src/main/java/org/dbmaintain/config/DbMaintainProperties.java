@@ -95,21 +95,96 @@ public class DbMaintainProperties {
      */
     public static final String PROPERTY_CLEANDB = "dbMaintainer.cleanDb";
 
+    /**
+     * Property indicating if the tables should be truncated instead of deleting their records when cleaning the database
+     */
+    public static final String PROPERTY_CLEANDB_TRUNCATE_ENABLED = "dbMaintainer.cleanDb.truncate.enabled";
+
+    /**
+     * Property for the maximum nr of tables that are truncated concurrently when cleaning the database
+     */
+    public static final String PROPERTY_CLEANDB_MAX_THREADS = "dbMaintainer.cleanDb.maxThreads";
+
     /**
      * Property indicating if updating the database from scratch is enabled
      */
     public static final String PROPERTY_FROM_SCRATCH_ENABLED = "dbMaintainer.fromScratch.enabled";
 
+    /**
+     * Property for the maximum nr of database schemas that are cleared concurrently
+     */
+    public static final String PROPERTY_CLEAR_DB_MAX_THREADS = "dbMaintainer.clearDb.maxThreads";
+
+    /**
+     * Property for the directory in which images of the database schemas are stored after an update from scratch
+     */
+    public static final String PROPERTY_SCHEMA_IMAGE_CACHE_DIRECTORY = "dbMaintainer.schemaImageCache.directory";
+
+    /**
+     * Property for the nr of update scripts after which an intermediate image of the database schemas is stored
+     */
+    public static final String PROPERTY_SCHEMA_IMAGE_CACHE_CHECKPOINT_INTERVAL = "dbMaintainer.schemaImageCache.checkpointInterval";
+
+    /**
+     * Property for the maximum size in MB of all stored images of the database schemas
+     */
+    public static final String PROPERTY_SCHEMA_IMAGE_CACHE_MAX_SIZE_IN_MB = "dbMaintainer.schemaImageCache.maxSizeInMB";
+
+    /**
+     * Property indicating if a lock should be acquired before updating the database, so that concurrent processes do not update the database at the same time
+     */
+    public static final String PROPERTY_UPDATE_LOCK_ENABLED = "dbMaintainer.updateLock.enabled";
+
+    /**
+     * Property for the name of the table that contains the update lock
+     */
+    public static final String PROPERTY_UPDATE_LOCK_TABLE_NAME = "dbMaintainer.updateLock.tableName";
+
+    /**
+     * Property for the time in seconds after which an update lock that is not renewed can be reclaimed by another process
+     */
+    public static final String PROPERTY_UPDATE_LOCK_LEASE_TIMEOUT_IN_SECONDS = "dbMaintainer.updateLock.leaseTimeoutInSeconds";
+
+    /**
+     * Property for the maximum time in seconds to wait for the update lock
+     */
+    public static final String PROPERTY_UPDATE_LOCK_MAX_WAIT_TIME_IN_SECONDS = "dbMaintainer.updateLock.maxWaitTimeInSeconds";
+
+    /**
+     * Property indicating if an advisory lock should be used instead of a lease when the database supports it
+     */
+    public static final String PROPERTY_UPDATE_LOCK_USE_ADVISORY_LOCKS = "dbMaintainer.updateLock.useAdvisoryLocks";
+
     /**
      * Property indicating if the database constraints should org disabled after updating the database
      */
     public static final String PROPERTY_DISABLE_CONSTRAINTS = "dbMaintainer.disableConstraints";
 
+    /**
+     * Property indicating if only the constraints of the tables that were created or altered by the scripts should be disabled after an incremental update
+     */
+    public static final String PROPERTY_DISABLE_CONSTRAINTS_UPDATED_TABLES_ONLY = "dbMaintainer.disableConstraints.updatedTablesOnly";
+
     /**
      * Property indicating if the database constraints should org disabled after updating the database
      */
     public static final String PROPERTY_UPDATE_SEQUENCES = "dbMaintainer.updateSequences";
 
+    /**
+     * Property indicating if the scripts of different target databases can be executed concurrently
+     */
+    public static final String PROPERTY_PARALLEL_DATABASE_LANES_ENABLED = "dbMaintainer.parallelDatabaseLanes.enabled";
+
+    /**
+     * Property for the maximum nr of repeatable scripts that are executed concurrently
+     */
+    public static final String PROPERTY_REPEATABLE_SCRIPTS_MAX_THREADS = "dbMaintainer.repeatableScripts.maxThreads";
+
+    /**
+     * Property indicating if dependencies between repeatable scripts should be inferred from the names of the objects they use
+     */
+    public static final String PROPERTY_REPEATABLE_SCRIPTS_INFER_DEPENDENCIES = "dbMaintainer.repeatableScripts.inferDependencies";
+
     /**
      * Property for the maximum nr of chars of the script content to log when exception occurs, 0 to not log any script content
      */
@@ -184,6 +259,9 @@ public class DbMaintainProperties {
     public static final String PROPERTY_CHECKSUM_COLUMN_NAME = "dbMaintainer.checksumColumnName";
     public static final String PROPERTY_CHECKSUM_COLUMN_SIZE = "dbMaintainer.checksumColumnSize";
 
+    /* The key of the property that specifies the column in which the checksum without comments and formatting is stored */
+    public static final String PROPERTY_SEMANTIC_CHECKSUM_COLUMN_NAME = "dbMaintainer.semanticChecksumColumnName";
+
     /* The key of the property that specifies the column in which is stored whether the last update succeeded. */
     public static final String PROPERTY_EXECUTED_AT_COLUMN_NAME = "dbMaintainer.executedAtColumnName";
     public static final String PROPERTY_EXECUTED_AT_COLUMN_SIZE = "dbMaintainer.executedAtColumnSize";
@@ -213,6 +291,21 @@ public class DbMaintainProperties {
      */
     public static final String PROPERTY_POSTPROCESSINGSCRIPT_DIRNAME = "dbMaintainer.postProcessingScript.directoryName";
 
+    /**
+     * Property key indicating if only the postprocessing scripts that are triggered by the executed scripts should be executed
+     */
+    public static final String PROPERTY_POSTPROCESSINGSCRIPT_SELECTIVE_EXECUTION = "dbMaintainer.postProcessingScript.selectiveExecution";
+
+    /**
+     * Property key indicating if repeatable scripts of which only comments or formatting changed should not be executed again
+     */
+    public static final String PROPERTY_SEMANTIC_CHECKSUM_REPEATABLE_SCRIPTS_ENABLED = "dbMaintainer.semanticCheckSum.repeatableScripts.enabled";
+
+    /**
+     * Property key indicating if postprocessing scripts of which only comments or formatting changed should not be executed again
+     */
+    public static final String PROPERTY_SEMANTIC_CHECKSUM_POSTPROCESSING_SCRIPTS_ENABLED = "dbMaintainer.semanticCheckSum.postProcessingScripts.enabled";
+
     /**
      * Property key for the patch indicator. I.e. the keyword to use in the filename to indicate that the script is a patch script.
      */
@@ -239,10 +332,68 @@ public class DbMaintainProperties {
 
     public static final String PROPERTY_INCLUDED_QUALIFIERS = "dbMaintainer.includedQualifiers";
 
+    /**
+     * Property that defines the max nr of prepared statements of catalog queries that is kept open per connection
+     */
+    public static final String PROPERTY_PREPARED_STATEMENT_CACHE_SIZE = "dbMaintainer.sqlHandler.preparedStatementCacheSize";
+
+    /**
+     * Property that indicates whether the names of the tables, views, sequences... of a database should be cached until
+     * a script is executed, instead of being retrieved each time they are needed
+     */
+    public static final String PROPERTY_CATALOG_CACHE_ENABLED = "dbMaintainer.catalogCache.enabled";
+
+    /**
+     * Properties for the pooled data source factory: the max nr of connections per database, the time in ms after which
+     * an unused connection is closed, the max time in ms to wait for a free connection and the query that is used to
+     * validate a connection before it is reused
+     */
+    public static final String PROPERTY_POOLED_DATA_SOURCE_MAX_SIZE = "dbMaintainer.pooledDataSource.maxSize";
+
+    public static final String PROPERTY_POOLED_DATA_SOURCE_MAX_IDLE_TIME = "dbMaintainer.pooledDataSource.maxIdleTime";
+
+    public static final String PROPERTY_POOLED_DATA_SOURCE_MAX_WAIT_TIME = "dbMaintainer.pooledDataSource.maxWaitTime";
+
+    public static final String PROPERTY_POOLED_DATA_SOURCE_VALIDATION_QUERY = "dbMaintainer.pooledDataSource.validationQuery";
+
+    /**
+     * Properties for the file metrics recorder: the file to which the metrics are written at the end of the run and the
+     * format of the file: prometheus or json
+     */
+    public static final String PROPERTY_METRICS_FILE = "dbMaintainer.metrics.file";
+
+    public static final String PROPERTY_METRICS_FORMAT = "dbMaintainer.metrics.format";
+
     public static final String PROPERTY_SQL_PLUS_COMMAND = "dbMaintainer.sqlPlusScriptRunner.sqlPlusCommand";
 
+    public static final String PROPERTY_SQL_PLUS_PERSISTENT_SESSION_ENABLED = "dbMaintainer.sqlPlusScriptRunner.persistentSession.enabled";
+
+    public static final String PROPERTY_SQL_PLUS_STREAM_SCRIPT_CONTENT_ENABLED = "dbMaintainer.sqlPlusScriptRunner.streamScriptContent.enabled";
+
+    /**
+     * Property that defines the maximum nr of seconds to wait for a script to complete in a persistent SQL*Plus session, 0 to wait indefinitely
+     */
+    public static final String PROPERTY_SQL_PLUS_PERSISTENT_SESSION_SCRIPT_TIMEOUT = "dbMaintainer.sqlPlusScriptRunner.persistentSession.scriptTimeout";
+
     public static final String PROPERTY_DB2_COMMAND = "dbMaintainer.db2ScriptRunner.db2Command";
 
+    public static final String PROPERTY_DB2_PERSISTENT_SESSION_ENABLED = "dbMaintainer.db2ScriptRunner.persistentSession.enabled";
+
+    /**
+     * Property that defines the maximum nr of characters of output of a native script runner (SQL*Plus, DB2 CLP) that is kept per script
+     */
+    public static final String PROPERTY_NATIVE_SCRIPT_RUNNER_MAX_OUTPUT_SIZE = "dbMaintainer.nativeScriptRunner.maxOutputSize";
+
+    /**
+     * Property indicating whether the jdbc script runner should execute consecutive inserts with literal values as batches of bound statements
+     */
+    public static final String PROPERTY_JDBC_SCRIPT_RUNNER_BATCH_INSERTS_ENABLED = "dbMaintainer.jdbcScriptRunner.batchInserts.enabled";
+
+    /**
+     * Property for the maximum nr of inserts that the jdbc script runner executes in one batch
+     */
+    public static final String PROPERTY_JDBC_SCRIPT_RUNNER_BATCH_INSERTS_MAX_BATCH_SIZE = "dbMaintainer.jdbcScriptRunner.batchInserts.maxBatchSize";
+
     public static final String PROPERTY_BASELINE_REVISION = "dbMaintainer.baseline.revision";
 
     public static final String PROPERTY_SCRIPT_PARAMETER_FILE = "dbMaintainer.scriptParameterFile";
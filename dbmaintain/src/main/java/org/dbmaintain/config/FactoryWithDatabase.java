@@ -17,6 +17,7 @@ package org.dbmaintain.config;
 
 import org.dbmaintain.database.Databases;
 import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.metrics.MetricsRecorder;
 
 import java.util.Properties;
 
@@ -45,4 +46,8 @@ public abstract class FactoryWithDatabase<T> implements Factory<T> {
         return factoryWithDatabaseContext.getSqlHandler();
     }
 
+    public MetricsRecorder getMetricsRecorder() {
+        return factoryWithDatabaseContext.getMainFactory().getMetricsRecorder();
+    }
+
 }
@@ -59,6 +59,12 @@ public class FactoryWithDatabaseContext extends FactoryContext {
         return getItemIdentifier(TABLE, defaultDatabase.getDefaultSchemaName(), executedScriptsTableName, defaultDatabase, true);
     }
 
+    public DbItemIdentifier getUpdateLockTable() {
+        String updateLockTableName = getString(PROPERTY_UPDATE_LOCK_TABLE_NAME, getConfiguration());
+        Database defaultDatabase = databases.getDefaultDatabase();
+        return getItemIdentifier(TABLE, defaultDatabase.getDefaultSchemaName(), updateLockTableName, defaultDatabase, true);
+    }
+
     /**
      * @param propertyPreserveSchemas The preserve property name, not null
      * @return The configured set of schemas to preserve, not null
@@ -0,0 +1,513 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.database;
+
+import org.dbmaintain.structure.model.DbItemDependency;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decorator for a database that keeps a snapshot of the catalog: the names of the tables, views, sequences... and the
+ * columns of the tables are only retrieved once, no matter how many times they are asked for, e.g. by both the
+ * constraints disabler and the db cleaner, and by each of them before and after the scripts are executed.
+ * <p/>
+ * The snapshot is kept until the structure of the database can have been changed. Items that are dropped through this
+ * database are removed from the snapshot, the other cached information of the schema is discarded since dropping an
+ * item can cascade to other items. Script runners invoke {@link #invalidateCatalogCache} after executing a script,
+ * which discards the complete snapshot.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class CachingDatabase extends Database {
+
+    protected static final String TABLES = "tables";
+    protected static final String VIEWS = "views";
+    protected static final String MATERIALIZED_VIEWS = "materializedViews";
+    protected static final String SYNONYMS = "synonyms";
+    protected static final String SEQUENCES = "sequences";
+    protected static final String TRIGGERS = "triggers";
+    protected static final String STORED_PROCEDURES = "storedProcedures";
+    protected static final String TYPES = "types";
+    protected static final String RULES = "rules";
+    protected static final String COLUMNS = "columns.";
+    protected static final String IDENTITY_COLUMNS = "identityColumns.";
+
+    /* The decorated database, not null */
+    protected Database database;
+
+    /* The cached names per schema and per kind of item, e.g. tables or columns.MY_TABLE */
+    private Map<String, Map<String, Set<String>>> cachedNames = new HashMap<String, Map<String, Set<String>>>();
+
+    /* Incremented each time cached names are discarded, so that names that were retrieved before are not cached anymore */
+    private long generation;
+
+
+    /**
+     * @param database The database to decorate, not null
+     */
+    public CachingDatabase(Database database) {
+        super(database);
+        this.database = database;
+    }
+
+
+    /**
+     * Discards the complete snapshot of the catalog.
+     */
+    @Override
+    public synchronized void invalidateCatalogCache() {
+        cachedNames.clear();
+        generation++;
+    }
+
+
+    @Override
+    public Set<String> getTableNames(String schemaName) {
+        long generation = getGeneration();
+        Set<String> names = getCachedNames(schemaName, TABLES);
+        if (names == null) {
+            names = cacheNames(generation, schemaName, TABLES, database.getTableNames(schemaName));
+        }
+        return names;
+    }
+
+    @Override
+    public Set<String> getColumnNames(String schemaName, String tableName) {
+        long generation = getGeneration();
+        Set<String> names = getCachedNames(schemaName, COLUMNS + tableName);
+        if (names == null) {
+            names = cacheNames(generation, schemaName, COLUMNS + tableName, database.getColumnNames(schemaName, tableName));
+        }
+        return names;
+    }
+
+    @Override
+    public Set<String> getViewNames(String schemaName) {
+        long generation = getGeneration();
+        Set<String> names = getCachedNames(schemaName, VIEWS);
+        if (names == null) {
+            names = cacheNames(generation, schemaName, VIEWS, database.getViewNames(schemaName));
+        }
+        return names;
+    }
+
+    @Override
+    public Set<String> getMaterializedViewNames(String schemaName) {
+        long generation = getGeneration();
+        Set<String> names = getCachedNames(schemaName, MATERIALIZED_VIEWS);
+        if (names == null) {
+            names = cacheNames(generation, schemaName, MATERIALIZED_VIEWS, database.getMaterializedViewNames(schemaName));
+        }
+        return names;
+    }
+
+    @Override
+    public Set<String> getSynonymNames(String schemaName) {
+        long generation = getGeneration();
+        Set<String> names = getCachedNames(schemaName, SYNONYMS);
+        if (names == null) {
+            names = cacheNames(generation, schemaName, SYNONYMS, database.getSynonymNames(schemaName));
+        }
+        return names;
+    }
+
+    @Override
+    public Set<String> getSequenceNames(String schemaName) {
+        long generation = getGeneration();
+        Set<String> names = getCachedNames(schemaName, SEQUENCES);
+        if (names == null) {
+            names = cacheNames(generation, schemaName, SEQUENCES, database.getSequenceNames(schemaName));
+        }
+        return names;
+    }
+
+    @Override
+    public Set<String> getTriggerNames(String schemaName) {
+        long generation = getGeneration();
+        Set<String> names = getCachedNames(schemaName, TRIGGERS);
+        if (names == null) {
+            names = cacheNames(generation, schemaName, TRIGGERS, database.getTriggerNames(schemaName));
+        }
+        return names;
+    }
+
+    @Override
+    public Set<String> getStoredProcedureNames(String schemaName) {
+        long generation = getGeneration();
+        Set<String> names = getCachedNames(schemaName, STORED_PROCEDURES);
+        if (names == null) {
+            names = cacheNames(generation, schemaName, STORED_PROCEDURES, database.getStoredProcedureNames(schemaName));
+        }
+        return names;
+    }
+
+    @Override
+    public Set<String> getTypeNames(String schemaName) {
+        long generation = getGeneration();
+        Set<String> names = getCachedNames(schemaName, TYPES);
+        if (names == null) {
+            names = cacheNames(generation, schemaName, TYPES, database.getTypeNames(schemaName));
+        }
+        return names;
+    }
+
+    @Override
+    public Set<String> getRuleNames(String schemaName) {
+        long generation = getGeneration();
+        Set<String> names = getCachedNames(schemaName, RULES);
+        if (names == null) {
+            names = cacheNames(generation, schemaName, RULES, database.getRuleNames(schemaName));
+        }
+        return names;
+    }
+
+    @Override
+    public Set<String> getIdentityColumnNames(String schemaName, String tableName) {
+        long generation = getGeneration();
+        Set<String> names = getCachedNames(schemaName, IDENTITY_COLUMNS + tableName);
+        if (names == null) {
+            names = cacheNames(generation, schemaName, IDENTITY_COLUMNS + tableName, database.getIdentityColumnNames(schemaName, tableName));
+        }
+        return names;
+    }
+
+
+    @Override
+    public void dropTable(String schemaName, String tableName) {
+        database.dropTable(schemaName, tableName);
+        itemDropped(schemaName, TABLES, tableName);
+    }
+
+    @Override
+    public void dropView(String schemaName, String viewName) {
+        database.dropView(schemaName, viewName);
+        itemDropped(schemaName, VIEWS, viewName);
+    }
+
+    @Override
+    public void dropMaterializedView(String schemaName, String viewName) {
+        database.dropMaterializedView(schemaName, viewName);
+        itemDropped(schemaName, MATERIALIZED_VIEWS, viewName);
+    }
+
+    @Override
+    public void dropSynonym(String schemaName, String synonymName) {
+        database.dropSynonym(schemaName, synonymName);
+        itemDropped(schemaName, SYNONYMS, synonymName);
+    }
+
+    @Override
+    public void dropSequence(String schemaName, String sequenceName) {
+        database.dropSequence(schemaName, sequenceName);
+        itemDropped(schemaName, SEQUENCES, sequenceName);
+    }
+
+    @Override
+    public void dropTrigger(String schemaName, String triggerName) {
+        database.dropTrigger(schemaName, triggerName);
+        itemDropped(schemaName, TRIGGERS, triggerName);
+    }
+
+    @Override
+    public void dropStoredProcedure(String schemaName, String storedProcedureName) {
+        database.dropStoredProcedure(schemaName, storedProcedureName);
+        itemDropped(schemaName, STORED_PROCEDURES, storedProcedureName);
+    }
+
+    @Override
+    public void dropType(String schemaName, String typeName) {
+        database.dropType(schemaName, typeName);
+        itemDropped(schemaName, TYPES, typeName);
+    }
+
+    @Override
+    public void dropRule(String schemaName, String ruleName) {
+        database.dropRule(schemaName, ruleName);
+        itemDropped(schemaName, RULES, ruleName);
+    }
+
+
+    @Override
+    public boolean clearSchema(String schemaName, Set<String> tableNamesToKeep) {
+        try {
+            return database.clearSchema(schemaName, tableNamesToKeep);
+        } finally {
+            invalidateCatalogCache();
+        }
+    }
+
+
+    @Override
+    public String getSupportedDatabaseDialect() {
+        return database.getSupportedDatabaseDialect();
+    }
+
+    @Override
+    public void disableReferentialConstraints(String schemaName) {
+        database.disableReferentialConstraints(schemaName);
+    }
+
+    @Override
+    public void disableValueConstraints(String schemaName) {
+        database.disableValueConstraints(schemaName);
+    }
+
+    @Override
+    public void disableReferentialConstraints(String schemaName, Set<String> tableNames) {
+        database.disableReferentialConstraints(schemaName, tableNames);
+    }
+
+    @Override
+    public void disableValueConstraints(String schemaName, Set<String> tableNames) {
+        database.disableValueConstraints(schemaName, tableNames);
+    }
+
+    @Override
+    public long getSequenceValue(String schemaName, String sequenceName) {
+        return database.getSequenceValue(schemaName, sequenceName);
+    }
+
+    @Override
+    public Map<String, Long> getSequenceValues(String schemaName) {
+        return database.getSequenceValues(schemaName);
+    }
+
+    @Override
+    public List<IdentityColumn> getIdentityColumns(String schemaName) {
+        return database.getIdentityColumns(schemaName);
+    }
+
+    @Override
+    public List<DbItemDependency> getDependencies(String schemaName) {
+        return database.getDependencies(schemaName);
+    }
+
+    @Override
+    public List<DbItemDependency> getTableReferences(String schemaName) {
+        return database.getTableReferences(schemaName);
+    }
+
+    @Override
+    public void truncateTable(String schemaName, String tableName) {
+        database.truncateTable(schemaName, tableName);
+    }
+
+    @Override
+    public Set<String> getNonEmptyTableNames(String schemaName, Set<String> tableNames) {
+        return database.getNonEmptyTableNames(schemaName, tableNames);
+    }
+
+    @Override
+    public void exportSchemaImage(File imageFile) {
+        database.exportSchemaImage(imageFile);
+    }
+
+    @Override
+    public void importSchemaImage(File imageFile) {
+        try {
+            database.importSchemaImage(imageFile);
+        } finally {
+            invalidateCatalogCache();
+        }
+    }
+
+    @Override
+    public String getTryAdvisoryLockStatement(String lockName) {
+        return database.getTryAdvisoryLockStatement(lockName);
+    }
+
+    @Override
+    public String getReleaseAdvisoryLockStatement(String lockName) {
+        return database.getReleaseAdvisoryLockStatement(lockName);
+    }
+
+    @Override
+    public void incrementSequenceToValue(String schemaName, String sequenceName, long newSequenceValue) {
+        database.incrementSequenceToValue(schemaName, sequenceName, newSequenceValue);
+    }
+
+    @Override
+    public void incrementIdentityColumnToValue(String schemaName, String tableName, String identityColumnName, long identityValue) {
+        database.incrementIdentityColumnToValue(schemaName, tableName, identityColumnName, identityValue);
+    }
+
+    @Override
+    public void setDatabaseDefaultSchema() {
+        database.setDatabaseDefaultSchema();
+    }
+
+    @Override
+    public String getLongDataType() {
+        return database.getLongDataType();
+    }
+
+    @Override
+    public String getTextDataType(int length) {
+        return database.getTextDataType(length);
+    }
+
+    @Override
+    public String toCorrectCaseIdentifier(String identifier) {
+        return database.toCorrectCaseIdentifier(identifier);
+    }
+
+    @Override
+    public void setSettingIdentityColumnValueEnabled(String schemaName, String tableName, boolean enabled) {
+        database.setSettingIdentityColumnValueEnabled(schemaName, tableName, enabled);
+    }
+
+    @Override
+    public boolean supportsSynonyms() {
+        return database.supportsSynonyms();
+    }
+
+    @Override
+    public boolean supportsSequences() {
+        return database.supportsSequences();
+    }
+
+    @Override
+    public boolean supportsTriggers() {
+        return database.supportsTriggers();
+    }
+
+    @Override
+    public boolean supportsStoredProcedures() {
+        return database.supportsStoredProcedures();
+    }
+
+    @Override
+    public boolean supportsTypes() {
+        return database.supportsTypes();
+    }
+
+    @Override
+    public boolean supportsRules() {
+        return database.supportsRules();
+    }
+
+    @Override
+    public boolean supportsIdentityColumns() {
+        return database.supportsIdentityColumns();
+    }
+
+    @Override
+    public boolean supportsMaterializedViews() {
+        return database.supportsMaterializedViews();
+    }
+
+    @Override
+    public boolean supportsCascade() {
+        return database.supportsCascade();
+    }
+
+    @Override
+    public boolean supportsTruncate() {
+        return database.supportsTruncate();
+    }
+
+    @Override
+    public boolean supportsSchemaImages() {
+        return database.supportsSchemaImages();
+    }
+
+    @Override
+    public boolean supportsAdvisoryLocks() {
+        return database.supportsAdvisoryLocks();
+    }
+
+    @Override
+    public boolean supportsSetDatabaseDefaultSchema() {
+        return database.supportsSetDatabaseDefaultSchema();
+    }
+
+    @Override
+    public boolean supportsDependencies() {
+        return database.supportsDependencies();
+    }
+
+
+    protected synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @param schemaName The schema, not null
+     * @param key        The kind of items, not null
+     * @return A copy of the cached names, null if not cached
+     */
+    protected synchronized Set<String> getCachedNames(String schemaName, String key) {
+        Map<String, Set<String>> cachedNamesForSchema = cachedNames.get(schemaName);
+        if (cachedNamesForSchema == null) {
+            return null;
+        }
+        Set<String> names = cachedNamesForSchema.get(key);
+        if (names == null) {
+            return null;
+        }
+        return new HashSet<String>(names);
+    }
+
+    /**
+     * Caches the given names, unless the cache was invalidated after the names were retrieved.
+     *
+     * @param generation The generation of the cache before the names were retrieved
+     * @param schemaName The schema, not null
+     * @param key        The kind of items, not null
+     * @param names      The names, not null
+     * @return A copy of the names, not null
+     */
+    protected synchronized Set<String> cacheNames(long generation, String schemaName, String key, Set<String> names) {
+        if (generation == this.generation) {
+            Map<String, Set<String>> cachedNamesForSchema = cachedNames.get(schemaName);
+            if (cachedNamesForSchema == null) {
+                cachedNamesForSchema = new HashMap<String, Set<String>>();
+                cachedNames.put(schemaName, cachedNamesForSchema);
+            }
+            cachedNamesForSchema.put(key, new HashSet<String>(names));
+        }
+        return new HashSet<String>(names);
+    }
+
+    /**
+     * Removes the dropped item from the cached names. Dropping an item can also drop other items, e.g. the triggers
+     * of a table or the views that use it, so the other cached names of the schema are discarded.
+     *
+     * @param schemaName The schema, not null
+     * @param key        The kind of the dropped item, not null
+     * @param itemName   The dropped item, not null
+     */
+    protected synchronized void itemDropped(String schemaName, String key, String itemName) {
+        generation++;
+        Map<String, Set<String>> cachedNamesForSchema = cachedNames.remove(schemaName);
+        if (cachedNamesForSchema == null) {
+            return;
+        }
+        Set<String> names = cachedNamesForSchema.get(key);
+        if (names != null) {
+            names.remove(itemName);
+            Map<String, Set<String>> remainingNamesForSchema = new HashMap<String, Set<String>>();
+            remainingNamesForSchema.put(key, names);
+            cachedNames.put(schemaName, remainingNamesForSchema);
+        }
+    }
+}
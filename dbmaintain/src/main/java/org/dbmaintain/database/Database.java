@@ -15,10 +15,28 @@
  */
 package org.dbmaintain.database;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.structure.model.DbItemDependency;
+import org.dbmaintain.structure.model.DbItemType;
+
 import javax.sql.DataSource;
+import java.io.File;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import static org.apache.commons.dbutils.DbUtils.closeQuietly;
+
 /**
  * Helper class that implements a number of common operations on a database schema. Operations that can be implemented
  * using general JDBC or ANSI SQL constructs, are implemented in this base abstract class. Operations that are DBMS
@@ -30,6 +48,15 @@ import java.util.Set;
  */
 abstract public class Database {
 
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(Database.class);
+
+    /* The max nr of tables that are probed in one query, see getNonEmptyTableNames */
+    public static final int MAX_NR_OF_NON_EMPTY_TABLE_PROBES = 100;
+
+    /* The max nr of values in an in list of a query, Oracle does not allow more than 1000 */
+    public static final int MAX_NR_OF_IN_LIST_VALUES = 1000;
+
     protected DatabaseConnection databaseConnection;
     protected Set<String> schemaNames;
     protected IdentifierProcessor identifierProcessor;
@@ -47,6 +74,18 @@ abstract public class Database {
         }
     }
 
+    /**
+     * Creates an instance that shares the connection, identifier processor and schema names of the given database,
+     * e.g. to decorate it. The default schema of the database is not set again.
+     *
+     * @param database The database, not null
+     */
+    protected Database(Database database) {
+        this.databaseConnection = database.databaseConnection;
+        this.identifierProcessor = database.identifierProcessor;
+        this.schemaNames = database.schemaNames;
+    }
+
 
     /**
      * @return the database dialect supported by this db support class, not null
@@ -282,6 +321,16 @@ abstract public class Database {
     }
 
 
+    /**
+     * Discards all cached information about the structure of the database. This should be invoked after statements
+     * were executed that can have changed the database structure, e.g. after a script was executed. Does nothing by
+     * default, since the default implementation does not cache anything.
+     */
+    public void invalidateCatalogCache() {
+        // nothing is cached
+    }
+
+
     /**
      * Removes the table with the given name from the default schema.
      * Note: the table name is surrounded with quotes, making it case-sensitive.
@@ -497,6 +546,60 @@ abstract public class Database {
      */
     public abstract void disableValueConstraints(String schemaName);
 
+    /**
+     * Disables all referential constraints (e.g. foreign keys) on the given tables in the given schema. By default,
+     * the referential constraints on all tables in the schema are disabled.
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The tables, not null
+     */
+    public void disableReferentialConstraints(String schemaName, Set<String> tableNames) {
+        disableReferentialConstraints(schemaName);
+    }
+
+    /**
+     * Disables all value constraints (e.g. not null) on the given tables in the given schema. By default, the value
+     * constraints on all tables in the schema are disabled.
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The tables, not null
+     */
+    public void disableValueConstraints(String schemaName, Set<String> tableNames) {
+        disableValueConstraints(schemaName);
+    }
+
+    /**
+     * Creates a condition that restricts a catalog query to the given tables. If there are more tables than allowed in
+     * a single in list, several in lists are combined using or.
+     *
+     * @param columnName The column that contains the table name, not null
+     * @param tableNames The tables, null to not restrict the query
+     * @return The condition starting with and, empty if tables is null, not null
+     */
+    protected String getTableNameCondition(String columnName, Set<String> tableNames) {
+        if (tableNames == null) {
+            return "";
+        }
+        if (tableNames.isEmpty()) {
+            return " and 1 = 0";
+        }
+        StringBuilder condition = new StringBuilder(" and (");
+        int nrOfValues = 0;
+        for (String tableName : tableNames) {
+            if (nrOfValues % MAX_NR_OF_IN_LIST_VALUES == 0) {
+                if (nrOfValues > 0) {
+                    condition.setLength(condition.length() - 2);
+                    condition.append(") or ");
+                }
+                condition.append(columnName).append(" in (");
+            }
+            condition.append("'").append(tableName.replace("'", "''")).append("', ");
+            nrOfValues++;
+        }
+        condition.setLength(condition.length() - 2);
+        return condition.append("))").toString();
+    }
+
 
     /**
      * Returns the value of the sequence with the given name from the default schema.
@@ -523,6 +626,23 @@ abstract public class Database {
         throw new UnsupportedOperationException("Sequences not supported for " + getSupportedDatabaseDialect());
     }
 
+    /**
+     * Returns the values of all sequences in the given schema. By default, the value of each sequence is retrieved
+     * separately. Override to retrieve all values with a single query.
+     * <p/>
+     * Note: this can have the side-effect of increasing the sequence values.
+     *
+     * @param schemaName The schema, not null
+     * @return The values of the sequences per sequence name, not null
+     */
+    public Map<String, Long> getSequenceValues(String schemaName) {
+        Map<String, Long> sequenceValues = new HashMap<String, Long>();
+        for (String sequenceName : getSequenceNames(schemaName)) {
+            sequenceValues.put(sequenceName, getSequenceValue(schemaName, sequenceName));
+        }
+        return sequenceValues;
+    }
+
 
     /**
      * Sets the next value of the sequence with the given name to the given sequence value in the default schema.
@@ -567,6 +687,24 @@ abstract public class Database {
         throw new UnsupportedOperationException("Identity columns not supported for " + getSupportedDatabaseDialect());
     }
 
+    /**
+     * Gets the identity columns of all tables in the given schema. By default, the identity columns are retrieved
+     * separately for each table and their current values are unknown. Override to retrieve all columns, and if possible
+     * their values, with a single query.
+     *
+     * @param schemaName The schema, not null
+     * @return The identity columns, not null
+     */
+    public List<IdentityColumn> getIdentityColumns(String schemaName) {
+        List<IdentityColumn> identityColumns = new ArrayList<IdentityColumn>();
+        for (String tableName : getTableNames(schemaName)) {
+            for (String identityColumnName : getIdentityColumnNames(schemaName, tableName)) {
+                identityColumns.add(new IdentityColumn(tableName, identityColumnName, null));
+            }
+        }
+        return identityColumns;
+    }
+
 
     /**
      * Increments the identity value for the specified identity column on the specified table to the given value in the default schema.
@@ -593,6 +731,163 @@ abstract public class Database {
         throw new UnsupportedOperationException("Identity columns not supported for " + getSupportedDatabaseDialect());
     }
 
+    /**
+     * Drops all items of the given schema at once, except for the given tables, e.g. by dropping and re-creating the
+     * schema. This is a lot faster than dropping the items one by one. The tables to keep should not be used by other
+     * items. If the schema cannot be cleared this way, e.g. because it is not supported for the database or because
+     * it is not possible to keep tables, nothing is dropped and false is returned. If an exception is thrown, some of
+     * the items can already have been dropped.
+     * <p/>
+     * By default, false is returned.
+     *
+     * @param schemaName       The schema, not null
+     * @param tableNamesToKeep The names of the tables that should not be dropped, not null
+     * @return True if the schema was cleared, false if the items should be dropped one by one
+     */
+    public boolean clearSchema(String schemaName, Set<String> tableNamesToKeep) {
+        return false;
+    }
+
+    /**
+     * Gets the dependencies between the items of the given schema: the foreign keys between tables, the tables and
+     * views that are used by views and synonyms and the tables on which triggers are defined. Dependencies on items of
+     * other schemas are not returned.
+     *
+     * @param schemaName The schema, not null
+     * @return The dependencies, not null
+     */
+    public List<DbItemDependency> getDependencies(String schemaName) {
+        throw new UnsupportedOperationException("Dependencies not supported for " + getSupportedDatabaseDialect());
+    }
+
+    /**
+     * Gets the foreign keys between the tables of the given schema: a dependency of each table on the tables it
+     * references. Foreign keys to tables of other schemas are not returned. If dependencies are supported, the table
+     * dependencies are used, otherwise the foreign keys are retrieved using the JDBC meta data of each table.
+     *
+     * @param schemaName The schema, not null
+     * @return The dependencies between the tables, not null
+     */
+    public List<DbItemDependency> getTableReferences(String schemaName) {
+        List<DbItemDependency> tableReferences = new ArrayList<DbItemDependency>();
+        if (supportsDependencies()) {
+            for (DbItemDependency dependency : getDependencies(schemaName)) {
+                if (dependency.getType() == DbItemType.TABLE && dependency.getReferencedType() == DbItemType.TABLE) {
+                    tableReferences.add(dependency);
+                }
+            }
+            return tableReferences;
+        }
+        Connection connection = null;
+        ResultSet resultSet = null;
+        try {
+            connection = getDataSource().getConnection();
+            DatabaseMetaData databaseMetaData = connection.getMetaData();
+            for (String tableName : getTableNames(schemaName)) {
+                resultSet = databaseMetaData.getImportedKeys(null, schemaName, tableName);
+                while (resultSet.next()) {
+                    if (schemaName.equals(resultSet.getString("PKTABLE_SCHEM"))) {
+                        tableReferences.add(new DbItemDependency(DbItemType.TABLE, tableName, DbItemType.TABLE, resultSet.getString("PKTABLE_NAME")));
+                    }
+                }
+                resultSet.close();
+            }
+            return tableReferences;
+        } catch (SQLException e) {
+            throw new DatabaseException("Unable to retrieve the foreign keys for schema name: " + schemaName, e);
+        } finally {
+            closeQuietly(connection, null, resultSet);
+        }
+    }
+
+    /**
+     * Deletes all data of the given table using a truncate statement. This is a lot faster than deleting the records,
+     * but most databases do not allow a table to be truncated if it is referenced by foreign keys of other tables.
+     * Depending on the database, the truncate statement can also commit the current transaction.
+     *
+     * @param schemaName The schema, not null
+     * @param tableName  The table to truncate, not null
+     */
+    public void truncateTable(String schemaName, String tableName) {
+        getSQLHandler().execute("truncate table " + qualified(schemaName, tableName), getDataSource());
+    }
+
+    /**
+     * Gets the names of the given tables that contain at least one record. The tables are probed in bulk: one query
+     * with an exists probe per table, see {@link #getNonEmptyTableProbe}, is executed for every
+     * {@link #MAX_NR_OF_NON_EMPTY_TABLE_PROBES} tables. If the query fails, e.g. because the probe is not supported by
+     * the database, all given tables are returned.
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The names of the tables to probe, not null
+     * @return The names of the tables that are not empty, not null
+     */
+    public Set<String> getNonEmptyTableNames(String schemaName, Set<String> tableNames) {
+        List<String> tableNamesToProbe = new ArrayList<String>(tableNames);
+        Set<String> nonEmptyTableNames = new HashSet<String>();
+        try {
+            for (int start = 0; start < tableNamesToProbe.size(); start += MAX_NR_OF_NON_EMPTY_TABLE_PROBES) {
+                int end = Math.min(start + MAX_NR_OF_NON_EMPTY_TABLE_PROBES, tableNamesToProbe.size());
+                StringBuilder sql = new StringBuilder();
+                for (int i = start; i < end; i++) {
+                    if (i > start) {
+                        sql.append(" union all ");
+                    }
+                    sql.append(getNonEmptyTableProbe(qualified(schemaName, tableNamesToProbe.get(i)), i));
+                }
+                for (String index : getSQLHandler().getItemsAsStringSet(sql.toString(), getDataSource())) {
+                    nonEmptyTableNames.add(tableNamesToProbe.get(Integer.parseInt(index.trim())));
+                }
+            }
+            return nonEmptyTableNames;
+        } catch (RuntimeException e) {
+            logger.debug("Unable to determine the empty tables of schema " + schemaName + ". All tables are considered not empty.", e);
+            return tableNames;
+        }
+    }
+
+    /**
+     * Writes an image of the schemas of this database, i.e. their structure and data, to the given file. The image
+     * can later be restored using {@link #importSchemaImage}.
+     *
+     * @param imageFile The file to write, should not exist yet, not null
+     */
+    public void exportSchemaImage(File imageFile) {
+        throw new UnsupportedOperationException("Schema images not supported for " + getSupportedDatabaseDialect());
+    }
+
+    /**
+     * Restores the image that was written by {@link #exportSchemaImage} in the schemas of this database. The schemas
+     * should be cleared first. Tables that still exist, e.g. because they are preserved, are left untouched.
+     *
+     * @param imageFile The image file, not null
+     */
+    public void importSchemaImage(File imageFile) {
+        throw new UnsupportedOperationException("Schema images not supported for " + getSupportedDatabaseDialect());
+    }
+
+    /**
+     * Gets the query that tries to acquire the session-level advisory lock with the given name, without waiting. The
+     * query returns 1 (or true) if the lock was acquired. The lock is held until it is released or the connection is
+     * closed, so the query and the release statement should be executed on the same connection.
+     *
+     * @param lockName The name of the lock, not null
+     * @return The query, not null
+     */
+    public String getTryAdvisoryLockStatement(String lockName) {
+        throw new UnsupportedOperationException("Advisory locks not supported for " + getSupportedDatabaseDialect());
+    }
+
+    /**
+     * Gets the query that releases the session-level advisory lock with the given name, see {@link #getTryAdvisoryLockStatement}.
+     *
+     * @param lockName The name of the lock, not null
+     * @return The query, not null
+     */
+    public String getReleaseAdvisoryLockStatement(String lockName) {
+        throw new UnsupportedOperationException("Advisory locks not supported for " + getSupportedDatabaseDialect());
+    }
+
     /**
      * Sets the current schema of the database. If a current schema is set, it does not need to be specified
      * explicitly in the scripts.
@@ -815,4 +1110,124 @@ abstract public class Database {
         return false;
     }
 
+    /**
+     * Indicates whether the dependencies between the items of a schema can be retrieved,
+     * see {@link #getDependencies(String)}.
+     *
+     * @return True if dependencies are supported, false otherwise
+     */
+    public boolean supportsDependencies() {
+        return false;
+    }
+
+    /**
+     * Indicates whether the tables can be emptied using a truncate statement, see {@link #truncateTable}.
+     *
+     * @return True if truncate is supported, false otherwise
+     */
+    public boolean supportsTruncate() {
+        return false;
+    }
+
+    /**
+     * Indicates whether images of the schemas can be exported and imported, see {@link #exportSchemaImage}.
+     *
+     * @return True if schema images are supported, false otherwise
+     */
+    public boolean supportsSchemaImages() {
+        return false;
+    }
+
+    /**
+     * Indicates whether the underlying DBMS supports session-level advisory locks, see {@link #getTryAdvisoryLockStatement}.
+     *
+     * @return True if advisory locks are supported, false otherwise
+     */
+    public boolean supportsAdvisoryLocks() {
+        return false;
+    }
+
+
+    /**
+     * Gets a query that returns the given index if the given table contains at least one record, see
+     * {@link #getNonEmptyTableNames}. The query should stop at the first record that is found.
+     * <p/>
+     * By default a select without from clause is used.
+     *
+     * @param qualifiedTableName The qualified name of the table, not null
+     * @param index              The index to return
+     * @return The query, not null
+     */
+    protected String getNonEmptyTableProbe(String qualifiedTableName, int index) {
+        return "select " + index + " where exists (select 1 from " + qualifiedTableName + ")";
+    }
+
+
+    /**
+     * Executes the given query for the given schema. The query should return the name of a sequence and its value.
+     *
+     * @param sql        The query, with a ? for the schema name, not null
+     * @param schemaName The schema, not null
+     * @return The values of the sequences per sequence name, not null
+     */
+    protected Map<String, Long> retrieveSequenceValues(String sql, String schemaName) {
+        Map<String, Long> sequenceValues = new HashMap<String, Long>();
+        for (List<String> record : getSQLHandler().getRecordsAsStrings(sql, getDataSource(), schemaName)) {
+            Long sequenceValue = toLong(record.get(1));
+            sequenceValues.put(record.get(0), sequenceValue == null ? 0 : sequenceValue);
+        }
+        return sequenceValues;
+    }
+
+    /**
+     * Executes the given query for the given schema. The query should return the name of a table, the name of its
+     * identity column and optionally the current value of the identity. If the query only returns two columns or if
+     * the value is null, the current value is unknown.
+     *
+     * @param sql        The query, with a ? for the schema name, not null
+     * @param schemaName The schema, not null
+     * @return The identity columns, not null
+     */
+    protected List<IdentityColumn> retrieveIdentityColumns(String sql, String schemaName) {
+        List<IdentityColumn> identityColumns = new ArrayList<IdentityColumn>();
+        for (List<String> record : getSQLHandler().getRecordsAsStrings(sql, getDataSource(), schemaName)) {
+            Long currentValue = record.size() > 2 ? toLong(record.get(2)) : null;
+            identityColumns.add(new IdentityColumn(record.get(0), record.get(1), currentValue));
+        }
+        return identityColumns;
+    }
+
+    /**
+     * Executes the given query for the given schema. The query should return the type and name of the dependent item
+     * and the type and name of the item it depends on. The types should be names of {@link DbItemType} values.
+     *
+     * @param sql        The query, with a ? for each occurrence of the schema name, not null
+     * @param schemaName The schema, not null
+     * @return The dependencies, not null
+     */
+    protected List<DbItemDependency> retrieveDependencies(String sql, String schemaName) {
+        int nrOfParameters = sql.length() - sql.replace("?", "").length();
+        Object[] parameters = new Object[nrOfParameters];
+        Arrays.fill(parameters, schemaName);
+
+        List<DbItemDependency> dependencies = new ArrayList<DbItemDependency>();
+        for (List<String> record : getSQLHandler().getRecordsAsStrings(sql, getDataSource(), parameters)) {
+            // literals of different lengths can be padded, e.g. by a union
+            DbItemType type = DbItemType.valueOf(record.get(0).trim());
+            DbItemType referencedType = DbItemType.valueOf(record.get(2).trim());
+            dependencies.add(new DbItemDependency(type, record.get(1), referencedType, record.get(3)));
+        }
+        return dependencies;
+    }
+
+    /**
+     * @param value The value of a numeric column, null if the value is null
+     * @return The value as long, null if the value is null
+     */
+    private Long toLong(String value) {
+        if (value == null) {
+            return null;
+        }
+        return new BigDecimal(value.trim()).longValue();
+    }
 }
@@ -24,6 +24,8 @@ import java.util.Properties;
 
 import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.dbmaintain.config.ConfigUtils.getConfiguredClass;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_CATALOG_CACHE_ENABLED;
+import static org.dbmaintain.config.PropertyUtils.getBoolean;
 import static org.dbmaintain.util.ReflectionUtils.createInstanceOfType;
 
 /**
@@ -78,10 +80,14 @@ public class DatabasesFactory {
         IdentifierProcessor identifierProcessor = identifierProcessorFactory.createIdentifierProcessor(databaseDialect, defaultSchemaName, dataSource);
 
         Class<Database> clazz = getConfiguredClass(Database.class, configuration, databaseDialect);
-        return createInstanceOfType(clazz, false,
+        Database database = createInstanceOfType(clazz, false,
                 new Class<?>[]{DatabaseConnection.class, IdentifierProcessor.class},
                 new Object[]{databaseConnection, identifierProcessor}
         );
+        if (getBoolean(PROPERTY_CATALOG_CACHE_ENABLED, false, configuration)) {
+            return new CachingDatabase(database);
+        }
+        return database;
     }
 
 
@@ -0,0 +1,68 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.database;
+
+/**
+ * An identity (auto increment) column of a table, together with its current value if the database can tell.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class IdentityColumn {
+
+    /* The name of the table, not null */
+    private String tableName;
+
+    /* The name of the column, not null */
+    private String columnName;
+
+    /* The current value of the identity, null if unknown */
+    private Long currentValue;
+
+
+    /**
+     * @param tableName    The name of the table, not null
+     * @param columnName   The name of the column, not null
+     * @param currentValue The current value of the identity, null if unknown
+     */
+    public IdentityColumn(String tableName, String columnName, Long currentValue) {
+        this.tableName = tableName;
+        this.columnName = columnName;
+        this.currentValue = currentValue;
+    }
+
+
+    /**
+     * @return The name of the table, not null
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return The name of the column, not null
+     */
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * @return The current value of the identity, null if unknown
+     */
+    public Long getCurrentValue() {
+        return currentValue;
+    }
+}
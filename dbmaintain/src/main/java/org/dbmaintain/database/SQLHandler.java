@@ -18,6 +18,7 @@ package org.dbmaintain.database;
 import org.dbmaintain.util.DbMaintainException;
 
 import javax.sql.DataSource;
+import java.util.List;
 import java.util.Set;
 
 public interface SQLHandler {
@@ -39,6 +40,25 @@ public interface SQLHandler {
      */
     int executeUpdateAndCommit(String sql, DataSource dataSource);
 
+    /**
+     * Executes the given statement once for each of the given lists of parameter values, as a single
+     * batch if the database supports it. If a statement fails and the database reports which one, the message of the
+     * exception contains the index of that statement in the batch and its parameter values.
+     *
+     * @param sql             The sql string containing the bind parameters, not null
+     * @param parameterValues The values for the bind parameters, a list of values per execution, not null
+     * @param dataSource      The dataSource, not null
+     */
+    void executeBatch(String sql, List<List<Object>> parameterValues, DataSource dataSource);
+
+    /**
+     * Executes the given statements as a single batch if the database supports it, else one by one.
+     *
+     * @param statements The statements, not null
+     * @param dataSource The dataSource, not null
+     */
+    void executeBatch(List<String> statements, DataSource dataSource);
+
     /**
      * Returns the long extracted from the result of the given query. If no value is found, a {@link DbMaintainException}
      * is thrown.
@@ -78,6 +98,63 @@ public interface SQLHandler {
     boolean exists(String sql, DataSource dataSource);
 
 
+    /**
+     * Returns the long extracted from the result of the given parameterized query. The query is executed as a prepared
+     * statement that is cached and reused for the same query on the same connection. If no value is found, a
+     * {@link DbMaintainException} is thrown.
+     *
+     * @param sql        The sql string for retrieving the items, containing ? for the parameters, not null
+     * @param dataSource The dataSource, not null
+     * @param parameters The values for the parameters
+     * @return The long item value
+     */
+    long getItemAsLong(String sql, DataSource dataSource, Object... parameters);
+
+    /**
+     * Returns the value extracted from the result of the given parameterized query. The query is executed as a prepared
+     * statement that is cached and reused for the same query on the same connection. If no value is found, a
+     * {@link DbMaintainException} is thrown.
+     *
+     * @param sql        The sql string for retrieving the items, containing ? for the parameters, not null
+     * @param dataSource The dataSource, not null
+     * @param parameters The values for the parameters
+     * @return The string item value
+     */
+    String getItemAsString(String sql, DataSource dataSource, Object... parameters);
+
+    /**
+     * Returns the items extracted from the result of the given parameterized query. The query is executed as a prepared
+     * statement that is cached and reused for the same query on the same connection.
+     *
+     * @param sql        The sql string for retrieving the items, containing ? for the parameters, not null
+     * @param dataSource The dataSource, not null
+     * @param parameters The values for the parameters
+     * @return The items, not null
+     */
+    Set<String> getItemsAsStringSet(String sql, DataSource dataSource, Object... parameters);
+
+    /**
+     * Returns the records of the given parameterized query, with the values of the columns of each record as strings.
+     * The query is executed as a prepared statement that is cached and reused for the same query on the same connection.
+     *
+     * @param sql        The sql string for retrieving the records, containing ? for the parameters, not null
+     * @param dataSource The dataSource, not null
+     * @param parameters The values for the parameters
+     * @return The column values per record, a value is null if the column value is null, not null
+     */
+    List<List<String>> getRecordsAsStrings(String sql, DataSource dataSource, Object... parameters);
+
+    /**
+     * Returns true if the given parameterized query returned a record. The query is executed as a prepared
+     * statement that is cached and reused for the same query on the same connection.
+     *
+     * @param sql        The sql string for checking the existence, containing ? for the parameters, not null
+     * @param dataSource The dataSource, not null
+     * @param parameters The values for the parameters
+     * @return True if a record was returned
+     */
+    boolean exists(String sql, DataSource dataSource, Object... parameters);
+
     /**
      * Starts a transaction by turning of auto commit.
      * Make sure to call endTransaction at the end of the transaction
@@ -104,8 +181,36 @@ public interface SQLHandler {
 
 
     /**
-     * Closes all connections that were created and cached by this SQLHandler. This method must always be invoked before
-     * disposing this object.
+     * Binds the current thread to the given execution lane. Until {@link #unbindLane} is called, the thread uses the
+     * connections of that lane. This way, the work of a lane can be handed from one thread to another and still use the
+     * same connection, including transactions that were started using startTransaction. The work of a lane should
+     * never be executed by several threads at the same time.
+     * <p/>
+     * Threads that are not bound to a lane each use their own connections. These connections are kept until they are
+     * released using {@link #releaseConnections}, so a short-lived worker thread should either be bound to a lane or
+     * release its connections when its work is done.
+     *
+     * @param laneName The name of the lane, not null
+     */
+    void bindLane(String laneName);
+
+    /**
+     * Unbinds the current thread from the lane it was bound to using {@link #bindLane}.
+     */
+    void unbindLane();
+
+    /**
+     * Closes the connections of the current lane, or of the current thread if the thread is not bound to a lane, to
+     * the given data source. Transactions that were not ended are rolled back. A next statement on the data source
+     * will use a new connection.
+     *
+     * @param dataSource The data source, not null
+     */
+    void releaseConnections(DataSource dataSource);
+
+    /**
+     * Closes all connections that were created and cached by this SQLHandler, for all threads and lanes. Transactions
+     * that were not ended are rolled back. This method must always be invoked before disposing this object.
      */
     void closeAllConnections();
 
@@ -18,8 +18,10 @@ package org.dbmaintain.database.impl;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.DatabaseConnection;
 import org.dbmaintain.database.IdentifierProcessor;
+import org.dbmaintain.database.IdentityColumn;
 import org.dbmaintain.database.SQLHandler;
 
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -55,7 +57,7 @@ public class Db2Database extends Database {
      */
     @Override
     public Set<String> getTableNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select TABNAME from SYSCAT.TABLES where TABSCHEMA = '" + schemaName + "' and TYPE = 'T'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TABNAME from SYSCAT.TABLES where TABSCHEMA = ? and TYPE = 'T'", getDataSource(), schemaName);
     }
 
     /**
@@ -66,7 +68,7 @@ public class Db2Database extends Database {
      */
     @Override
     public Set<String> getColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where TABNAME = '" + tableName + "' and TABSCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where TABNAME = ? and TABSCHEMA = ?", getDataSource(), tableName, schemaName);
     }
 
     /**
@@ -77,7 +79,7 @@ public class Db2Database extends Database {
      */
     @Override
     public Set<String> getViewNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select TABNAME from SYSCAT.TABLES where TABSCHEMA = '" + schemaName + "' and TYPE = 'V'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TABNAME from SYSCAT.TABLES where TABSCHEMA = ? and TYPE = 'V'", getDataSource(), schemaName);
     }
 
     /**
@@ -87,7 +89,7 @@ public class Db2Database extends Database {
      */
     @Override
     public Set<String> getSequenceNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select SEQNAME from SYSCAT.SEQUENCES where SEQTYPE = 'S' AND SEQSCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select SEQNAME from SYSCAT.SEQUENCES where SEQTYPE = 'S' AND SEQSCHEMA = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -97,7 +99,7 @@ public class Db2Database extends Database {
      */
     @Override
     public Set<String> getTriggerNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select TRIGNAME from SYSCAT.TRIGGERS where TRIGSCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TRIGNAME from SYSCAT.TRIGGERS where TRIGSCHEMA = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -107,7 +109,7 @@ public class Db2Database extends Database {
      */
     @Override
     public Set<String> getTypeNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select TYPENAME from SYSCAT.DATATYPES where TYPESCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TYPENAME from SYSCAT.DATATYPES where TYPESCHEMA = ?", getDataSource(), schemaName);
     }
 
 
@@ -128,7 +130,7 @@ public class Db2Database extends Database {
 
     protected void disableReferentialConstraints(String schemaName, String tableName) {
         SQLHandler sqlHandler = getSQLHandler();
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select CONSTNAME from SYSCAT.TABCONST where TYPE = 'F' and TABNAME = '" + tableName + "' and TABSCHEMA = '" + schemaName + "'", getDataSource());
+        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select CONSTNAME from SYSCAT.TABCONST where TYPE = 'F' and TABNAME = ? and TABSCHEMA = ?", getDataSource(), tableName, schemaName);
         for (String constraintName : constraintNames) {
             sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " drop constraint " + quoted(constraintName), getDataSource());
         }
@@ -153,16 +155,16 @@ public class Db2Database extends Database {
         SQLHandler sqlHandler = getSQLHandler();
 
         // disable all check and unique constraints
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select CONSTNAME from SYSCAT.TABCONST where TYPE in ('K', 'U') and TABNAME = '" + tableName + "' and TABSCHEMA = '" + schemaName + "'", getDataSource());
+        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select CONSTNAME from SYSCAT.TABCONST where TYPE in ('K', 'U') and TABNAME = ? and TABSCHEMA = ?", getDataSource(), tableName, schemaName);
         for (String constraintName : constraintNames) {
             sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " drop constraint " + quoted(constraintName), getDataSource());
         }
 
         // Retrieve the name of the primary key columns, since we cannot remove the not-null constraint on these columns
-        Set<String> primaryKeyColumnNames = sqlHandler.getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where KEYSEQ is not null and TABNAME = '" + tableName + "' and TABSCHEMA = '" + schemaName + "'", getDataSource());
+        Set<String> primaryKeyColumnNames = sqlHandler.getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where KEYSEQ is not null and TABNAME = ? and TABSCHEMA = ?", getDataSource(), tableName, schemaName);
 
         // disable all not null constraints
-        Set<String> notNullColumnNames = sqlHandler.getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where NULLS = 'N' and TABNAME = '" + tableName + "' and TABSCHEMA = '" + schemaName + "'", getDataSource());
+        Set<String> notNullColumnNames = sqlHandler.getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where NULLS = 'N' and TABNAME = ? and TABSCHEMA = ?", getDataSource(), tableName, schemaName);
         for (String notNullColumnName : notNullColumnNames) {
             if (primaryKeyColumnNames.contains(notNullColumnName)) {
                 // Do not remove PK constraints
@@ -173,6 +175,44 @@ public class Db2Database extends Database {
         }
     }
 
+    /**
+     * Disables all referential constraints (e.g. foreign keys) on the given tables in the schema
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The tables, not null
+     */
+    @Override
+    public void disableReferentialConstraints(String schemaName, Set<String> tableNames) {
+        for (String tableName : tableNames) {
+            disableReferentialConstraints(schemaName, tableName);
+        }
+    }
+
+    /**
+     * Disables all value constraints (e.g. not null) on the given tables in the schema
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The tables, not null
+     */
+    @Override
+    public void disableValueConstraints(String schemaName, Set<String> tableNames) {
+        for (String tableName : tableNames) {
+            disableValueConstraints(schemaName, tableName);
+        }
+    }
+
+
+    /**
+     * Deletes all data of the given table. DB2 requires the immediate keyword: the truncate cannot be undone.
+     *
+     * @param schemaName The schema, not null
+     * @param tableName  The table to truncate, not null
+     */
+    @Override
+    public void truncateTable(String schemaName, String tableName) {
+        getSQLHandler().execute("truncate table " + qualified(schemaName, tableName) + " immediate", getDataSource());
+    }
+
 
     /**
      * Returns the value of the sequence with the given name. <p/> Note: this can have the side-effect of increasing the
@@ -207,7 +247,20 @@ public class Db2Database extends Database {
      */
     @Override
     public Set<String> getIdentityColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where KEYSEQ is not null and TABNAME = '" + tableName + "' and TABSCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where KEYSEQ is not null and TABNAME = ? and TABSCHEMA = ?", getDataSource(), tableName, schemaName);
+    }
+
+    /**
+     * Gets the identity columns of all tables in the given schema, retrieved with a single query.
+     * <p/>
+     * todo check, at this moment the PK columns are returned
+     *
+     * @param schemaName The schema, not null
+     * @return The identity columns, not null
+     */
+    @Override
+    public List<IdentityColumn> getIdentityColumns(String schemaName) {
+        return retrieveIdentityColumns("select TABNAME, COLNAME from SYSCAT.COLUMNS where KEYSEQ is not null and TABSCHEMA = ?", schemaName);
     }
 
     /**
@@ -296,4 +349,27 @@ public class Db2Database extends Database {
     public boolean supportsSetDatabaseDefaultSchema() {
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * Truncating tables is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsTruncate() {
+        return true;
+    }
+
+
+    /**
+     * Probes the table using the SYSIBM.SYSDUMMY1 table.
+     *
+     * @param qualifiedTableName The qualified name of the table, not null
+     * @param index              The index to return
+     * @return The query, not null
+     */
+    @Override
+    protected String getNonEmptyTableProbe(String qualifiedTableName, int index) {
+        return "select " + index + " from SYSIBM.SYSDUMMY1 where exists (select 1 from " + qualifiedTableName + ")";
+    }
+}
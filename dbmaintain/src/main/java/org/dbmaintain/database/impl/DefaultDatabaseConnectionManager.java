@@ -20,6 +20,8 @@ import org.dbmaintain.datasource.DataSourceFactory;
 import org.dbmaintain.util.DbMaintainException;
 
 import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -35,6 +37,8 @@ public class DefaultDatabaseConnectionManager implements DatabaseConnectionManag
     protected Map<String, DataSource> dataSourcesPerDatabaseName;
 
     protected Map<String, DatabaseConnection> databaseConnectionsPerDatabaseName = new HashMap<String, DatabaseConnection>();
+    /* The data sources that were created by the data source factory, these are closed by close() */
+    protected List<DataSource> createdDataSources = new ArrayList<DataSource>();
 
 
     public DefaultDatabaseConnectionManager(Properties configuration, SQLHandler sqlHandler, DataSourceFactory dataSourceFactory) {
@@ -79,6 +83,23 @@ public class DefaultDatabaseConnectionManager implements DatabaseConnectionManag
         return result;
     }
 
+    /**
+     * Closes the data sources that were created by this manager and that can be closed, e.g. connection pools.
+     * Data sources that were passed to this manager are left open.
+     */
+    public void close() {
+        for (DataSource dataSource : createdDataSources) {
+            if (dataSource instanceof Closeable) {
+                try {
+                    ((Closeable) dataSource).close();
+                } catch (IOException e) {
+                    throw new DatabaseException("Unable to close data source.", e);
+                }
+            }
+        }
+        createdDataSources.clear();
+    }
+
 
     protected DatabaseConnection createDatabaseConnection(String databaseName) {
         DatabaseInfo databaseInfo = getDatabaseInfo(databaseName);
@@ -87,6 +108,7 @@ public class DefaultDatabaseConnectionManager implements DatabaseConnectionManag
             dataSource = dataSourcesPerDatabaseName.get(databaseName);
             if (dataSource == null) {
                 dataSource = dataSourceFactory.createDataSource(databaseInfo);
+                createdDataSources.add(dataSource);
             }
         }
         return new DatabaseConnection(databaseInfo, sqlHandler, dataSource);
@@ -19,18 +19,31 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.database.DatabaseException;
 import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.metrics.MetricsRecorder;
+import org.dbmaintain.metrics.impl.NoOpMetricsRecorder;
 
 import javax.sql.DataSource;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import static java.lang.System.nanoTime;
 import static org.apache.commons.dbutils.DbUtils.closeQuietly;
+import static org.dbmaintain.metrics.Metric.CONNECTION_ACQUISITION_DURATION;
+import static org.dbmaintain.metrics.Metric.STATEMENT_DURATION;
 
 /**
  * Class to which database updates and queries are passed. Is in fact a utility class, but is a concrete instance to
@@ -45,6 +58,9 @@ public class DefaultSQLHandler implements SQLHandler {
     /* The logger instance for this class */
     private static Log logger = LogFactory.getLog(DefaultSQLHandler.class);
 
+    /* The default max nr of prepared statements that is kept open per connection */
+    public static final int DEFAULT_PREPARED_STATEMENT_CACHE_SIZE = 100;
+
 
     /* 
      * Boolean that indicates whether database updates have to executed on the database or not. Setting this value
@@ -53,7 +69,20 @@ public class DefaultSQLHandler implements SQLHandler {
     private boolean doExecuteUpdates;
 
 
-    private Map<DataSource, Connection> cachedConnections = new HashMap<DataSource, Connection>();
+    /* The cached connections per data source and lane (or thread), so that work executed in parallel never shares a connection */
+    private ConcurrentMap<ConnectionKey, Connection> cachedConnections = new ConcurrentHashMap<ConnectionKey, Connection>();
+
+    /* The lane the current thread is bound to, null if not bound */
+    private ThreadLocal<String> currentLane = new ThreadLocal<String>();
+
+    /* The max nr of prepared statements that is kept open per connection */
+    private int preparedStatementCacheSize;
+
+    /* The cached prepared statements of the parameterized queries per connection */
+    private ConcurrentMap<Connection, PreparedStatementCache> preparedStatementCaches = new ConcurrentHashMap<Connection, PreparedStatementCache>();
+
+    /* Records the statement durations and connection acquisition times */
+    private MetricsRecorder metricsRecorder;
 
     /**
      * Constructs a new instance that connects to the given DataSource
@@ -70,7 +99,36 @@ public class DefaultSQLHandler implements SQLHandler {
      *                         database
      */
     public DefaultSQLHandler(boolean doExecuteUpdates) {
+        this(doExecuteUpdates, DEFAULT_PREPARED_STATEMENT_CACHE_SIZE);
+    }
+
+
+    /**
+     * Constructs a new instance that connects to the given DataSource
+     *
+     * @param doExecuteUpdates           Boolean indicating whether updates should effectively be executed on the underlying
+     *                                   database
+     * @param preparedStatementCacheSize The max nr of prepared statements of parameterized queries that is kept open
+     *                                   per connection, at least 1
+     */
+    public DefaultSQLHandler(boolean doExecuteUpdates, int preparedStatementCacheSize) {
+        this(doExecuteUpdates, preparedStatementCacheSize, new NoOpMetricsRecorder());
+    }
+
+
+    /**
+     * Constructs a new instance that connects to the given DataSource
+     *
+     * @param doExecuteUpdates           Boolean indicating whether updates should effectively be executed on the underlying
+     *                                   database
+     * @param preparedStatementCacheSize The max nr of prepared statements of parameterized queries that is kept open
+     *                                   per connection, at least 1
+     * @param metricsRecorder            Records the statement durations and connection acquisition times, not null
+     */
+    public DefaultSQLHandler(boolean doExecuteUpdates, int preparedStatementCacheSize, MetricsRecorder metricsRecorder) {
         this.doExecuteUpdates = doExecuteUpdates;
+        this.preparedStatementCacheSize = Math.max(preparedStatementCacheSize, 1);
+        this.metricsRecorder = metricsRecorder;
     }
 
 
@@ -82,6 +140,7 @@ public class DefaultSQLHandler implements SQLHandler {
             return;
         }
         Statement statement = null;
+        long startTime = nanoTime();
         try {
             statement = getConnection(dataSource).createStatement();
             statement.execute(sql);
@@ -89,6 +148,7 @@ public class DefaultSQLHandler implements SQLHandler {
         } catch (Exception e) {
             throw new DatabaseException("Could not perform database statement: " + sql, e);
         } finally {
+            recordStatementDuration(sql, startTime);
             closeQuietly(statement);
         }
     }
@@ -102,6 +162,7 @@ public class DefaultSQLHandler implements SQLHandler {
             return 0;
         }
         Statement statement = null;
+        long startTime = nanoTime();
         try {
             Connection connection = getConnection(dataSource);
             statement = connection.createStatement();
@@ -114,16 +175,118 @@ public class DefaultSQLHandler implements SQLHandler {
         } catch (Exception e) {
             throw new DatabaseException("Error while performing database update:\n" + sql, e);
         } finally {
+            recordStatementDuration(sql, startTime);
+            closeQuietly(statement);
+        }
+    }
+
+
+    public void executeBatch(String sql, List<List<Object>> parameterValues, DataSource dataSource) {
+        logger.debug(sql + " (" + parameterValues.size() + " times)");
+
+        if (!doExecuteUpdates) {
+            // skip update
+            return;
+        }
+        PreparedStatement preparedStatement = null;
+        long startTime = nanoTime();
+        // the index of the statement that is being executed, -1 if the batch as a whole is executed
+        int index = -1;
+        try {
+            Connection connection = getConnection(dataSource);
+            boolean supportsBatchUpdates = connection.getMetaData().supportsBatchUpdates();
+            preparedStatement = connection.prepareStatement(sql);
+            for (List<Object> values : parameterValues) {
+                for (int i = 0; i < values.size(); i++) {
+                    preparedStatement.setObject(i + 1, values.get(i));
+                }
+                if (supportsBatchUpdates) {
+                    preparedStatement.addBatch();
+                } else {
+                    index++;
+                    preparedStatement.executeUpdate();
+                }
+            }
+            if (supportsBatchUpdates) {
+                index = -1;
+                preparedStatement.executeBatch();
+            }
+
+        } catch (BatchUpdateException e) {
+            // most drivers stop at the first failing statement, the update counts then only contain the statements before it
+            int[] updateCounts = e.getUpdateCounts();
+            int failedIndex = updateCounts != null && updateCounts.length < parameterValues.size() ? updateCounts.length : -1;
+            throw new DatabaseException("Could not perform database statement: " + sql + " (" + parameterValues.size() + " times)" + getFailedBatchEntryDescription(failedIndex, parameterValues), e);
+        } catch (Exception e) {
+            throw new DatabaseException("Could not perform database statement: " + sql + " (" + parameterValues.size() + " times)" + getFailedBatchEntryDescription(index, parameterValues), e);
+        } finally {
+            recordStatementDuration(sql, startTime);
+            closeQuietly(preparedStatement);
+        }
+    }
+
+
+    public void executeBatch(List<String> statements, DataSource dataSource) {
+        if (!doExecuteUpdates || statements.isEmpty()) {
+            // skip update
+            return;
+        }
+        Statement statement = null;
+        long startTime = nanoTime();
+        String currentStatement = null;
+        try {
+            Connection connection = getConnection(dataSource);
+            boolean supportsBatchUpdates = connection.getMetaData().supportsBatchUpdates();
+            statement = connection.createStatement();
+            for (String sql : statements) {
+                logger.debug(sql);
+                if (supportsBatchUpdates) {
+                    statement.addBatch(sql);
+                } else {
+                    currentStatement = sql;
+                    statement.execute(sql);
+                }
+            }
+            if (supportsBatchUpdates) {
+                currentStatement = null;
+                statement.executeBatch();
+            }
+
+        } catch (BatchUpdateException e) {
+            // most drivers stop at the first failing statement, the update counts then only contain the statements before it
+            int[] updateCounts = e.getUpdateCounts();
+            if (updateCounts != null && updateCounts.length < statements.size()) {
+                currentStatement = statements.get(updateCounts.length);
+            }
+            throw new DatabaseException("Could not perform batch of " + statements.size() + " database statements" + (currentStatement == null ? "" : ", failed at statement: " + currentStatement), e);
+        } catch (Exception e) {
+            throw new DatabaseException("Could not perform batch of " + statements.size() + " database statements" + (currentStatement == null ? "" : ", failed at statement: " + currentStatement), e);
+        } finally {
+            recordStatementDuration(statements.get(0), startTime);
             closeQuietly(statement);
         }
     }
 
 
+    /**
+     * @param index           The index of the failed statement in the batch, -1 if not known
+     * @param parameterValues The values for the bind parameters of the batch, not null
+     * @return The description of the failed statement of the batch, empty if not known, not null
+     */
+    protected String getFailedBatchEntryDescription(int index, List<List<Object>> parameterValues) {
+        if (index < 0 || index >= parameterValues.size()) {
+            return "";
+        }
+        return "\nFailed at statement nr " + (index + 1) + " of the batch, with values " + parameterValues.get(index);
+    }
+
+
     public long getItemAsLong(String sql, DataSource dataSource) {
         logger.debug(sql);
 
         Statement statement = null;
         ResultSet resultSet = null;
+        long startTime = nanoTime();
         try {
             statement = getConnection(dataSource).createStatement();
             resultSet = statement.executeQuery(sql);
@@ -133,6 +296,7 @@ public class DefaultSQLHandler implements SQLHandler {
         } catch (Exception e) {
             throw new DatabaseException("Error while executing statement: " + sql, e);
         } finally {
+            recordStatementDuration(sql, startTime);
             closeQuietly(null, statement, resultSet);
         }
 
@@ -145,6 +309,7 @@ public class DefaultSQLHandler implements SQLHandler {
 
         Statement statement = null;
         ResultSet resultSet = null;
+        long startTime = nanoTime();
         try {
             statement = getConnection(dataSource).createStatement();
             resultSet = statement.executeQuery(sql);
@@ -154,6 +319,7 @@ public class DefaultSQLHandler implements SQLHandler {
         } catch (Exception e) {
             throw new DatabaseException("Error while executing statement: " + sql, e);
         } finally {
+            recordStatementDuration(sql, startTime);
             closeQuietly(null, statement, resultSet);
         }
 
@@ -166,6 +332,7 @@ public class DefaultSQLHandler implements SQLHandler {
 
         Statement statement = null;
         ResultSet resultSet = null;
+        long startTime = nanoTime();
         try {
             statement = getConnection(dataSource).createStatement();
             resultSet = statement.executeQuery(sql);
@@ -178,6 +345,7 @@ public class DefaultSQLHandler implements SQLHandler {
         } catch (Exception e) {
             throw new DatabaseException("Error while executing statement: " + sql, e);
         } finally {
+            recordStatementDuration(sql, startTime);
             closeQuietly(null, statement, resultSet);
         }
     }
@@ -188,6 +356,7 @@ public class DefaultSQLHandler implements SQLHandler {
 
         Statement statement = null;
         ResultSet resultSet = null;
+        long startTime = nanoTime();
         try {
             statement = getConnection(dataSource).createStatement();
             resultSet = statement.executeQuery(sql);
@@ -196,11 +365,197 @@ public class DefaultSQLHandler implements SQLHandler {
         } catch (Exception e) {
             throw new DatabaseException("Error while executing statement: " + sql, e);
         } finally {
+            recordStatementDuration(sql, startTime);
             closeQuietly(null, statement, resultSet);
         }
     }
 
 
+    public long getItemAsLong(String sql, DataSource dataSource, Object... parameters) {
+        logger.debug(sql + getParametersDescription(parameters));
+
+        ResultSet resultSet = null;
+        long startTime = nanoTime();
+        try {
+            resultSet = executePreparedQuery(sql, dataSource, parameters);
+            if (resultSet.next()) {
+                return resultSet.getLong(1);
+            }
+        } catch (Exception e) {
+            throw new DatabaseException("Error while executing statement: " + sql + getParametersDescription(parameters), e);
+        } finally {
+            recordStatementDuration(sql, startTime);
+            closeQuietly(resultSet);
+        }
+
+        // in case no value was found, throw an exception
+        throw new DatabaseException("No item value found: " + sql + getParametersDescription(parameters));
+    }
+
+    public String getItemAsString(String sql, DataSource dataSource, Object... parameters) {
+        logger.debug(sql + getParametersDescription(parameters));
+
+        ResultSet resultSet = null;
+        long startTime = nanoTime();
+        try {
+            resultSet = executePreparedQuery(sql, dataSource, parameters);
+            if (resultSet.next()) {
+                return resultSet.getString(1);
+            }
+        } catch (Exception e) {
+            throw new DatabaseException("Error while executing statement: " + sql + getParametersDescription(parameters), e);
+        } finally {
+            recordStatementDuration(sql, startTime);
+            closeQuietly(resultSet);
+        }
+
+        // in case no value was found, throw an exception
+        throw new DatabaseException("No item value found: " + sql + getParametersDescription(parameters));
+    }
+
+    public Set<String> getItemsAsStringSet(String sql, DataSource dataSource, Object... parameters) {
+        logger.debug(sql + getParametersDescription(parameters));
+
+        ResultSet resultSet = null;
+        long startTime = nanoTime();
+        try {
+            resultSet = executePreparedQuery(sql, dataSource, parameters);
+            Set<String> result = new HashSet<String>();
+            while (resultSet.next()) {
+                result.add(resultSet.getString(1));
+            }
+            return result;
+
+        } catch (Exception e) {
+            throw new DatabaseException("Error while executing statement: " + sql + getParametersDescription(parameters), e);
+        } finally {
+            recordStatementDuration(sql, startTime);
+            closeQuietly(resultSet);
+        }
+    }
+
+    public List<List<String>> getRecordsAsStrings(String sql, DataSource dataSource, Object... parameters) {
+        logger.debug(sql + getParametersDescription(parameters));
+
+        ResultSet resultSet = null;
+        long startTime = nanoTime();
+        try {
+            resultSet = executePreparedQuery(sql, dataSource, parameters);
+            int nrOfColumns = resultSet.getMetaData().getColumnCount();
+            List<List<String>> result = new ArrayList<List<String>>();
+            while (resultSet.next()) {
+                List<String> record = new ArrayList<String>(nrOfColumns);
+                for (int i = 1; i <= nrOfColumns; i++) {
+                    record.add(resultSet.getString(i));
+                }
+                result.add(record);
+            }
+            return result;
+
+        } catch (Exception e) {
+            throw new DatabaseException("Error while executing statement: " + sql + getParametersDescription(parameters), e);
+        } finally {
+            recordStatementDuration(sql, startTime);
+            closeQuietly(resultSet);
+        }
+    }
+
+    public boolean exists(String sql, DataSource dataSource, Object... parameters) {
+        logger.debug(sql + getParametersDescription(parameters));
+
+        ResultSet resultSet = null;
+        long startTime = nanoTime();
+        try {
+            resultSet = executePreparedQuery(sql, dataSource, parameters);
+            return resultSet.next();
+
+        } catch (Exception e) {
+            throw new DatabaseException("Error while executing statement: " + sql + getParametersDescription(parameters), e);
+        } finally {
+            recordStatementDuration(sql, startTime);
+            closeQuietly(resultSet);
+        }
+    }
+
+
+    /**
+     * Executes the given query using the cached prepared statement for the query. The returned result set should be
+     * closed, the statement should not. If the query fails, the statement is removed from the cache and closed.
+     *
+     * @param sql        The query, not null
+     * @param dataSource The data source, not null
+     * @param parameters The values for the parameters of the query
+     * @return The result set, not null
+     */
+    protected ResultSet executePreparedQuery(String sql, DataSource dataSource, Object[] parameters) throws SQLException {
+        Connection connection = getConnection(dataSource);
+        PreparedStatementCache preparedStatementCache = getPreparedStatementCache(connection);
+        PreparedStatement preparedStatement = preparedStatementCache.getPreparedStatement(sql);
+        try {
+            preparedStatement.clearParameters();
+            for (int i = 0; i < parameters.length; i++) {
+                preparedStatement.setObject(i + 1, parameters[i]);
+            }
+            return preparedStatement.executeQuery();
+
+        } catch (SQLException e) {
+            preparedStatementCache.removePreparedStatement(sql);
+            throw e;
+        } catch (RuntimeException e) {
+            preparedStatementCache.removePreparedStatement(sql);
+            throw e;
+        }
+    }
+
+    protected PreparedStatementCache getPreparedStatementCache(Connection connection) {
+        PreparedStatementCache preparedStatementCache = preparedStatementCaches.get(connection);
+        if (preparedStatementCache == null) {
+            preparedStatementCache = new PreparedStatementCache(connection, preparedStatementCacheSize);
+            PreparedStatementCache existingPreparedStatementCache = preparedStatementCaches.putIfAbsent(connection, preparedStatementCache);
+            if (existingPreparedStatementCache != null) {
+                return existingPreparedStatementCache;
+            }
+        }
+        return preparedStatementCache;
+    }
+
+    /**
+     * Records the duration of the given statement for its kind of statement.
+     *
+     * @param sql       The statement, not null
+     * @param startTime The time the statement was started, as returned by {@link System#nanoTime}
+     */
+    protected void recordStatementDuration(String sql, long startTime) {
+        metricsRecorder.recordDuration(STATEMENT_DURATION, getStatementKind(sql), nanoTime() - startTime);
+    }
+
+    /**
+     * @param sql The statement, not null
+     * @return The first keyword of the statement in lower case, e.g. insert, other if the statement does not start with a word
+     */
+    protected String getStatementKind(String sql) {
+        int start = 0;
+        while (start < sql.length() && !Character.isLetter(sql.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < sql.length() && Character.isLetter(sql.charAt(end))) {
+            end++;
+        }
+        if (start == end) {
+            return "other";
+        }
+        return sql.substring(start, end).toLowerCase();
+    }
+
+    private String getParametersDescription(Object[] parameters) {
+        if (parameters.length == 0) {
+            return "";
+        }
+        return " " + Arrays.asList(parameters);
+    }
+
+
     /**
      * Starts a transaction by turning of auto commit.
      * Make sure to call endTransaction at the end of the transaction
@@ -268,36 +623,178 @@ public class DefaultSQLHandler implements SQLHandler {
         }
     }
 
+    public void bindLane(String laneName) {
+        currentLane.set(laneName);
+    }
+
+    public void unbindLane() {
+        currentLane.remove();
+    }
+
+
     /**
-     * Closes all connections that were created and cached by this SQLHandler. This method must always be invoked before
-     * disposing this object.
+     * Closes the connections of the current lane, or of the current thread if the thread is not bound to a lane, to
+     * the given data source. Transactions that were not ended are rolled back.
+     *
+     * @param dataSource The data source, not null
+     */
+    public void releaseConnections(DataSource dataSource) {
+        Connection connection = cachedConnections.remove(getConnectionKey(dataSource));
+        if (connection != null) {
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Closes all connections that were created and cached by this SQLHandler, for all threads and lanes. Transactions
+     * that were not ended are rolled back. This method must always be invoked before disposing this object.
      */
     public void closeAllConnections() {
-        for (Connection connection : cachedConnections.values()) {
-            closeQuietly(connection);
+        Iterator<Connection> iterator = cachedConnections.values().iterator();
+        while (iterator.hasNext()) {
+            Connection connection = iterator.next();
+            iterator.remove();
+            closeConnection(connection);
+        }
+    }
+
+    private void closeConnection(Connection connection) {
+        PreparedStatementCache preparedStatementCache = preparedStatementCaches.remove(connection);
+        if (preparedStatementCache != null) {
+            preparedStatementCache.close();
+        }
+        rollbackOpenTransaction(connection);
+        closeQuietly(connection);
+    }
+
+    private void rollbackOpenTransaction(Connection connection) {
+        try {
+            if (!connection.isClosed() && !connection.getAutoCommit()) {
+                logger.warn("Rolling back transaction that was not ended.");
+                connection.rollback();
+            }
+        } catch (Exception e) {
+            logger.warn("Unable to roll back transaction that was not ended.");
         }
-        cachedConnections.clear();
     }
 
 
     /**
      * Returns a Connection to the given DataSource. The first time a Connection is requested, a new one is created
-     * using the given DataSource. All subsequent calls with the same DataSource as parameter will return the same
-     * Connection instance.
+     * using the given DataSource. All subsequent calls with the same DataSource as parameter in the same lane, or in
+     * the same thread if the thread is not bound to a lane, will return the same Connection instance, until it is
+     * released using {@link #releaseConnections}.
      *
      * @param dataSource provides access to the database
      * @return a Connection to the database for the given DataSource.
      */
     protected Connection getConnection(DataSource dataSource) {
-        Connection connection = cachedConnections.get(dataSource);
-        if (connection == null) {
-            try {
-                connection = dataSource.getConnection();
-            } catch (SQLException e) {
-                throw new DatabaseException("Error while creating connection", e);
-            }
-            cachedConnections.put(dataSource, connection);
+        ConnectionKey connectionKey = getConnectionKey(dataSource);
+        Connection connection = cachedConnections.get(connectionKey);
+        if (connection != null) {
+            return connection;
+        }
+        long startTime = nanoTime();
+        try {
+            connection = dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new DatabaseException("Error while creating connection", e);
+        } finally {
+            metricsRecorder.recordDuration(CONNECTION_ACQUISITION_DURATION, null, nanoTime() - startTime);
+        }
+        // a lane is used by one thread at a time, so normally no other connection was added in the meantime
+        Connection existingConnection = cachedConnections.putIfAbsent(connectionKey, connection);
+        if (existingConnection != null) {
+            closeQuietly(connection);
+            return existingConnection;
         }
         return connection;
     }
+
+    /**
+     * @param dataSource The data source, not null
+     * @return The key of the connection to the given data source for the current lane, or for the current thread if
+     *         the thread is not bound to a lane, not null
+     */
+    protected ConnectionKey getConnectionKey(DataSource dataSource) {
+        Object lane = currentLane.get();
+        if (lane == null) {
+            lane = Thread.currentThread();
+        }
+        return new ConnectionKey(dataSource, lane);
+    }
+
+
+    /**
+     * The key of a cached connection: the data source and the lane name or thread
+     */
+    protected static class ConnectionKey {
+
+        private DataSource dataSource;
+        private Object lane;
+
+        public ConnectionKey(DataSource dataSource, Object lane) {
+            this.dataSource = dataSource;
+            this.lane = lane;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof ConnectionKey)) {
+                return false;
+            }
+            ConnectionKey connectionKey = (ConnectionKey) object;
+            return dataSource.equals(connectionKey.dataSource) && lane.equals(connectionKey.lane);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * dataSource.hashCode() + lane.hashCode();
+        }
+    }
+
+
+    /**
+     * The prepared statements of a connection. If the max size is exceeded, the least recently used statement is closed.
+     */
+    protected static class PreparedStatementCache {
+
+        private Connection connection;
+        private Map<String, PreparedStatement> preparedStatements;
+
+
+        public PreparedStatementCache(Connection connection, final int maxSize) {
+            this.connection = connection;
+            this.preparedStatements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= maxSize) {
+                        return false;
+                    }
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+            };
+        }
+
+        public synchronized PreparedStatement getPreparedStatement(String sql) throws SQLException {
+            PreparedStatement preparedStatement = preparedStatements.get(sql);
+            if (preparedStatement == null) {
+                preparedStatement = connection.prepareStatement(sql);
+                preparedStatements.put(sql, preparedStatement);
+            }
+            return preparedStatement;
+        }
+
+        public synchronized void removePreparedStatement(String sql) {
+            closeQuietly(preparedStatements.remove(sql));
+        }
+
+        public synchronized void close() {
+            for (PreparedStatement preparedStatement : preparedStatements.values()) {
+                closeQuietly(preparedStatement);
+            }
+            preparedStatements.clear();
+        }
+    }
 }
@@ -60,7 +60,7 @@ public class DerbyDatabase extends Database {
      */
     @Override
     public Set<String> getTableNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select t.TABLENAME from SYS.SYSTABLES t, SYS.SYSSCHEMAS  s where t.TABLETYPE = 'T' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select t.TABLENAME from SYS.SYSTABLES t, SYS.SYSSCHEMAS  s where t.TABLETYPE = 'T' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -71,7 +71,7 @@ public class DerbyDatabase extends Database {
      */
     @Override
     public Set<String> getColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select c.COLUMNNAME from SYS.SYSCOLUMNS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.REFERENCEID = t.TABLEID and t.TABLENAME = '" + tableName + "' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select c.COLUMNNAME from SYS.SYSCOLUMNS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.REFERENCEID = t.TABLEID and t.TABLENAME = ? AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = ?", getDataSource(), tableName, schemaName);
     }
 
     /**
@@ -81,7 +81,7 @@ public class DerbyDatabase extends Database {
      */
     @Override
     public Set<String> getViewNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select t.TABLENAME from SYS.SYSTABLES t, SYS.SYSSCHEMAS s where t.TABLETYPE = 'V' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select t.TABLENAME from SYS.SYSTABLES t, SYS.SYSSCHEMAS s where t.TABLETYPE = 'V' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -90,7 +90,7 @@ public class DerbyDatabase extends Database {
      * @return The names of all synonyms in the database
      */
     public Set<String> getSynonymNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select t.TABLENAME from SYS.SYSTABLES t, SYS.SYSSCHEMAS s where t.TABLETYPE = 'A' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select t.TABLENAME from SYS.SYSTABLES t, SYS.SYSSCHEMAS s where t.TABLETYPE = 'A' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -100,7 +100,7 @@ public class DerbyDatabase extends Database {
      */
     @Override
     public Set<String> getTriggerNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select t.TRIGGERNAME from SYS.SYSTRIGGERS t, SYS.SYSSCHEMAS s where t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select t.TRIGGERNAME from SYS.SYSTRIGGERS t, SYS.SYSSCHEMAS s where t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = ?", getDataSource(), schemaName);
     }
 
 
@@ -147,7 +147,7 @@ public class DerbyDatabase extends Database {
 
     protected void disableReferentialConstraints(String schemaName, String tableName) {
         SQLHandler sqlHandler = getSQLHandler();
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select c.CONSTRAINTNAME from SYS.SYSCONSTRAINTS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.TYPE = 'F' AND c.TABLEID = t.TABLEID  AND t.TABLENAME = '" + tableName + "' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + schemaName + "'", getDataSource());
+        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select c.CONSTRAINTNAME from SYS.SYSCONSTRAINTS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.TYPE = 'F' AND c.TABLEID = t.TABLEID  AND t.TABLENAME = ? AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = ?", getDataSource(), tableName, schemaName);
         for (String constraintName : constraintNames) {
             sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " drop constraint " + quoted(constraintName), getDataSource());
         }
@@ -172,7 +172,7 @@ public class DerbyDatabase extends Database {
         SQLHandler sqlHandler = getSQLHandler();
 
         // disable all check and unique constraints
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select c.CONSTRAINTNAME from SYS.SYSCONSTRAINTS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.TYPE in ('U', 'C') AND c.TABLEID = t.TABLEID  AND t.TABLENAME = '" + tableName + "' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + schemaName + "'", getDataSource());
+        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select c.CONSTRAINTNAME from SYS.SYSCONSTRAINTS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.TYPE in ('U', 'C') AND c.TABLEID = t.TABLEID  AND t.TABLENAME = ? AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = ?", getDataSource(), tableName, schemaName);
         for (String constraintName : constraintNames) {
             sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " drop constraint " + quoted(constraintName), getDataSource());
         }
@@ -191,6 +191,32 @@ public class DerbyDatabase extends Database {
         }
     }
 
+    /**
+     * Disables all referential constraints (e.g. foreign keys) on the given tables in the schema
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The tables, not null
+     */
+    @Override
+    public void disableReferentialConstraints(String schemaName, Set<String> tableNames) {
+        for (String tableName : tableNames) {
+            disableReferentialConstraints(schemaName, tableName);
+        }
+    }
+
+    /**
+     * Disables all value constraints (e.g. not null) on the given tables in the schema
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The tables, not null
+     */
+    @Override
+    public void disableValueConstraints(String schemaName, Set<String> tableNames) {
+        for (String tableName : tableNames) {
+            disableValueConstraints(schemaName, tableName);
+        }
+    }
+
 
     /**
      * Sets the current schema of the database. If a current schema is set, it does not need to be specified
@@ -257,6 +283,16 @@ public class DerbyDatabase extends Database {
         return true;
     }
 
+    /**
+     * Truncating tables is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsTruncate() {
+        return true;
+    }
+
     /**
      * Gets the names of all primary columns of the given table.
      * <p/>
@@ -317,4 +353,15 @@ public class DerbyDatabase extends Database {
     }
 
 
-}
\ No newline at end of file
+    /**
+     * Probes the table using the SYSIBM.SYSDUMMY1 table.
+     *
+     * @param qualifiedTableName The qualified name of the table, not null
+     * @param index              The index to return
+     * @return The query, not null
+     */
+    @Override
+    protected String getNonEmptyTableProbe(String qualifiedTableName, int index) {
+        return "select " + index + " from SYSIBM.SYSDUMMY1 where exists (select 1 from " + qualifiedTableName + ")";
+    }
+}
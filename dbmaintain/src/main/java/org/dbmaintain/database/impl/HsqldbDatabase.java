@@ -19,11 +19,26 @@ import org.dbmaintain.database.Database;
 import org.dbmaintain.database.DatabaseConnection;
 import org.dbmaintain.database.DatabaseException;
 import org.dbmaintain.database.IdentifierProcessor;
-
+import org.dbmaintain.database.IdentityColumn;
+import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.structure.model.DbItemDependency;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.apache.commons.dbutils.DbUtils.closeQuietly;
+import static org.apache.commons.io.IOUtils.closeQuietly;
 
 /**
  * Implementation of {@link org.dbmaintain.database.Database} for a hsqldb database
@@ -34,6 +49,11 @@ import static org.apache.commons.dbutils.DbUtils.closeQuietly;
  */
 public class HsqldbDatabase extends Database {
 
+    /* Matches the first qualified identifier in a statement: group 1 is the schema name, group 2 the item name */
+    private static final Pattern QUALIFIED_IDENTIFIER_PATTERN = Pattern.compile("(\"[^\"]+\"|[A-Za-z_][A-Za-z0-9_$]*)\\.(\"[^\"]+\"|[A-Za-z_][A-Za-z0-9_$]*)");
+    /* The maximum nr of insert statements that are executed in one batch when importing a schema image */
+    private static final int MAX_IMPORT_BATCH_SIZE = 1000;
+
     /* The major version number of the hsql database */
     private Integer hsqlMajorVersionNumber;
 
@@ -59,9 +79,9 @@ public class HsqldbDatabase extends Database {
     @Override
     public Set<String> getTableNames(String schemaName) {
         if (getHsqldbMajorVersionNumber() < 2) {
-            return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.SYSTEM_TABLES where TABLE_TYPE = 'TABLE' AND TABLE_SCHEM = '" + schemaName + "'", getDataSource());
+            return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.SYSTEM_TABLES where TABLE_TYPE = 'TABLE' AND TABLE_SCHEM = ?", getDataSource(), schemaName);
         }
-        return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.TABLES where TABLE_TYPE = 'BASE TABLE' AND TABLE_SCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.TABLES where TABLE_TYPE = 'BASE TABLE' AND TABLE_SCHEMA = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -73,9 +93,9 @@ public class HsqldbDatabase extends Database {
     @Override
     public Set<String> getColumnNames(String schemaName, String tableName) {
         if (getHsqldbMajorVersionNumber() < 2) {
-            return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_COLUMNS where TABLE_NAME = '" + tableName + "' AND TABLE_SCHEM = '" + schemaName + "'", getDataSource());
+            return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_COLUMNS where TABLE_NAME = ? AND TABLE_SCHEM = ?", getDataSource(), tableName, schemaName);
         }
-        return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from INFORMATION_SCHEMA.COLUMNS where TABLE_NAME = '" + tableName + "' AND TABLE_SCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from INFORMATION_SCHEMA.COLUMNS where TABLE_NAME = ? AND TABLE_SCHEMA = ?", getDataSource(), tableName, schemaName);
     }
 
     /**
@@ -86,9 +106,9 @@ public class HsqldbDatabase extends Database {
     @Override
     public Set<String> getViewNames(String schemaName) {
         if (getHsqldbMajorVersionNumber() < 2) {
-            return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.SYSTEM_TABLES where TABLE_TYPE = 'VIEW' AND TABLE_SCHEM = '" + schemaName + "'", getDataSource());
+            return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.SYSTEM_TABLES where TABLE_TYPE = 'VIEW' AND TABLE_SCHEM = ?", getDataSource(), schemaName);
         }
-        return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.TABLES where TABLE_TYPE = 'VIEW' AND TABLE_SCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.TABLES where TABLE_TYPE = 'VIEW' AND TABLE_SCHEMA = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -99,9 +119,9 @@ public class HsqldbDatabase extends Database {
     @Override
     public Set<String> getSequenceNames(String schemaName) {
         if (getHsqldbMajorVersionNumber() < 2) {
-            return getSQLHandler().getItemsAsStringSet("select SEQUENCE_NAME from INFORMATION_SCHEMA.SYSTEM_SEQUENCES where SEQUENCE_SCHEMA = '" + schemaName + "'", getDataSource());
+            return getSQLHandler().getItemsAsStringSet("select SEQUENCE_NAME from INFORMATION_SCHEMA.SYSTEM_SEQUENCES where SEQUENCE_SCHEMA = ?", getDataSource(), schemaName);
         }
-        return getSQLHandler().getItemsAsStringSet("select SEQUENCE_NAME from INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_SCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select SEQUENCE_NAME from INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_SCHEMA = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -112,9 +132,151 @@ public class HsqldbDatabase extends Database {
     @Override
     public Set<String> getTriggerNames(String schemaName) {
         if (getHsqldbMajorVersionNumber() < 2) {
-            return getSQLHandler().getItemsAsStringSet("select TRIGGER_NAME from INFORMATION_SCHEMA.SYSTEM_TRIGGERS where TRIGGER_SCHEM = '" + schemaName + "'", getDataSource());
+            return getSQLHandler().getItemsAsStringSet("select TRIGGER_NAME from INFORMATION_SCHEMA.SYSTEM_TRIGGERS where TRIGGER_SCHEM = ?", getDataSource(), schemaName);
+        }
+        return getSQLHandler().getItemsAsStringSet("select TRIGGER_NAME from INFORMATION_SCHEMA.TRIGGERS where TRIGGER_SCHEMA = ?", getDataSource(), schemaName);
+    }
+
+
+    /**
+     * Gets the dependencies between the items of the given schema: the tables and views that are used by views, the
+     * foreign keys between tables and the tables on which triggers are defined.
+     *
+     * @param schemaName The schema, not null
+     * @return The dependencies, not null
+     */
+    @Override
+    public List<DbItemDependency> getDependencies(String schemaName) {
+        String foreignKeysQuery = "select distinct 'TABLE', FKTABLE_NAME, 'TABLE', PKTABLE_NAME from INFORMATION_SCHEMA.SYSTEM_CROSSREFERENCE " +
+                "where FKTABLE_SCHEM = ? and PKTABLE_SCHEM = FKTABLE_SCHEM";
+        if (getHsqldbMajorVersionNumber() < 2) {
+            return retrieveDependencies("select 'VIEW', usg.VIEW_NAME, case tab.TABLE_TYPE when 'VIEW' then 'VIEW' else 'TABLE' end, usg.TABLE_NAME from INFORMATION_SCHEMA.SYSTEM_VIEW_TABLE_USAGE usg, INFORMATION_SCHEMA.SYSTEM_TABLES tab " +
+                    "where usg.VIEW_SCHEMA = ? and usg.TABLE_SCHEMA = usg.VIEW_SCHEMA and tab.TABLE_SCHEM = usg.TABLE_SCHEMA and tab.TABLE_NAME = usg.TABLE_NAME " +
+                    "union all " + foreignKeysQuery + " " +
+                    "union all select 'TRIGGER', TRIGGER_NAME, 'TABLE', TABLE_NAME from INFORMATION_SCHEMA.SYSTEM_TRIGGERS " +
+                    "where TRIGGER_SCHEM = ? and TABLE_SCHEM = TRIGGER_SCHEM", schemaName);
         }
-        return getSQLHandler().getItemsAsStringSet("select TRIGGER_NAME from INFORMATION_SCHEMA.TRIGGERS where TRIGGER_SCHEMA = '" + schemaName + "'", getDataSource());
+        return retrieveDependencies("select 'VIEW', usg.VIEW_NAME, case tab.TABLE_TYPE when 'VIEW' then 'VIEW' else 'TABLE' end, usg.TABLE_NAME from INFORMATION_SCHEMA.VIEW_TABLE_USAGE usg, INFORMATION_SCHEMA.TABLES tab " +
+                "where usg.VIEW_SCHEMA = ? and usg.TABLE_SCHEMA = usg.VIEW_SCHEMA and tab.TABLE_SCHEMA = usg.TABLE_SCHEMA and tab.TABLE_NAME = usg.TABLE_NAME " +
+                "union all " + foreignKeysQuery + " " +
+                "union all select distinct 'TRIGGER', TRIGGER_NAME, 'TABLE', EVENT_OBJECT_TABLE from INFORMATION_SCHEMA.TRIGGERS " +
+                "where TRIGGER_SCHEMA = ? and EVENT_OBJECT_SCHEMA = TRIGGER_SCHEMA", schemaName);
+    }
+
+
+    /**
+     * Drops the given schema with all its items and creates it again for the same owner. This is only supported as
+     * of HSQLDB 2.0, for schemas that are not the default schema and if no tables need to be kept.
+     *
+     * @param schemaName       The schema, not null
+     * @param tableNamesToKeep The names of the tables that should not be dropped, not null
+     * @return True if the schema was cleared
+     */
+    @Override
+    public boolean clearSchema(String schemaName, Set<String> tableNamesToKeep) {
+        if (getHsqldbMajorVersionNumber() < 2 || !tableNamesToKeep.isEmpty() || schemaName.equals(getDefaultSchemaName()) || "PUBLIC".equals(schemaName)) {
+            return false;
+        }
+        SQLHandler sqlHandler = getSQLHandler();
+        String schemaOwner = sqlHandler.getItemAsString("select SCHEMA_OWNER from INFORMATION_SCHEMA.SCHEMATA where SCHEMA_NAME = ?", getDataSource(), schemaName);
+        sqlHandler.execute("drop schema " + quoted(schemaName) + " cascade", getDataSource());
+        sqlHandler.execute("create schema " + quoted(schemaName) + " authorization " + quoted(schemaOwner), getDataSource());
+        return true;
+    }
+
+
+    /**
+     * Writes the script of the database, i.e. the statements that recreate all its items and data, to the given file
+     * using the HSQLDB script statement. The file is written by the database server. Only supported as of HSQLDB 2.0.
+     *
+     * @param imageFile The file to write, should not exist yet, not null
+     */
+    @Override
+    public void exportSchemaImage(File imageFile) {
+        getSQLHandler().execute("script '" + imageFile.getAbsolutePath().replace("'", "''") + "'", getDataSource());
+    }
+
+    /**
+     * Executes the statements of a script that was written by {@link #exportSchemaImage}. The script contains the
+     * statements of the whole database, so only the statements for the items and data of the schemas of this database
+     * are executed. Statements for tables that still exist, e.g. preserved tables, are skipped. The data is inserted
+     * before creating triggers and foreign keys to other tables, so that triggers do not fire again and the data can be
+     * inserted in any order.
+     *
+     * @param imageFile The image file, not null
+     */
+    @Override
+    public void importSchemaImage(File imageFile) {
+        Map<String, Set<String>> existingTableNames = new HashMap<String, Set<String>>();
+        for (String schemaName : getSchemaNames()) {
+            existingTableNames.put(schemaName, getTableNames(schemaName));
+        }
+        List<String> deferredStatements = new ArrayList<String>();
+        String currentSchemaName = null;
+
+        // the inserts are executed in batches, a batch is executed before executing any other statement
+        SQLHandler sqlHandler = getSQLHandler();
+        List<String> insertStatements = new ArrayList<String>();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(imageFile), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("SET SCHEMA ")) {
+                    currentSchemaName = toCorrectCaseIdentifier(line.substring("SET SCHEMA ".length()).trim());
+                } else if (line.startsWith("INSERT INTO ")) {
+                    String tableName = toCorrectCaseIdentifier(getFirstIdentifier(line.substring("INSERT INTO ".length())));
+                    Set<String> tableNames = existingTableNames.get(currentSchemaName);
+                    if (tableNames != null && !tableNames.contains(tableName)) {
+                        insertStatements.add("INSERT INTO " + quoted(currentSchemaName) + "." + line.substring("INSERT INTO ".length()));
+                        if (insertStatements.size() >= MAX_IMPORT_BATCH_SIZE) {
+                            executeInsertStatements(insertStatements);
+                        }
+                    }
+                } else if (line.startsWith("CREATE ") || line.startsWith("ALTER ") || line.startsWith("GRANT ") || line.startsWith("COMMENT ")) {
+                    Matcher matcher = QUALIFIED_IDENTIFIER_PATTERN.matcher(line);
+                    if (!matcher.find()) {
+                        // e.g. users and roles
+                        continue;
+                    }
+                    Set<String> tableNames = existingTableNames.get(toCorrectCaseIdentifier(matcher.group(1)));
+                    if (tableNames == null || tableNames.contains(toCorrectCaseIdentifier(matcher.group(2)))) {
+                        continue;
+                    }
+                    if (line.startsWith("CREATE TRIGGER ") || (line.startsWith("ALTER TABLE ") && line.contains(" FOREIGN KEY"))) {
+                        deferredStatements.add(line);
+                        continue;
+                    }
+                    executeInsertStatements(insertStatements);
+                    sqlHandler.execute(line, getDataSource());
+                }
+            }
+            executeInsertStatements(insertStatements);
+            for (String deferredStatement : deferredStatements) {
+                sqlHandler.execute(deferredStatement, getDataSource());
+            }
+        } catch (IOException e) {
+            throw new DatabaseException("Unable to read schema image " + imageFile, e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private void executeInsertStatements(List<String> insertStatements) {
+        getSQLHandler().executeBatch(insertStatements, getDataSource());
+        insertStatements.clear();
+    }
+
+
+    private String getFirstIdentifier(String text) {
+        if (text.startsWith("\"")) {
+            return text.substring(0, text.indexOf('"', 1) + 1);
+        }
+        int index = 0;
+        while (index < text.length() && text.charAt(index) != '(' && text.charAt(index) != ' ') {
+            index++;
+        }
+        return text.substring(0, index);
     }
 
 
@@ -125,6 +287,17 @@ public class HsqldbDatabase extends Database {
      */
     @Override
     public void disableReferentialConstraints(String schemaName) {
+        disableReferentialConstraints(schemaName, (Set<String>) null);
+    }
+
+    /**
+     * Disables all referential constraints (e.g. foreign keys) on the given tables in the schema
+     *
+     * @param schemaName The schema name, not null
+     * @param tableNames The tables, null for all tables in the schema
+     */
+    @Override
+    public void disableReferentialConstraints(String schemaName, Set<String> tableNames) {
         int hsqlMajorVersionNumber = getHsqldbMajorVersionNumber();
 
         Connection connection = null;
@@ -137,9 +310,9 @@ public class HsqldbDatabase extends Database {
             alterStatement = connection.createStatement();
 
             if (hsqlMajorVersionNumber < 2) {
-                resultSet = queryStatement.executeQuery("select TABLE_NAME, CONSTRAINT_NAME from INFORMATION_SCHEMA.SYSTEM_TABLE_CONSTRAINTS where CONSTRAINT_TYPE = 'FOREIGN KEY' AND CONSTRAINT_SCHEMA = '" + schemaName + "'");
+                resultSet = queryStatement.executeQuery("select TABLE_NAME, CONSTRAINT_NAME from INFORMATION_SCHEMA.SYSTEM_TABLE_CONSTRAINTS where CONSTRAINT_TYPE = 'FOREIGN KEY' AND CONSTRAINT_SCHEMA = '" + schemaName + "'" + getTableNameCondition("TABLE_NAME", tableNames));
             } else {
-                resultSet = queryStatement.executeQuery("select TABLE_NAME, CONSTRAINT_NAME from INFORMATION_SCHEMA.TABLE_CONSTRAINTS where CONSTRAINT_TYPE = 'FOREIGN KEY' AND CONSTRAINT_SCHEMA = '" + schemaName + "'");
+                resultSet = queryStatement.executeQuery("select TABLE_NAME, CONSTRAINT_NAME from INFORMATION_SCHEMA.TABLE_CONSTRAINTS where CONSTRAINT_TYPE = 'FOREIGN KEY' AND CONSTRAINT_SCHEMA = '" + schemaName + "'" + getTableNameCondition("TABLE_NAME", tableNames));
             }
             while (resultSet.next()) {
                 String tableName = resultSet.getString("TABLE_NAME");
@@ -161,16 +334,28 @@ public class HsqldbDatabase extends Database {
      */
     @Override
     public void disableValueConstraints(String schemaName) {
-        disableCheckAndUniqueConstraints(schemaName);
-        disableNotNullConstraints(schemaName);
+        disableValueConstraints(schemaName, (Set<String>) null);
+    }
+
+    /**
+     * Disables all value constraints (e.g. not null) on the given tables in the schema
+     *
+     * @param schemaName The schema name, not null
+     * @param tableNames The tables, null for all tables in the schema
+     */
+    @Override
+    public void disableValueConstraints(String schemaName, Set<String> tableNames) {
+        disableCheckAndUniqueConstraints(schemaName, tableNames);
+        disableNotNullConstraints(schemaName, tableNames);
     }
 
     /**
-     * Disables all check and unique constraints on all tables in the schema
+     * Disables all check and unique constraints on the given tables in the schema
      *
      * @param schemaName The schema name, not null
+     * @param tableNames The tables, null for all tables in the schema
      */
-    protected void disableCheckAndUniqueConstraints(String schemaName) {
+    protected void disableCheckAndUniqueConstraints(String schemaName, Set<String> tableNames) {
         int hsqlMajorVersionNumber = getHsqldbMajorVersionNumber();
 
         Connection connection = null;
@@ -183,9 +368,9 @@ public class HsqldbDatabase extends Database {
             alterStatement = connection.createStatement();
 
             if (hsqlMajorVersionNumber < 2) {
-                resultSet = queryStatement.executeQuery("select TABLE_NAME, CONSTRAINT_NAME from INFORMATION_SCHEMA.SYSTEM_TABLE_CONSTRAINTS where CONSTRAINT_TYPE IN ('CHECK', 'UNIQUE') AND CONSTRAINT_SCHEMA = '" + schemaName + "'");
+                resultSet = queryStatement.executeQuery("select TABLE_NAME, CONSTRAINT_NAME from INFORMATION_SCHEMA.SYSTEM_TABLE_CONSTRAINTS where CONSTRAINT_TYPE IN ('CHECK', 'UNIQUE') AND CONSTRAINT_SCHEMA = '" + schemaName + "'" + getTableNameCondition("TABLE_NAME", tableNames));
             } else {
-                resultSet = queryStatement.executeQuery("select TABLE_NAME, CONSTRAINT_NAME from INFORMATION_SCHEMA.TABLE_CONSTRAINTS where CONSTRAINT_TYPE IN ('CHECK', 'UNIQUE') AND CONSTRAINT_SCHEMA = '" + schemaName + "'");
+                resultSet = queryStatement.executeQuery("select TABLE_NAME, CONSTRAINT_NAME from INFORMATION_SCHEMA.TABLE_CONSTRAINTS where CONSTRAINT_TYPE IN ('CHECK', 'UNIQUE') AND CONSTRAINT_SCHEMA = '" + schemaName + "'" + getTableNameCondition("TABLE_NAME", tableNames));
             }
             while (resultSet.next()) {
                 String tableName = resultSet.getString("TABLE_NAME");
@@ -201,11 +386,12 @@ public class HsqldbDatabase extends Database {
     }
 
     /**
-     * Disables all not null constraints on all tables in the schema
+     * Disables all not null constraints on the given tables in the schema
      *
      * @param schemaName The schema name, not null
+     * @param tableNames The tables, null for all tables in the schema
      */
-    protected void disableNotNullConstraints(String schemaName) {
+    protected void disableNotNullConstraints(String schemaName, Set<String> tableNames) {
         int hsqlMajorVersionNumber = getHsqldbMajorVersionNumber();
 
         Connection connection = null;
@@ -220,10 +406,10 @@ public class HsqldbDatabase extends Database {
             // Do not remove PK constraints
             if (hsqlMajorVersionNumber < 2) {
                 resultSet = queryStatement.executeQuery("select col.TABLE_NAME, col.COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_COLUMNS col where col.IS_NULLABLE = 'NO' and col.TABLE_SCHEM = '" + schemaName + "' " +
-                        "AND NOT EXISTS ( select COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_PRIMARYKEYS pk where pk.TABLE_NAME = col.TABLE_NAME and pk.COLUMN_NAME = col.COLUMN_NAME and pk.TABLE_SCHEM = '" + schemaName + "' )");
+                        "AND NOT EXISTS ( select COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_PRIMARYKEYS pk where pk.TABLE_NAME = col.TABLE_NAME and pk.COLUMN_NAME = col.COLUMN_NAME and pk.TABLE_SCHEM = '" + schemaName + "' )" + getTableNameCondition("col.TABLE_NAME", tableNames));
             } else {
                 resultSet = queryStatement.executeQuery("select col.TABLE_NAME, col.COLUMN_NAME from INFORMATION_SCHEMA.COLUMNS col where col.IS_NULLABLE = 'NO' and col.TABLE_SCHEMA = '" + schemaName + "' " +
-                        "AND NOT EXISTS ( select COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_PRIMARYKEYS pk where pk.TABLE_NAME = col.TABLE_NAME and pk.COLUMN_NAME = col.COLUMN_NAME and pk.TABLE_SCHEM = '" + schemaName + "' )");
+                        "AND NOT EXISTS ( select COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_PRIMARYKEYS pk where pk.TABLE_NAME = col.TABLE_NAME and pk.COLUMN_NAME = col.COLUMN_NAME and pk.TABLE_SCHEM = '" + schemaName + "' )" + getTableNameCondition("col.TABLE_NAME", tableNames));
             }
             while (resultSet.next()) {
                 String tableName = resultSet.getString("TABLE_NAME");
@@ -250,9 +436,23 @@ public class HsqldbDatabase extends Database {
     @Override
     public long getSequenceValue(String schemaName, String sequenceName) {
         if (getHsqldbMajorVersionNumber() < 2) {
-            return getSQLHandler().getItemAsLong("select START_WITH from INFORMATION_SCHEMA.SYSTEM_SEQUENCES where SEQUENCE_SCHEMA = '" + schemaName + "' and SEQUENCE_NAME = '" + sequenceName + "'", getDataSource());
+            return getSQLHandler().getItemAsLong("select START_WITH from INFORMATION_SCHEMA.SYSTEM_SEQUENCES where SEQUENCE_SCHEMA = ? and SEQUENCE_NAME = ?", getDataSource(), schemaName, sequenceName);
         }
-        return getSQLHandler().getItemAsLong("select NEXT_VALUE from INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_SCHEMA = '" + schemaName + "' and SEQUENCE_NAME = '" + sequenceName + "'", getDataSource());
+        return getSQLHandler().getItemAsLong("select NEXT_VALUE from INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_SCHEMA = ? and SEQUENCE_NAME = ?", getDataSource(), schemaName, sequenceName);
+    }
+
+    /**
+     * Returns the values of all sequences in the given schema, retrieved with a single query.
+     *
+     * @param schemaName The schema, not null
+     * @return The values of the sequences per sequence name, not null
+     */
+    @Override
+    public Map<String, Long> getSequenceValues(String schemaName) {
+        if (getHsqldbMajorVersionNumber() < 2) {
+            return retrieveSequenceValues("select SEQUENCE_NAME, START_WITH from INFORMATION_SCHEMA.SYSTEM_SEQUENCES where SEQUENCE_SCHEMA = ?", schemaName);
+        }
+        return retrieveSequenceValues("select SEQUENCE_NAME, NEXT_VALUE from INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_SCHEMA = ?", schemaName);
     }
 
     /**
@@ -276,7 +476,20 @@ public class HsqldbDatabase extends Database {
      */
     @Override
     public Set<String> getIdentityColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_PRIMARYKEYS where TABLE_NAME = '" + tableName + "' AND TABLE_SCHEM = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_PRIMARYKEYS where TABLE_NAME = ? AND TABLE_SCHEM = ?", getDataSource(), tableName, schemaName);
+    }
+
+    /**
+     * Gets the identity columns of all tables in the given schema, retrieved with a single query.
+     * <p/>
+     * todo check, at this moment the PK columns are returned
+     *
+     * @param schemaName The schema, not null
+     * @return The identity columns, not null
+     */
+    @Override
+    public List<IdentityColumn> getIdentityColumns(String schemaName) {
+        return retrieveIdentityColumns("select TABLE_NAME, COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_PRIMARYKEYS where TABLE_SCHEM = ?", schemaName);
     }
 
     /**
@@ -365,6 +578,36 @@ public class HsqldbDatabase extends Database {
         return true;
     }
 
+    /**
+     * Truncating tables is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsTruncate() {
+        return true;
+    }
+
+    /**
+     * Dependencies are supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsDependencies() {
+        return true;
+    }
+
+    /**
+     * Schema images are supported as of HSQLDB 2.0.
+     *
+     * @return True if the major version is 2 or higher
+     */
+    @Override
+    public boolean supportsSchemaImages() {
+        return getHsqldbMajorVersionNumber() >= 2;
+    }
+
 
     /**
      * @return The major version number of the Hsql database server that is used (e.g. for Hsql version 1.8.0, 1 is returned
@@ -385,4 +628,18 @@ public class HsqldbDatabase extends Database {
         }
         return hsqlMajorVersionNumber;
     }
+
+
+    /**
+     * Probes the table using the single record of the system tables table that describes itself, which exists in
+     * hsqldb 1.8 and 2.x.
+     *
+     * @param qualifiedTableName The qualified name of the table, not null
+     * @param index              The index to return
+     * @return The query, not null
+     */
+    @Override
+    protected String getNonEmptyTableProbe(String qualifiedTableName, int index) {
+        return "select " + index + " from INFORMATION_SCHEMA.SYSTEM_TABLES where TABLE_NAME = 'SYSTEM_TABLES' and exists (select 1 from " + qualifiedTableName + ")";
+    }
 }
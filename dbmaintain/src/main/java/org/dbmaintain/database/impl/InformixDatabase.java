@@ -94,4 +94,17 @@ public class InformixDatabase extends Database {
             closeQuietly(connection, alterStatement, resultSet);
         }
     }
+
+
+    /**
+     * Probes the table using the systables record of systables itself.
+     *
+     * @param qualifiedTableName The qualified name of the table, not null
+     * @param index              The index to return
+     * @return The query, not null
+     */
+    @Override
+    protected String getNonEmptyTableProbe(String qualifiedTableName, int index) {
+        return "select " + index + " from systables where tabid = 1 and exists (select 1 from " + qualifiedTableName + ")";
+    }
 }
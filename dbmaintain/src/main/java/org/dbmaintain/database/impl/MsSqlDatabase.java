@@ -23,6 +23,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -61,7 +62,7 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getTableNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select t.name from sys.tables t, sys.schemas s where t.schema_id = s.schema_id and s.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select t.name from sys.tables t, sys.schemas s where t.schema_id = s.schema_id and s.name = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -72,7 +73,7 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select c.name from sys.columns c, sys.tables t, sys.schemas s where c.object_id = t.object_id and t.name = '" + tableName + "' and t.schema_id = s.schema_id and s.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select c.name from sys.columns c, sys.tables t, sys.schemas s where c.object_id = t.object_id and t.name = ? and t.schema_id = s.schema_id and s.name = ?", getDataSource(), tableName, schemaName);
     }
 
     /**
@@ -82,7 +83,7 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getViewNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select v.name from sys.views v, sys.schemas s where v.schema_id = s.schema_id and s.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select v.name from sys.views v, sys.schemas s where v.schema_id = s.schema_id and s.name = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -92,7 +93,7 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getSynonymNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select o.name from sys.synonyms o, sys.schemas s where o.schema_id = s.schema_id and s.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select o.name from sys.synonyms o, sys.schemas s where o.schema_id = s.schema_id and s.name = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -102,7 +103,7 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getTriggerNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select t.name from sys.triggers t, sys.all_objects o, sys.schemas s where t.parent_id = o.object_id and o.schema_id = s.schema_id and s.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select t.name from sys.triggers t, sys.all_objects o, sys.schemas s where t.parent_id = o.object_id and o.schema_id = s.schema_id and s.name = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -112,7 +113,7 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getStoredProcedureNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("SELECT sys.procedures.name FROM sys.procedures INNER JOIN sys.schemas ON sys.procedures.schema_id = sys.schemas.schema_id where sys.schemas.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("SELECT sys.procedures.name FROM sys.procedures INNER JOIN sys.schemas ON sys.procedures.schema_id = sys.schemas.schema_id where sys.schemas.name = ?", getDataSource(), schemaName);
     }
 
 
@@ -123,7 +124,7 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getTypeNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select t.name from sys.types t, sys.schemas s where t.schema_id = s.schema_id and s.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select t.name from sys.types t, sys.schemas s where t.schema_id = s.schema_id and s.name = ?", getDataSource(), schemaName);
     }
 
 	/**
@@ -133,7 +134,7 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getRuleNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("SELECT ao.name FROM sys.all_objects ao INNER JOIN sys.schemas s ON s.schema_id = ao.schema_id WHERE type = 'R' and s.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("SELECT ao.name FROM sys.all_objects ao INNER JOIN sys.schemas s ON s.schema_id = ao.schema_id WHERE type = 'R' and s.name = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -144,7 +145,18 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getIdentityColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select i.name from sys.identity_columns i, sys.tables t, sys.schemas s where i.object_id = t.object_id and t.name = '" + tableName + "' and t.schema_id = s.schema_id and s.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select i.name from sys.identity_columns i, sys.tables t, sys.schemas s where i.object_id = t.object_id and t.name = ? and t.schema_id = s.schema_id and s.name = ?", getDataSource(), tableName, schemaName);
+    }
+
+    /**
+     * Gets the identity columns of all tables in the given schema, retrieved with a single query.
+     *
+     * @param schemaName The schema, not null
+     * @return The identity columns, not null
+     */
+    @Override
+    public List<IdentityColumn> getIdentityColumns(String schemaName) {
+        return retrieveIdentityColumns("select t.name, i.name, cast(i.last_value as bigint) from sys.identity_columns i, sys.tables t, sys.schemas s where i.object_id = t.object_id and t.schema_id = s.schema_id and s.name = ?", schemaName);
     }
 
     /**
@@ -161,6 +173,48 @@ public class MsSqlDatabase extends Database {
         getSQLHandler().execute("DBCC CHECKIDENT ('" + qualified(schemaName, tableName) + "', reseed, " + identityValue + ")", getDataSource());
     }
 
+    /**
+     * Drops all synonyms, views, stored procedures, tables, types and rules of the given schema, except for the given
+     * tables, by executing a generated script as a single batch. The triggers are dropped together with their tables.
+     *
+     * @param schemaName       The schema, not null
+     * @param tableNamesToKeep The names of the tables that should not be dropped, not null
+     * @return True
+     */
+    @Override
+    public boolean clearSchema(String schemaName, Set<String> tableNamesToKeep) {
+        StringBuilder script = new StringBuilder();
+        appendDropStatements(script, "synonym", schemaName, getSynonymNames(schemaName), tableNamesToKeep);
+        appendDropStatements(script, "view", schemaName, getViewNames(schemaName), tableNamesToKeep);
+        appendDropStatements(script, "procedure", schemaName, getStoredProcedureNames(schemaName), tableNamesToKeep);
+        appendDropStatements(script, "table", schemaName, getTableNames(schemaName), tableNamesToKeep);
+        appendDropStatements(script, "type", schemaName, getTypeNames(schemaName), tableNamesToKeep);
+        appendDropStatements(script, "rule", schemaName, getRuleNames(schemaName), tableNamesToKeep);
+        if (script.length() > 0) {
+            getSQLHandler().execute(script.toString(), getDataSource());
+        }
+        return true;
+    }
+
+    protected void appendDropStatements(StringBuilder script, String itemType, String schemaName, Set<String> itemNames, Set<String> itemNamesToKeep) {
+        for (String itemName : itemNames) {
+            if (containsIgnoreCase(itemNamesToKeep, itemName)) {
+                continue;
+            }
+            script.append("drop ").append(itemType).append(" ").append(qualified(schemaName, itemName)).append(";\n");
+        }
+    }
+
+    private boolean containsIgnoreCase(Set<String> names, String name) {
+        for (String element : names) {
+            if (element.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
     /**
      * Disables all referential constraints (e.g. foreign keys) on all table in the schema
      *
@@ -444,4 +498,14 @@ public class MsSqlDatabase extends Database {
         return true;
     }
 
+    /**
+     * Truncating tables is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsTruncate() {
+        return true;
+    }
+
 }
@@ -17,6 +17,7 @@ package org.dbmaintain.database.impl;
 
 import org.dbmaintain.database.*;
 
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -57,7 +58,7 @@ public class MySqlDatabase extends Database {
      */
     @Override
     public Set<String> getTableNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select table_name from information_schema.tables where table_schema = '" + schemaName + "' and table_type = 'BASE TABLE'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select table_name from information_schema.tables where table_schema = ? and table_type = 'BASE TABLE'", getDataSource(), schemaName);
     }
 
     /**
@@ -68,7 +69,7 @@ public class MySqlDatabase extends Database {
      */
     @Override
     public Set<String> getColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select column_name from information_schema.columns where table_name = '" + tableName + "' and table_schema = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select column_name from information_schema.columns where table_name = ? and table_schema = ?", getDataSource(), tableName, schemaName);
     }
 
     /**
@@ -78,7 +79,7 @@ public class MySqlDatabase extends Database {
      */
     @Override
     public Set<String> getViewNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select table_name from information_schema.tables where table_schema = '" + schemaName + "' and table_type = 'VIEW'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select table_name from information_schema.tables where table_schema = ? and table_type = 'VIEW'", getDataSource(), schemaName);
     }
 
     /**
@@ -88,7 +89,7 @@ public class MySqlDatabase extends Database {
      */
     @Override
     public Set<String> getTriggerNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select trigger_name from information_schema.triggers where trigger_schema = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select trigger_name from information_schema.triggers where trigger_schema = ?", getDataSource(), schemaName);
     }
 
 
@@ -109,7 +110,7 @@ public class MySqlDatabase extends Database {
 
     protected void disableReferentialConstraints(String schemaName, String tableName) {
         SQLHandler sqlHandler = getSQLHandler();
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select constraint_name from information_schema.table_constraints where constraint_type = 'FOREIGN KEY' AND table_name = '" + tableName + "' and constraint_schema = '" + schemaName + "'", getDataSource());
+        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select constraint_name from information_schema.table_constraints where constraint_type = 'FOREIGN KEY' AND table_name = ? and constraint_schema = ?", getDataSource(), tableName, schemaName);
         for (String constraintName : constraintNames) {
             sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " drop foreign key " + quoted(constraintName), getDataSource());
         }
@@ -134,20 +135,46 @@ public class MySqlDatabase extends Database {
         SQLHandler sqlHandler = getSQLHandler();
 
         // disable all unique constraints (check constraints are not implemented)
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select constraint_name from information_schema.table_constraints where constraint_type in ('UNIQUE') AND table_name = '" + tableName + "' and constraint_schema = '" + schemaName + "'", getDataSource());
+        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select constraint_name from information_schema.table_constraints where constraint_type in ('UNIQUE') AND table_name = ? and constraint_schema = ?", getDataSource(), tableName, schemaName);
         for (String constraintName : constraintNames) {
             sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " drop key " + quoted(constraintName), getDataSource());
         }
 
         // disable all not null constraints
-        Set<String> notNullColumnNames = sqlHandler.getItemsAsStringSet("select column_name from information_schema.columns where is_nullable = 'NO' and column_key <> 'PRI' and table_name = '" + tableName + "' and table_schema = '" + schemaName + "'", getDataSource());
+        Set<String> notNullColumnNames = sqlHandler.getItemsAsStringSet("select column_name from information_schema.columns where is_nullable = 'NO' and column_key <> 'PRI' and table_name = ? and table_schema = ?", getDataSource(), tableName, schemaName);
         for (String notNullColumnName : notNullColumnNames) {
             // todo test length etc
-            String columnType = sqlHandler.getItemAsString("select column_type from information_schema.columns where table_schema = '" + schemaName + "' and table_name = '" + tableName + "' and column_name = '" + notNullColumnName + "'", getDataSource());
+            String columnType = sqlHandler.getItemAsString("select column_type from information_schema.columns where table_schema = ? and table_name = ? and column_name = ?", getDataSource(), schemaName, tableName, notNullColumnName);
             sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " change column " + quoted(notNullColumnName) + " " + quoted(notNullColumnName) + " " + columnType + " NULL ", getDataSource());
         }
     }
 
+    /**
+     * Disables all referential constraints (e.g. foreign keys) on the given tables in the schema
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The tables, not null
+     */
+    @Override
+    public void disableReferentialConstraints(String schemaName, Set<String> tableNames) {
+        for (String tableName : tableNames) {
+            disableReferentialConstraints(schemaName, tableName);
+        }
+    }
+
+    /**
+     * Disables all value constraints (e.g. not null) on the given tables in the schema
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The tables, not null
+     */
+    @Override
+    public void disableValueConstraints(String schemaName, Set<String> tableNames) {
+        for (String tableName : tableNames) {
+            disableValueConstraints(schemaName, tableName);
+        }
+    }
+
 
     /**
      * Gets the names of all identity columns of the given table.
@@ -158,7 +185,20 @@ public class MySqlDatabase extends Database {
     @Override
     public Set<String> getIdentityColumnNames(String schemaName, String tableName) {
         //  todo check, at this moment the PK columns are returned
-        return getSQLHandler().getItemsAsStringSet("select column_name from information_schema.columns where table_name = '" + tableName + "' and column_key = 'PRI' and table_schema = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select column_name from information_schema.columns where table_name = ? and column_key = 'PRI' and table_schema = ?", getDataSource(), tableName, schemaName);
+    }
+
+    /**
+     * Gets the identity columns of all tables in the given schema, retrieved with a single query.
+     * The current value is the next auto increment value of the table.
+     *
+     * @param schemaName The schema, not null
+     * @return The identity columns, not null
+     */
+    @Override
+    public List<IdentityColumn> getIdentityColumns(String schemaName) {
+        //  todo check, at this moment the PK columns are returned
+        return retrieveIdentityColumns("select c.table_name, c.column_name, t.auto_increment from information_schema.columns c, information_schema.tables t where t.table_name = c.table_name and t.table_schema = c.table_schema and t.table_type = 'BASE TABLE' and c.column_key = 'PRI' and c.table_schema = ?", schemaName);
     }
 
     /**
@@ -267,4 +307,59 @@ public class MySqlDatabase extends Database {
         return true;
     }
 
-}
\ No newline at end of file
+    /**
+     * Truncating tables is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsTruncate() {
+        return true;
+    }
+
+    /**
+     * Advisory locks are supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsAdvisoryLocks() {
+        return true;
+    }
+
+
+    /**
+     * Uses get_lock with a timeout of 0 seconds.
+     *
+     * @param lockName The name of the lock, not null
+     * @return The query, not null
+     */
+    @Override
+    public String getTryAdvisoryLockStatement(String lockName) {
+        return "select get_lock('" + lockName + "', 0)";
+    }
+
+    /**
+     * Uses release_lock.
+     *
+     * @param lockName The name of the lock, not null
+     * @return The query, not null
+     */
+    @Override
+    public String getReleaseAdvisoryLockStatement(String lockName) {
+        return "select release_lock('" + lockName + "')";
+    }
+
+
+    /**
+     * Probes the table using the dual table.
+     *
+     * @param qualifiedTableName The qualified name of the table, not null
+     * @param index              The index to return
+     * @return The query, not null
+     */
+    @Override
+    protected String getNonEmptyTableProbe(String qualifiedTableName, int index) {
+        return "select " + index + " from dual where exists (select 1 from " + qualifiedTableName + ")";
+    }
+}
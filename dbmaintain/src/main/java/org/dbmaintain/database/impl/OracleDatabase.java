@@ -19,8 +19,11 @@ import org.dbmaintain.database.Database;
 import org.dbmaintain.database.DatabaseConnection;
 import org.dbmaintain.database.DatabaseException;
 import org.dbmaintain.database.IdentifierProcessor;
+import org.dbmaintain.structure.model.DbItemDependency;
 
 import java.sql.*;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.apache.commons.dbutils.DbUtils.closeQuietly;
@@ -60,7 +63,7 @@ public class OracleDatabase extends Database {
     public Set<String> getTableNames(String schemaName) {
         // all_tables also contains the materialized views: don't return these
         // to be sure no recycled items are handled, all items with a name that starts with BIN$ will be filtered out.
-        return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from ALL_TABLES where OWNER = '" + schemaName + "' and TABLE_NAME not like 'BIN$%' minus select MVIEW_NAME from ALL_MVIEWS where OWNER = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from ALL_TABLES where OWNER = ? and TABLE_NAME not like 'BIN$%' minus select MVIEW_NAME from ALL_MVIEWS where OWNER = ?", getDataSource(), schemaName, schemaName);
     }
 
     /**
@@ -71,7 +74,7 @@ public class OracleDatabase extends Database {
      */
     @Override
     public Set<String> getColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from ALL_TAB_COLUMNS where TABLE_NAME = '" + tableName + "' and OWNER = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from ALL_TAB_COLUMNS where TABLE_NAME = ? and OWNER = ?", getDataSource(), tableName, schemaName);
     }
 
     /**
@@ -81,7 +84,7 @@ public class OracleDatabase extends Database {
      */
     @Override
     public Set<String> getViewNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select VIEW_NAME from ALL_VIEWS where OWNER = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select VIEW_NAME from ALL_VIEWS where OWNER = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -91,7 +94,7 @@ public class OracleDatabase extends Database {
      */
     @Override
     public Set<String> getMaterializedViewNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select MVIEW_NAME from ALL_MVIEWS where OWNER = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select MVIEW_NAME from ALL_MVIEWS where OWNER = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -101,7 +104,7 @@ public class OracleDatabase extends Database {
      */
     @Override
     public Set<String> getSynonymNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select SYNONYM_NAME from ALL_SYNONYMS where OWNER = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select SYNONYM_NAME from ALL_SYNONYMS where OWNER = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -111,7 +114,7 @@ public class OracleDatabase extends Database {
      */
     @Override
     public Set<String> getSequenceNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select SEQUENCE_NAME from ALL_SEQUENCES where SEQUENCE_OWNER = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select SEQUENCE_NAME from ALL_SEQUENCES where SEQUENCE_OWNER = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -122,7 +125,7 @@ public class OracleDatabase extends Database {
     @Override
     public Set<String> getTriggerNames(String schemaName) {
         // to be sure no recycled items are handled, all items with a name that starts with BIN$ will be filtered out.
-        return getSQLHandler().getItemsAsStringSet("select TRIGGER_NAME from ALL_TRIGGERS where OWNER = '" + schemaName + "' and TRIGGER_NAME not like 'BIN$%'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TRIGGER_NAME from ALL_TRIGGERS where OWNER = ? and TRIGGER_NAME not like 'BIN$%'", getDataSource(), schemaName);
     }
 
     /**
@@ -132,7 +135,7 @@ public class OracleDatabase extends Database {
      */
     @Override
     public Set<String> getTypeNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select TYPE_NAME from ALL_TYPES where OWNER = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TYPE_NAME from ALL_TYPES where OWNER = ?", getDataSource(), schemaName);
     }
 
 
@@ -190,6 +193,17 @@ public class OracleDatabase extends Database {
      */
     @Override
     public void disableReferentialConstraints(String schemaName) {
+        disableReferentialConstraints(schemaName, (Set<String>) null);
+    }
+
+    /**
+     * Disables all referential constraints (e.g. foreign keys) on the given tables in the schema
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The tables, null for all tables in the schema
+     */
+    @Override
+    public void disableReferentialConstraints(String schemaName, Set<String> tableNames) {
         Connection connection = null;
         Statement queryStatement = null;
         Statement alterStatement = null;
@@ -200,7 +214,7 @@ public class OracleDatabase extends Database {
             alterStatement = connection.createStatement();
 
             // to be sure no recycled items are handled, all items with a name that starts with BIN$ will be filtered out.
-            resultSet = queryStatement.executeQuery("select TABLE_NAME, CONSTRAINT_NAME from ALL_CONSTRAINTS where CONSTRAINT_TYPE = 'R' and OWNER = '" + schemaName + "' and CONSTRAINT_NAME not like 'BIN$%' and STATUS <> 'DISABLED'");
+            resultSet = queryStatement.executeQuery("select TABLE_NAME, CONSTRAINT_NAME from ALL_CONSTRAINTS where CONSTRAINT_TYPE = 'R' and OWNER = '" + schemaName + "' and CONSTRAINT_NAME not like 'BIN$%' and STATUS <> 'DISABLED'" + getTableNameCondition("TABLE_NAME", tableNames));
             while (resultSet.next()) {
                 String tableName = resultSet.getString("TABLE_NAME");
                 String constraintName = resultSet.getString("CONSTRAINT_NAME");
@@ -221,6 +235,17 @@ public class OracleDatabase extends Database {
      */
     @Override
     public void disableValueConstraints(String schemaName) {
+        disableValueConstraints(schemaName, (Set<String>) null);
+    }
+
+    /**
+     * Disables all value constraints (e.g. not null) on the given tables in the schema
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The tables, null for all tables in the schema
+     */
+    @Override
+    public void disableValueConstraints(String schemaName, Set<String> tableNames) {
         Connection connection = null;
         Statement queryStatement = null;
         Statement alterStatement = null;
@@ -233,7 +258,7 @@ public class OracleDatabase extends Database {
             // to be sure no recycled items are handled, all items with a name that starts with BIN$ will be filtered out.
             // The 'O' type of constraints are ignored. These constraints are generated when a view is created with
             // the with read-only option and can't be disabled with an alter table
-            resultSet = queryStatement.executeQuery("select TABLE_NAME, CONSTRAINT_NAME from ALL_CONSTRAINTS where CONSTRAINT_TYPE in ('U', 'C', 'V') and OWNER = '" + schemaName + "' and CONSTRAINT_NAME not like 'BIN$%' and STATUS <> 'DISABLED'");
+            resultSet = queryStatement.executeQuery("select TABLE_NAME, CONSTRAINT_NAME from ALL_CONSTRAINTS where CONSTRAINT_TYPE in ('U', 'C', 'V') and OWNER = '" + schemaName + "' and CONSTRAINT_NAME not like 'BIN$%' and STATUS <> 'DISABLED'" + getTableNameCondition("TABLE_NAME", tableNames));
             while (resultSet.next()) {
                 String tableName = resultSet.getString("TABLE_NAME");
                 String constraintName = resultSet.getString("CONSTRAINT_NAME");
@@ -258,7 +283,18 @@ public class OracleDatabase extends Database {
      */
     @Override
     public long getSequenceValue(String schemaName, String sequenceName) {
-        return getSQLHandler().getItemAsLong("select LAST_NUMBER from ALL_SEQUENCES where SEQUENCE_NAME = '" + sequenceName + "' and SEQUENCE_OWNER = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemAsLong("select LAST_NUMBER from ALL_SEQUENCES where SEQUENCE_NAME = ? and SEQUENCE_OWNER = ?", getDataSource(), sequenceName, schemaName);
+    }
+
+    /**
+     * Returns the values of all sequences in the given schema, retrieved with a single query.
+     *
+     * @param schemaName The schema, not null
+     * @return The values of the sequences per sequence name, not null
+     */
+    @Override
+    public Map<String, Long> getSequenceValues(String schemaName) {
+        return retrieveSequenceValues("select SEQUENCE_NAME, LAST_NUMBER from ALL_SEQUENCES where SEQUENCE_OWNER = ?", schemaName);
     }
 
     /**
@@ -294,6 +330,24 @@ public class OracleDatabase extends Database {
     }
 
 
+    /**
+     * Gets the dependencies between the items of the given schema: the items that are used by views, materialized
+     * views, synonyms, types and tables, the foreign keys between tables and the tables on which triggers are defined.
+     *
+     * @param schemaName The schema, not null
+     * @return The dependencies, not null
+     */
+    @Override
+    public List<DbItemDependency> getDependencies(String schemaName) {
+        return retrieveDependencies("select decode(TYPE, 'MATERIALIZED VIEW', 'MATERIALIZED_VIEW', TYPE), NAME, decode(REFERENCED_TYPE, 'MATERIALIZED VIEW', 'MATERIALIZED_VIEW', REFERENCED_TYPE), REFERENCED_NAME from ALL_DEPENDENCIES " +
+                "where OWNER = ? and REFERENCED_OWNER = OWNER and TYPE in ('TABLE', 'VIEW', 'MATERIALIZED VIEW', 'SYNONYM', 'TYPE') and REFERENCED_TYPE in ('TABLE', 'VIEW', 'MATERIALIZED VIEW', 'SYNONYM', 'SEQUENCE', 'TYPE') and NAME not like 'BIN$%' " +
+                "union all select 'TABLE', con.TABLE_NAME, 'TABLE', ref.TABLE_NAME from ALL_CONSTRAINTS con, ALL_CONSTRAINTS ref " +
+                "where con.OWNER = ? and con.CONSTRAINT_TYPE = 'R' and ref.OWNER = con.R_OWNER and ref.CONSTRAINT_NAME = con.R_CONSTRAINT_NAME and ref.OWNER = con.OWNER and con.TABLE_NAME not like 'BIN$%' " +
+                "union all select 'TRIGGER', TRIGGER_NAME, 'TABLE', TABLE_NAME from ALL_TRIGGERS " +
+                "where OWNER = ? and TABLE_OWNER = OWNER and BASE_OBJECT_TYPE = 'TABLE' and TRIGGER_NAME not like 'BIN$%'", schemaName);
+    }
+
+
     /**
      * Sets the current schema of the database. If a current schema is set, it does not need to be specified
      * explicitly in the scripts.
@@ -376,6 +430,16 @@ public class OracleDatabase extends Database {
         return true;
     }
 
+    /**
+     * Dependencies are supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsDependencies() {
+        return true;
+    }
+
     /**
      * Cascade are supported.
      *
@@ -396,6 +460,16 @@ public class OracleDatabase extends Database {
         return true;
     }
 
+    /**
+     * Truncating tables is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsTruncate() {
+        return true;
+    }
+
 
     /**
      * @return Whether or not this version of the Oracle database that is used supports the purge keyword. This is,
@@ -425,4 +499,16 @@ public class OracleDatabase extends Database {
         return oracleMajorVersionNumber;
     }
 
-}
\ No newline at end of file
+
+    /**
+     * Probes the table using the dual table.
+     *
+     * @param qualifiedTableName The qualified name of the table, not null
+     * @param index              The index to return
+     * @return The query, not null
+     */
+    @Override
+    protected String getNonEmptyTableProbe(String qualifiedTableName, int index) {
+        return "select " + index + " from dual where exists (select 1 from " + qualifiedTableName + ")";
+    }
+}
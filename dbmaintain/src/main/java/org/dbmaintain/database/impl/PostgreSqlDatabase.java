@@ -19,9 +19,14 @@ import org.dbmaintain.database.Database;
 import org.dbmaintain.database.DatabaseConnection;
 import org.dbmaintain.database.IdentifierProcessor;
 import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.structure.model.DbItemDependency;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Implementation of {@link org.dbmaintain.database.Database} for a PostgreSql database.
@@ -54,7 +59,7 @@ public class PostgreSqlDatabase extends Database {
      */
     @Override
     public Set<String> getTableNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select table_name from information_schema.tables where table_type = 'BASE TABLE' and table_schema = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select table_name from information_schema.tables where table_type = 'BASE TABLE' and table_schema = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -65,7 +70,7 @@ public class PostgreSqlDatabase extends Database {
      */
     @Override
     public Set<String> getColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select column_name from information_schema.columns where table_name = '" + tableName + "' and table_schema = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select column_name from information_schema.columns where table_name = ? and table_schema = ?", getDataSource(), tableName, schemaName);
     }
 
     /**
@@ -75,7 +80,7 @@ public class PostgreSqlDatabase extends Database {
      */
     @Override
     public Set<String> getViewNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select table_name from information_schema.tables where table_type = 'VIEW' and table_schema = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select table_name from information_schema.tables where table_type = 'VIEW' and table_schema = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -89,7 +94,7 @@ public class PostgreSqlDatabase extends Database {
         // http://sourceforge.net/forum/forum.php?thread_id=1708520&forum_id=570578
         // Should be replaced by the original query on information_schema.sequences in future, since this is a more elegant solution
         // This is the original query: getItemsAsStringSet("select sequence_name from information_schema.sequences where sequence_schema = '" + schemaName + "'", getDataSource());
-        return getSQLHandler().getItemsAsStringSet("select c.relname from pg_class c join pg_namespace n on (c.relnamespace = n.oid) where c.relkind = 'S' and n.nspname = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select c.relname from pg_class c join pg_namespace n on (c.relnamespace = n.oid) where c.relkind = 'S' and n.nspname = ?", getDataSource(), schemaName);
     }
 
     /**
@@ -107,7 +112,7 @@ public class PostgreSqlDatabase extends Database {
     public Set<String> getTriggerNames(String schemaName) {
         Set<String> result = new HashSet<String>();
 
-        Set<String> triggerAndTableNames = getSQLHandler().getItemsAsStringSet("select trigger_name || ',' || event_object_table from information_schema.triggers where trigger_schema = '" + schemaName + "'", getDataSource());
+        Set<String> triggerAndTableNames = getSQLHandler().getItemsAsStringSet("select trigger_name || ',' || event_object_table from information_schema.triggers where trigger_schema = ?", getDataSource(), schemaName);
         for (String triggerAndTableName : triggerAndTableNames) {
             String[] parts = triggerAndTableName.split(",");
             String triggerName = quoted(parts[0]);
@@ -154,63 +159,99 @@ public class PostgreSqlDatabase extends Database {
      */
     @Override
     public Set<String> getTypeNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select object_name from information_schema.data_type_privileges where object_type = 'USER-DEFINED TYPE' and object_schema = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select object_name from information_schema.data_type_privileges where object_type = 'USER-DEFINED TYPE' and object_schema = ?", getDataSource(), schemaName);
     }
 
 
     /**
-     * Disables all referential constraints (e.g. foreign keys) on all table in the schema
+     * Drops all views, tables, sequences and types of the given schema, except for the given tables, with one drop
+     * statement per type of item. The schema itself is not dropped, so that the privileges on the schema are kept.
      *
-     * @param schemaName The schema, not null
+     * @param schemaName       The schema, not null
+     * @param tableNamesToKeep The names of the tables that should not be dropped, not null
+     * @return True
      */
     @Override
-    public void disableReferentialConstraints(String schemaName) {
-        Set<String> tableNames = getTableNames(schemaName);
-        for (String tableName : tableNames) {
-            disableReferentialConstraints(schemaName, tableName);
+    public boolean clearSchema(String schemaName, Set<String> tableNamesToKeep) {
+        // dropping the tables also drops their triggers and rules, items can already have been dropped by a cascade
+        dropItems("view", schemaName, getViewNames(schemaName), tableNamesToKeep);
+        dropItems("table", schemaName, getTableNames(schemaName), tableNamesToKeep);
+        dropItems("sequence", schemaName, getSequenceNames(schemaName), tableNamesToKeep);
+        dropItems("type", schemaName, getTypeNames(schemaName), tableNamesToKeep);
+        return true;
+    }
+
+    protected void dropItems(String itemType, String schemaName, Set<String> itemNames, Set<String> itemNamesToKeep) {
+        StringBuilder dropStatement = new StringBuilder();
+        for (String itemName : itemNames) {
+            if (itemNamesToKeep.contains(itemName)) {
+                continue;
+            }
+            dropStatement.append(dropStatement.length() == 0 ? "drop " + itemType + " if exists " : ", ");
+            dropStatement.append(qualified(schemaName, itemName));
+        }
+        if (dropStatement.length() > 0) {
+            getSQLHandler().execute(dropStatement.append(" cascade").toString(), getDataSource());
         }
     }
 
-    // todo refactor (see oracle)
+
+    /**
+     * Disables all referential constraints (e.g. foreign keys) on all table in the schema. The constraints of all tables
+     * are retrieved with a single query and dropped with one alter table statement per table.
+     *
+     * @param schemaName The schema, not null
+     */
+    @Override
+    public void disableReferentialConstraints(String schemaName) {
+        Map<String, List<String>> alterClausesPerTable = new TreeMap<String, List<String>>();
+        addAlterClauses("select table_name, 'drop constraint ' || quote_ident(constraint_name) from information_schema.table_constraints where constraint_type = 'FOREIGN KEY' and constraint_schema = ?", schemaName, alterClausesPerTable);
+        executeAlterTableStatements(schemaName, alterClausesPerTable);
+    }
 
     protected void disableReferentialConstraints(String schemaName, String tableName) {
         SQLHandler sqlHandler = getSQLHandler();
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select constraint_name from information_schema.table_constraints con where con.table_name = '" + tableName + "' and constraint_type = 'FOREIGN KEY' and constraint_schema = '" + schemaName + "'", getDataSource());
+        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select constraint_name from information_schema.table_constraints con where con.table_name = ? and constraint_type = 'FOREIGN KEY' and constraint_schema = ?", getDataSource(), tableName, schemaName);
         for (String constraintName : constraintNames) {
             sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " drop constraint " + quoted(constraintName), getDataSource());
         }
     }
 
     /**
-     * Disables all value constraints (e.g. not null) on all tables in the schema
+     * Disables all value constraints (e.g. not null) on all tables in the schema. The check and unique constraints and
+     * the not null columns of all tables are retrieved with two queries and dropped with one alter table statement
+     * per table.
      *
      * @param schemaName The schema, not null
      */
     @Override
     public void disableValueConstraints(String schemaName) {
-        Set<String> tableNames = getTableNames(schemaName);
-        for (String tableName : tableNames) {
-            disableValueConstraints(schemaName, tableName);
-        }
+        Map<String, List<String>> alterClausesPerTable = new TreeMap<String, List<String>>();
+        // disable all check and unique constraints
+        // The join wiht pg_constraints is used to filter out not null check-constraints that are implicitly created by Postgresql
+        addAlterClauses("select distinct con.table_name, 'drop constraint ' || quote_ident(con.constraint_name) from information_schema.table_constraints con, pg_constraint pg_con where pg_con.conname = con.constraint_name and constraint_type in ('CHECK', 'UNIQUE') and constraint_schema = ?", schemaName, alterClausesPerTable);
+        // disable all not null constraints, except for the not null constraints of primary key columns which cannot be removed
+        addAlterClauses("select col.table_name, 'alter column ' || quote_ident(col.column_name) || ' drop not null' from information_schema.columns col, information_schema.tables tab " +
+                "where tab.table_name = col.table_name and tab.table_schema = col.table_schema and tab.table_type = 'BASE TABLE' and col.is_nullable = 'NO' and col.table_schema = ? " +
+                "and not exists (select 1 from information_schema.table_constraints con, information_schema.key_column_usage key where con.table_name = col.table_name and con.table_schema = col.table_schema and key.table_name = con.table_name and key.table_schema = con.table_schema and key.constraint_name = con.constraint_name and con.constraint_type = 'PRIMARY KEY' and key.column_name = col.column_name)", schemaName, alterClausesPerTable);
+        executeAlterTableStatements(schemaName, alterClausesPerTable);
     }
 
-    // todo refactor (see oracle)
-
     protected void disableValueConstraints(String schemaName, String tableName) {
         SQLHandler sqlHandler = getSQLHandler();
 
         // disable all check and unique constraints
         // The join wiht pg_constraints is used to filter out not null check-constraints that are implicitly created by Postgresql
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select constraint_name from information_schema.table_constraints con, pg_constraint pg_con where pg_con.conname = con.constraint_name and con.table_name = '" + tableName + "' and constraint_type in ('CHECK', 'UNIQUE') and constraint_schema = '" + schemaName + "'", getDataSource());
+        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select constraint_name from information_schema.table_constraints con, pg_constraint pg_con where pg_con.conname = con.constraint_name and con.table_name = ? and constraint_type in ('CHECK', 'UNIQUE') and constraint_schema = ?", getDataSource(), tableName, schemaName);
         for (String constraintName : constraintNames) {
             sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " drop constraint " + quoted(constraintName), getDataSource());
         }
 
         // retrieve the name of the primary key, since we cannot remove the not-null constraint on this column
-        Set<String> primaryKeyColumnNames = sqlHandler.getItemsAsStringSet("select column_name from information_schema.table_constraints con, information_schema.key_column_usage key where con.table_name = '" + tableName + "' and con.table_schema = '" + schemaName + "' and key.table_name = con.table_name and key.table_schema = con.table_schema and key.constraint_name = con.constraint_name and con.constraint_type = 'PRIMARY KEY'", getDataSource());
+        Set<String> primaryKeyColumnNames = sqlHandler.getItemsAsStringSet("select column_name from information_schema.table_constraints con, information_schema.key_column_usage key where con.table_name = ? and con.table_schema = ? and key.table_name = con.table_name and key.table_schema = con.table_schema and key.constraint_name = con.constraint_name and con.constraint_type = 'PRIMARY KEY'", getDataSource(), tableName, schemaName);
 
         // disable all not null constraints
-        Set<String> notNullColumnNames = sqlHandler.getItemsAsStringSet("select column_name from information_schema.columns where is_nullable = 'NO' and table_name = '" + tableName + "' and table_schema = '" + schemaName + "'", getDataSource());
+        Set<String> notNullColumnNames = sqlHandler.getItemsAsStringSet("select column_name from information_schema.columns where is_nullable = 'NO' and table_name = ? and table_schema = ?", getDataSource(), tableName, schemaName);
         for (String notNullColumnName : notNullColumnNames) {
             if (primaryKeyColumnNames.contains(notNullColumnName)) {
                 // Do not remove PK constraints
@@ -220,6 +261,73 @@ public class PostgreSqlDatabase extends Database {
         }
     }
 
+    /**
+     * Disables all referential constraints (e.g. foreign keys) on the given tables in the schema
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The tables, not null
+     */
+    @Override
+    public void disableReferentialConstraints(String schemaName, Set<String> tableNames) {
+        for (String tableName : tableNames) {
+            disableReferentialConstraints(schemaName, tableName);
+        }
+    }
+
+    /**
+     * Disables all value constraints (e.g. not null) on the given tables in the schema
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The tables, not null
+     */
+    @Override
+    public void disableValueConstraints(String schemaName, Set<String> tableNames) {
+        for (String tableName : tableNames) {
+            disableValueConstraints(schemaName, tableName);
+        }
+    }
+
+    /**
+     * Executes the given query, which returns a table name and an alter table clause for that table, and adds the
+     * clauses to the clauses of the table.
+     *
+     * @param sql                  The query with a ? for the schema name, not null
+     * @param schemaName           The schema, not null
+     * @param alterClausesPerTable The clauses per table name, not null
+     */
+    protected void addAlterClauses(String sql, String schemaName, Map<String, List<String>> alterClausesPerTable) {
+        for (List<String> record : getSQLHandler().getRecordsAsStrings(sql, getDataSource(), schemaName)) {
+            String tableName = record.get(0);
+            List<String> alterClauses = alterClausesPerTable.get(tableName);
+            if (alterClauses == null) {
+                alterClauses = new ArrayList<String>();
+                alterClausesPerTable.put(tableName, alterClauses);
+            }
+            alterClauses.add(record.get(1));
+        }
+    }
+
+    /**
+     * Executes one alter table statement per table containing all clauses for that table. The statements are executed
+     * using the SQL handler, so that they run on the same connection as the other statements of the update.
+     *
+     * @param schemaName           The schema, not null
+     * @param alterClausesPerTable The clauses per table name, not null
+     */
+    protected void executeAlterTableStatements(String schemaName, Map<String, List<String>> alterClausesPerTable) {
+        SQLHandler sqlHandler = getSQLHandler();
+        for (Map.Entry<String, List<String>> entry : alterClausesPerTable.entrySet()) {
+            StringBuilder alterTableStatement = new StringBuilder("alter table ");
+            alterTableStatement.append(qualified(schemaName, entry.getKey()));
+            String separator = " ";
+            for (String alterClause : entry.getValue()) {
+                alterTableStatement.append(separator).append(alterClause);
+                separator = ", ";
+            }
+            sqlHandler.execute(alterTableStatement.toString(), getDataSource());
+        }
+    }
+
 
     /**
      * Returns the value of the sequence with the given name. <p/> Note: this can have the
@@ -245,6 +353,24 @@ public class PostgreSqlDatabase extends Database {
     }
 
 
+    /**
+     * Gets the dependencies between the items of the given schema: the tables and views that are used by views, the
+     * foreign keys between tables and the tables on which triggers are defined.
+     *
+     * @param schemaName The schema, not null
+     * @return The dependencies, not null
+     */
+    @Override
+    public List<DbItemDependency> getDependencies(String schemaName) {
+        return retrieveDependencies("select 'VIEW', usg.view_name, case tab.table_type when 'VIEW' then 'VIEW' else 'TABLE' end, usg.table_name from information_schema.view_table_usage usg, information_schema.tables tab " +
+                "where usg.view_schema = ? and usg.table_schema = usg.view_schema and tab.table_schema = usg.table_schema and tab.table_name = usg.table_name " +
+                "union all select 'TABLE', con.table_name, 'TABLE', ref.table_name from information_schema.table_constraints con, information_schema.constraint_table_usage ref " +
+                "where con.constraint_type = 'FOREIGN KEY' and con.constraint_schema = ? and ref.constraint_schema = con.constraint_schema and ref.constraint_name = con.constraint_name and ref.table_schema = con.table_schema " +
+                "union all select distinct 'TRIGGER', trigger_name, 'TABLE', event_object_table from information_schema.triggers " +
+                "where trigger_schema = ? and event_object_schema = trigger_schema", schemaName);
+    }
+
+
     /**
      * Sets the current schema of the database. If a current schema is set, it does not need to be specified
      * explicitly in the scripts.
@@ -285,6 +411,16 @@ public class PostgreSqlDatabase extends Database {
         return true;
     }
 
+    /**
+     * Dependencies are supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsDependencies() {
+        return true;
+    }
+
     /**
      * Cascade are supported.
      *
@@ -304,4 +440,47 @@ public class PostgreSqlDatabase extends Database {
     public boolean supportsSetDatabaseDefaultSchema() {
         return true;
     }
+
+    /**
+     * Truncating tables is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsTruncate() {
+        return true;
+    }
+
+    /**
+     * Advisory locks are supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsAdvisoryLocks() {
+        return true;
+    }
+
+
+    /**
+     * Uses pg_try_advisory_lock. The lock key is derived from the lock name.
+     *
+     * @param lockName The name of the lock, not null
+     * @return The query, not null
+     */
+    @Override
+    public String getTryAdvisoryLockStatement(String lockName) {
+        return "select pg_try_advisory_lock(" + lockName.hashCode() + ")";
+    }
+
+    /**
+     * Uses pg_advisory_unlock.
+     *
+     * @param lockName The name of the lock, not null
+     * @return The query, not null
+     */
+    @Override
+    public String getReleaseAdvisoryLockStatement(String lockName) {
+        return "select pg_advisory_unlock(" + lockName.hashCode() + ")";
+    }
 }
@@ -0,0 +1,501 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.datasource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.database.DatabaseException;
+import org.dbmaintain.database.DatabaseInfo;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import static java.lang.System.currentTimeMillis;
+import static org.apache.commons.dbutils.DbUtils.closeQuietly;
+import static org.apache.commons.lang.StringUtils.isBlank;
+
+/**
+ * Factory class for a DataSource with a simple built-in connection pool. Physical connections are created the same
+ * way as for the {@link SimpleDataSource}, but closing a connection returns it to the pool instead of closing it, so
+ * that it can be reused by all parts of dbmaintain that need a connection.
+ * <p/>
+ * The pool holds at most a maximum nr of connections. If all connections are in use, getConnection() waits until
+ * one is returned. Connections that were idle for longer than the max idle time are closed. Before a connection is
+ * handed out again, it is validated, using the validation query if one is configured. When a connection is returned,
+ * its session state (auto-commit, transaction isolation, catalog and schema) is restored to the state of a new
+ * connection.
+ * <p/>
+ * Only the parameterless getConnection() method is implemented. The data source also implements {@link Closeable}:
+ * closing it stops the evictor thread and closes all physical connections. Connections that are still in use are
+ * closed when they are returned.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class PooledDataSource {
+
+    /* The logger instance for this class */
+    private static final Log logger = LogFactory.getLog(PooledDataSource.class);
+
+
+    /**
+     * Static factory that returns a pooled data source providing access to the database using the driver with the
+     * given driver class name, the given connection url, user name and password
+     *
+     * @param databaseInfo    The database connection parameters, not null
+     * @param maxSize         The max nr of physical connections, at least 1
+     * @param maxIdleTime     The time in ms after which an unused connection is closed
+     * @param maxWaitTime     The max time in ms to wait for a free connection
+     * @param validationQuery The query to check whether a connection can still be used, null to only check if it is closed
+     * @return a DataSource that gives access to the database
+     */
+    public static DataSource createDataSource(DatabaseInfo databaseInfo, int maxSize, long maxIdleTime, long maxWaitTime, String validationQuery) {
+        DataSource physicalDataSource = SimpleDataSource.createDataSource(databaseInfo);
+        logger.info("Creating connection pool for database " + databaseInfo.getName() + ". Max size: " + maxSize);
+        ConnectionPool connectionPool = new ConnectionPool(physicalDataSource, maxSize, maxIdleTime, maxWaitTime, validationQuery);
+        return (DataSource) Proxy.newProxyInstance(PooledDataSource.class.getClassLoader(), new Class<?>[]{DataSource.class, Closeable.class}, new PooledDataSourceInvocationHandler(connectionPool));
+    }
+
+
+    /**
+     * Invocation handler for a dynamic proxy that implements the javax.sql.DataSource and java.io.Closeable interfaces.
+     * The getConnection method takes a connection from the pool, the close method closes the pool.
+     */
+    protected static class PooledDataSourceInvocationHandler implements InvocationHandler {
+
+        private ConnectionPool connectionPool;
+
+
+        protected PooledDataSourceInvocationHandler(ConnectionPool connectionPool) {
+            this.connectionPool = connectionPool;
+        }
+
+        public Object invoke(Object dataSourceProxy, Method method, Object[] args) throws Throwable {
+            if (isEqualsMethod(method)) {
+                return dataSourceProxy == args[0];
+            } else if (isHashCodeMethod(method)) {
+                return hashCode();
+            } else if ("getConnection".equals(method.getName()) && method.getParameterTypes().length == 0) {
+                return connectionPool.getConnection();
+            } else if ("close".equals(method.getName()) && method.getParameterTypes().length == 0) {
+                connectionPool.close();
+            }
+            return null;
+        }
+    }
+
+
+    /**
+     * The pool of physical connections. Idle connections are kept in a list ordered by the time they were
+     * returned: the most recently used connection is handed out first, the oldest ones are closed first.
+     */
+    protected static class ConnectionPool {
+
+        private DataSource physicalDataSource;
+        private int maxSize;
+        private long maxIdleTime;
+        private long maxWaitTime;
+        private String validationQuery;
+
+        /* The connections that are not in use */
+        private LinkedList<IdleConnection> idleConnections = new LinkedList<IdleConnection>();
+        /* The nr of physical connections, idle or in use */
+        private int nrOfConnections;
+        /* The session state of a new physical connection, null if no connection was created yet */
+        private SessionState initialSessionState;
+        /* The timer of the evictor thread that closes idle connections */
+        private Timer evictorTimer;
+        /* True if the pool was closed */
+        private boolean closed;
+
+
+        protected ConnectionPool(DataSource physicalDataSource, int maxSize, long maxIdleTime, long maxWaitTime, String validationQuery) {
+            this.physicalDataSource = physicalDataSource;
+            this.maxSize = maxSize;
+            this.maxIdleTime = maxIdleTime;
+            this.maxWaitTime = maxWaitTime;
+            this.validationQuery = validationQuery;
+            startIdleConnectionEvictor();
+        }
+
+
+        /**
+         * @return A connection of the pool, closing it returns it to the pool, not null
+         */
+        public Connection getConnection() throws SQLException {
+            while (true) {
+                Connection physicalConnection = takeIdleConnection();
+                if (physicalConnection == null) {
+                    // a new connection may be created
+                    physicalConnection = createPhysicalConnection();
+                } else if (!isValid(physicalConnection)) {
+                    discardConnection(physicalConnection);
+                    continue;
+                }
+                return (Connection) Proxy.newProxyInstance(PooledDataSource.class.getClassLoader(), new Class<?>[]{Connection.class}, new PooledConnectionInvocationHandler(physicalConnection, this));
+            }
+        }
+
+        /**
+         * Takes the most recently used idle connection. If there is none and the max size is not yet reached, null is
+         * returned and the caller should create a new connection. Otherwise, this waits until a connection is returned.
+         *
+         * @return The idle connection, null if a new connection should be created
+         */
+        protected synchronized Connection takeIdleConnection() {
+            if (closed) {
+                throw new DatabaseException("Unable to get a connection from the pool: the pool is closed.");
+            }
+            long waitUntil = currentTimeMillis() + maxWaitTime;
+            while (idleConnections.isEmpty() && nrOfConnections >= maxSize) {
+                long waitTime = waitUntil - currentTimeMillis();
+                if (waitTime <= 0) {
+                    throw new DatabaseException("Unable to get a connection from the pool: all " + maxSize + " connections are in use. Waited " + maxWaitTime + " ms.");
+                }
+                try {
+                    wait(waitTime);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new DatabaseException("Interrupted while waiting for a connection from the pool.", e);
+                }
+            }
+            if (!idleConnections.isEmpty()) {
+                return idleConnections.removeLast().getConnection();
+            }
+            nrOfConnections++;
+            return null;
+        }
+
+        protected Connection createPhysicalConnection() throws SQLException {
+            try {
+                Connection physicalConnection = physicalDataSource.getConnection();
+                try {
+                    initializeSessionState(physicalConnection);
+                } catch (SQLException e) {
+                    closeQuietly(physicalConnection);
+                    throw e;
+                }
+                return physicalConnection;
+            } catch (RuntimeException e) {
+                connectionDiscarded();
+                throw e;
+            } catch (SQLException e) {
+                connectionDiscarded();
+                throw e;
+            }
+        }
+
+        /**
+         * Stores the session state of the first physical connection, so that it can be restored on the connections
+         * that are returned.
+         *
+         * @param physicalConnection A new connection, not null
+         */
+        protected synchronized void initializeSessionState(Connection physicalConnection) throws SQLException {
+            if (initialSessionState == null) {
+                initialSessionState = new SessionState(physicalConnection);
+            }
+        }
+
+        /**
+         * Returns the connection to the pool. Pending changes are rolled back and the session state of a new
+         * connection is restored, so that the next user gets a clean connection. If the pool was closed, the
+         * connection is closed.
+         *
+         * @param physicalConnection The connection, not null
+         */
+        protected void returnConnection(Connection physicalConnection) {
+            try {
+                if (physicalConnection.isClosed()) {
+                    connectionDiscarded();
+                    return;
+                }
+                if (!physicalConnection.getAutoCommit()) {
+                    physicalConnection.rollback();
+                }
+                initialSessionState.restore(physicalConnection);
+            } catch (Exception e) {
+                logger.debug("Unable to reset pooled connection, closing it.", e);
+                discardConnection(physicalConnection);
+                return;
+            }
+            synchronized (this) {
+                if (!closed) {
+                    idleConnections.addLast(new IdleConnection(physicalConnection, currentTimeMillis()));
+                    notifyAll();
+                    return;
+                }
+            }
+            discardConnection(physicalConnection);
+        }
+
+        /**
+         * Closes the pool: the evictor thread is stopped and all idle connections are closed. Connections that are
+         * still in use are closed when they are returned.
+         */
+        protected void close() {
+            List<Connection> connectionsToClose = new ArrayList<Connection>();
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                evictorTimer.cancel();
+                for (IdleConnection idleConnection : idleConnections) {
+                    connectionsToClose.add(idleConnection.getConnection());
+                }
+                idleConnections.clear();
+                notifyAll();
+            }
+            for (Connection connection : connectionsToClose) {
+                discardConnection(connection);
+            }
+        }
+
+        protected boolean isValid(Connection physicalConnection) {
+            Statement statement = null;
+            try {
+                if (physicalConnection.isClosed()) {
+                    return false;
+                }
+                if (isBlank(validationQuery)) {
+                    return true;
+                }
+                statement = physicalConnection.createStatement();
+                statement.execute(validationQuery);
+                return true;
+
+            } catch (SQLException e) {
+                logger.debug("Pooled connection is no longer valid, closing it.", e);
+                return false;
+            } finally {
+                closeQuietly(statement);
+            }
+        }
+
+        protected void discardConnection(Connection physicalConnection) {
+            closeQuietly(physicalConnection);
+            connectionDiscarded();
+        }
+
+        protected synchronized void connectionDiscarded() {
+            nrOfConnections--;
+            notifyAll();
+        }
+
+        /**
+         * Closes all connections that have been idle for longer than the max idle time.
+         */
+        protected void evictIdleConnections() {
+            List<Connection> connectionsToClose = new ArrayList<Connection>();
+            synchronized (this) {
+                long evictBefore = currentTimeMillis() - maxIdleTime;
+                Iterator<IdleConnection> iterator = idleConnections.iterator();
+                while (iterator.hasNext()) {
+                    IdleConnection idleConnection = iterator.next();
+                    if (idleConnection.getIdleSince() > evictBefore) {
+                        // the list is ordered, all following connections are more recent
+                        break;
+                    }
+                    iterator.remove();
+                    connectionsToClose.add(idleConnection.getConnection());
+                }
+            }
+            for (Connection connection : connectionsToClose) {
+                discardConnection(connection);
+            }
+        }
+
+        protected void startIdleConnectionEvictor() {
+            evictorTimer = new Timer("dbmaintain-connection-pool-evictor", true);
+            long period = Math.max(maxIdleTime / 2, 1000);
+            evictorTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    evictIdleConnections();
+                }
+            }, period, period);
+        }
+    }
+
+
+    /**
+     * A connection that is not in use, with the time it was returned to the pool
+     */
+    protected static class IdleConnection {
+
+        private Connection connection;
+        private long idleSince;
+
+        public IdleConnection(Connection connection, long idleSince) {
+            this.connection = connection;
+            this.idleSince = idleSince;
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        public long getIdleSince() {
+            return idleSince;
+        }
+    }
+
+
+    /**
+     * The session state of a connection that can be changed by its users. The current schema can only be restored if
+     * the driver supports the JDBC 4.1 getSchema and setSchema methods.
+     */
+    protected static class SessionState {
+
+        private int transactionIsolation;
+        private String catalog;
+        private String schema;
+
+
+        public SessionState(Connection connection) throws SQLException {
+            this.transactionIsolation = connection.getTransactionIsolation();
+            this.catalog = connection.getCatalog();
+            this.schema = (String) invokeSchemaMethod(connection, "getSchema");
+        }
+
+        /**
+         * Restores this state on the given connection. Auto-commit is switched on again.
+         *
+         * @param connection The connection, not null
+         */
+        public void restore(Connection connection) throws SQLException {
+            if (!connection.getAutoCommit()) {
+                connection.setAutoCommit(true);
+            }
+            if (connection.getTransactionIsolation() != transactionIsolation) {
+                connection.setTransactionIsolation(transactionIsolation);
+            }
+            if (catalog != null && !catalog.equals(connection.getCatalog())) {
+                connection.setCatalog(catalog);
+            }
+            if (schema != null && !schema.equals(invokeSchemaMethod(connection, "getSchema"))) {
+                invokeSchemaMethod(connection, "setSchema", schema);
+            }
+        }
+
+        /**
+         * @param connection The connection, not null
+         * @param methodName The name of the schema method
+         * @param args       The arguments of the method
+         * @return The result of the method, null if the method is not supported by the connection
+         */
+        protected static Object invokeSchemaMethod(Connection connection, String methodName, String... args) throws SQLException {
+            try {
+                Class<?>[] parameterTypes = args.length == 0 ? new Class<?>[0] : new Class<?>[]{String.class};
+                return Connection.class.getMethod(methodName, parameterTypes).invoke(connection, (Object[]) args);
+            } catch (InvocationTargetException e) {
+                if (e.getTargetException() instanceof SQLException) {
+                    throw (SQLException) e.getTargetException();
+                }
+                // e.g. an AbstractMethodError of a driver that was compiled against an older JDBC version
+                return null;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+    }
+
+
+    /**
+     * Invocation handler for the connections that are handed out by the pool. All calls are delegated to the physical
+     * connection, except for close, which returns the connection to the pool. After closing, the connection can no
+     * longer be used.
+     */
+    protected static class PooledConnectionInvocationHandler implements InvocationHandler {
+
+        private Connection physicalConnection;
+        private ConnectionPool connectionPool;
+        private boolean closed;
+
+
+        protected PooledConnectionInvocationHandler(Connection physicalConnection, ConnectionPool connectionPool) {
+            this.physicalConnection = physicalConnection;
+            this.connectionPool = connectionPool;
+        }
+
+        public Object invoke(Object connectionProxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if (isEqualsMethod(method)) {
+                return connectionProxy == args[0];
+            } else if (isHashCodeMethod(method)) {
+                return hashCode();
+            } else if ("close".equals(methodName) && method.getParameterTypes().length == 0) {
+                close();
+                return null;
+            } else if ("isClosed".equals(methodName) && method.getParameterTypes().length == 0) {
+                return isClosed() || physicalConnection.isClosed();
+            }
+            if (isClosed()) {
+                throw new SQLException("Connection is closed.");
+            }
+            try {
+                return method.invoke(physicalConnection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+
+        protected void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            connectionPool.returnConnection(physicalConnection);
+        }
+
+        protected synchronized boolean isClosed() {
+            return closed;
+        }
+    }
+
+
+    /**
+     * @param method The invoked method
+     * @return Whether the given method is the equals method
+     */
+    protected static boolean isEqualsMethod(Method method) {
+        return "equals".equals(method.getName()) && method.getParameterTypes().length == 1 && Object.class.equals(method.getParameterTypes()[0]);
+    }
+
+    /**
+     * @param method The invoked method
+     * @return Whether the given method is the hashCode method
+     */
+    protected static boolean isHashCodeMethod(Method method) {
+        return "hashCode".equals(method.getName()) && method.getParameterTypes().length == 0;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.datasource.impl;
+
+import org.dbmaintain.config.PropertyUtils;
+import org.dbmaintain.database.DatabaseInfo;
+import org.dbmaintain.datasource.DataSourceFactory;
+import org.dbmaintain.datasource.PooledDataSource;
+
+import javax.sql.DataSource;
+import java.util.Properties;
+
+import static org.dbmaintain.config.DbMaintainProperties.*;
+
+/**
+ * Factory for data sources that keep a pool of connections, so that physical connections are reused instead of
+ * connecting to the database again every time a connection is needed.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class PooledDataSourceFactory implements DataSourceFactory {
+
+    /* The max nr of physical connections per database */
+    protected int maxSize;
+    /* The time in ms after which an unused connection is closed */
+    protected long maxIdleTime;
+    /* The max time in ms to wait for a connection when all connections are in use */
+    protected long maxWaitTime;
+    /* The query to check whether a connection can still be used, null to only check if it is closed */
+    protected String validationQuery;
+
+
+    public PooledDataSourceFactory(Properties configuration) {
+        this(PropertyUtils.getInt(PROPERTY_POOLED_DATA_SOURCE_MAX_SIZE, configuration),
+                PropertyUtils.getLong(PROPERTY_POOLED_DATA_SOURCE_MAX_IDLE_TIME, configuration),
+                PropertyUtils.getLong(PROPERTY_POOLED_DATA_SOURCE_MAX_WAIT_TIME, configuration),
+                PropertyUtils.getString(PROPERTY_POOLED_DATA_SOURCE_VALIDATION_QUERY, null, configuration));
+    }
+
+    public PooledDataSourceFactory(int maxSize, long maxIdleTime, long maxWaitTime, String validationQuery) {
+        this.maxSize = maxSize;
+        this.maxIdleTime = maxIdleTime;
+        this.maxWaitTime = maxWaitTime;
+        this.validationQuery = validationQuery;
+    }
+
+
+    public DataSource createDataSource(DatabaseInfo databaseInfo) {
+        databaseInfo.validateFull();
+        return PooledDataSource.createDataSource(databaseInfo, maxSize, maxIdleTime, maxWaitTime, validationQuery);
+    }
+
+}
@@ -20,6 +20,7 @@ import org.dbmaintain.datasource.DataSourceFactory;
 import org.dbmaintain.datasource.SimpleDataSource;
 
 import javax.sql.DataSource;
+import java.util.Properties;
 
 /**
  * @author Tim Ducheyne
@@ -28,6 +29,17 @@ import javax.sql.DataSource;
 public class SimpleDataSourceFactory implements DataSourceFactory {
 
 
+    public SimpleDataSourceFactory() {
+    }
+
+    /**
+     * Constructor used when the factory is created using the configured class name
+     *
+     * @param configuration The configuration, not used
+     */
+    public SimpleDataSourceFactory(Properties configuration) {
+    }
+
     public DataSource createDataSource(DatabaseInfo databaseInfo) {
         databaseInfo.validateFull();
         return SimpleDataSource.createDataSource(databaseInfo);
@@ -29,6 +29,8 @@
  */
 package org.dbmaintain.launch.task;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.MainFactory;
 import org.dbmaintain.config.DbMaintainConfigurationLoader;
 
@@ -45,6 +47,9 @@ import java.util.Properties;
  */
 public abstract class DbMaintainTask {
 
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(DbMaintainTask.class);
+
     /* A file contain custom configuration, null if there is no custom config */
     private File configFile;
     /* Environment properties such as ANT or MVN properties (not the system properties, these will be added automatically) */
@@ -60,7 +65,30 @@ public abstract class DbMaintainTask {
         TaskConfiguration taskConfiguration = getTaskConfiguration(configFile);
         taskConfiguration.addAllConfiguration(environmentProperties);
         MainFactory mainFactory = createMainFactory(taskConfiguration);
-        return doExecute(mainFactory);
+        try {
+            return doExecute(mainFactory);
+        } finally {
+            try {
+                writeMetrics(mainFactory);
+            } finally {
+                mainFactory.close();
+            }
+        }
+    }
+
+
+    /**
+     * Writes out the recorded metrics. The metrics are only informative: if they cannot be written, a warning is
+     * logged instead of hiding the outcome of the task.
+     *
+     * @param mainFactory The factory of the task, not null
+     */
+    protected void writeMetrics(MainFactory mainFactory) {
+        try {
+            mainFactory.getMetricsRecorder().writeMetrics();
+        } catch (RuntimeException e) {
+            logger.warn("Unable to write metrics: " + e.getMessage(), e);
+        }
     }
 
 
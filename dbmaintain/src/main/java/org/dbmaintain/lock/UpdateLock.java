@@ -0,0 +1,52 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.lock;
+
+import org.dbmaintain.script.Script;
+
+import java.util.SortedSet;
+
+/**
+ * Makes sure that only one process at a time updates the database, e.g. when the database is updated at the startup of
+ * each node of a cluster. The other processes wait until the update is finished, or skip the update immediately when
+ * the database was already updated for the same scripts.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public interface UpdateLock {
+
+
+    /**
+     * Acquires the lock, waiting while another process holds it. No lock is acquired if the database was already
+     * updated successfully for the given scripts and the executed scripts did not change since then.
+     *
+     * @param scripts All scripts, not null
+     * @return True if the lock was acquired, false if the update can be skipped
+     */
+    boolean acquire(SortedSet<Script> scripts);
+
+
+    /**
+     * Releases the lock. If the update was successful, the state of the database is remembered for the given scripts,
+     * so that other processes with the same scripts can skip the update.
+     *
+     * @param scripts    All scripts, not null
+     * @param successful True if the database was updated successfully
+     */
+    void release(SortedSet<Script> scripts, boolean successful);
+
+}
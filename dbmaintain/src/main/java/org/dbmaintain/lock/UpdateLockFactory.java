@@ -0,0 +1,48 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.lock;
+
+import org.dbmaintain.config.FactoryWithDatabase;
+import org.dbmaintain.config.PropertyUtils;
+import org.dbmaintain.lock.impl.DefaultUpdateLock;
+import org.dbmaintain.lock.impl.NoOpUpdateLock;
+
+import static org.dbmaintain.config.DbMaintainProperties.*;
+import static org.dbmaintain.config.PropertyUtils.getString;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class UpdateLockFactory extends FactoryWithDatabase<UpdateLock> {
+
+
+    public UpdateLock createInstance() {
+        boolean lockEnabled = PropertyUtils.getBoolean(PROPERTY_UPDATE_LOCK_ENABLED, getConfiguration());
+        if (!lockEnabled) {
+            return new NoOpUpdateLock();
+        }
+        boolean autoCreateLockTable = PropertyUtils.getBoolean(PROPERTY_AUTO_CREATE_DBMAINTAIN_SCRIPTS_TABLE, getConfiguration());
+        String lockTableName = getString(PROPERTY_UPDATE_LOCK_TABLE_NAME, getConfiguration());
+        String executedScriptsTableName = getString(PROPERTY_EXECUTED_SCRIPTS_TABLE_NAME, getConfiguration());
+        String executedAtColumnName = getString(PROPERTY_EXECUTED_AT_COLUMN_NAME, getConfiguration());
+        long leaseTimeoutInSeconds = PropertyUtils.getLong(PROPERTY_UPDATE_LOCK_LEASE_TIMEOUT_IN_SECONDS, getConfiguration());
+        long maxWaitTimeInSeconds = PropertyUtils.getLong(PROPERTY_UPDATE_LOCK_MAX_WAIT_TIME_IN_SECONDS, getConfiguration());
+        boolean useAdvisoryLocks = PropertyUtils.getBoolean(PROPERTY_UPDATE_LOCK_USE_ADVISORY_LOCKS, getConfiguration());
+        return new DefaultUpdateLock(getDatabases().getDefaultDatabase(), getSqlHandler(), autoCreateLockTable, lockTableName,
+                executedScriptsTableName, executedAtColumnName, leaseTimeoutInSeconds * 1000, maxWaitTimeInSeconds * 1000, useAdvisoryLocks);
+    }
+}
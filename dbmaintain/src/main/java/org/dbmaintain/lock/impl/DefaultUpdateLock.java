@@ -0,0 +1,445 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.lock.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.lock.UpdateLock;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.util.DbMaintainException;
+
+import java.net.InetAddress;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.UUID;
+
+import static java.lang.System.currentTimeMillis;
+import static org.apache.commons.dbutils.DbUtils.closeQuietly;
+
+/**
+ * Update lock that uses a lock record in a separate table in the default database. The record holds the process that
+ * owns the lock and the time at which the lock was acquired or last renewed. While the lock is held, this time is
+ * renewed regularly. If the owner does not renew it within the lease timeout, e.g. because the process was killed, the
+ * lock is considered stale and can be reclaimed by another process. The lease timeout should therefore be a lot larger
+ * than the possible difference between the clocks of the nodes.
+ * <p/>
+ * If the database supports advisory locks and they are enabled, a session-level advisory lock is used instead of the
+ * lease. It is held on a separate connection and is released by the database when that connection is lost. The lock
+ * record then only shows the owner of the lock.
+ * <p/>
+ * When the lock is released after a successful update, a fingerprint is stored in the lock record: a hash of the nr of
+ * executed scripts, the last execution time and the names and modification dates of the scripts. Other processes that
+ * find the same fingerprint skip the update without waiting and without calculating any checksums. All processes should
+ * use the same lock configuration.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultUpdateLock implements UpdateLock {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(DefaultUpdateLock.class);
+
+    /* The name of the lock record and the advisory lock */
+    protected static final String LOCK_NAME = "dbmaintain_update";
+    /* The initial and maximum time to wait before trying to acquire the lock again */
+    protected static final long INITIAL_BACKOFF_IN_MILLIS = 250;
+    protected static final long MAX_BACKOFF_IN_MILLIS = 10000;
+    /* The size of the text columns of the lock table */
+    protected static final int COLUMN_SIZE = 100;
+
+    /* The default database, that contains the lock table, not null */
+    protected Database defaultDatabase;
+    /* The sql handler that will execute the statements, not null */
+    protected SQLHandler sqlHandler;
+    /* True if the lock table should be created automatically if it does not exist yet */
+    protected boolean autoCreateLockTable;
+    /* The name of the lock table, not null */
+    protected String lockTableName;
+    /* The names of the executed scripts table and of its executed at column, used for the fingerprint, not null */
+    protected String executedScriptsTableName;
+    protected String executedAtColumnName;
+    /* The time after which a lock that is not renewed can be reclaimed */
+    protected long leaseTimeoutInMillis;
+    /* The maximum time to wait for the lock */
+    protected long maxWaitTimeInMillis;
+    /* True if an advisory lock should be used if the database supports it */
+    protected boolean useAdvisoryLocks;
+
+    /* Identifies this process in the lock record */
+    protected String owner;
+    /* True if the lock table was checked and contains the lock record */
+    protected boolean validLockTable = false;
+    /* The connection that holds the advisory lock, null if no advisory lock is held */
+    protected Connection advisoryLockConnection;
+    /* Renews the lease while the lock is held, null if no lease is held */
+    protected Timer leaseRenewalTimer;
+    /* Spreads the retries of the waiting processes */
+    protected Random random = new Random();
+
+
+    /**
+     * @param defaultDatabase          The default database, that contains the lock table, not null
+     * @param sqlHandler               The sql handler that will execute the statements, not null
+     * @param autoCreateLockTable      True if the lock table should be created automatically if it does not exist yet
+     * @param lockTableName            The name of the lock table, not null
+     * @param executedScriptsTableName The name of the executed scripts table, not null
+     * @param executedAtColumnName     The name of the column in which the script execution timestamp is stored, not null
+     * @param leaseTimeoutInMillis     The time after which a lock that is not renewed can be reclaimed
+     * @param maxWaitTimeInMillis      The maximum time to wait for the lock, an exception is raised afterwards
+     * @param useAdvisoryLocks         True if an advisory lock should be used if the database supports it
+     */
+    public DefaultUpdateLock(Database defaultDatabase, SQLHandler sqlHandler, boolean autoCreateLockTable, String lockTableName,
+                             String executedScriptsTableName, String executedAtColumnName, long leaseTimeoutInMillis, long maxWaitTimeInMillis, boolean useAdvisoryLocks) {
+        this.defaultDatabase = defaultDatabase;
+        this.sqlHandler = sqlHandler;
+        this.autoCreateLockTable = autoCreateLockTable;
+        this.lockTableName = defaultDatabase.toCorrectCaseIdentifier(lockTableName);
+        this.executedScriptsTableName = defaultDatabase.toCorrectCaseIdentifier(executedScriptsTableName);
+        this.executedAtColumnName = defaultDatabase.toCorrectCaseIdentifier(executedAtColumnName);
+        this.leaseTimeoutInMillis = leaseTimeoutInMillis;
+        this.maxWaitTimeInMillis = maxWaitTimeInMillis;
+        this.useAdvisoryLocks = useAdvisoryLocks && defaultDatabase.supportsAdvisoryLocks();
+        this.owner = createOwner();
+    }
+
+
+    /**
+     * Acquires the lock, waiting with an increasing backoff while another process holds it. No lock is acquired if the
+     * stored fingerprint shows that the database was already updated for the given scripts.
+     *
+     * @param scripts All scripts, not null
+     * @return True if the lock was acquired, false if the update can be skipped
+     */
+    public boolean acquire(SortedSet<Script> scripts) {
+        checkLockTable();
+
+        long startTime = currentTimeMillis();
+        long backoffInMillis = INITIAL_BACKOFF_IN_MILLIS;
+        while (true) {
+            if (isDatabaseUpToDate(scripts)) {
+                logger.info("The database was already updated for these scripts by another process. The update is skipped.");
+                return false;
+            }
+            if (tryAcquire()) {
+                logger.info("Acquired update lock " + LOCK_NAME + " as " + owner + ".");
+                // other processes could have changed the database while waiting for the lock
+                defaultDatabase.invalidateCatalogCache();
+                return true;
+            }
+            if (currentTimeMillis() - startTime > maxWaitTimeInMillis) {
+                throw new DbMaintainException("Unable to acquire update lock " + LOCK_NAME + " within " + (maxWaitTimeInMillis / 1000) + " seconds. " +
+                        "The lock is held by " + getLockRecordValue("locked_by") + ".\nIf this process no longer exists, the lock can be released by executing following statement:\n" +
+                        getReleaseStatement(null, false));
+            }
+            logger.info("Update lock " + LOCK_NAME + " is held by " + getLockRecordValue("locked_by") + ". Waiting " + backoffInMillis + " ms before trying again.");
+            sleep(backoffInMillis + random.nextInt((int) (backoffInMillis / 2) + 1));
+            backoffInMillis = Math.min(backoffInMillis * 2, MAX_BACKOFF_IN_MILLIS);
+        }
+    }
+
+
+    /**
+     * Releases the lock. If the update was successful, the fingerprint of the database and scripts is stored.
+     *
+     * @param scripts    All scripts, not null
+     * @param successful True if the database was updated successfully
+     */
+    public void release(SortedSet<Script> scripts, boolean successful) {
+        stopLeaseRenewal();
+        try {
+            String fingerprint = successful ? getFingerprint(scripts) : null;
+            sqlHandler.executeUpdateAndCommit(getReleaseStatement(fingerprint, !useAdvisoryLocks), defaultDatabase.getDataSource());
+            logger.info("Released update lock " + LOCK_NAME + ".");
+        } finally {
+            releaseAdvisoryLock();
+        }
+    }
+
+
+    /**
+     * @return True if the lock was acquired
+     */
+    protected boolean tryAcquire() {
+        long now = currentTimeMillis();
+        if (useAdvisoryLocks) {
+            if (!tryAcquireAdvisoryLock()) {
+                return false;
+            }
+            sqlHandler.executeUpdateAndCommit("update " + getQualifiedLockTableName() + " set " + getColumnName("locked_by") + " = '" + owner + "', " +
+                    getColumnName("locked_at") + " = " + now + ", " + getColumnName("fingerprint") + " = null where " + getLockRecordCondition(), defaultDatabase.getDataSource());
+            return true;
+        }
+        // the lock is free or the lease of the owner expired
+        int nrOfUpdates = sqlHandler.executeUpdateAndCommit("update " + getQualifiedLockTableName() + " set " + getColumnName("locked_by") + " = '" + owner + "', " +
+                getColumnName("locked_at") + " = " + now + ", " + getColumnName("fingerprint") + " = null where " + getLockRecordCondition() +
+                " and (" + getColumnName("locked_by") + " is null or " + getColumnName("locked_at") + " < " + (now - leaseTimeoutInMillis) + ")", defaultDatabase.getDataSource());
+        if (nrOfUpdates != 1) {
+            return false;
+        }
+        startLeaseRenewal();
+        return true;
+    }
+
+    protected boolean tryAcquireAdvisoryLock() {
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+            if (advisoryLockConnection == null) {
+                advisoryLockConnection = defaultDatabase.getDataSource().getConnection();
+            }
+            statement = advisoryLockConnection.createStatement();
+            resultSet = statement.executeQuery(defaultDatabase.getTryAdvisoryLockStatement(LOCK_NAME));
+            if (resultSet.next() && resultSet.getBoolean(1)) {
+                return true;
+            }
+        } catch (SQLException e) {
+            throw new DbMaintainException("Unable to acquire advisory lock " + LOCK_NAME, e);
+        } finally {
+            closeQuietly(null, statement, resultSet);
+        }
+        // keep no connection open while waiting
+        closeQuietly(advisoryLockConnection);
+        advisoryLockConnection = null;
+        return false;
+    }
+
+    protected void releaseAdvisoryLock() {
+        if (advisoryLockConnection == null) {
+            return;
+        }
+        Statement statement = null;
+        try {
+            statement = advisoryLockConnection.createStatement();
+            statement.execute(defaultDatabase.getReleaseAdvisoryLockStatement(LOCK_NAME));
+        } catch (SQLException e) {
+            // the lock is released anyway when the connection is closed
+            logger.warn("Unable to release advisory lock " + LOCK_NAME + ".", e);
+        } finally {
+            closeQuietly(statement);
+            closeQuietly(advisoryLockConnection);
+            advisoryLockConnection = null;
+        }
+    }
+
+
+    protected void startLeaseRenewal() {
+        long renewalIntervalInMillis = Math.max(leaseTimeoutInMillis / 3, 1);
+        leaseRenewalTimer = new Timer("DbMaintain update lock lease renewal", true);
+        leaseRenewalTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                renewLease();
+            }
+        }, renewalIntervalInMillis, renewalIntervalInMillis);
+    }
+
+    protected void renewLease() {
+        try {
+            int nrOfUpdates = sqlHandler.executeUpdateAndCommit("update " + getQualifiedLockTableName() + " set " + getColumnName("locked_at") + " = " + currentTimeMillis() +
+                    " where " + getLockRecordCondition() + " and " + getColumnName("locked_by") + " = '" + owner + "'", defaultDatabase.getDataSource());
+            if (nrOfUpdates != 1) {
+                logger.warn("The lease of update lock " + LOCK_NAME + " expired and the lock was reclaimed by another process. Consider increasing the lease timeout.");
+            }
+        } catch (DbMaintainException e) {
+            logger.warn("Unable to renew the lease of update lock " + LOCK_NAME + ".", e);
+        }
+    }
+
+    protected void stopLeaseRenewal() {
+        if (leaseRenewalTimer != null) {
+            leaseRenewalTimer.cancel();
+            leaseRenewalTimer = null;
+        }
+    }
+
+
+    /**
+     * @param scripts All scripts, not null
+     * @return True if the stored fingerprint equals the current fingerprint
+     */
+    protected boolean isDatabaseUpToDate(SortedSet<Script> scripts) {
+        String storedFingerprint = getLockRecordValue("fingerprint");
+        if (storedFingerprint == null) {
+            return false;
+        }
+        try {
+            return storedFingerprint.equals(getFingerprint(scripts));
+        } catch (DbMaintainException e) {
+            logger.debug("Unable to determine the fingerprint of the executed scripts.", e);
+            return false;
+        }
+    }
+
+    /**
+     * The scripts are identified by their names and modification dates, so no script files need to be read. For scripts
+     * of which the checksum is already available, e.g. scripts of an archive, the checksum is included as well: their
+     * modification dates are not always updated when their content changes.
+     *
+     * @param scripts All scripts, not null
+     * @return The hash of the executed scripts table state and the scripts, not null
+     */
+    protected String getFingerprint(SortedSet<Script> scripts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            long nrOfExecutedScripts = sqlHandler.getItemAsLong("select count(*) from " + getQualifiedExecutedScriptsTableName(), defaultDatabase.getDataSource());
+            String lastExecutedAt = sqlHandler.getItemAsString("select max(" + executedAtColumnName + ") from " + getQualifiedExecutedScriptsTableName(), defaultDatabase.getDataSource());
+            digest.update((nrOfExecutedScripts + "\n" + lastExecutedAt + "\n").getBytes("UTF-8"));
+            for (Script script : scripts) {
+                digest.update((script.getFileName() + "\n" + script.getFileLastModifiedAt() + "\n").getBytes("UTF-8"));
+                if (script.isCheckSumAvailable()) {
+                    digest.update((script.getCheckSum() + "\n").getBytes("UTF-8"));
+                }
+            }
+            return getHexPresentation(digest.digest());
+        } catch (DbMaintainException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DbMaintainException("Unable to calculate fingerprint.", e);
+        }
+    }
+
+
+    /**
+     * Checks whether the lock table exists and contains the lock record. If not, the table and record are created if
+     * auto-create is true, else an exception is raised.
+     */
+    protected void checkLockTable() {
+        if (validLockTable) {
+            return;
+        }
+        if (!defaultDatabase.getTableNames(defaultDatabase.getDefaultSchemaName()).contains(lockTableName)) {
+            if (!autoCreateLockTable) {
+                String message = "Lock table " + getQualifiedLockTableName() + " doesn't exist yet.\n";
+                message += "Please create it manually or let DbMaintain create it automatically by setting the property autoCreateDbMaintainScriptsTable to true.\n";
+                message += "The table can be created manually by executing following statement:\n";
+                message += getCreateLockTableStatement();
+                throw new DbMaintainException(message);
+            }
+            logger.warn("Lock table " + getQualifiedLockTableName() + " doesn't exist yet. A new one is created automatically.");
+            try {
+                sqlHandler.executeUpdateAndCommit(getCreateLockTableStatement(), defaultDatabase.getDataSource());
+            } catch (DbMaintainException e) {
+                // another process could have created the table at the same time
+                logger.debug("Unable to create lock table " + getQualifiedLockTableName() + ".", e);
+            }
+            defaultDatabase.invalidateCatalogCache();
+        }
+        if (!sqlHandler.exists("select 1 from " + getQualifiedLockTableName() + " where " + getLockRecordCondition(), defaultDatabase.getDataSource())) {
+            try {
+                sqlHandler.executeUpdateAndCommit("insert into " + getQualifiedLockTableName() + " (" + getColumnName("lock_name") + ") values ('" + LOCK_NAME + "')", defaultDatabase.getDataSource());
+            } catch (DbMaintainException e) {
+                // another process could have inserted the record at the same time, the primary key prevents duplicates
+                logger.debug("Unable to insert lock record " + LOCK_NAME + ".", e);
+            }
+        }
+        validLockTable = true;
+    }
+
+    /**
+     * @return The statement to create the lock table, not null
+     */
+    protected String getCreateLockTableStatement() {
+        return "create table " + getQualifiedLockTableName() + " ( " +
+                getColumnName("lock_name") + " " + defaultDatabase.getTextDataType(COLUMN_SIZE) + " not null primary key, " +
+                getColumnName("locked_by") + " " + defaultDatabase.getTextDataType(COLUMN_SIZE) + ", " +
+                getColumnName("locked_at") + " " + defaultDatabase.getLongDataType() + ", " +
+                getColumnName("fingerprint") + " " + defaultDatabase.getTextDataType(COLUMN_SIZE) + " )";
+    }
+
+    /**
+     * @param fingerprint  The fingerprint to store, null to clear it
+     * @param ownLockOnly  True to only release the lock if it is held by this process
+     * @return The statement that releases the lock, not null
+     */
+    protected String getReleaseStatement(String fingerprint, boolean ownLockOnly) {
+        return "update " + getQualifiedLockTableName() + " set " + getColumnName("locked_by") + " = null, " + getColumnName("locked_at") + " = null, " +
+                getColumnName("fingerprint") + " = " + (fingerprint == null ? "null" : "'" + fingerprint + "'") + " where " + getLockRecordCondition() +
+                (ownLockOnly ? " and " + getColumnName("locked_by") + " = '" + owner + "'" : "");
+    }
+
+    /**
+     * @param columnName The column, not null
+     * @return The value of the column in the lock record, null if the record or value does not exist
+     */
+    protected String getLockRecordValue(String columnName) {
+        try {
+            return sqlHandler.getItemAsString("select " + getColumnName(columnName) + " from " + getQualifiedLockTableName() + " where " + getLockRecordCondition(), defaultDatabase.getDataSource());
+        } catch (DbMaintainException e) {
+            return null;
+        }
+    }
+
+    protected String getLockRecordCondition() {
+        return getColumnName("lock_name") + " = '" + LOCK_NAME + "'";
+    }
+
+    protected String getColumnName(String columnName) {
+        return defaultDatabase.toCorrectCaseIdentifier(columnName);
+    }
+
+    protected String getQualifiedLockTableName() {
+        return defaultDatabase.qualified(defaultDatabase.getDefaultSchemaName(), lockTableName);
+    }
+
+    protected String getQualifiedExecutedScriptsTableName() {
+        return defaultDatabase.qualified(defaultDatabase.getDefaultSchemaName(), executedScriptsTableName);
+    }
+
+
+    /**
+     * @return The host name and a random id, so that processes on the same host can be distinguished, not null
+     */
+    protected String createOwner() {
+        String hostName;
+        try {
+            hostName = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            hostName = "unknown";
+        }
+        String result = hostName.replace("'", "") + " (" + UUID.randomUUID().toString().substring(0, 8) + ")";
+        if (result.length() > COLUMN_SIZE) {
+            result = result.substring(result.length() - COLUMN_SIZE);
+        }
+        return result;
+    }
+
+    protected void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DbMaintainException("Interrupted while waiting for update lock " + LOCK_NAME, e);
+        }
+    }
+
+    private String getHexPresentation(byte[] byteArray) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : byteArray) {
+            result.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.lock.impl;
+
+import org.dbmaintain.lock.UpdateLock;
+import org.dbmaintain.script.Script;
+
+import java.util.SortedSet;
+
+/**
+ * Update lock that does not lock anything. This is the default.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class NoOpUpdateLock implements UpdateLock {
+
+
+    public boolean acquire(SortedSet<Script> scripts) {
+        return true;
+    }
+
+    public void release(SortedSet<Script> scripts, boolean successful) {
+        // nothing to release
+    }
+}
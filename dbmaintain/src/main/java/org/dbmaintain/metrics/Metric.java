@@ -0,0 +1,72 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.metrics;
+
+/**
+ * The metrics that are recorded during a run. Durations are kept as latency histograms, the other metrics as counters.
+ * Most metrics are recorded per label value, e.g. per statement kind or per script.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public enum Metric {
+
+    /* The duration of the sql statements, per kind of statement (e.g. create, insert, select) */
+    STATEMENT_DURATION("dbmaintain_statement_duration", "kind"),
+    /* The time needed to open a new database connection */
+    CONNECTION_ACQUISITION_DURATION("dbmaintain_connection_acquisition_duration", null),
+    /* The total duration of the execution of a script, per script */
+    SCRIPT_DURATION("dbmaintain_script_duration", "script"),
+    /* The time spent parsing the statements of a script, per script */
+    SCRIPT_PARSE_DURATION("dbmaintain_script_parse_duration", "script"),
+    /* The time spent executing the statements of a script, per script */
+    SCRIPT_EXECUTE_DURATION("dbmaintain_script_execute_duration", "script"),
+    /* The duration of the operations on the executed scripts table, per operation */
+    EXECUTED_SCRIPT_INFO_DURATION("dbmaintain_executed_script_info_duration", "operation"),
+    /* The time needed to clear a schema, per schema */
+    CLEAR_SCHEMA_DURATION("dbmaintain_clear_schema_duration", "schema"),
+    /* The time needed to clean a schema, per schema */
+    CLEAN_SCHEMA_DURATION("dbmaintain_clean_schema_duration", "schema"),
+    /* The nr of bytes of script content that was read */
+    SCRIPT_BYTES_READ("dbmaintain_script_bytes_read", null),
+    /* The nr of bytes of script content that was read to calculate check sums */
+    SCRIPT_BYTES_HASHED("dbmaintain_script_bytes_hashed", null);
+
+
+    private String name;
+    private String labelName;
+
+
+    private Metric(String name, String labelName) {
+        this.name = name;
+        this.labelName = labelName;
+    }
+
+
+    /**
+     * @return The name of the metric, not null
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The name of the label of the metric, null if the metric has no label
+     */
+    public String getLabelName() {
+        return labelName;
+    }
+}
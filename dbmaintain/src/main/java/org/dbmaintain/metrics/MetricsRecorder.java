@@ -0,0 +1,51 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.metrics;
+
+/**
+ * Records metrics about a run, so that the performance of deployments can be followed across releases. Implementations
+ * must be thread-safe: metrics are recorded concurrently when scripts or lanes are executed in parallel.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public interface MetricsRecorder {
+
+
+    /**
+     * Records the duration of an operation.
+     *
+     * @param metric          The metric, not null
+     * @param label           The value of the label of the metric, null if the metric has no label
+     * @param durationInNanos The duration in nanoseconds
+     */
+    void recordDuration(Metric metric, String label, long durationInNanos);
+
+    /**
+     * Adds the given amount to a counter.
+     *
+     * @param metric The metric, not null
+     * @param label  The value of the label of the metric, null if the metric has no label
+     * @param amount The amount to add
+     */
+    void recordCount(Metric metric, String label, long amount);
+
+    /**
+     * Writes out the metrics that were recorded. Invoked once at the end of the run.
+     */
+    void writeMetrics();
+
+}
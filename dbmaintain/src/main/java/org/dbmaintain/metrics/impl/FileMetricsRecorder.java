@@ -0,0 +1,336 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.metrics.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.metrics.Metric;
+import org.dbmaintain.metrics.MetricsRecorder;
+import org.dbmaintain.util.DbMaintainException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_METRICS_FILE;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_METRICS_FORMAT;
+import static org.dbmaintain.config.PropertyUtils.getString;
+
+/**
+ * Metrics recorder that keeps the metrics in memory and writes them to a file at the end of the run. Durations are
+ * kept as latency histograms with fixed buckets, so that the files of different runs can be compared.
+ * <p/>
+ * The file is written in the Prometheus text exposition format (format 'prometheus') or as a JSON document
+ * (format 'json').
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class FileMetricsRecorder implements MetricsRecorder {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(FileMetricsRecorder.class);
+
+    public static final String FORMAT_PROMETHEUS = "prometheus";
+    public static final String FORMAT_JSON = "json";
+
+    /* The upper bounds of the buckets of the latency histograms, in ms */
+    protected static final long[] BUCKET_UPPER_BOUNDS_IN_MILLIS = {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+
+    /* The file to which the metrics are written, not null */
+    protected File metricsFile;
+    /* True to write json, false to write the Prometheus text format */
+    protected boolean jsonFormat;
+
+    protected ConcurrentMap<MetricKey, Histogram> histograms = new ConcurrentHashMap<MetricKey, Histogram>();
+    protected ConcurrentMap<MetricKey, AtomicLong> counters = new ConcurrentHashMap<MetricKey, AtomicLong>();
+
+
+    /**
+     * Constructor used when the recorder is created using the configured class name
+     *
+     * @param configuration The configuration, not null
+     */
+    public FileMetricsRecorder(Properties configuration) {
+        this(new File(getString(PROPERTY_METRICS_FILE, configuration)), getString(PROPERTY_METRICS_FORMAT, configuration));
+    }
+
+    /**
+     * @param metricsFile The file to which the metrics are written, not null
+     * @param format      The format of the file: 'prometheus' or 'json', not null
+     */
+    public FileMetricsRecorder(File metricsFile, String format) {
+        this.metricsFile = metricsFile;
+        if (FORMAT_JSON.equalsIgnoreCase(format)) {
+            this.jsonFormat = true;
+        } else if (!FORMAT_PROMETHEUS.equalsIgnoreCase(format)) {
+            throw new DbMaintainException("Invalid metrics format " + format + ". Supported formats are " + FORMAT_PROMETHEUS + " and " + FORMAT_JSON + ".");
+        }
+    }
+
+
+    public void recordDuration(Metric metric, String label, long durationInNanos) {
+        MetricKey metricKey = new MetricKey(metric, label);
+        Histogram histogram = histograms.get(metricKey);
+        if (histogram == null) {
+            histogram = new Histogram();
+            Histogram existingHistogram = histograms.putIfAbsent(metricKey, histogram);
+            if (existingHistogram != null) {
+                histogram = existingHistogram;
+            }
+        }
+        histogram.record(durationInNanos);
+    }
+
+    public void recordCount(Metric metric, String label, long amount) {
+        MetricKey metricKey = new MetricKey(metric, label);
+        AtomicLong counter = counters.get(metricKey);
+        if (counter == null) {
+            counter = new AtomicLong();
+            AtomicLong existingCounter = counters.putIfAbsent(metricKey, counter);
+            if (existingCounter != null) {
+                counter = existingCounter;
+            }
+        }
+        counter.addAndGet(amount);
+    }
+
+
+    /**
+     * Writes the recorded metrics to the metrics file. An existing file is overwritten.
+     */
+    public void writeMetrics() {
+        Writer writer = null;
+        try {
+            File parentDir = metricsFile.getAbsoluteFile().getParentFile();
+            if (parentDir != null) {
+                parentDir.mkdirs();
+            }
+            writer = new OutputStreamWriter(new FileOutputStream(metricsFile), "UTF-8");
+            if (jsonFormat) {
+                writeJson(writer);
+            } else {
+                writePrometheusText(writer);
+            }
+            writer.flush();
+            logger.info("Metrics written to " + metricsFile.getAbsolutePath());
+
+        } catch (IOException e) {
+            throw new DbMaintainException("Unable to write metrics to file " + metricsFile.getAbsolutePath(), e);
+        } finally {
+            closeQuietly(writer);
+        }
+    }
+
+
+    protected void writePrometheusText(Writer writer) throws IOException {
+        Metric previousMetric = null;
+        for (Map.Entry<MetricKey, Histogram> entry : new TreeMap<MetricKey, Histogram>(histograms).entrySet()) {
+            Metric metric = entry.getKey().getMetric();
+            String name = metric.getName() + "_seconds";
+            if (metric != previousMetric) {
+                writer.write("# TYPE " + name + " histogram\n");
+                previousMetric = metric;
+            }
+            String labelName = metric.getLabelName();
+            String label = entry.getKey().getLabel();
+            Histogram histogram = entry.getValue();
+            synchronized (histogram) {
+                long cumulativeCount = 0;
+                for (int i = 0; i < BUCKET_UPPER_BOUNDS_IN_MILLIS.length; i++) {
+                    cumulativeCount += histogram.bucketCounts[i];
+                    writer.write(name + "_bucket" + getPrometheusLabels(labelName, label, "le", toSeconds(BUCKET_UPPER_BOUNDS_IN_MILLIS[i])) + " " + cumulativeCount + "\n");
+                }
+                writer.write(name + "_bucket" + getPrometheusLabels(labelName, label, "le", "+Inf") + " " + histogram.count + "\n");
+                writer.write(name + "_sum" + getPrometheusLabels(labelName, label, null, null) + " " + (histogram.sumInNanos / 1e9) + "\n");
+                writer.write(name + "_count" + getPrometheusLabels(labelName, label, null, null) + " " + histogram.count + "\n");
+            }
+        }
+        previousMetric = null;
+        for (Map.Entry<MetricKey, AtomicLong> entry : new TreeMap<MetricKey, AtomicLong>(counters).entrySet()) {
+            Metric metric = entry.getKey().getMetric();
+            String name = metric.getName() + "_total";
+            if (metric != previousMetric) {
+                writer.write("# TYPE " + name + " counter\n");
+                previousMetric = metric;
+            }
+            writer.write(name + getPrometheusLabels(metric.getLabelName(), entry.getKey().getLabel(), null, null) + " " + entry.getValue().get() + "\n");
+        }
+    }
+
+    protected String getPrometheusLabels(String labelName, String label, String extraLabelName, String extraLabel) {
+        StringBuilder result = new StringBuilder();
+        if (labelName != null && label != null) {
+            result.append(labelName).append("=\"").append(escapePrometheusLabel(label)).append('"');
+        }
+        if (extraLabelName != null) {
+            if (result.length() > 0) {
+                result.append(',');
+            }
+            result.append(extraLabelName).append("=\"").append(extraLabel).append('"');
+        }
+        if (result.length() == 0) {
+            return "";
+        }
+        return "{" + result + "}";
+    }
+
+    protected String escapePrometheusLabel(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+
+    protected void writeJson(Writer writer) throws IOException {
+        writer.write("{\n  \"histograms\": [");
+        boolean first = true;
+        for (Map.Entry<MetricKey, Histogram> entry : new TreeMap<MetricKey, Histogram>(histograms).entrySet()) {
+            writer.write(first ? "\n" : ",\n");
+            first = false;
+
+            Histogram histogram = entry.getValue();
+            synchronized (histogram) {
+                writer.write("    {\"name\": " + toJsonString(entry.getKey().getMetric().getName() + "_seconds") + ", \"labels\": " + getJsonLabels(entry.getKey()) +
+                        ", \"count\": " + histogram.count + ", \"sum\": " + (histogram.sumInNanos / 1e9) + ", \"max\": " + (histogram.maxInNanos / 1e9) + ", \"buckets\": [");
+                long cumulativeCount = 0;
+                for (int i = 0; i < BUCKET_UPPER_BOUNDS_IN_MILLIS.length; i++) {
+                    cumulativeCount += histogram.bucketCounts[i];
+                    writer.write("{\"le\": " + toSeconds(BUCKET_UPPER_BOUNDS_IN_MILLIS[i]) + ", \"count\": " + cumulativeCount + "}, ");
+                }
+                writer.write("{\"le\": \"+Inf\", \"count\": " + histogram.count + "}]}");
+            }
+        }
+        writer.write("\n  ],\n  \"counters\": [");
+        first = true;
+        for (Map.Entry<MetricKey, AtomicLong> entry : new TreeMap<MetricKey, AtomicLong>(counters).entrySet()) {
+            writer.write(first ? "\n" : ",\n");
+            first = false;
+            writer.write("    {\"name\": " + toJsonString(entry.getKey().getMetric().getName() + "_total") + ", \"labels\": " + getJsonLabels(entry.getKey()) +
+                    ", \"value\": " + entry.getValue().get() + "}");
+        }
+        writer.write("\n  ]\n}\n");
+    }
+
+    protected String getJsonLabels(MetricKey metricKey) {
+        String labelName = metricKey.getMetric().getLabelName();
+        if (labelName == null || metricKey.getLabel() == null) {
+            return "{}";
+        }
+        return "{" + toJsonString(labelName) + ": " + toJsonString(metricKey.getLabel()) + "}";
+    }
+
+    protected String toJsonString(String value) {
+        StringBuilder result = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < ' ') {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    protected String toSeconds(long millis) {
+        return String.valueOf(millis / 1000.0);
+    }
+
+
+    /**
+     * The key of a recorded metric: the metric and the value of its label. Keys are ordered by metric and label,
+     * so that the output of different runs can easily be compared.
+     */
+    protected static class MetricKey implements Comparable<MetricKey> {
+
+        private Metric metric;
+        private String label;
+
+        public MetricKey(Metric metric, String label) {
+            this.metric = metric;
+            this.label = label;
+        }
+
+        public Metric getMetric() {
+            return metric;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public int compareTo(MetricKey other) {
+            int result = metric.compareTo(other.metric);
+            if (result != 0) {
+                return result;
+            }
+            if (label == null) {
+                return other.label == null ? 0 : -1;
+            }
+            return other.label == null ? 1 : label.compareTo(other.label);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof MetricKey)) {
+                return false;
+            }
+            MetricKey other = (MetricKey) object;
+            return metric == other.metric && (label == null ? other.label == null : label.equals(other.label));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * metric.hashCode() + (label == null ? 0 : label.hashCode());
+        }
+    }
+
+
+    /**
+     * A latency histogram with the fixed buckets of {@link FileMetricsRecorder#BUCKET_UPPER_BOUNDS_IN_MILLIS}.
+     * The bucket counts are not cumulative: every duration is counted in the first bucket that fits it. Durations
+     * that do not fit any bucket are only counted in the total count.
+     */
+    protected static class Histogram {
+
+        protected long[] bucketCounts = new long[BUCKET_UPPER_BOUNDS_IN_MILLIS.length];
+        protected long count;
+        protected long sumInNanos;
+        protected long maxInNanos;
+
+        public synchronized void record(long durationInNanos) {
+            count++;
+            sumInNanos += durationInNanos;
+            maxInNanos = Math.max(maxInNanos, durationInNanos);
+            for (int i = 0; i < BUCKET_UPPER_BOUNDS_IN_MILLIS.length; i++) {
+                if (durationInNanos <= BUCKET_UPPER_BOUNDS_IN_MILLIS[i] * 1000000L) {
+                    bucketCounts[i]++;
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.metrics.impl;
+
+import org.dbmaintain.metrics.Metric;
+import org.dbmaintain.metrics.MetricsRecorder;
+
+import java.util.Properties;
+
+/**
+ * Metrics recorder that ignores all metrics. This is the default.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class NoOpMetricsRecorder implements MetricsRecorder {
+
+
+    public NoOpMetricsRecorder() {
+    }
+
+    /**
+     * Constructor used when the recorder is created using the configured class name
+     *
+     * @param configuration The configuration, not used
+     */
+    public NoOpMetricsRecorder(Properties configuration) {
+    }
+
+
+    public void recordDuration(Metric metric, String label, long durationInNanos) {
+        // ignore
+    }
+
+    public void recordCount(Metric metric, String label, long amount) {
+        // ignore
+    }
+
+    public void writeMetrics() {
+        // nothing to write
+    }
+}
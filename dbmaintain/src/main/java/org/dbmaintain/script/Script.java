@@ -38,6 +38,8 @@ public class Script implements Comparable<Script> {
     private Long fileLastModifiedAt;
     /* Checksum calculated on the script contents */
     private String checkSum;
+    /* Checksum calculated on the script contents without comments and formatting, null if not known */
+    private String semanticCheckSum;
     /* The handle to the content of the script */
     private ScriptContentHandle scriptContentHandle;
     /* True if this script is a postprocessing script */
@@ -70,11 +72,31 @@ public class Script implements Comparable<Script> {
      * @param qualifiers           The qualifiers of this script, not null
      */
     public Script(String fileName, ScriptIndexes scriptIndexes, String targetDatabaseName, Long fileLastModifiedAt, String checkSum, ScriptContentHandle scriptContentHandle, boolean postProcessingScript, boolean patchScript, boolean ignored, Set<Qualifier> qualifiers) {
+        this(fileName, scriptIndexes, targetDatabaseName, fileLastModifiedAt, checkSum, null, scriptContentHandle, postProcessingScript, patchScript, ignored, qualifiers);
+    }
+
+    /**
+     * Creates a script with the given fileName and content or checksums.
+     *
+     * @param fileName             The name of the script file, not null
+     * @param scriptIndexes        The indexes of the script, not null
+     * @param targetDatabaseName   The target database, null if there is no target database
+     * @param fileLastModifiedAt   The time when the file was last modified (in ms), not null
+     * @param checkSum             Checksum calculated for the contents of the file, leave null if a script content handle is provided
+     * @param semanticCheckSum     Checksum calculated for the contents of the file without comments and formatting, leave null if a script content handle is provided or if it is not known
+     * @param scriptContentHandle  Handle providing access to the contents of the script, null if the content is unknown (a checksum is then required)
+     * @param postProcessingScript True if this script is a post processing script
+     * @param patchScript          True if this script is a patch script (has a patch qualifier)
+     * @param ignored              True if this script should be ignored (because the revision is lower than the baseline revision)
+     * @param qualifiers           The qualifiers of this script, not null
+     */
+    public Script(String fileName, ScriptIndexes scriptIndexes, String targetDatabaseName, Long fileLastModifiedAt, String checkSum, String semanticCheckSum, ScriptContentHandle scriptContentHandle, boolean postProcessingScript, boolean patchScript, boolean ignored, Set<Qualifier> qualifiers) {
         this.fileName = fileName;
         this.scriptIndexes = scriptIndexes;
         this.targetDatabaseName = targetDatabaseName;
         this.fileLastModifiedAt = fileLastModifiedAt;
         this.checkSum = checkSum;
+        this.semanticCheckSum = semanticCheckSum;
         this.scriptContentHandle = scriptContentHandle;
         this.postProcessingScript = postProcessingScript;
         this.patchScript = patchScript;
@@ -141,6 +163,25 @@ public class Script implements Comparable<Script> {
         return checkSum;
     }
 
+    /**
+     * @return True if the checksum is known without reading the script file, i.e. it was given when the script was
+     *         created or the content of the script is kept in memory
+     */
+    public boolean isCheckSumAvailable() {
+        return scriptContentHandle == null || scriptContentHandle.isContentInMemory();
+    }
+
+    /**
+     * @return Checksum calculated for the content of the script without comments and formatting, null if the content
+     *         of the script is not available and the semantic checksum was not given
+     */
+    public String getSemanticCheckSum() {
+        if (semanticCheckSum == null && scriptContentHandle != null) {
+            semanticCheckSum = scriptContentHandle.getSemanticCheckSum();
+        }
+        return semanticCheckSum;
+    }
+
     /**
      * @return Handle that provides access to the content of the script. May be null! If so, this
      *         object is not suitable for being executed. The checksum however cannot be null, so we can always
@@ -172,6 +213,17 @@ public class Script implements Comparable<Script> {
     }
 
 
+    /**
+     * @param other Another script, not null
+     * @return True if the contents of this script only differ from the given one in comments, whitespace or case,
+     *         false otherwise or if the semantic checksum of one of the scripts is not known
+     */
+    public boolean isScriptContentSemanticallyEqualTo(Script other) {
+        String semanticCheckSum = getSemanticCheckSum();
+        return semanticCheckSum != null && semanticCheckSum.equals(other.getSemanticCheckSum());
+    }
+
+
     /**
      * @return True if this is an incremental script, i.e. it needs to be executed in the correct order, and it can
      *         be executed only once. If an incremental script is changed, the database needs to be recreated from scratch,
@@ -21,6 +21,10 @@ import org.dbmaintain.util.ReaderInputStream;
 import java.io.*;
 import java.net.URL;
 import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.apache.commons.io.IOUtils.closeQuietly;
 
@@ -33,11 +37,22 @@ import static org.apache.commons.io.IOUtils.closeQuietly;
  */
 public abstract class ScriptContentHandle {
 
+    /* The types of the chars of the content when calculating the semantic check sum */
+    protected static final byte CODE = 0;
+    protected static final byte COMMENT = 1;
+    protected static final byte LITERAL = 2;
+    /* The start of a PostgreSQL dollar-quoted string: $$ or $tag$ */
+    protected static final Pattern DOLLAR_QUOTE_PATTERN = Pattern.compile("\\$([A-Za-z_][A-Za-z_0-9]*)?\\$");
+
     protected MessageDigest scriptDigest;
     protected Reader scriptReader;
     protected String encoding;
     /* If true, carriage return chars will be ignored when calculating check sums */
     protected boolean ignoreCarriageReturnsWhenCalculatingCheckSum;
+    /* The nr of bytes that were read through the content readers, e.g. to execute the script */
+    protected AtomicLong nrOfBytesRead = new AtomicLong();
+    /* The nr of bytes that were read to calculate the check sum */
+    protected long nrOfBytesHashed;
 
 
     /**
@@ -59,7 +74,7 @@ public abstract class ScriptContentHandle {
      */
     public Reader openScriptContentReader() {
         try {
-            scriptReader = new InputStreamReader(getScriptInputStream(), encoding);
+            scriptReader = new InputStreamReader(new CountingInputStream(getScriptInputStream()), encoding);
         } catch (UnsupportedEncodingException e) {
             throw new DbMaintainException("Unsupported encoding " + encoding, e);
         }
@@ -67,6 +82,14 @@ public abstract class ScriptContentHandle {
     }
 
 
+    /**
+     * @return True if the content is kept in memory, so that it can be read without accessing a file
+     */
+    public boolean isContentInMemory() {
+        return false;
+    }
+
+
     public String getCheckSum() {
         try {
             MessageDigest scriptDigest = getScriptDigest();
@@ -76,6 +99,149 @@ public abstract class ScriptContentHandle {
         }
     }
 
+    /**
+     * Calculates a checksum that only changes when the statements of the script change: comments are removed,
+     * whitespace is collapsed and keywords and unquoted identifiers are upper-cased before the checksum is
+     * calculated. Optimizer hints (comments starting with /*+ or /*!) are kept.
+     *
+     * @return The semantic checksum, not null
+     */
+    public String getSemanticCheckSum() {
+        Reader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(getScriptInputStream(), encoding));
+            StringBuilder content = new StringBuilder();
+            char[] buffer = new char[8192];
+            int nrOfChars;
+            while ((nrOfChars = reader.read(buffer)) != -1) {
+                content.append(buffer, 0, nrOfChars);
+            }
+            MessageDigest semanticDigest = MessageDigest.getInstance("MD5");
+            semanticDigest.update(getNormalizedContent(content.toString()).getBytes("UTF-8"));
+            return getHexPresentation(semanticDigest.digest());
+        } catch (Exception e) {
+            throw new DbMaintainException("Unable to calculate semantic digest for script.", e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Normalizes the content of a script: comments are removed, whitespace is collapsed and keywords and unquoted
+     * identifiers are upper-cased. Literals and quoted identifiers, including PostgreSQL dollar-quoted strings
+     * ($$...$$ or $tag$...$tag$), are kept as they are.
+     * <p/>
+     * A backslash escapes a quote in a MySQL literal, but not in a standard SQL literal. The content is therefore
+     * scanned in both ways: only what is outside literals and comments in both cases is normalized, everything else
+     * is kept as it is. This way, scripts that differ in the content of a literal never get the same checksum.
+     *
+     * @param content The content of the script, not null
+     * @return The normalized content, not null
+     */
+    protected String getNormalizedContent(String content) {
+        byte[] charTypes = getCharTypes(content, false);
+        byte[] charTypesWithBackslashEscapes = getCharTypes(content, true);
+
+        StringBuilder result = new StringBuilder(content.length());
+        boolean whitespace = false;
+        int index = 0;
+        while (index < content.length()) {
+            char c = content.charAt(index);
+            byte charType = getCharType(charTypes, charTypesWithBackslashEscapes, index);
+            if (charType == COMMENT || (charType == CODE && Character.isWhitespace(c))) {
+                index++;
+                whitespace = true;
+                continue;
+            }
+            int end = index + 1;
+            String token;
+            if (charType == LITERAL) {
+                while (end < content.length() && getCharType(charTypes, charTypesWithBackslashEscapes, end) == LITERAL) {
+                    end++;
+                }
+                token = content.substring(index, end);
+            } else {
+                token = String.valueOf(Character.toUpperCase(c));
+            }
+            // whitespace is only significant between two words
+            if (whitespace && result.length() > 0 && isWordChar(result.charAt(result.length() - 1)) && isWordChar(token.charAt(0))) {
+                result.append(' ');
+            }
+            result.append(token);
+            whitespace = false;
+            index = end;
+        }
+        return result.toString();
+    }
+
+    private byte getCharType(byte[] charTypes, byte[] charTypesWithBackslashEscapes, int index) {
+        // if both ways of scanning do not agree, the char is kept as it is
+        return charTypes[index] == charTypesWithBackslashEscapes[index] ? charTypes[index] : LITERAL;
+    }
+
+    /**
+     * @param content          The content of the script, not null
+     * @param backslashEscapes True if a backslash escapes the next char in a literal, as in MySQL
+     * @return For every char of the content whether it is part of the code, a comment or a literal, not null
+     */
+    protected byte[] getCharTypes(String content, boolean backslashEscapes) {
+        byte[] charTypes = new byte[content.length()];
+        int index = 0;
+        while (index < content.length()) {
+            char c = content.charAt(index);
+            int end = index + 1;
+            byte charType = CODE;
+            if (content.startsWith("--", index)) {
+                end = content.indexOf('\n', index);
+                end = end == -1 ? content.length() : end;
+                charType = COMMENT;
+            } else if (content.startsWith("/*", index) && !content.startsWith("/*+", index) && !content.startsWith("/*!", index)) {
+                // optimizer hints are kept
+                end = content.indexOf("*/", index + 2);
+                end = end == -1 ? content.length() : end + 2;
+                charType = COMMENT;
+            } else if (c == '\'' || c == '"' || c == '`') {
+                end = getEndOfQuotedText(content, index, backslashEscapes && c != '`');
+                charType = LITERAL;
+            } else if (c == '$' && (index == 0 || !isWordChar(content.charAt(index - 1)))) {
+                Matcher matcher = DOLLAR_QUOTE_PATTERN.matcher(content).region(index, content.length());
+                if (matcher.lookingAt()) {
+                    String dollarQuote = matcher.group();
+                    end = content.indexOf(dollarQuote, matcher.end());
+                    end = end == -1 ? content.length() : end + dollarQuote.length();
+                    charType = LITERAL;
+                }
+            }
+            Arrays.fill(charTypes, index, end, charType);
+            index = end;
+        }
+        return charTypes;
+    }
+
+    /**
+     * @param content          The content of the script, not null
+     * @param index            The index of the opening quote
+     * @param backslashEscapes True if a backslash escapes the next char
+     * @return The index after the closing quote, the length of the content if there is none. An escaped quote by
+     *         doubling it is handled as two adjacent quoted texts
+     */
+    protected int getEndOfQuotedText(String content, int index, boolean backslashEscapes) {
+        char quote = content.charAt(index);
+        for (int i = index + 1; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (backslashEscapes && c == '\\') {
+                i++;
+            } else if (c == quote) {
+                return i + 1;
+            }
+        }
+        return content.length();
+    }
+
+    protected boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+    }
+
     protected MessageDigest getScriptDigest() throws IOException {
         if (scriptDigest != null) {
             return scriptDigest;
@@ -88,6 +254,7 @@ public abstract class ScriptContentHandle {
 
             int b;
             while ((b = scriptInputStream.read()) != -1) {
+                nrOfBytesHashed++;
                 if (ignoreCarriageReturnsWhenCalculatingCheckSum && b == '\r') {
                     continue;
                 }
@@ -102,6 +269,21 @@ public abstract class ScriptContentHandle {
     }
 
 
+    /**
+     * @return The nr of bytes that were read through the readers returned by {@link #openScriptContentReader}
+     */
+    public long getNrOfBytesRead() {
+        return nrOfBytesRead.get();
+    }
+
+    /**
+     * @return The nr of bytes that were read to calculate the check sum, 0 if the check sum was not calculated
+     */
+    public long getNrOfBytesHashed() {
+        return nrOfBytesHashed;
+    }
+
+
     public String getScriptContentsAsString(long maxNrChars) {
         try {
             InputStream inputStream = this.getScriptInputStream();
@@ -143,6 +325,35 @@ public abstract class ScriptContentHandle {
     protected abstract InputStream getScriptInputStream();
 
 
+    /**
+     * Stream that adds the nr of bytes that are read to the read counter of the handle.
+     */
+    protected class CountingInputStream extends FilterInputStream {
+
+        public CountingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                nrOfBytesRead.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int nrOfBytes = super.read(buffer, offset, length);
+            if (nrOfBytes > 0) {
+                nrOfBytesRead.addAndGet(nrOfBytes);
+            }
+            return nrOfBytes;
+        }
+    }
+
+
     /**
      * A handle for getting the script content as a stream.
      */
@@ -210,6 +421,11 @@ public abstract class ScriptContentHandle {
         protected InputStream getScriptInputStream() {
             return new ReaderInputStream(new StringReader(scriptContent));
         }
+
+        @Override
+        public boolean isContentInMemory() {
+            return true;
+        }
     }
 
 }
\ No newline at end of file
@@ -68,15 +68,19 @@ public class ScriptFactory {
 
 
     public Script createScriptWithContent(String fileName, Long fileLastModifiedAt, ScriptContentHandle scriptContentHandle) {
-        return createScript(fileName, fileLastModifiedAt, null, scriptContentHandle);
+        return createScript(fileName, fileLastModifiedAt, null, null, scriptContentHandle);
     }
 
     public Script createScriptWithoutContent(String fileName, Long fileLastModifiedAt, String checkSum) {
-        return createScript(fileName, fileLastModifiedAt, checkSum, null);
+        return createScript(fileName, fileLastModifiedAt, checkSum, null, null);
+    }
+
+    public Script createScriptWithoutContent(String fileName, Long fileLastModifiedAt, String checkSum, String semanticCheckSum) {
+        return createScript(fileName, fileLastModifiedAt, checkSum, semanticCheckSum, null);
     }
 
 
-    private Script createScript(String fileName, Long fileLastModifiedAt, String checkSum, ScriptContentHandle scriptContentHandle) {
+    private Script createScript(String fileName, Long fileLastModifiedAt, String checkSum, String semanticCheckSum, ScriptContentHandle scriptContentHandle) {
         try {
             String[] pathParts = getPathParts(fileName);
             ScriptIndexes scriptIndexes = getScriptIndexes(pathParts);
@@ -86,7 +90,7 @@ public class ScriptFactory {
             boolean postProcessingScript = isPostProcessingScript(fileName);
             boolean ignored = isIgnored(scriptIndexes);
 
-            return new Script(fileName, scriptIndexes, targetDatabaseName, fileLastModifiedAt, checkSum, scriptContentHandle, postProcessingScript, patchScript, ignored, qualifiers);
+            return new Script(fileName, scriptIndexes, targetDatabaseName, fileLastModifiedAt, checkSum, semanticCheckSum, scriptContentHandle, postProcessingScript, patchScript, ignored, qualifiers);
 
         } catch (DbMaintainException e) {
             throw new DbMaintainException("Error in script " + fileName + ": " + e.getMessage(), e);
@@ -0,0 +1,150 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.analyzer;
+
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.qualifier.Qualifier;
+import org.dbmaintain.util.DbMaintainException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+
+/**
+ * Determines whether a postprocessing script needs to be executed after an update, so that not all postprocessing
+ * scripts need to be executed again when only a few scripts were executed.
+ * <p/>
+ * A postprocessing script declares the scripts that trigger it in a comment in the header of the script (the comment
+ * and blank lines before the first statement), e.g.
+ * <pre><code>
+ *     -- @triggeredBy 01_schema/, 02_procedures/customer_procedures.sql, #packages
+ * </code></pre>
+ * A trigger ending with a / is a folder: the script is triggered by every script in that folder or one of its
+ * sub-folders. A trigger starting with a # is a qualifier: the script is triggered by every script with that
+ * qualifier. Any other trigger is the full file name of a script (e.g. repeatable/view_customer.sql) or the name of
+ * the file without the directory (e.g. view_customer.sql).
+ * <p/>
+ * A postprocessing script that declares no triggers or that declares <code>-- @alwaysRun</code> is executed after
+ * every update.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class PostprocessingScriptTriggerAnalyzer {
+
+    /* Matches a trigger declaration in a header comment */
+    private static final Pattern TRIGGERED_BY_PATTERN = Pattern.compile("^\\s*--\\s*@triggeredBy\\s*:?\\s*(.*)$", Pattern.CASE_INSENSITIVE);
+
+    /* Matches an always run declaration in a header comment */
+    private static final Pattern ALWAYS_RUN_PATTERN = Pattern.compile("^\\s*--\\s*@alwaysRun\\s*$", Pattern.CASE_INSENSITIVE);
+
+
+    /**
+     * Determines whether the given postprocessing script is triggered by one of the given executed scripts.
+     *
+     * @param postprocessingScript The postprocessing script, not null
+     * @param executedScripts      The scripts that were executed during the update, not null
+     * @return True if the postprocessing script needs to be executed
+     */
+    public boolean isTriggered(Script postprocessingScript, Collection<Script> executedScripts) {
+        List<String> triggers = getDeclaredTriggers(postprocessingScript);
+        if (triggers == null) {
+            return true;
+        }
+        for (Script executedScript : executedScripts) {
+            for (String trigger : triggers) {
+                if (isTriggeredBy(executedScript, trigger)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * @param script  The executed script, not null
+     * @param trigger The declared trigger, not null
+     * @return True if the script matches the trigger
+     */
+    protected boolean isTriggeredBy(Script script, String trigger) {
+        if (trigger.startsWith("#")) {
+            String qualifierName = trigger.substring(1);
+            for (Qualifier qualifier : script.getQualifiers()) {
+                if (qualifier.getQualifierName().equalsIgnoreCase(qualifierName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        String fileName = script.getFileName();
+        if (trigger.endsWith("/")) {
+            return fileName.startsWith(trigger) || fileName.contains("/" + trigger);
+        }
+        return fileName.equals(trigger) || fileName.endsWith("/" + trigger);
+    }
+
+    /**
+     * @param script The postprocessing script, not null
+     * @return The triggers that the script declares, null if the script always needs to be executed
+     */
+    protected List<String> getDeclaredTriggers(Script script) {
+        List<String> result = null;
+        Reader reader = null;
+        try {
+            reader = script.getScriptContentHandle().openScriptContentReader();
+            BufferedReader bufferedReader = new BufferedReader(reader);
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                String trimmedLine = line.trim();
+                if (trimmedLine.length() == 0) {
+                    continue;
+                }
+                if (!trimmedLine.startsWith("--")) {
+                    // end of the header
+                    break;
+                }
+                if (ALWAYS_RUN_PATTERN.matcher(trimmedLine).matches()) {
+                    return null;
+                }
+                Matcher matcher = TRIGGERED_BY_PATTERN.matcher(trimmedLine);
+                if (matcher.matches()) {
+                    if (result == null) {
+                        result = new ArrayList<String>();
+                    }
+                    for (String trigger : matcher.group(1).split("[,\\s]+")) {
+                        if (trigger.length() > 0) {
+                            result.add(trigger);
+                        }
+                    }
+                }
+            }
+            return result;
+
+        } catch (IOException e) {
+            throw new DbMaintainException("Unable to read the triggers of postprocessing script " + script.getFileName(), e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.analyzer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.util.DbMaintainException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+
+/**
+ * Determines the dependencies between scripts, so that scripts that do not depend on each other can be executed
+ * concurrently.
+ * <p/>
+ * A script declares its dependencies in a comment in the header of the script (the comment and blank lines before the
+ * first statement), e.g.
+ * <pre><code>
+ *     -- @dependsOn view_customer.sql, view_order.sql
+ * </code></pre>
+ * A dependency can be given as the full file name of the script (e.g. repeatable/view_customer.sql) or as the name of
+ * the file without the directory (e.g. view_customer.sql).
+ * <p/>
+ * Optionally, dependencies can also be inferred: if a script refers to a view, procedure, function, package, trigger,
+ * synonym or type that is created by another script, it is considered to depend on that script. This is a best effort
+ * guess based on the names that occur in the script: declare the dependencies explicitly if they are not found.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptDependencyAnalyzer {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(ScriptDependencyAnalyzer.class);
+
+    /* Matches a dependency declaration in a header comment */
+    private static final Pattern DEPENDS_ON_PATTERN = Pattern.compile("^\\s*--\\s*@dependsOn\\s*:?\\s*(.*)$", Pattern.CASE_INSENSITIVE);
+
+    /* Matches a statement that creates a database object, group 2 is the name of the object */
+    private static final Pattern CREATE_PATTERN = Pattern.compile("create\\s+(?:or\\s+replace\\s+)?(?:force\\s+)?(?:materialized\\s+)?(view|procedure|function|package\\s+body|package|trigger|synonym|type)\\s+([\\w$#.\"]+)", Pattern.CASE_INSENSITIVE);
+
+    /* Matches a (possibly qualified) identifier */
+    private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("[\\w$#]+");
+
+    /* True if dependencies should also be inferred from the object names used in the scripts */
+    protected boolean inferDependencies;
+
+
+    /**
+     * @param inferDependencies True if dependencies should also be inferred from the object names used in the scripts
+     */
+    public ScriptDependencyAnalyzer(boolean inferDependencies) {
+        this.inferDependencies = inferDependencies;
+    }
+
+
+    /**
+     * Determines the dependencies between the given scripts. Dependencies on scripts that are not in the given list
+     * are ignored.
+     *
+     * @param scripts The scripts, not null
+     * @return The scripts on which each script depends, not null
+     */
+    public Map<Script, Set<Script>> getDependencies(List<Script> scripts) {
+        Map<Script, Set<Script>> dependencies = new HashMap<Script, Set<Script>>();
+        for (Script script : scripts) {
+            dependencies.put(script, new HashSet<Script>());
+        }
+        for (Script script : scripts) {
+            for (String declaredDependency : getDeclaredDependencies(script)) {
+                Script dependency = findScript(declaredDependency, scripts);
+                if (dependency == null) {
+                    logger.debug("Script " + script.getFileName() + " depends on " + declaredDependency + ", which is not executed in this update.");
+                } else if (!dependency.equals(script)) {
+                    dependencies.get(script).add(dependency);
+                }
+            }
+        }
+        if (inferDependencies) {
+            addInferredDependencies(scripts, dependencies);
+        }
+        return dependencies;
+    }
+
+
+    /**
+     * @param script The script, not null
+     * @return The names of the scripts on which the script declares to depend, not null
+     */
+    protected List<String> getDeclaredDependencies(Script script) {
+        List<String> result = new ArrayList<String>();
+        Reader reader = null;
+        try {
+            reader = script.getScriptContentHandle().openScriptContentReader();
+            BufferedReader bufferedReader = new BufferedReader(reader);
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                String trimmedLine = line.trim();
+                if (trimmedLine.length() == 0) {
+                    continue;
+                }
+                if (!trimmedLine.startsWith("--")) {
+                    // end of the header
+                    break;
+                }
+                Matcher matcher = DEPENDS_ON_PATTERN.matcher(trimmedLine);
+                if (matcher.matches()) {
+                    for (String dependency : matcher.group(1).split("[,\\s]+")) {
+                        if (dependency.length() > 0) {
+                            result.add(dependency);
+                        }
+                    }
+                }
+            }
+            return result;
+
+        } catch (IOException e) {
+            throw new DbMaintainException("Unable to read the dependencies of script " + script.getFileName(), e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+
+    /**
+     * Adds a dependency for each script that uses an object created by another script.
+     *
+     * @param scripts      The scripts, not null
+     * @param dependencies The dependencies to add to, not null
+     */
+    protected void addInferredDependencies(List<Script> scripts, Map<Script, Set<Script>> dependencies) {
+        Map<Script, String> scriptContents = new HashMap<Script, String>();
+        Map<String, Script> creatingScripts = new HashMap<String, Script>();
+        for (Script script : scripts) {
+            String scriptContent = script.getScriptContentHandle().getScriptContentsAsString(Long.MAX_VALUE);
+            scriptContents.put(script, scriptContent);
+
+            Matcher matcher = CREATE_PATTERN.matcher(scriptContent);
+            while (matcher.find()) {
+                creatingScripts.put(getUnqualifiedName(matcher.group(2)), script);
+            }
+        }
+        for (Script script : scripts) {
+            Matcher matcher = IDENTIFIER_PATTERN.matcher(scriptContents.get(script));
+            while (matcher.find()) {
+                Script creatingScript = creatingScripts.get(matcher.group().toUpperCase());
+                if (creatingScript != null && !creatingScript.equals(script)) {
+                    dependencies.get(script).add(creatingScript);
+                }
+            }
+        }
+    }
+
+
+    protected Script findScript(String name, List<Script> scripts) {
+        for (Script script : scripts) {
+            String fileName = script.getFileName();
+            if (fileName.equals(name) || fileName.endsWith("/" + name)) {
+                return script;
+            }
+        }
+        return null;
+    }
+
+    protected String getUnqualifiedName(String name) {
+        int index = name.lastIndexOf('.');
+        if (index >= 0) {
+            name = name.substring(index + 1);
+        }
+        return name.replace("\"", "").toUpperCase();
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.dbmaintain.script.analyzer;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.script.ExecutedScript;
 import org.dbmaintain.script.Script;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
@@ -35,11 +37,18 @@ import static org.dbmaintain.script.analyzer.ScriptUpdateType.*;
  */
 public class ScriptUpdatesAnalyzer {
 
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(ScriptUpdatesAnalyzer.class);
+
     /* Initialization data */
     private final ScriptRepository scriptRepository;
     private final ExecutedScriptInfoSource executedScriptInfoSource;
     private final boolean useScriptFileLastModificationDates;
     private final boolean allowOutOfSequenceExecutionOfPatchScripts;
+    /* True if repeatable scripts of which only comments or formatting changed should not be executed again */
+    private final boolean semanticCheckSumsForRepeatableScripts;
+    /* True if postprocessing scripts of which only comments or formatting changed should not be executed again */
+    private final boolean semanticCheckSumsForPostprocessingScripts;
 
     /* Sets that contain the result of the analysis: each set contains a specific type of script updates */
     private final SortedSet<ScriptUpdate> regularlyAddedOrModifiedScripts = new TreeSet<ScriptUpdate>();
@@ -71,10 +80,34 @@ public class ScriptUpdatesAnalyzer {
      */
     public ScriptUpdatesAnalyzer(ScriptRepository scriptRepository, ExecutedScriptInfoSource executedScriptInfoSource,
                                  boolean useScriptFileLastModificationDates, boolean allowOutOfSequenceExecutionOfPatchScripts) {
+        this(scriptRepository, executedScriptInfoSource, useScriptFileLastModificationDates, allowOutOfSequenceExecutionOfPatchScripts, false, false);
+    }
+
+    /**
+     * Creates a new instance that will compare the info from the given {@link ExecutedScriptInfoSource} with the current
+     * scripts from the given {@link org.dbmaintain.script.repository.ScriptRepository}. It also needs to know whether a new patch script with a lower
+     * index is a regular or irregular script update
+     *
+     * @param scriptRepository         exposes the current set of scripts
+     * @param executedScriptInfoSource provides info on the script that were executed on the database
+     * @param useScriptFileLastModificationDates
+     *                                 whether the last modification date of the scripts can be used to determine if a script has changed.
+     * @param allowOutOfSequenceExecutionOfPatchScripts
+     *                                 whether scripts marked as patch scripts may be executed out-of-sequence
+     * @param semanticCheckSumsForRepeatableScripts
+     *                                 whether repeatable scripts of which only comments or formatting changed are left unchanged
+     * @param semanticCheckSumsForPostprocessingScripts
+     *                                 whether postprocessing scripts of which only comments or formatting changed are left unchanged
+     */
+    public ScriptUpdatesAnalyzer(ScriptRepository scriptRepository, ExecutedScriptInfoSource executedScriptInfoSource,
+                                 boolean useScriptFileLastModificationDates, boolean allowOutOfSequenceExecutionOfPatchScripts,
+                                 boolean semanticCheckSumsForRepeatableScripts, boolean semanticCheckSumsForPostprocessingScripts) {
         this.scriptRepository = scriptRepository;
         this.executedScriptInfoSource = executedScriptInfoSource;
         this.useScriptFileLastModificationDates = useScriptFileLastModificationDates;
         this.allowOutOfSequenceExecutionOfPatchScripts = allowOutOfSequenceExecutionOfPatchScripts;
+        this.semanticCheckSumsForRepeatableScripts = semanticCheckSumsForRepeatableScripts;
+        this.semanticCheckSumsForPostprocessingScripts = semanticCheckSumsForPostprocessingScripts;
     }
 
     /**
@@ -96,7 +129,9 @@ public class ScriptUpdatesAnalyzer {
                 scriptExecutedScriptMap.put(scriptWithSameName, executedScript);
                 // Check if the content didn't change
                 if (!executedScript.getScript().isScriptContentEqualTo(scriptWithSameName, useScriptFileLastModificationDates)) {
-                    registerScriptUpdate(scriptWithSameName);
+                    if (!isOnlyFormattingChanged(executedScript, scriptWithSameName)) {
+                        registerScriptUpdate(scriptWithSameName);
+                    }
                 } else if (!executedScript.isSuccessful() && executedScript.getScript().isPostProcessingScript()) {
                     registerPostprocessingScriptUpdate(POSTPROCESSING_SCRIPT_FAILURE_RERUN, scriptWithSameName);
                 }
@@ -188,6 +223,35 @@ public class ScriptUpdatesAnalyzer {
     }
 
 
+    /**
+     * A changed script is not executed again if semantic checksums are enabled for this kind of script and only its
+     * comments, whitespace or case changed. A script of which the last execution failed is always executed again.
+     *
+     * @param executedScript The executed script, not null
+     * @param script         The current script with the same name, not null
+     * @return True if the script does not need to be executed again
+     */
+    protected boolean isOnlyFormattingChanged(ExecutedScript executedScript, Script script) {
+        if (!executedScript.isSuccessful()) {
+            return false;
+        }
+        if (script.isRepeatable() && !semanticCheckSumsForRepeatableScripts) {
+            return false;
+        }
+        if (script.isPostProcessingScript() && !semanticCheckSumsForPostprocessingScripts) {
+            return false;
+        }
+        if (script.isIncremental()) {
+            return false;
+        }
+        if (!executedScript.getScript().isScriptContentSemanticallyEqualTo(script)) {
+            return false;
+        }
+        logger.info("Only comments or formatting of script " + script.getFileName() + " changed. The script will not be executed again.");
+        return true;
+    }
+
+
     /**
      * Register that the given script has been deleted since the last update
      *
@@ -0,0 +1,121 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.analyzer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.Databases;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.structure.model.DbItemIdentifier;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.dbmaintain.structure.model.DbItemIdentifier.getItemIdentifier;
+import static org.dbmaintain.structure.model.DbItemType.TABLE;
+
+/**
+ * Determines the tables that are created or altered by scripts, so that the constraints only need to be disabled on
+ * these tables after an incremental update.
+ * <p/>
+ * This is a best effort guess based on the create table and alter table statements that occur in the scripts: tables
+ * that are created or altered in another way, e.g. using dynamic sql in a stored procedure, are not found. A table that
+ * is found but that does not exist (anymore), e.g. because it only occurs in a comment, is ignored when disabling the
+ * constraints.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class UpdatedTablesAnalyzer {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(UpdatedTablesAnalyzer.class);
+
+    /* Matches a statement that creates or alters a table, group 1 is the (possibly qualified) name of the table */
+    private static final Pattern TABLE_UPDATE_PATTERN = Pattern.compile("(?:create\\s+(?:(?:global|local|temporary|temp|cached|memory|text|unlogged)\\s+)*table(?:\\s+if\\s+not\\s+exists)?|alter\\s+table(?:\\s+if\\s+exists)?(?:\\s+only)?)\\s+([\\w$#\"]+(?:\\s*\\.\\s*[\\w$#\"]+)*)", Pattern.CASE_INSENSITIVE);
+
+    /* The db support instances, not null */
+    protected Databases databases;
+
+
+    /**
+     * @param databases The db support instances, not null
+     */
+    public UpdatedTablesAnalyzer(Databases databases) {
+        this.databases = databases;
+    }
+
+
+    /**
+     * Determines the tables that are created or altered by the given scripts. Only tables of the configured schemas
+     * are returned.
+     *
+     * @param scripts The scripts, not null
+     * @return The identifiers of the tables, not null
+     */
+    public Set<DbItemIdentifier> getUpdatedTables(Collection<Script> scripts) {
+        Set<DbItemIdentifier> updatedTables = new HashSet<DbItemIdentifier>();
+        for (Script script : scripts) {
+            Database database = getDatabase(script);
+            if (database == null) {
+                // the database is disabled, skip
+                continue;
+            }
+            String scriptContent = script.getScriptContentHandle().getScriptContentsAsString(Long.MAX_VALUE);
+            Matcher matcher = TABLE_UPDATE_PATTERN.matcher(scriptContent);
+            while (matcher.find()) {
+                DbItemIdentifier table = getTableIdentifier(matcher.group(1), database);
+                if (table != null) {
+                    updatedTables.add(table);
+                }
+            }
+        }
+        logger.debug("Found " + updatedTables.size() + " tables that were created or altered by " + scripts.size() + " scripts.");
+        return updatedTables;
+    }
+
+
+    /**
+     * @param script The script, not null
+     * @return The database on which the script is executed, null if the database is disabled
+     */
+    protected Database getDatabase(Script script) {
+        String targetDatabaseName = script.getTargetDatabaseName();
+        if (targetDatabaseName == null) {
+            return databases.getDefaultDatabase();
+        }
+        return databases.getDatabase(targetDatabaseName);
+    }
+
+    /**
+     * @param tableName The (possibly qualified) table name as it occurs in a script, not null
+     * @param database  The database of the script, not null
+     * @return The identifier of the table, null if the table is not in one of the configured schemas
+     */
+    protected DbItemIdentifier getTableIdentifier(String tableName, Database database) {
+        String[] nameParts = tableName.split("\\s*\\.\\s*");
+        String schemaName = nameParts.length > 1 ? nameParts[nameParts.length - 2] : database.getDefaultSchemaName();
+        DbItemIdentifier table = getItemIdentifier(TABLE, schemaName, nameParts[nameParts.length - 1], database);
+        if (!database.getSchemaNames().contains(table.getSchemaName())) {
+            return null;
+        }
+        return table;
+    }
+}
@@ -47,6 +47,10 @@ public class ExecutedScriptInfoSourceFactory extends FactoryWithDatabase<Execute
         String fileLastModifiedAtColumnName = defaultDatabase.toCorrectCaseIdentifier(getString(PROPERTY_FILE_LAST_MODIFIED_AT_COLUMN_NAME, getConfiguration()));
         String checksumColumnName = defaultDatabase.toCorrectCaseIdentifier(getString(PROPERTY_CHECKSUM_COLUMN_NAME, getConfiguration()));
         int checksumColumnSize = PropertyUtils.getInt(PROPERTY_CHECKSUM_COLUMN_SIZE, getConfiguration());
+        String semanticChecksumColumnName = null;
+        if (PropertyUtils.getBoolean(PROPERTY_SEMANTIC_CHECKSUM_REPEATABLE_SCRIPTS_ENABLED, getConfiguration()) || PropertyUtils.getBoolean(PROPERTY_SEMANTIC_CHECKSUM_POSTPROCESSING_SCRIPTS_ENABLED, getConfiguration())) {
+            semanticChecksumColumnName = defaultDatabase.toCorrectCaseIdentifier(getString(PROPERTY_SEMANTIC_CHECKSUM_COLUMN_NAME, getConfiguration()));
+        }
         String executedAtColumnName = defaultDatabase.toCorrectCaseIdentifier(getString(PROPERTY_EXECUTED_AT_COLUMN_NAME, getConfiguration()));
         int executedAtColumnSize = PropertyUtils.getInt(PROPERTY_EXECUTED_AT_COLUMN_SIZE, getConfiguration());
         String succeededColumnName = defaultDatabase.toCorrectCaseIdentifier(getString(PROPERTY_SUCCEEDED_COLUMN_NAME, getConfiguration()));
@@ -61,9 +65,9 @@ public class ExecutedScriptInfoSourceFactory extends FactoryWithDatabase<Execute
 
         ScriptFactory scriptFactory = new ScriptFactory(scriptIndexRegexp, targetDatabaseRegexp, qualifierRegexp, registeredQualifiers, patchQualifiers, postProcessingScriptsDirName, baselineRevision);
         return new DefaultExecutedScriptInfoSource(autoCreateExecutedScriptsTable, executedScriptsTableName, fileNameColumnName, fileNameColumnSize,
-                fileLastModifiedAtColumnName, checksumColumnName, checksumColumnSize,
+                fileLastModifiedAtColumnName, checksumColumnName, checksumColumnSize, semanticChecksumColumnName,
                 executedAtColumnName, executedAtColumnSize, succeededColumnName, timestampFormat, defaultDatabase,
-                getSqlHandler(), scriptFactory);
+                getSqlHandler(), scriptFactory, getMetricsRecorder());
     }
 
 }
@@ -19,6 +19,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.metrics.MetricsRecorder;
+import org.dbmaintain.metrics.impl.NoOpMetricsRecorder;
 import org.dbmaintain.script.ExecutedScript;
 import org.dbmaintain.script.Script;
 import org.dbmaintain.script.ScriptFactory;
@@ -33,7 +35,9 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.util.*;
 
+import static java.lang.System.nanoTime;
 import static org.apache.commons.dbutils.DbUtils.closeQuietly;
+import static org.dbmaintain.metrics.Metric.EXECUTED_SCRIPT_INFO_DURATION;
 
 /**
  * Implementation of <code>VersionSource</code> that stores the version in the database.
@@ -60,6 +64,8 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
     /* The name of the database column in which the checksum calculated on the script content is stored */
     protected String checksumColumnName;
     protected int checksumColumnSize;
+    /* The name of the database column in which the checksum calculated on the script content without comments and formatting is stored, null if not stored */
+    protected String semanticChecksumColumnName;
     /* The name of the database column in which the script execution timestamp is stored */
     protected String executedAtColumnName;
     protected int executedAtColumnSize;
@@ -74,10 +80,31 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
 
     protected ScriptFactory scriptFactory;
 
+    /* Records the time needed to load and register the executed scripts */
+    protected MetricsRecorder metricsRecorder;
+
     public DefaultExecutedScriptInfoSource(boolean autoCreateExecutedScriptsTable, String executedScriptsTableName, String fileNameColumnName,
                                            int fileNameColumnSize, String fileLastModifiedAtColumnName, String checksumColumnName, int checksumColumnSize,
                                            String executedAtColumnName, int executedAtColumnSize, String succeededColumnName, DateFormat timestampFormat,
                                            Database defaultSupport, SQLHandler sqlHandler, ScriptFactory scriptFactory) {
+        this(autoCreateExecutedScriptsTable, executedScriptsTableName, fileNameColumnName, fileNameColumnSize, fileLastModifiedAtColumnName,
+                checksumColumnName, checksumColumnSize, executedAtColumnName, executedAtColumnSize, succeededColumnName, timestampFormat,
+                defaultSupport, sqlHandler, scriptFactory, new NoOpMetricsRecorder());
+    }
+
+    public DefaultExecutedScriptInfoSource(boolean autoCreateExecutedScriptsTable, String executedScriptsTableName, String fileNameColumnName,
+                                           int fileNameColumnSize, String fileLastModifiedAtColumnName, String checksumColumnName, int checksumColumnSize,
+                                           String executedAtColumnName, int executedAtColumnSize, String succeededColumnName, DateFormat timestampFormat,
+                                           Database defaultSupport, SQLHandler sqlHandler, ScriptFactory scriptFactory, MetricsRecorder metricsRecorder) {
+        this(autoCreateExecutedScriptsTable, executedScriptsTableName, fileNameColumnName, fileNameColumnSize, fileLastModifiedAtColumnName,
+                checksumColumnName, checksumColumnSize, null, executedAtColumnName, executedAtColumnSize, succeededColumnName, timestampFormat,
+                defaultSupport, sqlHandler, scriptFactory, metricsRecorder);
+    }
+
+    public DefaultExecutedScriptInfoSource(boolean autoCreateExecutedScriptsTable, String executedScriptsTableName, String fileNameColumnName,
+                                           int fileNameColumnSize, String fileLastModifiedAtColumnName, String checksumColumnName, int checksumColumnSize,
+                                           String semanticChecksumColumnName, String executedAtColumnName, int executedAtColumnSize, String succeededColumnName,
+                                           DateFormat timestampFormat, Database defaultSupport, SQLHandler sqlHandler, ScriptFactory scriptFactory, MetricsRecorder metricsRecorder) {
 
         this.defaultDatabase = defaultSupport;
         this.sqlHandler = sqlHandler;
@@ -88,11 +115,13 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
         this.fileLastModifiedAtColumnName = defaultDatabase.toCorrectCaseIdentifier(fileLastModifiedAtColumnName);
         this.checksumColumnName = defaultDatabase.toCorrectCaseIdentifier(checksumColumnName);
         this.checksumColumnSize = checksumColumnSize;
+        this.semanticChecksumColumnName = semanticChecksumColumnName == null ? null : defaultDatabase.toCorrectCaseIdentifier(semanticChecksumColumnName);
         this.executedAtColumnName = defaultDatabase.toCorrectCaseIdentifier(executedAtColumnName);
         this.executedAtColumnSize = executedAtColumnSize;
         this.succeededColumnName = defaultDatabase.toCorrectCaseIdentifier(succeededColumnName);
         this.timestampFormat = timestampFormat;
         this.scriptFactory = scriptFactory;
+        this.metricsRecorder = metricsRecorder;
     }
 
 
@@ -104,9 +133,11 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
             return cachedExecutedScripts;
         }
 
+        long startTime = nanoTime();
         checkExecutedScriptsTable();
 
         cachedExecutedScripts = doGetExecutedScripts();
+        metricsRecorder.recordDuration(EXECUTED_SCRIPT_INFO_DURATION, "load", nanoTime() - startTime);
         return cachedExecutedScripts;
     }
 
@@ -126,12 +157,13 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
             connection = defaultDatabase.getDataSource().getConnection();
             statement = connection.createStatement();
             resultSet = statement.executeQuery("select " + fileNameColumnName + ", " + fileLastModifiedAtColumnName + ", " +
-                    checksumColumnName + ", " + executedAtColumnName + ", " + succeededColumnName +
-                    " from " + getQualifiedExecutedScriptsTableName());
+                    checksumColumnName + ", " + (semanticChecksumColumnName == null ? "" : semanticChecksumColumnName + ", ") +
+                    executedAtColumnName + ", " + succeededColumnName + " from " + getQualifiedExecutedScriptsTableName());
 
             while (resultSet.next()) {
                 String fileName = resultSet.getString(fileNameColumnName);
                 String checkSum = resultSet.getString(checksumColumnName);
+                String semanticCheckSum = semanticChecksumColumnName == null ? null : resultSet.getString(semanticChecksumColumnName);
                 Long fileLastModifiedAt = resultSet.getLong(fileLastModifiedAtColumnName);
                 Date executedAt = null;
                 try {
@@ -142,7 +174,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
                 }
                 boolean succeeded = resultSet.getInt(succeededColumnName) == 1;
 
-                Script script = scriptFactory.createScriptWithoutContent(fileName, fileLastModifiedAt, checkSum);
+                Script script = scriptFactory.createScriptWithoutContent(fileName, fileLastModifiedAt, checkSum, semanticCheckSum);
                 if (!script.isIgnored()) {
                     ExecutedScript executedScript = new ExecutedScript(script, executedAt, succeeded);
                     executedScripts.add(executedScript);
@@ -163,6 +195,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
      * @param executedScript The script that was executed on the database
      */
     public void registerExecutedScript(ExecutedScript executedScript) {
+        long startTime = nanoTime();
         checkExecutedScriptsTable();
 
         if (getExecutedScripts().contains(executedScript)) {
@@ -170,6 +203,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
         } else {
             insertExecutedScript(executedScript);
         }
+        metricsRecorder.recordDuration(EXECUTED_SCRIPT_INFO_DURATION, "register", nanoTime() - startTime);
     }
 
 
@@ -185,9 +219,10 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
         String executedAt = timestampFormat.format(executedScript.getExecutedAt());
         String insertSql = "insert into " + getQualifiedExecutedScriptsTableName() +
                 " (" + fileNameColumnName + ", " + fileLastModifiedAtColumnName + ", " + checksumColumnName + ", " +
+                (semanticChecksumColumnName == null ? "" : semanticChecksumColumnName + ", ") +
                 executedAtColumnName + ", " + succeededColumnName + ") values ('" + executedScript.getScript().getFileName() +
-                "', " + executedScript.getScript().getFileLastModifiedAt() + ", '" +
-                executedScript.getScript().getCheckSum() + "', '" + executedAt + "', " + (executedScript.isSuccessful() ? "1" : "0") + ")";
+                "', " + executedScript.getScript().getFileLastModifiedAt() + ", '" + executedScript.getScript().getCheckSum() + "', " +
+                (semanticChecksumColumnName == null ? "" : getSemanticCheckSumValue(executedScript.getScript()) + ", ") + "'" + executedAt + "', " + (executedScript.isSuccessful() ? "1" : "0") + ")";
         sqlHandler.executeUpdateAndCommit(insertSql, defaultDatabase.getDataSource());
     }
 
@@ -205,6 +240,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
         String executedAt = timestampFormat.format(executedScript.getExecutedAt());
         String updateSql = "update " + getQualifiedExecutedScriptsTableName() +
                 " set " + checksumColumnName + " = '" + executedScript.getScript().getCheckSum() + "', " +
+                (semanticChecksumColumnName == null ? "" : semanticChecksumColumnName + " = " + getSemanticCheckSumValue(executedScript.getScript()) + ", ") +
                 fileLastModifiedAtColumnName + " = " + executedScript.getScript().getFileLastModifiedAt() + ", " +
                 executedAtColumnName + " = '" + executedAt + "', " +
                 succeededColumnName + " = " + (executedScript.isSuccessful() ? "1" : "0") +
@@ -241,6 +277,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
         String renameSql = "update " + getQualifiedExecutedScriptsTableName() +
                 " set " + fileNameColumnName + " = '" + renamedToScript.getFileName() + "', " +
                 checksumColumnName + " = '" + renamedToScript.getCheckSum() + "', " +
+                (semanticChecksumColumnName == null ? "" : semanticChecksumColumnName + " = " + getSemanticCheckSumValue(renamedToScript) + ", ") +
                 fileLastModifiedAtColumnName + " = " + renamedToScript.getFileLastModifiedAt() +
                 " where " + fileNameColumnName + " = '" + executedScript.getScript().getFileName() + "'";
         sqlHandler.executeUpdateAndCommit(renameSql, defaultDatabase.getDataSource());
@@ -248,6 +285,24 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
     }
 
 
+    /**
+     * The semantic checksum is only needed, and therefore only calculated, for repeatable and postprocessing scripts.
+     *
+     * @param script The script, not null
+     * @return The quoted semantic checksum of the script or null (unquoted) if it is not stored for this script, not null
+     */
+    protected String getSemanticCheckSumValue(Script script) {
+        if (!script.isRepeatable() && !script.isPostProcessingScript()) {
+            return "null";
+        }
+        String semanticCheckSum = script.getSemanticCheckSum();
+        if (semanticCheckSum == null) {
+            return "null";
+        }
+        return "'" + semanticCheckSum + "'";
+    }
+
+
     public void deleteAllExecutedPostprocessingScripts() {
         checkExecutedScriptsTable();
 
@@ -313,6 +368,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
         }
         // check valid
         if (isExecutedScriptsTableValid()) {
+            checkSemanticChecksumColumn();
             validExecutedScriptsTable = true;
             return true;
         }
@@ -333,6 +389,33 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
     }
 
 
+    /**
+     * Checks whether the semantic checksum column exists, if it is used. This column was added later on, so an existing
+     * scripts table is not dropped when it is missing: the column is added if auto-create is true, else an exception is raised.
+     */
+    protected void checkSemanticChecksumColumn() {
+        if (semanticChecksumColumnName == null) {
+            return;
+        }
+        Set<String> columnNames = defaultDatabase.getColumnNames(defaultDatabase.getDefaultSchemaName(), executedScriptsTableName);
+        if (columnNames.contains(semanticChecksumColumnName)) {
+            return;
+        }
+        String addColumnStatement = "alter table " + getQualifiedExecutedScriptsTableName() + " add " + semanticChecksumColumnName + " " + defaultDatabase.getTextDataType(checksumColumnSize);
+        if (autoCreateExecutedScriptsTable) {
+            logger.warn("Executed scripts table " + getQualifiedExecutedScriptsTableName() + " doesn't have a column " + semanticChecksumColumnName + " yet. The column is added automatically.");
+            sqlHandler.executeUpdateAndCommit(addColumnStatement, defaultDatabase.getDataSource());
+            defaultDatabase.invalidateCatalogCache();
+            return;
+        }
+        String message = "Executed scripts table " + getQualifiedExecutedScriptsTableName() + " doesn't have a column " + semanticChecksumColumnName + " yet.\n";
+        message += "Please add it manually or let DbMaintain add it automatically by setting the property autoCreateDbMaintainScriptsTable to true.\n";
+        message += "The column can be added manually by executing following statement:\n";
+        message += addColumnStatement;
+        throw new DbMaintainException(message);
+    }
+
+
     /**
      * Checks if the version table and columns are available and if a record exists in which the version info is stored.
      * If not, the table, columns and record are created.
@@ -368,6 +451,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
 
         // Create db version table
         sqlHandler.executeUpdateAndCommit(getCreateExecutedScriptTableStatement(), defaultDatabase.getDataSource());
+        defaultDatabase.invalidateCatalogCache();
     }
 
     /**
@@ -379,6 +463,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
                 fileNameColumnName + " " + defaultDatabase.getTextDataType(fileNameColumnSize) + ", " +
                 fileLastModifiedAtColumnName + " " + defaultDatabase.getLongDataType() + ", " +
                 checksumColumnName + " " + defaultDatabase.getTextDataType(checksumColumnSize) + ", " +
+                (semanticChecksumColumnName == null ? "" : semanticChecksumColumnName + " " + defaultDatabase.getTextDataType(checksumColumnSize) + ", ") +
                 executedAtColumnName + " " + defaultDatabase.getTextDataType(executedAtColumnSize) + ", " +
                 succeededColumnName + " " + longDataType + " )";
     }
@@ -17,9 +17,14 @@ package org.dbmaintain.script.runner;
 
 import org.dbmaintain.config.FactoryWithDatabase;
 import org.dbmaintain.config.PropertyUtils;
+import org.dbmaintain.script.parser.ScriptParserFactory;
 import org.dbmaintain.script.runner.impl.db2.Db2ScriptRunner;
 
+import java.util.Map;
+
 import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_DB2_COMMAND;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_DB2_PERSISTENT_SESSION_ENABLED;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_NATIVE_SCRIPT_RUNNER_MAX_OUTPUT_SIZE;
 
 /**
  * @author Tim Ducheyne
@@ -30,6 +35,9 @@ public class Db2ScriptRunnerFactory extends FactoryWithDatabase<ScriptRunner> {
 
     public ScriptRunner createInstance() {
         String db2Command = PropertyUtils.getString(PROPERTY_DB2_COMMAND, getConfiguration());
-        return new Db2ScriptRunner(getDatabases(), db2Command);
+        boolean persistentSessionEnabled = PropertyUtils.getBoolean(PROPERTY_DB2_PERSISTENT_SESSION_ENABLED, getConfiguration());
+        Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap = factoryWithDatabaseContext.getDatabaseDialectScriptParserFactoryMap();
+        int maxOutputSize = PropertyUtils.getInt(PROPERTY_NATIVE_SCRIPT_RUNNER_MAX_OUTPUT_SIZE, getConfiguration());
+        return new Db2ScriptRunner(getDatabases(), db2Command, persistentSessionEnabled, databaseDialectScriptParserFactoryMap, maxOutputSize);
     }
 }
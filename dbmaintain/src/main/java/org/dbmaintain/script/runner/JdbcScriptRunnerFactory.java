@@ -16,11 +16,15 @@
 package org.dbmaintain.script.runner;
 
 import org.dbmaintain.config.FactoryWithDatabase;
+import org.dbmaintain.config.PropertyUtils;
 import org.dbmaintain.script.parser.ScriptParserFactory;
 import org.dbmaintain.script.runner.impl.JdbcScriptRunner;
 
 import java.util.Map;
 
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_JDBC_SCRIPT_RUNNER_BATCH_INSERTS_ENABLED;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_JDBC_SCRIPT_RUNNER_BATCH_INSERTS_MAX_BATCH_SIZE;
+
 /**
  * @author Tim Ducheyne
  * @author Filip Neven
@@ -30,7 +34,14 @@ public class JdbcScriptRunnerFactory extends FactoryWithDatabase<ScriptRunner> {
 
     public ScriptRunner createInstance() {
         Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap = factoryWithDatabaseContext.getDatabaseDialectScriptParserFactoryMap();
-        return new JdbcScriptRunner(databaseDialectScriptParserFactoryMap, getDatabases(), getSqlHandler());
+        boolean batchInsertsEnabled = PropertyUtils.getBoolean(PROPERTY_JDBC_SCRIPT_RUNNER_BATCH_INSERTS_ENABLED, getConfiguration());
+        int maxInsertBatchSize = PropertyUtils.getInt(PROPERTY_JDBC_SCRIPT_RUNNER_BATCH_INSERTS_MAX_BATCH_SIZE, getConfiguration());
+
+        JdbcScriptRunner jdbcScriptRunner = new JdbcScriptRunner(databaseDialectScriptParserFactoryMap, getDatabases(), getSqlHandler());
+        jdbcScriptRunner.setBatchInsertsEnabled(batchInsertsEnabled);
+        jdbcScriptRunner.setMaxInsertBatchSize(maxInsertBatchSize);
+        jdbcScriptRunner.setMetricsRecorder(getMetricsRecorder());
+        return jdbcScriptRunner;
     }
 
 }
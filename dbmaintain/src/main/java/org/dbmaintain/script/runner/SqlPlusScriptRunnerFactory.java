@@ -19,7 +19,11 @@ import org.dbmaintain.config.FactoryWithDatabase;
 import org.dbmaintain.config.PropertyUtils;
 import org.dbmaintain.script.runner.impl.SqlPlusScriptRunner;
 
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_NATIVE_SCRIPT_RUNNER_MAX_OUTPUT_SIZE;
 import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_SQL_PLUS_COMMAND;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_SQL_PLUS_PERSISTENT_SESSION_ENABLED;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_SQL_PLUS_PERSISTENT_SESSION_SCRIPT_TIMEOUT;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_SQL_PLUS_STREAM_SCRIPT_CONTENT_ENABLED;
 
 /**
  * @author Tim Ducheyne
@@ -30,6 +34,13 @@ public class SqlPlusScriptRunnerFactory extends FactoryWithDatabase<ScriptRunner
 
     public ScriptRunner createInstance() {
         String sqlPlusCommand = PropertyUtils.getString(PROPERTY_SQL_PLUS_COMMAND, getConfiguration());
-        return new SqlPlusScriptRunner(getDatabases(), sqlPlusCommand);
+        boolean persistentSessionEnabled = PropertyUtils.getBoolean(PROPERTY_SQL_PLUS_PERSISTENT_SESSION_ENABLED, getConfiguration());
+        boolean streamScriptContentEnabled = PropertyUtils.getBoolean(PROPERTY_SQL_PLUS_STREAM_SCRIPT_CONTENT_ENABLED, getConfiguration());
+        int maxOutputSize = PropertyUtils.getInt(PROPERTY_NATIVE_SCRIPT_RUNNER_MAX_OUTPUT_SIZE, getConfiguration());
+        long sessionScriptTimeout = PropertyUtils.getLong(PROPERTY_SQL_PLUS_PERSISTENT_SESSION_SCRIPT_TIMEOUT, getConfiguration());
+
+        SqlPlusScriptRunner sqlPlusScriptRunner = new SqlPlusScriptRunner(getDatabases(), sqlPlusCommand, persistentSessionEnabled, streamScriptContentEnabled, maxOutputSize);
+        sqlPlusScriptRunner.setSessionScriptTimeout(sessionScriptTimeout);
+        return sqlPlusScriptRunner;
     }
 }
@@ -19,13 +19,12 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.util.DbMaintainException;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import static java.util.Arrays.asList;
 import static org.apache.commons.lang.StringUtils.isBlank;
@@ -39,9 +38,14 @@ public class Application {
     /* The logger instance for this class */
     private static Log logger = LogFactory.getLog(Application.class);
 
+    /* The default maximum nr of chars of output that is kept for a process */
+    public static final int DEFAULT_MAX_OUTPUT_SIZE = 1024 * 1024;
+
     private String name;
     private String command;
     private Map<String, String> environmentVariables;
+    /* The maximum nr of chars of output that is kept for a process, the output in between the head and tail is dropped */
+    private int maxOutputSize;
 
 
     public Application(String name, String command) {
@@ -49,9 +53,14 @@ public class Application {
     }
 
     public Application(String name, String command, Map<String, String> environmentVariables) {
+        this(name, command, environmentVariables, DEFAULT_MAX_OUTPUT_SIZE);
+    }
+
+    public Application(String name, String command, Map<String, String> environmentVariables, int maxOutputSize) {
         this.name = name;
         this.command = command;
         this.environmentVariables = environmentVariables;
+        this.maxOutputSize = maxOutputSize;
     }
 
 
@@ -60,35 +69,97 @@ public class Application {
     }
 
     public ProcessOutput execute(boolean logCommand, String... arguments) {
+        return execute(logCommand, null, arguments);
+    }
+
+    /**
+     * Executes the application and streams the given input to its standard input. The standard input is closed
+     * when all input was written.
+     *
+     * @param input     The input for the process, not null
+     * @param arguments The arguments for the process, not null
+     * @return The output of the process, not null
+     */
+    public ProcessOutput execute(ProcessInput input, String... arguments) {
+        return execute(true, input, arguments);
+    }
+
+    protected ProcessOutput execute(boolean logCommand, ProcessInput input, String... arguments) {
         try {
             List<String> commandWithArguments = getProcessArguments(arguments);
 
+            logCommand(commandWithArguments, logCommand);
+
             ProcessBuilder processBuilder = createProcessBuilder(commandWithArguments);
             Process process = processBuilder.start();
             OutputProcessor outputProcessor = new OutputProcessor(process);
-            outputProcessor.start();
-            process.waitFor();
-
-            String output = outputProcessor.getOutput();
-            int exitValue = process.exitValue();
+            Future<?> outputProcessed = outputProcessor.start();
+            if (input != null) {
+                writeInput(process, input);
+            }
+            int exitValue = process.waitFor();
+            // make sure all output was read
+            outputProcessed.get();
 
-            logOutput(commandWithArguments, output, logCommand);
-            return new ProcessOutput(output, exitValue);
+            return new ProcessOutput(outputProcessor.getOutput(), exitValue);
 
         } catch (Exception e) {
             throw new DbMaintainException("Failed to execute command.", e);
         }
     }
 
-    protected void logOutput(List<String> commandWithArguments, String output, boolean logCommand) {
-        StringBuilder command = new StringBuilder();
-        if (logCommand) {
-            for (String part : commandWithArguments) {
-                command.append(part);
-                command.append(" ");
+    /**
+     * Starts a long running process of the application. Commands can then be sent to the process through
+     * its standard input.
+     *
+     * @param arguments The arguments for the process, not null
+     * @return The session for the started process, not null
+     */
+    public ApplicationSession start(String... arguments) {
+        try {
+            List<String> commandWithArguments = getProcessArguments(arguments);
+            logger.debug(name + ": starting session");
+
+            ProcessBuilder processBuilder = createProcessBuilder(commandWithArguments);
+            Process process = processBuilder.start();
+            return new ApplicationSession(name, process, maxOutputSize);
+
+        } catch (Exception e) {
+            throw new DbMaintainException("Failed to start " + name + ".", e);
+        }
+    }
+
+    /**
+     * Writes the input to the standard input of the process. The output is read at the same time by the output
+     * processor, so a process that produces output while reading its input does not block.
+     * If the process ends before all input was written, the error is ignored: the exit value and output of the
+     * process will then tell what went wrong.
+     */
+    protected void writeInput(Process process, ProcessInput input) {
+        ProcessInputWriter processInputWriter = new ProcessInputWriter(process.getOutputStream());
+        try {
+            input.write(processInputWriter);
+        } catch (IOException e) {
+            logger.debug(name + ": unable to write all input, the process may have ended.", e);
+        } finally {
+            try {
+                processInputWriter.close();
+            } catch (IOException e) {
+                // ignore, the process ended
             }
         }
-        logger.debug(name + ": " + command + "\n" + output);
+    }
+
+    protected void logCommand(List<String> commandWithArguments, boolean logCommand) {
+        if (!logCommand || !logger.isDebugEnabled()) {
+            return;
+        }
+        StringBuilder command = new StringBuilder();
+        for (String part : commandWithArguments) {
+            command.append(part);
+            command.append(" ");
+        }
+        logger.debug(name + ": " + command);
     }
 
 
@@ -108,6 +179,15 @@ public class Application {
     }
 
 
+    /**
+     * The content that is sent to the standard input of a process.
+     */
+    public static interface ProcessInput {
+
+        void write(ProcessInputWriter processInputWriter) throws IOException;
+    }
+
+
     public static class ProcessOutput {
 
         private String output;
@@ -128,39 +208,30 @@ public class Application {
     }
 
 
-    protected class OutputProcessor extends Thread {
+    /**
+     * Collects the output of a process in a bounded buffer and logs every line as soon as it was read.
+     */
+    protected class OutputProcessor extends ProcessOutputReader {
 
-        private StringBuilder outputStringBuilder = new StringBuilder();
-        private Process process;
+        private BoundedOutputBuffer outputBuffer = new BoundedOutputBuffer(maxOutputSize);
 
         public OutputProcessor(Process process) {
-            this.process = process;
-        }
-
-        @Override
-        public void run() {
-            try {
-                appendProcessOutput(process);
-
-            } catch (Throwable t) {
-                logger.warn("Unable to handle application output for " + command, t);
-            }
+            super(Application.this.name, process.getInputStream());
         }
 
+        /**
+         * @return The output of the process, only the head and the tail if the output was too large, not null
+         */
         public String getOutput() {
-            return outputStringBuilder.toString();
+            return outputBuffer.toString();
         }
 
-        protected void appendProcessOutput(Process process) throws IOException {
-            BufferedReader outReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            String line;
-            while ((line = outReader.readLine()) != null) {
-                if (!isBlank(line)) {
-                    outputStringBuilder.append(line);
-                    outputStringBuilder.append('\n');
-                }
+        @Override
+        protected void handleLine(String line) {
+            if (!isBlank(line)) {
+                logger.debug(name + ": " + line);
+                outputBuffer.appendLine(line);
             }
-            outReader.close();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.runner.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.util.DbMaintainException;
+
+import java.io.*;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.apache.commons.lang.StringUtils.isBlank;
+
+/**
+ * A long running process of an application to which commands are sent through its standard input. This makes it
+ * possible to execute several scripts using the same process, instead of starting a new process for every script.
+ * <p/>
+ * To know when a command has completed, the caller should end its input with a command that makes the application
+ * print a marker line and then read the output until this marker using {@link #readUntil}. The marker should be
+ * created using {@link #createMarker}, before the input is sent.
+ * <p/>
+ * The output is read concurrently and is kept in a {@link BoundedOutputBuffer} per command, so the memory that is used
+ * does not depend on the amount of output, even if the output is not read while the input is being sent.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ApplicationSession {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(ApplicationSession.class);
+
+    /* The marker of the output that is put in the queue when the end of the output of the process is reached */
+    private static final String END_OF_OUTPUT = new String("<end of output>");
+
+    private String name;
+    private Process process;
+    private ProcessInputWriter processInput;
+    /* The output of the process per marker that was not read yet */
+    private BlockingQueue<MarkedOutput> markedOutputs = new LinkedBlockingQueue<MarkedOutput>();
+    /* The markers that were created but not yet found in the output */
+    private Set<String> expectedMarkers = new HashSet<String>();
+    /* Counter used to create unique markers */
+    private long markerCount;
+    /* The maximum nr of chars of output that is kept per marker, the output in between the head and tail is dropped */
+    private int maxOutputSize;
+
+
+    public ApplicationSession(String name, Process process) {
+        this(name, process, Application.DEFAULT_MAX_OUTPUT_SIZE);
+    }
+
+    public ApplicationSession(String name, Process process, int maxOutputSize) {
+        this.name = name;
+        this.process = process;
+        this.maxOutputSize = maxOutputSize;
+        this.processInput = new ProcessInputWriter(process.getOutputStream());
+        new OutputReader().start();
+    }
+
+
+    /**
+     * Creates a unique marker. The output of the process up to the line containing only this marker can then be read
+     * using {@link #readUntil}.
+     *
+     * @return The marker, not null
+     */
+    public String createMarker() {
+        synchronized (expectedMarkers) {
+            String marker = "DBMAINTAIN-END-" + System.currentTimeMillis() + "-" + (++markerCount);
+            expectedMarkers.add(marker);
+            return marker;
+        }
+    }
+
+
+    /**
+     * Sends the given input to the standard input of the process.
+     *
+     * @param input The input, not null
+     */
+    public void write(String input) {
+        try {
+            processInput.write(input);
+            processInput.flush();
+        } catch (IOException e) {
+            throw new DbMaintainException("Unable to send input to " + name + ". The process may have ended unexpectedly.", e);
+        }
+    }
+
+
+    /**
+     * Sends the content of the given reader to the standard input of the process. The reader is not closed.
+     *
+     * @param input The input, not null
+     */
+    public void write(Reader input) {
+        try {
+            processInput.write(input);
+            processInput.flush();
+        } catch (IOException e) {
+            throw new DbMaintainException("Unable to send input to " + name + ". The process may have ended unexpectedly.", e);
+        }
+    }
+
+
+    /**
+     * Reads the output of the process up to a line containing only the given marker, created by {@link #createMarker}.
+     * If the process ends before the marker was found, all remaining output is returned.
+     *
+     * @param marker The marker, not null
+     * @return The output of the process before the marker line, not null
+     */
+    public SessionOutput readUntil(String marker) {
+        return readUntil(marker, 0);
+    }
+
+    /**
+     * Same as {@link #readUntil(String)}, but stops waiting for the marker when the given timeout expires. The output
+     * that was read until then is returned and is marked as timed out. The process is then probably still busy or
+     * waiting for more input, the session should not be used anymore.
+     *
+     * @param marker        The marker, not null
+     * @param timeoutMillis The maximum time to wait in milliseconds, 0 to wait until the marker is found or the process ends
+     * @return The output of the process before the marker line, not null
+     */
+    public SessionOutput readUntil(String marker, long timeoutMillis) {
+        StringBuilder output = new StringBuilder();
+        long deadline = System.nanoTime() + MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            MarkedOutput markedOutput;
+            while ((markedOutput = takeMarkedOutput(timeoutMillis, deadline)) != null && markedOutput.getMarker() != END_OF_OUTPUT) {
+                output.append(markedOutput.getOutput());
+                if (marker.equals(markedOutput.getMarker())) {
+                    return new SessionOutput(output.toString(), true);
+                }
+            }
+            if (markedOutput == null) {
+                return new SessionOutput(output.toString(), false, true);
+            }
+            output.append(markedOutput.getOutput());
+            // keep the end of the output for subsequent reads
+            markedOutputs.put(new MarkedOutput(END_OF_OUTPUT, ""));
+            return new SessionOutput(output.toString(), false);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DbMaintainException("Interrupted while waiting for the output of " + name, e);
+        }
+    }
+
+    /**
+     * @return The next output of the process, null if the timeout expired
+     */
+    private MarkedOutput takeMarkedOutput(long timeoutMillis, long deadline) throws InterruptedException {
+        if (timeoutMillis <= 0) {
+            return markedOutputs.take();
+        }
+        return markedOutputs.poll(deadline - System.nanoTime(), NANOSECONDS);
+    }
+
+
+    /**
+     * Waits for the process to end.
+     *
+     * @return The exit value of the process
+     */
+    public int waitFor() {
+        try {
+            return process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DbMaintainException("Interrupted while waiting for " + name + " to end", e);
+        }
+    }
+
+
+    /**
+     * Closes the standard input of the process, waits for the process to end and returns the remaining output.
+     * If something goes wrong, the process is killed.
+     *
+     * @return The remaining output, not null
+     */
+    public SessionOutput close() {
+        try {
+            closeProcessInput();
+            SessionOutput sessionOutput = readUntil(END_OF_OUTPUT);
+            waitFor();
+            return sessionOutput;
+        } finally {
+            process.destroy();
+        }
+    }
+
+
+    /**
+     * Kills the process, without waiting for it to complete its work.
+     */
+    public void destroy() {
+        closeProcessInput();
+        process.destroy();
+    }
+
+
+    protected void closeProcessInput() {
+        try {
+            processInput.close();
+        } catch (IOException e) {
+            // ignore, the process already ended
+        }
+    }
+
+
+    public static class SessionOutput {
+
+        private String output;
+        /* False if the process ended before the marker was found */
+        private boolean markerFound;
+        /* True if the marker was not found before the timeout expired */
+        private boolean timedOut;
+
+        public SessionOutput(String output, boolean markerFound) {
+            this(output, markerFound, false);
+        }
+
+        public SessionOutput(String output, boolean markerFound, boolean timedOut) {
+            this.output = output;
+            this.markerFound = markerFound;
+            this.timedOut = timedOut;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        public boolean isMarkerFound() {
+            return markerFound;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+    }
+
+
+    /**
+     * The output of the process up to a marker line.
+     */
+    protected static class MarkedOutput {
+
+        private String marker;
+        private String output;
+
+        public MarkedOutput(String marker, String output) {
+            this.marker = marker;
+            this.output = output;
+        }
+
+        public String getMarker() {
+            return marker;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+    }
+
+
+    /**
+     * Collects the lines of output of the process in a bounded buffer. When a marker line is found, the collected
+     * output is put in the queue, so that it can be read by {@link #readUntil}.
+     */
+    protected class OutputReader extends ProcessOutputReader {
+
+        /* The output since the previous marker */
+        private BoundedOutputBuffer output = new BoundedOutputBuffer(maxOutputSize);
+
+        public OutputReader() {
+            super(ApplicationSession.this.name, ApplicationSession.this.process.getInputStream());
+        }
+
+        @Override
+        protected void handleLine(String line) throws InterruptedException {
+            String trimmedLine = line.trim();
+            boolean marker;
+            synchronized (expectedMarkers) {
+                marker = expectedMarkers.remove(trimmedLine);
+            }
+            if (marker) {
+                markedOutputs.put(new MarkedOutput(trimmedLine, output.toString()));
+                output = new BoundedOutputBuffer(maxOutputSize);
+            } else if (!isBlank(line)) {
+                logger.debug(name + ": " + line);
+                output.appendLine(line);
+            }
+        }
+
+        @Override
+        protected void endOfOutput() {
+            markedOutputs.add(new MarkedOutput(END_OF_OUTPUT, output.toString()));
+        }
+    }
+}
@@ -43,10 +43,17 @@ public abstract class BaseNativeScriptRunner implements ScriptRunner {
     private static Log logger = LogFactory.getLog(BaseNativeScriptRunner.class);
 
     protected Databases databases;
+    /* The maximum nr of chars of output of the native tool that is kept for a script */
+    protected int maxOutputSize;
 
 
     public BaseNativeScriptRunner(Databases databases) {
+        this(databases, Application.DEFAULT_MAX_OUTPUT_SIZE);
+    }
+
+    public BaseNativeScriptRunner(Databases databases, int maxOutputSize) {
         this.databases = databases;
+        this.maxOutputSize = maxOutputSize;
     }
 
     public void initialize() {
@@ -71,8 +78,12 @@ public abstract class BaseNativeScriptRunner implements ScriptRunner {
                 return;
             }
 
-            File scriptFile = createTemporaryScriptFile(script);
-            executeScript(scriptFile, targetDatabase);
+            try {
+                executeScript(script, targetDatabase);
+            } finally {
+                // the script can have changed the structure of the database, also when it failed halfway
+                targetDatabase.invalidateCatalogCache();
+            }
 
         } catch (Exception e) {
             throw new DbMaintainException("Error executing script " + script.getFileName(), e);
@@ -80,6 +91,23 @@ public abstract class BaseNativeScriptRunner implements ScriptRunner {
     }
 
 
+    /**
+     * Executes the script on the given database. By default, the content of the script is copied to a temporary
+     * file that is passed to the native tool. The file is deleted as soon as the script has been executed.
+     * Override to pass the content of the script in another way, e.g. by streaming it to the standard input of the tool.
+     *
+     * @param script         The script, not null
+     * @param targetDatabase The database on which to execute the script, not null
+     */
+    protected void executeScript(Script script, Database targetDatabase) throws Exception {
+        File scriptFile = createTemporaryScriptFile(script);
+        try {
+            executeScript(scriptFile, targetDatabase);
+        } finally {
+            deleteTemporaryFile(scriptFile);
+        }
+    }
+
     protected abstract void executeScript(File scriptFile, Database targetDatabase) throws Exception;
 
 
@@ -97,6 +125,12 @@ public abstract class BaseNativeScriptRunner implements ScriptRunner {
         return temporaryScriptFile;
     }
 
+    protected void deleteTemporaryFile(File temporaryFile) {
+        if (!temporaryFile.delete()) {
+            logger.debug("Unable to delete temporary file " + temporaryFile + ". It will be deleted when the JVM exits.");
+        }
+    }
+
     protected String getTemporaryScriptName(Script script) {
         return currentTimeMillis() + script.getFileNameWithoutPath();
     }
@@ -0,0 +1,99 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.runner.impl;
+
+/**
+ * Keeps the output of a process in a buffer of a fixed size. If the output is larger than this size, only the head
+ * and the tail of the output are kept: the first half of the buffer holds the start of the output, the second half
+ * is a ring buffer that holds the most recent output. This way, the memory that is used does not depend on the
+ * amount of output of the process, while the output still shows how the process started and where it failed.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class BoundedOutputBuffer {
+
+    private int maxHeadSize;
+    private StringBuilder head;
+    /* Ring buffer with the most recent output that did not fit in the head */
+    private char[] tail;
+    private int tailStart;
+    private int tailLength;
+    /* The nr of chars that were dropped from the tail */
+    private long nrOfOmittedChars;
+
+
+    /**
+     * @param maxSize The maximum nr of chars to keep, at least 2
+     */
+    public BoundedOutputBuffer(int maxSize) {
+        this.maxHeadSize = maxSize / 2;
+        this.head = new StringBuilder(Math.min(maxHeadSize, 1024));
+        this.tail = new char[maxSize - maxHeadSize];
+    }
+
+
+    public synchronized void appendLine(String line) {
+        append(line);
+        append('\n');
+    }
+
+    public synchronized void append(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            append(text.charAt(i));
+        }
+    }
+
+    public synchronized void append(char c) {
+        if (head.length() < maxHeadSize) {
+            head.append(c);
+            return;
+        }
+        if (tailLength < tail.length) {
+            tail[(tailStart + tailLength++) % tail.length] = c;
+            return;
+        }
+        // overwrite the oldest char
+        tail[tailStart] = c;
+        tailStart = (tailStart + 1) % tail.length;
+        nrOfOmittedChars++;
+    }
+
+    /**
+     * @return True if output was dropped because the output was larger than the buffer
+     */
+    public synchronized boolean isTruncated() {
+        return nrOfOmittedChars > 0;
+    }
+
+    /**
+     * @return The kept output. If output was dropped, this is indicated between the head and tail, not null
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder result = new StringBuilder(head.length() + tailLength + 64);
+        result.append(head);
+        if (nrOfOmittedChars > 0) {
+            result.append("\n... ");
+            result.append(nrOfOmittedChars);
+            result.append(" characters of output omitted ...\n");
+        }
+        for (int i = 0; i < tailLength; i++) {
+            result.append(tail[(tailStart + i) % tail.length]);
+        }
+        return result.toString();
+    }
+}
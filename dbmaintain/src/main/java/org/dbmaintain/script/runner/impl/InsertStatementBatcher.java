@@ -0,0 +1,105 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.runner.impl;
+
+import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.util.DbMaintainException;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Executes the statements of a script, collecting consecutive insert statements of the same shape (same table, same
+ * columns and same null values) into a single batch of bound parameters. See {@link InsertStatementRewriter} for the
+ * statements that can be rewritten. All other statements are executed as is, after the pending batch was executed,
+ * so that the order of the statements in the script is preserved.
+ * <p/>
+ * Make sure to call {@link #flush()} after the last statement of the script.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class InsertStatementBatcher {
+
+    protected InsertStatementRewriter insertStatementRewriter;
+    protected SQLHandler sqlHandler;
+    protected DataSource dataSource;
+    /* The max nr of inserts in one batch */
+    protected int maxBatchSize;
+
+    /* The rewritten sql of the pending batch, null if there is no pending batch */
+    protected String pendingSql;
+    /* The original statement of the first insert of the pending batch */
+    protected String pendingStatement;
+    /* The parameter values of the inserts of the pending batch */
+    protected List<List<Object>> pendingParameters = new ArrayList<List<Object>>();
+
+
+    public InsertStatementBatcher(InsertStatementRewriter insertStatementRewriter, SQLHandler sqlHandler, DataSource dataSource, int maxBatchSize) {
+        this.insertStatementRewriter = insertStatementRewriter;
+        this.sqlHandler = sqlHandler;
+        this.dataSource = dataSource;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+
+    /**
+     * Adds the given statement to the pending batch if possible, otherwise the pending batch is executed
+     * followed by the statement itself.
+     *
+     * @param statement The statement, not null
+     */
+    public void execute(String statement) {
+        InsertStatementRewriter.RewrittenInsert rewrittenInsert = insertStatementRewriter.rewrite(statement);
+        if (rewrittenInsert == null) {
+            flush();
+            sqlHandler.execute(statement, dataSource);
+            return;
+        }
+        if (!rewrittenInsert.getSql().equals(pendingSql)) {
+            flush();
+            pendingSql = rewrittenInsert.getSql();
+            pendingStatement = statement;
+        }
+        pendingParameters.add(rewrittenInsert.getParameters());
+        if (pendingParameters.size() >= maxBatchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Executes the pending batch, if any. A batch containing only 1 insert is executed as is.
+     */
+    public void flush() {
+        if (pendingSql == null) {
+            return;
+        }
+        try {
+            if (pendingParameters.size() == 1) {
+                sqlHandler.execute(pendingStatement, dataSource);
+            } else {
+                sqlHandler.executeBatch(pendingSql, pendingParameters, dataSource);
+            }
+        } catch (DbMaintainException e) {
+            throw new DbMaintainException("Unable to execute a batch of " + pendingParameters.size() + " inserts, starting with statement:\n" + pendingStatement, e);
+        } finally {
+            pendingSql = null;
+            pendingStatement = null;
+            pendingParameters = new ArrayList<List<Object>>();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.runner.impl;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites plain single row insert statements that only contain literal values into an insert statement with bind
+ * parameters. E.g.
+ * <pre><code>
+ *     insert into person (id, name, birth_date) values (1, 'John', null)
+ * </code></pre>
+ * is rewritten into
+ * <pre><code>
+ *     insert into person (id, name, birth_date) values (?, ?, null)
+ * </code></pre>
+ * with parameters 1 and 'John'. Null values are kept inline so that no sql type is needed to bind them. Two insert
+ * statements that are rewritten into the same sql have the same shape and can be executed as one batch.
+ * <p/>
+ * Only string literals, numeric literals and null are supported. For all other statements (multi-row inserts,
+ * inserts using functions, expressions, sub-selects or backslash escapes...) null is returned, meaning the statement
+ * should be executed as is.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class InsertStatementRewriter {
+
+    /* Matches the start of an insert statement up to the opening bracket of the values */
+    private static final Pattern INSERT_PATTERN = Pattern.compile("^\\s*insert\\s+into\\s+([^\\s()'\"]+|\"[^\"]+\")\\s*\\(([^()']*)\\)\\s*values\\s*\\(", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /* Matches a numeric literal */
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("[+-]?(?:\\d+(?:\\.\\d*)?|\\.\\d+)(?:[eE][+-]?\\d+)?");
+
+
+    /**
+     * Tries to rewrite the given statement.
+     *
+     * @param statement The statement, not null
+     * @return The rewritten insert, null if the statement could not be rewritten safely
+     */
+    public RewrittenInsert rewrite(String statement) {
+        Matcher matcher = INSERT_PATTERN.matcher(statement);
+        if (!matcher.find()) {
+            return null;
+        }
+        String tableName = matcher.group(1);
+        List<String> columnNames = getColumnNames(matcher.group(2));
+        if (columnNames == null) {
+            return null;
+        }
+        List<Object> values = new ArrayList<Object>();
+        List<Boolean> nullValues = new ArrayList<Boolean>();
+        if (!parseValues(statement, matcher.end(), values, nullValues)) {
+            return null;
+        }
+        if (nullValues.size() != columnNames.size()) {
+            return null;
+        }
+        return new RewrittenInsert(createInsertSql(tableName, columnNames, nullValues), values);
+    }
+
+
+    protected List<String> getColumnNames(String columnList) {
+        List<String> columnNames = new ArrayList<String>();
+        for (String columnName : columnList.split(",")) {
+            columnName = columnName.trim();
+            if (columnName.length() == 0) {
+                return null;
+            }
+            columnNames.add(columnName);
+        }
+        return columnNames;
+    }
+
+    /**
+     * Parses the literals in the value list, starting right after the opening bracket.
+     *
+     * @param statement  The statement, not null
+     * @param index      The index of the first char after the opening bracket
+     * @param values     The list to which the non-null values are added, not null
+     * @param nullValues The list to which for each value is added whether it is null, not null
+     * @return False if the values could not be parsed
+     */
+    protected boolean parseValues(String statement, int index, List<Object> values, List<Boolean> nullValues) {
+        int length = statement.length();
+        while (true) {
+            index = skipWhitespace(statement, index);
+            if (index >= length) {
+                return false;
+            }
+            char currentChar = statement.charAt(index);
+            if (currentChar == '\'') {
+                StringBuilder value = new StringBuilder();
+                index = parseStringLiteral(statement, index + 1, value);
+                if (index < 0) {
+                    return false;
+                }
+                values.add(value.toString());
+                nullValues.add(false);
+
+            } else if (statement.regionMatches(true, index, "null", 0, 4) && !isIdentifierChar(statement, index + 4)) {
+                index += 4;
+                nullValues.add(true);
+
+            } else {
+                Matcher matcher = NUMBER_PATTERN.matcher(statement);
+                matcher.region(index, length);
+                if (!matcher.lookingAt() || isIdentifierChar(statement, matcher.end())) {
+                    return false;
+                }
+                values.add(new BigDecimal(stripPlusSign(matcher.group())));
+                nullValues.add(false);
+                index = matcher.end();
+            }
+
+            index = skipWhitespace(statement, index);
+            if (index >= length) {
+                return false;
+            }
+            currentChar = statement.charAt(index);
+            if (currentChar == ')') {
+                // only whitespace is allowed after the closing bracket
+                return skipWhitespace(statement, index + 1) == length;
+            }
+            if (currentChar != ',') {
+                return false;
+            }
+            index++;
+        }
+    }
+
+    /**
+     * @param statement The statement, not null
+     * @param index     The index of the first char after the opening quote
+     * @param value     The builder to which the unescaped content is added, not null
+     * @return The index of the first char after the closing quote, -1 if the literal could not be parsed safely
+     */
+    protected int parseStringLiteral(String statement, int index, StringBuilder value) {
+        int length = statement.length();
+        while (index < length) {
+            char currentChar = statement.charAt(index);
+            if (currentChar == '\\') {
+                // the meaning of a backslash depends on the database and its settings
+                return -1;
+            }
+            if (currentChar == '\'') {
+                if (index + 1 < length && statement.charAt(index + 1) == '\'') {
+                    value.append('\'');
+                    index += 2;
+                    continue;
+                }
+                return index + 1;
+            }
+            value.append(currentChar);
+            index++;
+        }
+        return -1;
+    }
+
+    protected String createInsertSql(String tableName, List<String> columnNames, List<Boolean> nullValues) {
+        StringBuilder sql = new StringBuilder("insert into ");
+        sql.append(tableName);
+        sql.append(" (");
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(columnNames.get(i));
+        }
+        sql.append(") values (");
+        for (int i = 0; i < nullValues.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(nullValues.get(i) ? "null" : "?");
+        }
+        sql.append(")");
+        return sql.toString();
+    }
+
+
+    private int skipWhitespace(String statement, int index) {
+        while (index < statement.length() && Character.isWhitespace(statement.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private boolean isIdentifierChar(String statement, int index) {
+        if (index >= statement.length()) {
+            return false;
+        }
+        char currentChar = statement.charAt(index);
+        return Character.isLetterOrDigit(currentChar) || currentChar == '_' || currentChar == '.';
+    }
+
+    private String stripPlusSign(String number) {
+        if (number.startsWith("+")) {
+            return number.substring(1);
+        }
+        return number;
+    }
+
+
+    /**
+     * An insert statement with bind parameters together with the values for these parameters
+     */
+    public static class RewrittenInsert {
+
+        /* The insert statement containing a ? for each parameter */
+        private String sql;
+
+        /* The values for the parameters, not null */
+        private List<Object> parameters;
+
+
+        public RewrittenInsert(String sql, List<Object> parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public List<Object> getParameters() {
+            return parameters;
+        }
+    }
+}
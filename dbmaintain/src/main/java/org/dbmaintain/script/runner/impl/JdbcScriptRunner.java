@@ -20,6 +20,8 @@ import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.Databases;
 import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.metrics.MetricsRecorder;
+import org.dbmaintain.metrics.impl.NoOpMetricsRecorder;
 import org.dbmaintain.script.Script;
 import org.dbmaintain.script.parser.ScriptParser;
 import org.dbmaintain.script.parser.ScriptParserFactory;
@@ -30,7 +32,10 @@ import javax.sql.DataSource;
 import java.io.Reader;
 import java.util.Map;
 
+import static java.lang.System.nanoTime;
 import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.dbmaintain.metrics.Metric.SCRIPT_EXECUTE_DURATION;
+import static org.dbmaintain.metrics.Metric.SCRIPT_PARSE_DURATION;
 
 /**
  * Default implementation of a script runner that uses JDBC to execute the script.
@@ -46,6 +51,12 @@ public class JdbcScriptRunner implements ScriptRunner {
     protected Databases databases;
     protected SQLHandler sqlHandler;
     protected Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap;
+    /* True if consecutive insert statements with literal values should be executed as batches of bound statements */
+    protected boolean batchInsertsEnabled;
+    /* The max nr of inserts in one batch */
+    protected int maxInsertBatchSize;
+    /* Records the time spent parsing and executing the statements of the scripts */
+    protected MetricsRecorder metricsRecorder = new NoOpMetricsRecorder();
 
 
     public JdbcScriptRunner(Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap, Databases databases, SQLHandler sqlHandler) {
@@ -55,6 +66,28 @@ public class JdbcScriptRunner implements ScriptRunner {
     }
 
 
+    /**
+     * @param batchInsertsEnabled if true, consecutive insert statements with literal values are executed as batches of bound statements
+     */
+    public void setBatchInsertsEnabled(boolean batchInsertsEnabled) {
+        this.batchInsertsEnabled = batchInsertsEnabled;
+    }
+
+    /**
+     * @param maxInsertBatchSize the max nr of inserts in one batch
+     */
+    public void setMaxInsertBatchSize(int maxInsertBatchSize) {
+        this.maxInsertBatchSize = maxInsertBatchSize;
+    }
+
+    /**
+     * @param metricsRecorder records the time spent parsing and executing the statements of the scripts, not null
+     */
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+    }
+
+
     /**
      * Executes the given script.
      * <p/>
@@ -78,27 +111,58 @@ public class JdbcScriptRunner implements ScriptRunner {
             // create a script parser for the target database in question 
             ScriptParser scriptParser = databaseDialectScriptParserFactoryMap.get(targetDatabase.getSupportedDatabaseDialect()).createScriptParser(scriptContentReader);
             // parse and execute the statements
-            parseAndExecuteScript(targetDatabase, scriptParser);
+            try {
+                parseAndExecuteScript(script, targetDatabase, scriptParser);
+            } finally {
+                // the script can have changed the structure of the database, also when it failed halfway
+                targetDatabase.invalidateCatalogCache();
+            }
 
         } finally {
             closeQuietly(scriptContentReader);
         }
     }
 
-    private void parseAndExecuteScript(Database targetDatabase, ScriptParser scriptParser) {
+    private void parseAndExecuteScript(Script script, Database targetDatabase, ScriptParser scriptParser) {
         DataSource dataSource = targetDatabase.getDataSource();
+        // the parsing is done while the statements are read, so the time spent in the parser and in the database is measured per statement
+        long parseDuration = 0;
+        long executeDuration = 0;
         try {
             sqlHandler.startTransaction(dataSource);
 
-            String statement;
-            while ((statement = scriptParser.getNextStatement()) != null) {
-                sqlHandler.execute(statement, dataSource);
+            InsertStatementBatcher insertStatementBatcher = null;
+            if (batchInsertsEnabled) {
+                insertStatementBatcher = new InsertStatementBatcher(new InsertStatementRewriter(), sqlHandler, dataSource, maxInsertBatchSize);
+            }
+            while (true) {
+                long startTime = nanoTime();
+                String statement = scriptParser.getNextStatement();
+                long parsedTime = nanoTime();
+                parseDuration += parsedTime - startTime;
+                if (statement == null) {
+                    break;
+                }
+                if (insertStatementBatcher != null) {
+                    insertStatementBatcher.execute(statement);
+                } else {
+                    sqlHandler.execute(statement, dataSource);
+                }
+                executeDuration += nanoTime() - parsedTime;
+            }
+            long startTime = nanoTime();
+            if (insertStatementBatcher != null) {
+                insertStatementBatcher.flush();
             }
             sqlHandler.endTransactionAndCommit(dataSource);
+            executeDuration += nanoTime() - startTime;
 
         } catch (DbMaintainException e) {
             sqlHandler.endTransactionAndRollback(dataSource);
             throw e;
+        } finally {
+            metricsRecorder.recordDuration(SCRIPT_PARSE_DURATION, script.getFileName(), parseDuration);
+            metricsRecorder.recordDuration(SCRIPT_EXECUTE_DURATION, script.getFileName(), executeDuration);
         }
     }
 
@@ -0,0 +1,130 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.runner.impl;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.regex.Pattern;
+
+import static java.util.regex.Pattern.CASE_INSENSITIVE;
+
+/**
+ * Reader that passes on the content of a script and keeps track of whether SQL*Plus would still be reading a PL/SQL
+ * block at the end of the content. SQL*Plus reads everything following the start of a PL/SQL block (an anonymous block
+ * or a create statement of a procedure, function, package, trigger or type) into its buffer, until a line that only
+ * contains a / or a . is found. If the last block of a script is not ended this way, the commands that are sent after
+ * the script would become part of the block.
+ * <p/>
+ * Like SQL*Plus, the content is handled line by line: a block is only recognized if it is started at the beginning
+ * of a line that starts a new statement. Multi-line comments are not recognized, so in case of doubt a statement is
+ * not considered to be the start of a block.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class PlSqlBlockTrackingReader extends FilterReader {
+
+    /* The statements that make SQL*Plus switch to reading a PL/SQL block */
+    protected static final Pattern PL_SQL_BLOCK_START = Pattern.compile("^(DECLARE|BEGIN)\\b|^CREATE\\s+(OR\\s+REPLACE\\s+)?((NON)?EDITIONABLE\\s+)?(FUNCTION|PROCEDURE|PACKAGE|TRIGGER|TYPE)\\b", CASE_INSENSITIVE);
+    /* The SQL*Plus commands, these end at the end of the line */
+    protected static final Pattern SQL_PLUS_COMMAND = Pattern.compile("^(@|(SET|PROMPT|REM|REMARK|WHENEVER|DEFINE|UNDEFINE|SPOOL|COLUMN|EXEC|EXECUTE|SHOW|VARIABLE|PRINT|CONNECT)\\b)", CASE_INSENSITIVE);
+    /* The maximum nr of chars of the start of a line that are kept to recognize a statement */
+    protected static final int MAX_LINE_START_LENGTH = 100;
+
+    /* True if a PL/SQL block was started that was not ended yet */
+    private boolean insidePlSqlBlock;
+    /* True if the current line starts a new statement */
+    private boolean atStatementStart = true;
+    /* The start of the current line, without leading whitespace */
+    private StringBuilder lineStart = new StringBuilder();
+    /* The nr of non-whitespace chars of the current line */
+    private int nrOfNonWhitespaceChars;
+    /* The last non-whitespace char of the current line */
+    private char lastNonWhitespaceChar;
+
+
+    public PlSqlBlockTrackingReader(Reader reader) {
+        super(reader);
+    }
+
+
+    /**
+     * @return True if the content that was read ends inside a PL/SQL block that was not ended by a / or . line
+     */
+    public boolean isInsidePlSqlBlock() {
+        return insidePlSqlBlock;
+    }
+
+
+    @Override
+    public int read() throws IOException {
+        int c = super.read();
+        if (c == -1) {
+            endOfLine();
+        } else {
+            handleChar((char) c);
+        }
+        return c;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        int nrOfChars = super.read(buffer, offset, length);
+        if (nrOfChars == -1) {
+            endOfLine();
+        }
+        for (int i = offset; i < offset + nrOfChars; i++) {
+            handleChar(buffer[i]);
+        }
+        return nrOfChars;
+    }
+
+
+    protected void handleChar(char c) {
+        if (c == '\n' || c == '\r') {
+            endOfLine();
+        } else if (!Character.isWhitespace(c)) {
+            nrOfNonWhitespaceChars++;
+            lastNonWhitespaceChar = c;
+            if (lineStart.length() < MAX_LINE_START_LENGTH) {
+                lineStart.append(c);
+            }
+        } else if (nrOfNonWhitespaceChars > 0 && lineStart.length() < MAX_LINE_START_LENGTH) {
+            lineStart.append(c);
+        }
+    }
+
+    protected void endOfLine() {
+        if (nrOfNonWhitespaceChars == 0) {
+            return;
+        }
+        boolean blockTerminator = nrOfNonWhitespaceChars == 1 && (lastNonWhitespaceChar == '/' || lastNonWhitespaceChar == '.');
+        String line = lineStart.toString();
+        if (insidePlSqlBlock) {
+            if (blockTerminator) {
+                insidePlSqlBlock = false;
+                atStatementStart = true;
+            }
+        } else if (atStatementStart && PL_SQL_BLOCK_START.matcher(line).find()) {
+            insidePlSqlBlock = true;
+        } else if (!line.startsWith("--")) {
+            atStatementStart = lastNonWhitespaceChar == ';' || blockTerminator || (atStatementStart && SQL_PLUS_COMMAND.matcher(line).find());
+        }
+        lineStart.setLength(0);
+        nrOfNonWhitespaceChars = 0;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.runner.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Writes text to the standard input of a process. The characters are encoded once, directly into a byte buffer that
+ * is written to the input channel of the process, so that script content can be passed to a process without first
+ * copying it to a file.
+ * <p/>
+ * The platform's default encoding is used, the same encoding that is used for the temporary script files.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ProcessInputWriter {
+
+    /* The size of the char and byte buffers */
+    protected static final int BUFFER_SIZE = 8192;
+
+    private OutputStream processInput;
+    private WritableByteChannel channel;
+    private CharsetEncoder encoder;
+    private CharBuffer charBuffer = CharBuffer.allocate(BUFFER_SIZE);
+    private ByteBuffer byteBuffer;
+
+
+    public ProcessInputWriter(OutputStream processInput) {
+        this(processInput, Charset.defaultCharset());
+    }
+
+    public ProcessInputWriter(OutputStream processInput, Charset charset) {
+        this.processInput = processInput;
+        this.channel = Channels.newChannel(processInput);
+        this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.byteBuffer = ByteBuffer.allocate((int) Math.ceil(BUFFER_SIZE * encoder.maxBytesPerChar()));
+    }
+
+
+    /**
+     * Writes the given text. Nothing is sent to the process until {@link #flush} is called or the buffer is full.
+     *
+     * @param text The text, not null
+     */
+    public void write(CharSequence text) throws IOException {
+        int index = 0;
+        while (index < text.length()) {
+            int nrOfChars = Math.min(charBuffer.remaining(), text.length() - index);
+            charBuffer.append(text, index, index + nrOfChars);
+            index += nrOfChars;
+            if (!charBuffer.hasRemaining()) {
+                encodeCharBuffer(false);
+            }
+        }
+    }
+
+    /**
+     * Writes all content of the given reader. The reader is not closed.
+     *
+     * @param reader The reader, not null
+     */
+    public void write(Reader reader) throws IOException {
+        while (reader.read(charBuffer) != -1) {
+            if (!charBuffer.hasRemaining()) {
+                encodeCharBuffer(false);
+            }
+        }
+    }
+
+    /**
+     * Sends all buffered content to the process.
+     */
+    public void flush() throws IOException {
+        encodeCharBuffer(false);
+        writeByteBuffer();
+        // the standard input of a process is buffered
+        processInput.flush();
+    }
+
+    /**
+     * Sends all buffered content and closes the standard input of the process, signaling the end of the input.
+     */
+    public void close() throws IOException {
+        try {
+            encodeCharBuffer(true);
+            while (encoder.flush(byteBuffer).isOverflow()) {
+                writeByteBuffer();
+            }
+            writeByteBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+
+
+    protected void encodeCharBuffer(boolean endOfInput) throws IOException {
+        charBuffer.flip();
+        while (true) {
+            CoderResult coderResult = encoder.encode(charBuffer, byteBuffer, endOfInput);
+            if (coderResult.isOverflow()) {
+                writeByteBuffer();
+            } else if (coderResult.isUnderflow()) {
+                break;
+            } else {
+                throw new CharacterCodingException();
+            }
+        }
+        // keep an incomplete surrogate pair for the next encode
+        charBuffer.compact();
+    }
+
+    protected void writeByteBuffer() throws IOException {
+        byteBuffer.flip();
+        while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer);
+        }
+        byteBuffer.clear();
+    }
+}
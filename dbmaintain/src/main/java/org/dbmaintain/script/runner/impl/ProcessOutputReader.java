@@ -0,0 +1,145 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.runner.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+
+/**
+ * Reads the output of a process line by line and passes every line to {@link #handleLine}. The readers of all
+ * processes run on a shared pool of daemon threads, so no new thread is started for every process.
+ * <p/>
+ * Lines longer than {@link #MAX_LINE_LENGTH} are split, so that the memory that is used does not depend on the
+ * output of the process.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public abstract class ProcessOutputReader implements Runnable {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(ProcessOutputReader.class);
+
+    /* The maximum length of a line, longer lines are split */
+    public static final int MAX_LINE_LENGTH = 8192;
+
+    /* The shared threads that read the output of the processes, idle threads are stopped after a minute */
+    private static final ExecutorService readerPool = Executors.newCachedThreadPool(new ReaderThreadFactory());
+
+    protected String name;
+    protected InputStream processOutput;
+
+
+    /**
+     * @param name          The name of the application, used for logging, not null
+     * @param processOutput The output of the process, not null
+     */
+    public ProcessOutputReader(String name, InputStream processOutput) {
+        this.name = name;
+        this.processOutput = processOutput;
+    }
+
+
+    /**
+     * Starts reading the output on one of the shared reader threads.
+     *
+     * @return The future that is done when all output was read, not null
+     */
+    public Future<?> start() {
+        return readerPool.submit(this);
+    }
+
+    public void run() {
+        Reader reader = new InputStreamReader(processOutput);
+        try {
+            readLines(reader);
+        } catch (Throwable t) {
+            logger.warn("Unable to handle application output for " + name, t);
+        } finally {
+            closeQuietly(reader);
+            endOfOutput();
+        }
+    }
+
+
+    /**
+     * Handles a line of output. The line does not contain the line terminator.
+     *
+     * @param line The line, not null
+     */
+    protected abstract void handleLine(String line) throws Exception;
+
+    /**
+     * Called when all output was read or reading failed. Override to perform extra finalization.
+     */
+    protected void endOfOutput() {
+    }
+
+
+    protected void readLines(Reader reader) throws Exception {
+        char[] buffer = new char[MAX_LINE_LENGTH];
+        StringBuilder line = new StringBuilder();
+        boolean skipLineFeed = false;
+        int nrOfChars;
+        while ((nrOfChars = reader.read(buffer)) != -1) {
+            for (int i = 0; i < nrOfChars; i++) {
+                char c = buffer[i];
+                if (skipLineFeed && c == '\n') {
+                    skipLineFeed = false;
+                    continue;
+                }
+                skipLineFeed = c == '\r';
+                if (c == '\n' || c == '\r') {
+                    handleLine(line.toString());
+                    line.setLength(0);
+                } else {
+                    line.append(c);
+                    if (line.length() == MAX_LINE_LENGTH) {
+                        handleLine(line.toString());
+                        line.setLength(0);
+                    }
+                }
+            }
+        }
+        if (line.length() > 0) {
+            handleLine(line.toString());
+        }
+    }
+
+
+    protected static class ReaderThreadFactory implements ThreadFactory {
+
+        private AtomicInteger threadCount = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "dbmaintain-output-reader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
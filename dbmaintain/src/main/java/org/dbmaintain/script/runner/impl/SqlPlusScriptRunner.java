@@ -23,6 +23,8 @@ import org.dbmaintain.util.DbMaintainException;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 import static java.lang.System.currentTimeMillis;
 import static org.apache.commons.lang.StringUtils.deleteWhitespace;
@@ -38,20 +40,123 @@ public class SqlPlusScriptRunner extends BaseNativeScriptRunner {
 
     protected Application application;
     protected String sqlPlusCommand;
+    /* If true, one SQL*Plus process is kept open per target database and used for all scripts of that database */
+    protected boolean persistentSessionEnabled;
+    /* If true, the content of the scripts is streamed to the standard input of SQL*Plus instead of using temporary files */
+    protected boolean streamScriptContentEnabled;
+    /* The open SQL*Plus sessions per target database, only used if persistent sessions are enabled */
+    protected Map<Database, ApplicationSession> sessions = new HashMap<Database, ApplicationSession>();
+    /* The maximum nr of seconds to wait for a script to complete in a persistent session, 0 to wait indefinitely */
+    protected long sessionScriptTimeout;
 
 
     public SqlPlusScriptRunner(Databases databases, String sqlPlusCommand) {
-        super(databases);
+        this(databases, sqlPlusCommand, false);
+    }
+
+    public SqlPlusScriptRunner(Databases databases, String sqlPlusCommand, boolean persistentSessionEnabled) {
+        this(databases, sqlPlusCommand, persistentSessionEnabled, false);
+    }
+
+    public SqlPlusScriptRunner(Databases databases, String sqlPlusCommand, boolean persistentSessionEnabled, boolean streamScriptContentEnabled) {
+        this(databases, sqlPlusCommand, persistentSessionEnabled, streamScriptContentEnabled, Application.DEFAULT_MAX_OUTPUT_SIZE);
+    }
+
+    public SqlPlusScriptRunner(Databases databases, String sqlPlusCommand, boolean persistentSessionEnabled, boolean streamScriptContentEnabled, int maxOutputSize) {
+        super(databases, maxOutputSize);
         this.sqlPlusCommand = sqlPlusCommand;
+        this.persistentSessionEnabled = persistentSessionEnabled;
+        this.streamScriptContentEnabled = streamScriptContentEnabled;
         this.application = createApplication(sqlPlusCommand);
     }
 
 
-   @Override
+    /**
+     * @param sessionScriptTimeout The maximum nr of seconds to wait for a script to complete in a persistent session,
+     *                             0 to wait indefinitely. If the timeout expires, the SQL*Plus process is killed and
+     *                             the script fails.
+     */
+    public void setSessionScriptTimeout(long sessionScriptTimeout) {
+        this.sessionScriptTimeout = sessionScriptTimeout;
+    }
+
+
+    /**
+     * Ends all SQL*Plus sessions that were opened
+     */
+    @Override
+    public void close() {
+        Map<Database, ApplicationSession> sessionsToClose;
+        synchronized (sessions) {
+            sessionsToClose = new HashMap<Database, ApplicationSession>(sessions);
+            sessions.clear();
+        }
+        for (ApplicationSession session : sessionsToClose.values()) {
+            closeSession(session);
+        }
+    }
+
+
+    @Override
+    protected void executeScript(Script script, Database targetDatabase) throws Exception {
+        if (!streamScriptContentEnabled) {
+            super.executeScript(script, targetDatabase);
+        } else if (persistentSessionEnabled) {
+            executeScriptContentInSession(script, targetDatabase);
+        } else {
+            executeStreamedScript(script, targetDatabase);
+        }
+    }
+
+    @Override
     protected void executeScript(File scriptFile, Database targetDatabase) throws Exception {
+        if (persistentSessionEnabled) {
+            executeScriptInSession(scriptFile, targetDatabase);
+            return;
+        }
         File wrapperScriptFile = generateWrapperScriptFile(targetDatabase.getDatabaseInfo(), scriptFile);
-        String[] arguments = {"/nolog", "@" + wrapperScriptFile.getPath()};
-        Application.ProcessOutput processOutput = application.execute(arguments);
+        try {
+            String[] arguments = {"/nolog", "@" + wrapperScriptFile.getPath()};
+            Application.ProcessOutput processOutput = application.execute(arguments);
+            assertNoError(processOutput);
+        } finally {
+            deleteTemporaryFile(wrapperScriptFile);
+        }
+    }
+
+
+    /**
+     * Starts SQL*Plus and streams the wrapper commands and the content of the script to its standard input.
+     * No temporary files are used.
+     *
+     * @param script         The script to execute, not null
+     * @param targetDatabase The database on which to execute the script, not null
+     */
+    protected void executeStreamedScript(final Script script, Database targetDatabase) {
+        final String lineSeparator = System.getProperty("line.separator");
+        final String header = createWrapperScriptHeader(targetDatabase.getDatabaseInfo(), lineSeparator);
+
+        Application.ProcessOutput processOutput = application.execute(new Application.ProcessInput() {
+            public void write(ProcessInputWriter processInputWriter) throws IOException {
+                processInputWriter.write(header);
+                PlSqlBlockTrackingReader scriptContentReader = new PlSqlBlockTrackingReader(script.getScriptContentHandle().openScriptContentReader());
+                try {
+                    processInputWriter.write(scriptContentReader);
+                } finally {
+                    scriptContentReader.close();
+                }
+                processInputWriter.write(lineSeparator);
+                if (scriptContentReader.isInsidePlSqlBlock()) {
+                    // execute the last block, otherwise SQL*Plus would add the exit command to the block
+                    processInputWriter.write("/" + lineSeparator);
+                }
+                processInputWriter.write("exit sql.sqlcode" + lineSeparator);
+            }
+        }, "/nolog");
+        assertNoError(processOutput);
+    }
+
+    protected void assertNoError(Application.ProcessOutput processOutput) {
         int exitValue = processOutput.getExitValue();
         if (exitValue != 0) {
             throw new DbMaintainException("Failed to execute command. SQL*Plus returned an error.\n" + processOutput.getOutput());
@@ -59,12 +164,203 @@ public class SqlPlusScriptRunner extends BaseNativeScriptRunner {
     }
 
 
+    /**
+     * Executes the script in the SQL*Plus session of the target database. The same error handling is used as when a
+     * process is started per script: if an error occurs, SQL*Plus rolls back and exits. If the script succeeds, the
+     * changes are committed, as SQL*Plus does when exiting.
+     *
+     * @param scriptFile     The script to execute, not null
+     * @param targetDatabase The database on which to execute the script, not null
+     */
+    protected void executeScriptInSession(File scriptFile, Database targetDatabase) {
+        ApplicationSession session = getSession(targetDatabase);
+        synchronized (session) {
+            String lineSeparator = System.getProperty("line.separator");
+            StringBuilder input = new StringBuilder();
+            appendSessionSettings(input, targetDatabase.getDatabaseInfo(), lineSeparator);
+            input.append("@\"");
+            input.append(scriptFile.getPath());
+            input.append('"');
+            input.append(lineSeparator);
+            session.write(input.toString());
+
+            commitScriptInSession(session, targetDatabase);
+        }
+    }
+
+    /**
+     * Same as {@link #executeScriptInSession(File, Database)} but the content of the script is streamed to the
+     * session instead of letting SQL*Plus read it from a temporary file.
+     *
+     * @param script         The script to execute, not null
+     * @param targetDatabase The database on which to execute the script, not null
+     */
+    protected void executeScriptContentInSession(Script script, Database targetDatabase) throws IOException {
+        ApplicationSession session = getSession(targetDatabase);
+        synchronized (session) {
+            String lineSeparator = System.getProperty("line.separator");
+            StringBuilder input = new StringBuilder();
+            appendSessionSettings(input, targetDatabase.getDatabaseInfo(), lineSeparator);
+            session.write(input.toString());
+
+            PlSqlBlockTrackingReader scriptContentReader = new PlSqlBlockTrackingReader(script.getScriptContentHandle().openScriptContentReader());
+            try {
+                session.write(scriptContentReader);
+                session.write(lineSeparator);
+                if (scriptContentReader.isInsidePlSqlBlock()) {
+                    // execute the last block, otherwise SQL*Plus would add the commit and the marker to the block
+                    session.write("/" + lineSeparator);
+                }
+            } catch (DbMaintainException e) {
+                // SQL*Plus exited because of an error, the output will tell what went wrong
+            } finally {
+                scriptContentReader.close();
+            }
+            commitScriptInSession(session, targetDatabase);
+        }
+    }
+
+    /**
+     * Commits the executed script and waits until SQL*Plus is done. If SQL*Plus exited because of an error, or did not
+     * complete the script within the session script timeout, the session is discarded and an exception is thrown.
+     *
+     * @param session        The session, not null
+     * @param targetDatabase The database of the session, not null
+     */
+    protected void commitScriptInSession(ApplicationSession session, Database targetDatabase) {
+        String endMarker = session.createMarker();
+        String lineSeparator = System.getProperty("line.separator");
+        try {
+            session.write("commit;" + lineSeparator + "prompt " + endMarker + lineSeparator);
+        } catch (DbMaintainException e) {
+            // SQL*Plus exited because of an error, the output will tell what went wrong
+        }
+
+        ApplicationSession.SessionOutput sessionOutput = session.readUntil(endMarker, sessionScriptTimeout * 1000);
+        if (sessionOutput.isTimedOut()) {
+            removeSession(targetDatabase);
+            session.destroy();
+            throw new DbMaintainException("SQL*Plus did not complete the script within " + sessionScriptTimeout + " seconds. " +
+                    "If the script ends with a PL/SQL block, make sure the block is ended by a line containing only a /.\n" + sessionOutput.getOutput());
+        }
+        if (!sessionOutput.isMarkerFound()) {
+            removeSession(targetDatabase);
+            closeSession(session);
+            throw new DbMaintainException("Failed to execute command. SQL*Plus returned an error.\n" + sessionOutput.getOutput());
+        }
+    }
+
+
+    /**
+     * @param targetDatabase The database, not null
+     * @return The SQL*Plus session for the given database, a new session is opened if needed, not null
+     */
+    protected ApplicationSession getSession(Database targetDatabase) {
+        synchronized (sessions) {
+            ApplicationSession session = sessions.get(targetDatabase);
+            if (session == null) {
+                session = openSession(targetDatabase.getDatabaseInfo());
+                sessions.put(targetDatabase, session);
+            }
+            return session;
+        }
+    }
+
+    protected void removeSession(Database targetDatabase) {
+        synchronized (sessions) {
+            sessions.remove(targetDatabase);
+        }
+    }
+
+
+    /**
+     * Starts a SQL*Plus process and connects it to the given database.
+     *
+     * @param databaseInfo The database, not null
+     * @return The session, not null
+     */
+    protected ApplicationSession openSession(DatabaseInfo databaseInfo) {
+        ApplicationSession session = application.start("-S", "/nolog");
+
+        String endMarker = session.createMarker();
+        String lineSeparator = System.getProperty("line.separator");
+        StringBuilder input = new StringBuilder();
+        input.append("connect ");
+        input.append(databaseInfo.getUserName());
+        input.append('/');
+        input.append(databaseInfo.getPassword());
+        input.append('@');
+        input.append(getDatabaseConfigFromJdbcUrl(databaseInfo.getUrl()));
+        input.append(lineSeparator);
+        input.append("prompt ");
+        input.append(endMarker);
+        input.append(lineSeparator);
+        session.write(input.toString());
+
+        ApplicationSession.SessionOutput sessionOutput = session.readUntil(endMarker);
+        String output = sessionOutput.getOutput();
+        if (!sessionOutput.isMarkerFound() || output.contains("ORA-") || output.contains("SP2-")) {
+            closeSession(session);
+            throw new DbMaintainException("Failed to connect to database " + databaseInfo.getName() + " using SQL*Plus.\n" + output);
+        }
+        return session;
+    }
+
+
+    protected void closeSession(ApplicationSession session) {
+        try {
+            session.write("exit" + System.getProperty("line.separator"));
+        } catch (DbMaintainException e) {
+            // the process already ended
+        }
+        session.close();
+    }
+
+
+    /**
+     * Appends the settings that are reset before each script, since a previous script could have changed them.
+     *
+     * @param input         The input to append to, not null
+     * @param databaseInfo  The target database, not null
+     * @param lineSeparator The line separator, not null
+     */
+    protected void appendSessionSettings(StringBuilder input, DatabaseInfo databaseInfo, String lineSeparator) {
+        input.append("whenever sqlerror exit sql.sqlcode rollback");
+        input.append(lineSeparator);
+        input.append("whenever oserror exit sql.sqlcode rollback");
+        input.append(lineSeparator);
+        input.append("alter session set current_schema=");
+        input.append(databaseInfo.getDefaultSchemaName());
+        input.append(";");
+        input.append(lineSeparator);
+        input.append("set echo on");
+        input.append(lineSeparator);
+    }
+
+
     protected File generateWrapperScriptFile(DatabaseInfo databaseInfo, File targetScriptFile) throws IOException {
         File temporaryScriptsDir = createTemporaryScriptsDir();
         File temporaryScriptWrapperFile = new File(temporaryScriptsDir, "wrapper-" + currentTimeMillis() + targetScriptFile.getName());
         temporaryScriptWrapperFile.deleteOnExit();
 
         String lineSeparator = System.getProperty("line.separator");
+        StringBuilder content = new StringBuilder();
+        content.append(createWrapperScriptHeader(databaseInfo, lineSeparator));
+        content.append("@@");
+        content.append(targetScriptFile.getName());
+        content.append(lineSeparator);
+        content.append("exit sql.sqlcode");
+        content.append(lineSeparator);
+        createFile(temporaryScriptWrapperFile, content.toString());
+        return temporaryScriptWrapperFile;
+    }
+
+    /**
+     * @param databaseInfo  The target database, not null
+     * @param lineSeparator The line separator, not null
+     * @return The commands that connect to the database and set up error handling before the script is executed, not null
+     */
+    protected String createWrapperScriptHeader(DatabaseInfo databaseInfo, String lineSeparator) {
         StringBuilder content = new StringBuilder();
         content.append("set echo off");
         content.append(lineSeparator);
@@ -85,13 +381,7 @@ public class SqlPlusScriptRunner extends BaseNativeScriptRunner {
         content.append(lineSeparator);
         content.append("set echo on");
         content.append(lineSeparator);
-        content.append("@@");
-        content.append(targetScriptFile.getName());
-        content.append(lineSeparator);
-        content.append("exit sql.sqlcode");
-        content.append(lineSeparator);
-        createFile(temporaryScriptWrapperFile, content.toString());
-        return temporaryScriptWrapperFile;
+        return content.toString();
     }
 
 
@@ -108,7 +398,7 @@ public class SqlPlusScriptRunner extends BaseNativeScriptRunner {
     }
 
     protected Application createApplication(String sqlPlusCommand) {
-        return new Application("SQL*Plus", sqlPlusCommand);
+        return new Application("SQL*Plus", sqlPlusCommand, new HashMap<String, String>(), maxOutputSize);
     }
 
     protected String getDatabaseConfigFromJdbcUrl(String url) {
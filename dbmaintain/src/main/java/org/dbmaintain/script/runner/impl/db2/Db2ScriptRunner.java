@@ -18,14 +18,21 @@ package org.dbmaintain.script.runner.impl.db2;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.DatabaseInfo;
 import org.dbmaintain.database.Databases;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.parser.ScriptParser;
+import org.dbmaintain.script.parser.ScriptParserFactory;
 import org.dbmaintain.script.runner.impl.Application;
+import org.dbmaintain.script.runner.impl.ApplicationSession;
 import org.dbmaintain.script.runner.impl.BaseNativeScriptRunner;
 import org.dbmaintain.util.DbMaintainException;
 
 import java.io.File;
+import java.io.Reader;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Pattern;
 
+import static org.apache.commons.io.IOUtils.closeQuietly;
 import static org.dbmaintain.script.runner.impl.db2.Db2ConnectionInfo.parseFromJdbcUrl;
 
 /**
@@ -36,14 +43,36 @@ import static org.dbmaintain.script.runner.impl.db2.Db2ConnectionInfo.parseFromJ
  */
 public class Db2ScriptRunner extends BaseNativeScriptRunner {
 
+    /* The statement terminator used in the CLP sessions, it is recognized when it is the last char of a line, also inside a literal */
+    protected static final String SESSION_STATEMENT_TERMINATOR = "@";
+
+    /* Matches a CLP or SQL message that indicates an error, e.g. SQL0204N or DB21034E */
+    protected static final Pattern ERROR_MESSAGE_PATTERN = Pattern.compile("^\\s*(?:SQL\\d{4,5}N|[A-Z]{2,3}\\d{4,5}E)\\b", Pattern.MULTILINE);
+
     protected Application application;
     protected Map<Database, Db2ConnectionInfo> db2ConnectionInfos;
+    /* If true, one CLP session is kept open per database and used for all scripts of that database */
+    protected boolean persistentSessionEnabled;
+    /* The script parser factories per database dialect, used to split the scripts into statements in a CLP session */
+    protected Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap;
+    /* The open CLP sessions per database, only used if persistent sessions are enabled */
+    protected Map<Db2ConnectionInfo, ApplicationSession> sessions = new HashMap<Db2ConnectionInfo, ApplicationSession>();
 
 
     public Db2ScriptRunner(Databases databases, String db2Command) {
-        super(databases);
+        this(databases, db2Command, false, null);
+    }
+
+    public Db2ScriptRunner(Databases databases, String db2Command, boolean persistentSessionEnabled, Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap) {
+        this(databases, db2Command, persistentSessionEnabled, databaseDialectScriptParserFactoryMap, Application.DEFAULT_MAX_OUTPUT_SIZE);
+    }
+
+    public Db2ScriptRunner(Databases databases, String db2Command, boolean persistentSessionEnabled, Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap, int maxOutputSize) {
+        super(databases, maxOutputSize);
         this.application = createApplication(db2Command);
         this.db2ConnectionInfos = getDb2ConnectionInfos(databases);
+        this.persistentSessionEnabled = persistentSessionEnabled;
+        this.databaseDialectScriptParserFactoryMap = databaseDialectScriptParserFactoryMap;
     }
 
 
@@ -56,6 +85,7 @@ public class Db2ScriptRunner extends BaseNativeScriptRunner {
 
     public void close() {
         try {
+            closeSessions();
             for (Db2ConnectionInfo db2ConnectionInfo : db2ConnectionInfos.values()) {
                 unregisterDatabase(db2ConnectionInfo);
             }
@@ -104,6 +134,24 @@ public class Db2ScriptRunner extends BaseNativeScriptRunner {
         }
     }
 
+    /**
+     * In a persistent session, the statements of the script are sent to the CLP directly, so no temporary file is
+     * needed. Otherwise, the CLP requires the script as a file.
+     */
+    @Override
+    protected void executeScript(Script script, Database targetDatabase) throws Exception {
+        if (!persistentSessionEnabled) {
+            super.executeScript(script, targetDatabase);
+            return;
+        }
+        Reader scriptContentReader = script.getScriptContentHandle().openScriptContentReader();
+        try {
+            executeScriptInSession(scriptContentReader, targetDatabase, db2ConnectionInfos.get(targetDatabase));
+        } finally {
+            closeQuietly(scriptContentReader);
+        }
+    }
+
     @Override
     protected void executeScript(File scriptFile, Database targetDatabase) throws Exception {
         Db2ConnectionInfo db2ConnectionInfo = db2ConnectionInfos.get(targetDatabase);
@@ -127,11 +175,144 @@ public class Db2ScriptRunner extends BaseNativeScriptRunner {
         }
     }
 
+    /**
+     * Executes the statements of the script one by one in the CLP session of the database. After each statement, the
+     * output is checked for error messages. If an error occurs, the statements of the script are rolled back and no
+     * further statements are executed, as the -s option does when a process is started per script. If all statements
+     * succeed, they are committed.
+     *
+     * @param scriptContentReader The content of the script, not null
+     * @param targetDatabase      The database on which to execute the script, not null
+     * @param db2ConnectionInfo   The connection info of the database, not null
+     */
+    protected void executeScriptInSession(Reader scriptContentReader, Database targetDatabase, Db2ConnectionInfo db2ConnectionInfo) throws Exception {
+        ApplicationSession session = getSession(db2ConnectionInfo);
+        synchronized (session) {
+            executeSessionCommand(session, "set schema " + targetDatabase.getDefaultSchemaName());
+
+            ScriptParser scriptParser = databaseDialectScriptParserFactoryMap.get(targetDatabase.getSupportedDatabaseDialect()).createScriptParser(scriptContentReader);
+            String statement;
+            while ((statement = scriptParser.getNextStatement()) != null) {
+                try {
+                    executeSessionCommand(session, statement);
+                } catch (DbMaintainException e) {
+                    rollbackQuietly(session, db2ConnectionInfo);
+                    throw e;
+                }
+            }
+            executeSessionCommand(session, "commit");
+        }
+    }
+
+
+    /**
+     * Sends the given command to the session and waits until it was executed.
+     *
+     * @param session The session, not null
+     * @param command The command, not null
+     */
+    protected void executeSessionCommand(ApplicationSession session, String command) {
+        assertNoStatementTerminator(command);
+        String endMarker = session.createMarker();
+        String lineSeparator = System.getProperty("line.separator");
+        session.write(command + lineSeparator + SESSION_STATEMENT_TERMINATOR + lineSeparator +
+                "echo " + endMarker + SESSION_STATEMENT_TERMINATOR + lineSeparator);
+
+        ApplicationSession.SessionOutput sessionOutput = session.readUntil(endMarker);
+        String output = sessionOutput.getOutput();
+        if (!sessionOutput.isMarkerFound()) {
+            throw new DbMaintainException("Failed to execute command. DB2 CLP ended unexpectedly.\n" + output);
+        }
+        if (ERROR_MESSAGE_PATTERN.matcher(output).find()) {
+            throw new DbMaintainException("Failed to execute command. DB2 CLP returned an error.\n" + output);
+        }
+    }
+
+
+    /**
+     * The CLP ends a statement at every line that ends with the statement terminator, even if the terminator is part
+     * of a literal or a comment, and there is no way to escape it. A statement containing such a line would be cut
+     * off and executed partially, so it is refused instead.
+     *
+     * @param command The command, not null
+     */
+    protected void assertNoStatementTerminator(String command) {
+        for (String line : command.split("\r\n|\r|\n")) {
+            if (line.trim().endsWith(SESSION_STATEMENT_TERMINATOR)) {
+                throw new DbMaintainException("Unable to execute statement in a DB2 CLP session: the line\n" + line + "\nends with " +
+                        SESSION_STATEMENT_TERMINATOR + ", which is the statement terminator of the session. Change the statement " +
+                        "so that no line ends with " + SESSION_STATEMENT_TERMINATOR + " or disable persistent DB2 sessions.\nStatement:\n" + command);
+            }
+        }
+    }
+
+
+    protected void rollbackQuietly(ApplicationSession session, Db2ConnectionInfo db2ConnectionInfo) {
+        try {
+            executeSessionCommand(session, "rollback");
+        } catch (DbMaintainException e) {
+            // the session can no longer be used
+            synchronized (sessions) {
+                sessions.remove(db2ConnectionInfo);
+            }
+            session.close();
+        }
+    }
+
+
+    /**
+     * @param db2ConnectionInfo The database, not null
+     * @return The CLP session for the given database, a new session is opened and connected if needed, not null
+     */
+    protected ApplicationSession getSession(Db2ConnectionInfo db2ConnectionInfo) {
+        synchronized (sessions) {
+            ApplicationSession session = sessions.get(db2ConnectionInfo);
+            if (session == null) {
+                session = openSession(db2ConnectionInfo);
+                sessions.put(db2ConnectionInfo, session);
+            }
+            return session;
+        }
+    }
+
+    protected ApplicationSession openSession(Db2ConnectionInfo db2ConnectionInfo) {
+        // +p: no prompt, -td: statement terminator, -c-: no auto-commit
+        ApplicationSession session = application.start("+p", "-td" + SESSION_STATEMENT_TERMINATOR, "-c-");
+        try {
+            executeSessionCommand(session, "connect to " + db2ConnectionInfo.getDatabaseAlias() + " user " + db2ConnectionInfo.getUserName() + " using " + db2ConnectionInfo.getPassword());
+            executeSessionCommand(session, "set SQLCOMPAT PLSQL");
+            return session;
+
+        } catch (DbMaintainException e) {
+            session.close();
+            throw new DbMaintainException("Unable to connect to database alias " + db2ConnectionInfo.getDatabaseAlias(), e);
+        }
+    }
+
+    /**
+     * Terminates all open CLP sessions.
+     */
+    protected void closeSessions() {
+        Map<Db2ConnectionInfo, ApplicationSession> sessionsToClose;
+        synchronized (sessions) {
+            sessionsToClose = new HashMap<Db2ConnectionInfo, ApplicationSession>(sessions);
+            sessions.clear();
+        }
+        for (ApplicationSession session : sessionsToClose.values()) {
+            try {
+                session.write("terminate" + SESSION_STATEMENT_TERMINATOR + System.getProperty("line.separator"));
+            } catch (DbMaintainException e) {
+                // the process already ended
+            }
+            session.close();
+        }
+    }
+
     protected Application createApplication(String db2Command) {
         Map<String, String> environmentVariables = new HashMap<String, String>();
         // workaround to be able to use db2 clp without db2cmd on windows
         environmentVariables.put("DB2CLP", "**$$**");
-        return new Application("DB2 CLP", db2Command, environmentVariables);
+        return new Application("DB2 CLP", db2Command, environmentVariables, maxOutputSize);
     }
 
 
@@ -16,7 +16,9 @@
 package org.dbmaintain.structure.clean;
 
 import org.dbmaintain.config.FactoryWithDatabase;
+import org.dbmaintain.config.PropertyUtils;
 import org.dbmaintain.structure.clean.impl.DefaultDBCleaner;
+import org.dbmaintain.structure.clean.impl.TruncatingDBCleaner;
 import org.dbmaintain.structure.model.DbItemIdentifier;
 
 import java.util.HashSet;
@@ -34,7 +36,12 @@ public class DBCleanerFactory extends FactoryWithDatabase<DBCleaner> {
 
     public DBCleaner createInstance() {
         Set<DbItemIdentifier> itemsToPreserve = getItemsToPreserve();
-        return new DefaultDBCleaner(getDatabases(), itemsToPreserve, getSqlHandler());
+        boolean truncateEnabled = PropertyUtils.getBoolean(PROPERTY_CLEANDB_TRUNCATE_ENABLED, getConfiguration());
+        if (truncateEnabled) {
+            int maxNrOfThreads = PropertyUtils.getInt(PROPERTY_CLEANDB_MAX_THREADS, getConfiguration());
+            return new TruncatingDBCleaner(getDatabases(), itemsToPreserve, getSqlHandler(), getMetricsRecorder(), maxNrOfThreads);
+        }
+        return new DefaultDBCleaner(getDatabases(), itemsToPreserve, getSqlHandler(), getMetricsRecorder());
     }
 
 
@@ -43,6 +50,8 @@ public class DBCleanerFactory extends FactoryWithDatabase<DBCleaner> {
 
         Set<DbItemIdentifier> itemsToPreserve = new HashSet<DbItemIdentifier>();
         itemsToPreserve.add(executedScriptsTable);
+        // the row of the update lock is held while the database is cleaned
+        itemsToPreserve.add(factoryWithDatabaseContext.getUpdateLockTable());
 
         itemsToPreserve.addAll(factoryWithDatabaseContext.getSchemasToPreserve(PROPERTY_PRESERVE_SCHEMAS));
         itemsToPreserve.addAll(factoryWithDatabaseContext.getSchemasToPreserve(PROPERTY_PRESERVE_DATA_SCHEMAS));
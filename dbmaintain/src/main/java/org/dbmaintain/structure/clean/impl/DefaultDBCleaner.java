@@ -20,15 +20,20 @@ import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.Databases;
 import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.metrics.MetricsRecorder;
+import org.dbmaintain.metrics.impl.NoOpMetricsRecorder;
 import org.dbmaintain.structure.clean.DBCleaner;
 import org.dbmaintain.structure.model.DbItemIdentifier;
 import org.dbmaintain.util.DbMaintainException;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
+import static java.lang.System.nanoTime;
+import static org.dbmaintain.metrics.Metric.CLEAN_SCHEMA_DURATION;
 import static org.dbmaintain.structure.model.DbItemIdentifier.getItemIdentifier;
 import static org.dbmaintain.structure.model.DbItemIdentifier.getSchemaIdentifier;
 import static org.dbmaintain.structure.model.DbItemType.TABLE;
@@ -51,6 +56,8 @@ public class DefaultDBCleaner implements DBCleaner {
     protected Databases databases;
     /* The sql handler that will execute the statements */
     protected SQLHandler sqlHandler;
+    /* Records the time needed to clean the schemas */
+    protected MetricsRecorder metricsRecorder;
 
 
     /**
@@ -61,9 +68,22 @@ public class DefaultDBCleaner implements DBCleaner {
      * @param sqlHandler      The sql handler that will execute the statements, not null
      */
     public DefaultDBCleaner(Databases databases, Set<DbItemIdentifier> itemsToPreserve, SQLHandler sqlHandler) {
+        this(databases, itemsToPreserve, sqlHandler, new NoOpMetricsRecorder());
+    }
+
+    /**
+     * Constructor for DefaultDBCleaner.
+     *
+     * @param databases       The db support instances, not null
+     * @param itemsToPreserve The schema's and tables that should not be cleaned, not null
+     * @param sqlHandler      The sql handler that will execute the statements, not null
+     * @param metricsRecorder Records the time needed to clean the schemas, not null
+     */
+    public DefaultDBCleaner(Databases databases, Set<DbItemIdentifier> itemsToPreserve, SQLHandler sqlHandler, MetricsRecorder metricsRecorder) {
         this.databases = databases;
         this.sqlHandler = sqlHandler;
         this.itemsToPreserve = itemsToPreserve;
+        this.metricsRecorder = metricsRecorder;
 
         assertItemsToPreserveExist(itemsToPreserve);
     }
@@ -81,20 +101,40 @@ public class DefaultDBCleaner implements DBCleaner {
                     continue;
                 }
                 logger.info("Cleaning database schema. Deleting all records from tables in schema " + schemaName);
+                long startTime = nanoTime();
 
-                Set<String> tableNames = database.getTableNames(schemaName);
-                for (String tableName : tableNames) {
+                Set<String> tableNames = new LinkedHashSet<String>();
+                for (String tableName : database.getTableNames(schemaName)) {
                     // check whether table needs to be preserved
                     if (itemsToPreserve.contains(getItemIdentifier(TABLE, schemaName, tableName, database))) {
                         continue;
                     }
-                    cleanTable(database, schemaName, tableName);
+                    tableNames.add(tableName);
                 }
+                // tables that are already empty do not need to be cleaned
+                Set<String> nonEmptyTableNames = database.getNonEmptyTableNames(schemaName, tableNames);
+                logger.debug("Skipping " + (tableNames.size() - nonEmptyTableNames.size()) + " empty tables in database schema " + schemaName);
+                tableNames.retainAll(nonEmptyTableNames);
+                cleanSchema(database, schemaName, tableNames);
+                metricsRecorder.recordDuration(CLEAN_SCHEMA_DURATION, schemaName, nanoTime() - startTime);
             }
         }
     }
 
 
+    /**
+     * Deletes the data in the given tables of the schema, one table at a time.
+     *
+     * @param database   The database support, not null
+     * @param schemaName The schema name, not null
+     * @param tableNames The names of the tables that need to be cleared, not null
+     */
+    protected void cleanSchema(Database database, String schemaName, Set<String> tableNames) {
+        for (String tableName : tableNames) {
+            cleanTable(database, schemaName, tableName);
+        }
+    }
+
     /**
      * Deletes the data in the table with the given name.
      * Note: the table name is surrounded with quotes, to make sure that
@@ -0,0 +1,290 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.structure.clean.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.Databases;
+import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.metrics.MetricsRecorder;
+import org.dbmaintain.structure.model.DbItemDependency;
+import org.dbmaintain.structure.model.DbItemIdentifier;
+import org.dbmaintain.util.DbMaintainException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Implementation of {@link org.dbmaintain.structure.clean.DBCleaner} that empties the tables using truncate statements
+ * instead of deleting their records one by one. This is a lot faster since no undo information needs to be kept for
+ * every record.
+ * <p/>
+ * Most databases do not allow a table to be truncated if it is referenced by a foreign key of another table, even if
+ * that other table is empty. The records of these tables are deleted instead. The tables are cleaned in the order of
+ * their foreign keys: a table is only cleaned after all tables that reference it were cleaned. Tables that do not depend
+ * on each other are cleaned concurrently, each thread using its own connection. If a table cannot be truncated, e.g.
+ * because the user is not allowed to, its records are deleted.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class TruncatingDBCleaner extends DefaultDBCleaner {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(TruncatingDBCleaner.class);
+
+    /* The max nr of tables that are cleaned concurrently */
+    protected int maxNrOfThreads;
+
+
+    /**
+     * Constructor for TruncatingDBCleaner.
+     *
+     * @param databases       The db support instances, not null
+     * @param itemsToPreserve The schema's and tables that should not be cleaned, not null
+     * @param sqlHandler      The sql handler that will execute the statements, not null
+     * @param metricsRecorder Records the time needed to clean the schemas, not null
+     * @param maxNrOfThreads  The max nr of tables that are cleaned concurrently, 1 to clean the tables one by one
+     */
+    public TruncatingDBCleaner(Databases databases, Set<DbItemIdentifier> itemsToPreserve, SQLHandler sqlHandler, MetricsRecorder metricsRecorder, int maxNrOfThreads) {
+        super(databases, itemsToPreserve, sqlHandler, metricsRecorder);
+        this.maxNrOfThreads = maxNrOfThreads;
+    }
+
+
+    /**
+     * Cleans the given tables in the order of their foreign keys. The tables of one step do not reference each other
+     * and are cleaned concurrently. The tables of a step that contains a cycle of foreign keys are cleaned one by one
+     * on the same connection.
+     *
+     * @param database   The database support, not null
+     * @param schemaName The schema name, not null
+     * @param tableNames The names of the tables that need to be cleared, not null
+     */
+    @Override
+    protected void cleanSchema(Database database, String schemaName, Set<String> tableNames) {
+        if (tableNames.isEmpty()) {
+            return;
+        }
+        Map<String, Set<String>> referencingTableNames = getReferencingTableNames(database, schemaName);
+        Set<String> tableNamesToTruncate = new HashSet<String>();
+        if (database.supportsTruncate()) {
+            for (String tableName : tableNames) {
+                if (referencingTableNames.get(tableName) == null) {
+                    tableNamesToTruncate.add(tableName);
+                }
+            }
+        }
+
+        int nrOfThreads = Math.min(maxNrOfThreads, tableNames.size());
+        BlockingQueue<String> lanes = new ArrayBlockingQueue<String>(Math.max(nrOfThreads, 1));
+        // the schemas of a database are cleaned one after the other, so they can reuse the lanes and their connections
+        for (int i = 1; i <= nrOfThreads; i++) {
+            lanes.add("clean " + database.getDatabaseName() + " " + i);
+        }
+        ExecutorService executorService = nrOfThreads > 1 ? Executors.newFixedThreadPool(nrOfThreads) : null;
+        try {
+            for (List<String> tableNamesOfStep : getTableNamesInCleanOrder(tableNames, referencingTableNames)) {
+                if (executorService == null || tableNamesOfStep.size() == 1 || containsReferences(tableNamesOfStep, referencingTableNames)) {
+                    for (String tableName : tableNamesOfStep) {
+                        cleanTable(database, schemaName, tableName, tableNamesToTruncate.contains(tableName));
+                    }
+                } else {
+                    cleanTablesConcurrently(database, schemaName, tableNamesOfStep, tableNamesToTruncate, executorService, lanes);
+                }
+            }
+        } finally {
+            if (executorService != null) {
+                executorService.shutdown();
+            }
+        }
+    }
+
+
+    protected void cleanTablesConcurrently(final Database database, final String schemaName, List<String> tableNames, Set<String> tableNamesToTruncate, ExecutorService executorService, final BlockingQueue<String> lanes) {
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (final String tableName : tableNames) {
+            final boolean truncate = tableNamesToTruncate.contains(tableName);
+            futures.add(executorService.submit(new Runnable() {
+                public void run() {
+                    // each thread uses the connection of its own lane
+                    String lane = lanes.remove();
+                    sqlHandler.bindLane(lane);
+                    try {
+                        cleanTable(database, schemaName, tableName, truncate);
+                    } finally {
+                        sqlHandler.unbindLane();
+                        lanes.add(lane);
+                    }
+                }
+            }));
+        }
+        RuntimeException firstException = null;
+        try {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (firstException == null) {
+                        firstException = getTableException(e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DbMaintainException("Interrupted while waiting for the tables to be cleaned.", e);
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
+
+    /**
+     * Empties the given table. If the table should be truncated but truncating fails, its records are deleted.
+     *
+     * @param database   The database support, not null
+     * @param schemaName The schema name, not null
+     * @param tableName  The name of the table that need to be cleared, not null
+     * @param truncate   True if the table can be truncated, false if its records should be deleted
+     */
+    protected void cleanTable(Database database, String schemaName, String tableName, boolean truncate) {
+        if (truncate) {
+            try {
+                logger.debug("Truncating table " + tableName + " in database schema " + schemaName);
+                database.truncateTable(schemaName, tableName);
+                return;
+            } catch (RuntimeException e) {
+                logger.debug("Unable to truncate table " + tableName + " in database schema " + schemaName + ". Deleting its records instead.", e);
+            }
+        }
+        cleanTable(database, schemaName, tableName);
+    }
+
+
+    /**
+     * Gets the names of the tables that reference each table with a foreign key. A table that only references itself
+     * is not included: such a table can still be truncated.
+     *
+     * @param database   The database support, not null
+     * @param schemaName The schema name, not null
+     * @return The names of the referencing tables per referenced table, not null
+     */
+    protected Map<String, Set<String>> getReferencingTableNames(Database database, String schemaName) {
+        Map<String, Set<String>> referencingTableNames = new HashMap<String, Set<String>>();
+        for (DbItemDependency tableReference : database.getTableReferences(schemaName)) {
+            String tableName = tableReference.getItemName();
+            String referencedTableName = tableReference.getReferencedItemName();
+            if (tableName.equals(referencedTableName)) {
+                continue;
+            }
+            Set<String> tableNames = referencingTableNames.get(referencedTableName);
+            if (tableNames == null) {
+                tableNames = new HashSet<String>();
+                referencingTableNames.put(referencedTableName, tableNames);
+            }
+            tableNames.add(tableName);
+        }
+        return referencingTableNames;
+    }
+
+    /**
+     * Gets the steps in which the tables can be cleaned. A table is cleaned in a later step than all tables to clean
+     * that reference it. If the foreign keys contain a cycle, the tables of the cycle are cleaned in the last step.
+     *
+     * @param tableNames            The names of the tables to clean, not null
+     * @param referencingTableNames The names of the referencing tables per referenced table, not null
+     * @return The table names per step, not null
+     */
+    protected List<List<String>> getTableNamesInCleanOrder(Set<String> tableNames, Map<String, Set<String>> referencingTableNames) {
+        List<List<String>> steps = new ArrayList<List<String>>();
+        Set<String> remainingTableNames = new HashSet<String>(tableNames);
+        Set<String> cleanedTableNames = new HashSet<String>();
+        while (!remainingTableNames.isEmpty()) {
+            List<String> step = new ArrayList<String>();
+            for (String tableName : tableNames) {
+                if (remainingTableNames.contains(tableName) && isReadyToBeCleaned(tableName, tableNames, cleanedTableNames, referencingTableNames)) {
+                    step.add(tableName);
+                }
+            }
+            if (step.isEmpty()) {
+                logger.warn("The foreign keys of tables " + remainingTableNames + " contain a cycle. Their records are deleted in one step.");
+                for (String tableName : tableNames) {
+                    if (remainingTableNames.contains(tableName)) {
+                        step.add(tableName);
+                    }
+                }
+            }
+            remainingTableNames.removeAll(step);
+            cleanedTableNames.addAll(step);
+            steps.add(step);
+        }
+        return steps;
+    }
+
+
+    /**
+     * @param tableNamesOfStep      The names of the tables of a step, not null
+     * @param referencingTableNames The names of the referencing tables per referenced table, not null
+     * @return True if a table of the step is referenced by another table of the step, i.e. the step contains a cycle
+     */
+    protected boolean containsReferences(List<String> tableNamesOfStep, Map<String, Set<String>> referencingTableNames) {
+        for (String tableName : tableNamesOfStep) {
+            Set<String> referencingTables = referencingTableNames.get(tableName);
+            if (referencingTables == null) {
+                continue;
+            }
+            for (String referencingTableName : referencingTables) {
+                if (!referencingTableName.equals(tableName) && tableNamesOfStep.contains(referencingTableName)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    private boolean isReadyToBeCleaned(String tableName, Set<String> tableNames, Set<String> cleanedTableNames, Map<String, Set<String>> referencingTableNames) {
+        Set<String> referencingTables = referencingTableNames.get(tableName);
+        if (referencingTables == null) {
+            return true;
+        }
+        for (String referencingTableName : referencingTables) {
+            if (tableNames.contains(referencingTableName) && !cleanedTableNames.contains(referencingTableName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private RuntimeException getTableException(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new DbMaintainException("Error while cleaning table.", cause);
+    }
+}
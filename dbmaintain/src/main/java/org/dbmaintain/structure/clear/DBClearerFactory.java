@@ -17,6 +17,7 @@ package org.dbmaintain.structure.clear;
 
 import org.dbmaintain.MainFactory;
 import org.dbmaintain.config.FactoryWithDatabase;
+import org.dbmaintain.config.PropertyUtils;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
 import org.dbmaintain.structure.clear.impl.DefaultDBClearer;
 import org.dbmaintain.structure.constraint.ConstraintsDisabler;
@@ -41,8 +42,9 @@ public class DBClearerFactory extends FactoryWithDatabase<DBClearer> {
         MainFactory mainFactory = factoryWithDatabaseContext.getMainFactory();
         ConstraintsDisabler constraintsDisabler = mainFactory.createConstraintsDisabler();
         ExecutedScriptInfoSource executedScriptInfoSource = mainFactory.createExecutedScriptInfoSource();
+        int maxNrOfThreads = PropertyUtils.getInt(PROPERTY_CLEAR_DB_MAX_THREADS, getConfiguration());
 
-        return new DefaultDBClearer(getDatabases(), itemsToPreserve, constraintsDisabler, executedScriptInfoSource);
+        return new DefaultDBClearer(getDatabases(), itemsToPreserve, constraintsDisabler, executedScriptInfoSource, getMetricsRecorder(), maxNrOfThreads);
     }
 
 
@@ -52,6 +54,8 @@ public class DBClearerFactory extends FactoryWithDatabase<DBClearer> {
 
         Set<DbItemIdentifier> itemsToPreserve = new HashSet<DbItemIdentifier>();
         itemsToPreserve.add(executedScriptsTable);
+        // the update lock is held while the database is cleared
+        itemsToPreserve.add(factoryWithDatabaseContext.getUpdateLockTable());
         itemsToPreserve.addAll(schemasToPreserve);
         factoryWithDatabaseContext.addItemsToPreserve(TABLE, PROPERTY_PRESERVE_TABLES, itemsToPreserve);
         factoryWithDatabaseContext.addItemsToPreserve(VIEW, PROPERTY_PRESERVE_VIEWS, itemsToPreserve);
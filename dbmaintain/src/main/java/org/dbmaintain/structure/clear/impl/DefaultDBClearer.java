@@ -19,15 +19,25 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.Databases;
+import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.metrics.MetricsRecorder;
+import org.dbmaintain.metrics.impl.NoOpMetricsRecorder;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
 import org.dbmaintain.structure.clear.DBClearer;
 import org.dbmaintain.structure.constraint.ConstraintsDisabler;
+import org.dbmaintain.structure.model.DbItemDependency;
 import org.dbmaintain.structure.model.DbItemIdentifier;
 import org.dbmaintain.structure.model.DbItemType;
 import org.dbmaintain.util.DbMaintainException;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static java.lang.System.nanoTime;
+import static org.dbmaintain.metrics.Metric.CLEAR_SCHEMA_DURATION;
 import static org.dbmaintain.structure.model.DbItemIdentifier.getItemIdentifier;
 import static org.dbmaintain.structure.model.DbItemIdentifier.getSchemaIdentifier;
 import static org.dbmaintain.structure.model.DbItemType.*;
@@ -36,6 +46,13 @@ import static org.dbmaintain.structure.model.DbItemType.*;
  * Implementation of {@link org.dbmaintain.structure.clear.DBClearer}. This implementation individually drops every table, view, materialized view, synonym,
  * trigger and sequence in the database. A list of tables, views, ... that should be preserved can be specified at construction.
  * <p/>
+ * If no items of a schema need to be preserved, except for the executed scripts table, and the database supports it,
+ * all items of the schema are dropped at once, e.g. by dropping and re-creating the schema.
+ * <p/>
+ * Otherwise, if the database can tell the dependencies between the items, every item is dropped exactly once, in an order in which
+ * the items that depend on an item are dropped first. If the dependencies are not known, or if some items could not be
+ * dropped, all items are dropped in multiple passes until no more errors occur, see {@link MultiPassErrorHandler}.
+ * <p/>
  * NOTE: FK constraints give problems in MySQL and Derby
  * The cascade in 'drop table A cascade;' does not work in MySQL-5.0
  * The foreign key constraints will be disabled before this method is called.
@@ -60,7 +77,14 @@ public class DefaultDBClearer implements DBClearer {
     /* The db support instances, not null */
     protected Databases databases;
 
-    private MultiPassErrorHandler multiPassErrorHandler;
+    /* Records the time needed to clear the schemas */
+    protected MetricsRecorder metricsRecorder;
+
+    /* The max nr of schemas that are cleared concurrently */
+    protected int maxNrOfThreads;
+
+    /* Keeps track of the errors of the schema that is being cleared by the current thread */
+    private ThreadLocal<MultiPassErrorHandler> multiPassErrorHandler = new ThreadLocal<MultiPassErrorHandler>();
 
     /**
      * @param databases                The db support instances, not null
@@ -69,10 +93,35 @@ public class DefaultDBClearer implements DBClearer {
      * @param executedScriptInfoSource Clears the executed scripts table, not null
      */
     public DefaultDBClearer(Databases databases, Set<DbItemIdentifier> itemsToPreserve, ConstraintsDisabler constraintsDisabler, ExecutedScriptInfoSource executedScriptInfoSource) {
+        this(databases, itemsToPreserve, constraintsDisabler, executedScriptInfoSource, new NoOpMetricsRecorder());
+    }
+
+    /**
+     * @param databases                The db support instances, not null
+     * @param itemsToPreserve          The schema's, tables, triggers etc that should not be dropped, not null
+     * @param constraintsDisabler      Disables of constraints before clearing the database, not null
+     * @param executedScriptInfoSource Clears the executed scripts table, not null
+     * @param metricsRecorder          Records the time needed to clear the schemas, not null
+     */
+    public DefaultDBClearer(Databases databases, Set<DbItemIdentifier> itemsToPreserve, ConstraintsDisabler constraintsDisabler, ExecutedScriptInfoSource executedScriptInfoSource, MetricsRecorder metricsRecorder) {
+        this(databases, itemsToPreserve, constraintsDisabler, executedScriptInfoSource, metricsRecorder, 1);
+    }
+
+    /**
+     * @param databases                The db support instances, not null
+     * @param itemsToPreserve          The schema's, tables, triggers etc that should not be dropped, not null
+     * @param constraintsDisabler      Disables of constraints before clearing the database, not null
+     * @param executedScriptInfoSource Clears the executed scripts table, not null
+     * @param metricsRecorder          Records the time needed to clear the schemas, not null
+     * @param maxNrOfThreads           The max nr of schemas that are cleared concurrently, 1 to clear the schemas one by one
+     */
+    public DefaultDBClearer(Databases databases, Set<DbItemIdentifier> itemsToPreserve, ConstraintsDisabler constraintsDisabler, ExecutedScriptInfoSource executedScriptInfoSource, MetricsRecorder metricsRecorder, int maxNrOfThreads) {
         this.databases = databases;
         this.itemsToPreserve = itemsToPreserve;
         this.constraintsDisabler = constraintsDisabler;
         this.executedScriptInfoSource = executedScriptInfoSource;
+        this.metricsRecorder = metricsRecorder;
+        this.maxNrOfThreads = maxNrOfThreads;
         assertItemsToPreserveExist(itemsToPreserve);
     }
 
@@ -89,6 +138,10 @@ public class DefaultDBClearer implements DBClearer {
         // Referential constraints are removed before clearing the database, to be sure there will be no conflicts when dropping tables
         constraintsDisabler.disableReferentialConstraints();
 
+        if (maxNrOfThreads > 1) {
+            clearSchemasConcurrently();
+            return;
+        }
         for (Database database : databases.getDatabases()) {
             if (database == null) {
                 continue;
@@ -99,14 +152,126 @@ public class DefaultDBClearer implements DBClearer {
 
     protected void clearDatabase(Database database) {
         for (String schemaName : database.getSchemaNames()) {
-            multiPassErrorHandler = new MultiPassErrorHandler();
-
             // check whether schema needs to be preserved
             if (itemsToPreserve.contains(getSchemaIdentifier(schemaName, database))) {
                 continue;
             }
+            clearDatabaseSchema(database, schemaName);
+        }
+    }
+
+    /**
+     * Clears the schemas of all databases concurrently, using at most maxNrOfThreads threads. Each schema uses its own
+     * connection. A schema can fail to be cleared because items of other schemas still depended on its items. Therefore,
+     * the schemas that failed are cleared again one by one after all other schemas were cleared. If there are still
+     * schemas that fail, an exception is thrown that contains the error of each of these schemas.
+     */
+    protected void clearSchemasConcurrently() {
+        Map<DbItemIdentifier, Database> schemas = new LinkedHashMap<DbItemIdentifier, Database>();
+        for (Database database : databases.getDatabases()) {
+            if (database == null) {
+                continue;
+            }
+            for (String schemaName : database.getSchemaNames()) {
+                DbItemIdentifier schemaIdentifier = getSchemaIdentifier(schemaName, database);
+                // check whether schema needs to be preserved
+                if (!itemsToPreserve.contains(schemaIdentifier)) {
+                    schemas.put(schemaIdentifier, database);
+                }
+            }
+        }
+        if (schemas.isEmpty()) {
+            return;
+        }
+
+        Map<DbItemIdentifier, RuntimeException> failedSchemas = new LinkedHashMap<DbItemIdentifier, RuntimeException>();
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(maxNrOfThreads, schemas.size()));
+        try {
+            Map<DbItemIdentifier, Future<?>> futures = new LinkedHashMap<DbItemIdentifier, Future<?>>();
+            for (final Map.Entry<DbItemIdentifier, Database> schema : schemas.entrySet()) {
+                futures.put(schema.getKey(), executorService.submit(new Runnable() {
+                    public void run() {
+                        clearDatabaseSchemaInOwnLane(schema.getValue(), schema.getKey().getSchemaName());
+                    }
+                }));
+            }
+            for (Map.Entry<DbItemIdentifier, Future<?>> future : futures.entrySet()) {
+                try {
+                    future.getValue().get();
+                } catch (ExecutionException e) {
+                    failedSchemas.put(future.getKey(), getSchemaException(e.getCause()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DbMaintainException("Interrupted while waiting for the database schemas to be cleared.", e);
+        } finally {
+            executorService.shutdown();
+        }
+
+        Map<DbItemIdentifier, RuntimeException> remainingFailedSchemas = new LinkedHashMap<DbItemIdentifier, RuntimeException>();
+        for (Map.Entry<DbItemIdentifier, RuntimeException> failedSchema : failedSchemas.entrySet()) {
+            String schemaName = failedSchema.getKey().getSchemaName();
+            logger.info("Unable to clear database schema " + schemaName + " concurrently with the other schemas: " + failedSchema.getValue().getMessage() + ". Trying again now that the other schemas are cleared.");
+            try {
+                clearDatabaseSchema(schemas.get(failedSchema.getKey()), schemaName);
+            } catch (RuntimeException e) {
+                remainingFailedSchemas.put(failedSchema.getKey(), e);
+            }
+        }
+        if (!remainingFailedSchemas.isEmpty()) {
+            StringBuilder message = new StringBuilder("Unable to clear database schemas:");
+            for (Map.Entry<DbItemIdentifier, RuntimeException> failedSchema : remainingFailedSchemas.entrySet()) {
+                DbItemIdentifier schemaIdentifier = failedSchema.getKey();
+                message.append("\n- ");
+                if (schemaIdentifier.getDatabaseName() != null) {
+                    message.append(schemaIdentifier.getDatabaseName()).append(".");
+                }
+                message.append(schemaIdentifier.getSchemaName()).append(": ").append(failedSchema.getValue().getMessage());
+            }
+            throw new DbMaintainException(message.toString(), remainingFailedSchemas.values().iterator().next());
+        }
+    }
+
+    private void clearDatabaseSchemaInOwnLane(Database database, String schemaName) {
+        SQLHandler sqlHandler = database.getSQLHandler();
+        // all statements for the schema use the same connection, that is not shared with other schemas
+        sqlHandler.bindLane("clear " + database.getDatabaseName() + "." + schemaName);
+        try {
+            clearDatabaseSchema(database, schemaName);
+        } finally {
+            // the lane is not used again
+            sqlHandler.releaseConnections(database.getDataSource());
+            sqlHandler.unbindLane();
+        }
+    }
+
+    private RuntimeException getSchemaException(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new DbMaintainException("Error while clearing database schema.", cause);
+    }
+
+    /**
+     * Clears the given schema: all items are dropped, except for the items to preserve.
+     *
+     * @param database   The database support, not null
+     * @param schemaName The name of the schema to clear, not null
+     */
+    protected void clearDatabaseSchema(Database database, String schemaName) {
+        multiPassErrorHandler.set(new MultiPassErrorHandler());
+        try {
             logger.info("Clearing database schema " + schemaName);
-            do {
+            long startTime = nanoTime();
+            boolean continueExecution = !clearSchemaAtOnce(database, schemaName);
+            if (continueExecution && database.supportsDependencies()) {
+                dropItemsInDependencyOrder(database, schemaName);
+                dropRules(database, schemaName);
+                continueExecution = multiPassErrorHandler.get().continueExecutionAfterPass();
+            }
+            // items that could not be dropped, e.g. because of dependencies that are not known, are retried in multiple passes
+            while (continueExecution) {
                 dropSynonyms(database, schemaName);
                 dropViews(database, schemaName);
                 dropMaterializedViews(database, schemaName);
@@ -116,10 +281,211 @@ public class DefaultDBClearer implements DBClearer {
                 dropTriggers(database, schemaName);
                 dropTypes(database, schemaName);
                 dropRules(database, schemaName);
+                continueExecution = multiPassErrorHandler.get().continueExecutionAfterPass();
             }
-            while (multiPassErrorHandler.continueExecutionAfterPass());
+            metricsRecorder.recordDuration(CLEAR_SCHEMA_DURATION, schemaName, nanoTime() - startTime);
 
             // todo drop functions, stored procedures.
+        } finally {
+            multiPassErrorHandler.remove();
+        }
+    }
+
+
+    /**
+     * Drops all items of the schema at once, if the database supports this. This is only tried if no items of the
+     * schema need to be preserved, except for the tables of DbMaintain itself, i.e. the executed scripts table and the
+     * update lock table, which are kept.
+     *
+     * @param database   The database support, not null
+     * @param schemaName The name of the schema to clear, not null
+     * @return True if the schema was cleared, false if the items should be dropped one by one
+     */
+    protected boolean clearSchemaAtOnce(Database database, String schemaName) {
+        DbItemIdentifier schemaIdentifier = getSchemaIdentifier(schemaName, database);
+        Set<String> tableNamesToKeep = new HashSet<String>();
+        for (DbItemIdentifier itemToPreserve : itemsToPreserve) {
+            if (!schemaIdentifier.equals(itemToPreserve.getSchema())) {
+                continue;
+            }
+            if (itemToPreserve.getType() != TABLE || !itemToPreserve.isDbMaintainIdentifier()) {
+                return false;
+            }
+            tableNamesToKeep.add(itemToPreserve.getItemName());
+        }
+        try {
+            return database.clearSchema(schemaName, tableNamesToKeep);
+        } catch (RuntimeException e) {
+            logger.warn("Unable to clear database schema " + schemaName + " at once. The remaining items will be dropped one by one.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Drops all items of the schema, each item exactly once, in an order in which the items that depend on an item
+     * are dropped before that item. Triggers that are defined on a table that is dropped are not dropped separately,
+     * they are dropped together with their table. Items that are part of a cycle of dependencies are dropped last.
+     *
+     * @param database   The database support, not null
+     * @param schemaName The name of the schema to drop the items from, not null
+     */
+    protected void dropItemsInDependencyOrder(Database database, String schemaName) {
+        Map<DbItemIdentifier, String> itemNames = getItemsToDrop(database, schemaName);
+        List<DbItemDependency> dependencies = database.getDependencies(schemaName);
+
+        // triggers of tables that are dropped are dropped together with their table
+        for (DbItemDependency dependency : dependencies) {
+            if (dependency.getType() == TRIGGER && dependency.getReferencedType() == TABLE && itemNames.containsKey(getItemIdentifier(TABLE, schemaName, dependency.getReferencedItemName(), database))) {
+                itemNames.remove(getItemIdentifier(TRIGGER, schemaName, dependency.getItemName(), database));
+            }
+        }
+
+        List<DbItemIdentifier> orderedItems = getItemsInDependencyOrder(itemNames.keySet(), dependencies, database, schemaName);
+        for (DbItemIdentifier item : orderedItems) {
+            dropItem(database, schemaName, item.getType(), itemNames.get(item));
+        }
+    }
+
+    /**
+     * Gets all items of the schema that should be dropped, i.e. that are not preserved.
+     *
+     * @param database   The database support, not null
+     * @param schemaName The name of the schema, not null
+     * @return The names of the items per identifier, in the order in which the item types are dropped by default, not null
+     */
+    protected Map<DbItemIdentifier, String> getItemsToDrop(Database database, String schemaName) {
+        Map<DbItemIdentifier, String> itemNames = new LinkedHashMap<DbItemIdentifier, String>();
+        if (database.supportsSynonyms()) {
+            addItemsToDrop(SYNONYM, database.getSynonymNames(schemaName), database, schemaName, itemNames);
+        }
+        addItemsToDrop(VIEW, database.getViewNames(schemaName), database, schemaName, itemNames);
+        if (database.supportsMaterializedViews()) {
+            addItemsToDrop(MATERIALIZED_VIEW, database.getMaterializedViewNames(schemaName), database, schemaName, itemNames);
+        }
+        if (database.supportsSequences()) {
+            addItemsToDrop(SEQUENCE, database.getSequenceNames(schemaName), database, schemaName, itemNames);
+        }
+        addItemsToDrop(TABLE, database.getTableNames(schemaName), database, schemaName, itemNames);
+        if (database.supportsStoredProcedures()) {
+            addItemsToDrop(STORED_PROC, database.getStoredProcedureNames(schemaName), database, schemaName, itemNames);
+        }
+        if (database.supportsTriggers()) {
+            addItemsToDrop(TRIGGER, database.getTriggerNames(schemaName), database, schemaName, itemNames);
+        }
+        if (database.supportsTypes()) {
+            addItemsToDrop(TYPE, database.getTypeNames(schemaName), database, schemaName, itemNames);
+        }
+        return itemNames;
+    }
+
+    private void addItemsToDrop(DbItemType type, Set<String> names, Database database, String schemaName, Map<DbItemIdentifier, String> itemNames) {
+        for (String name : names) {
+            DbItemIdentifier itemIdentifier = getItemIdentifier(type, schemaName, name, database);
+            // check whether item needs to be preserved
+            if (!itemsToPreserve.contains(itemIdentifier)) {
+                itemNames.put(itemIdentifier, name);
+            }
+        }
+    }
+
+    /**
+     * Sorts the given items so that the items that depend on an item come before that item. Apart from that, the items
+     * keep their order as much as possible. Dependencies on items that are not in the given items are ignored. Items
+     * that are part of a cycle of dependencies are put at the end.
+     *
+     * @param items        The items to sort, not null
+     * @param dependencies The dependencies between the items, not null
+     * @param database     The database support, not null
+     * @param schemaName   The name of the schema, not null
+     * @return The sorted items, not null
+     */
+    protected List<DbItemIdentifier> getItemsInDependencyOrder(Set<DbItemIdentifier> items, List<DbItemDependency> dependencies, Database database, String schemaName) {
+        Map<DbItemIdentifier, Set<DbItemIdentifier>> referencedItems = new HashMap<DbItemIdentifier, Set<DbItemIdentifier>>();
+        Map<DbItemIdentifier, Integer> nrOfDependentItems = new HashMap<DbItemIdentifier, Integer>();
+        for (DbItemIdentifier item : items) {
+            referencedItems.put(item, new HashSet<DbItemIdentifier>());
+            nrOfDependentItems.put(item, 0);
+        }
+        for (DbItemDependency dependency : dependencies) {
+            DbItemIdentifier item = getItemIdentifier(dependency.getType(), schemaName, dependency.getItemName(), database);
+            DbItemIdentifier referencedItem = getItemIdentifier(dependency.getReferencedType(), schemaName, dependency.getReferencedItemName(), database);
+            if (item.equals(referencedItem) || !items.contains(item) || !items.contains(referencedItem)) {
+                continue;
+            }
+            if (referencedItems.get(item).add(referencedItem)) {
+                nrOfDependentItems.put(referencedItem, nrOfDependentItems.get(referencedItem) + 1);
+            }
+        }
+
+        List<DbItemIdentifier> orderedItems = new ArrayList<DbItemIdentifier>();
+        LinkedList<DbItemIdentifier> itemsWithoutDependentItems = new LinkedList<DbItemIdentifier>();
+        for (DbItemIdentifier item : items) {
+            if (nrOfDependentItems.get(item) == 0) {
+                itemsWithoutDependentItems.add(item);
+            }
+        }
+        while (!itemsWithoutDependentItems.isEmpty()) {
+            DbItemIdentifier item = itemsWithoutDependentItems.removeFirst();
+            orderedItems.add(item);
+            for (DbItemIdentifier referencedItem : referencedItems.get(item)) {
+                int nrOfRemainingDependentItems = nrOfDependentItems.get(referencedItem) - 1;
+                nrOfDependentItems.put(referencedItem, nrOfRemainingDependentItems);
+                if (nrOfRemainingDependentItems == 0) {
+                    itemsWithoutDependentItems.add(referencedItem);
+                }
+            }
+        }
+        if (orderedItems.size() < items.size()) {
+            for (DbItemIdentifier item : items) {
+                if (nrOfDependentItems.get(item) > 0) {
+                    orderedItems.add(item);
+                }
+            }
+        }
+        return orderedItems;
+    }
+
+    /**
+     * Drops the given item. If the drop fails, the error is recorded so that the item is retried in a next pass.
+     *
+     * @param database   The database support, not null
+     * @param schemaName The name of the schema, not null
+     * @param type       The type of the item, not null
+     * @param itemName   The name of the item, not null
+     */
+    protected void dropItem(Database database, String schemaName, DbItemType type, String itemName) {
+        logger.debug("Dropping " + type.name().toLowerCase().replace('_', ' ') + " " + itemName + " in database schema " + schemaName);
+        try {
+            switch (type) {
+                case SYNONYM:
+                    database.dropSynonym(schemaName, itemName);
+                    break;
+                case VIEW:
+                    database.dropView(schemaName, itemName);
+                    break;
+                case MATERIALIZED_VIEW:
+                    database.dropMaterializedView(schemaName, itemName);
+                    break;
+                case SEQUENCE:
+                    database.dropSequence(schemaName, itemName);
+                    break;
+                case TABLE:
+                    database.dropTable(schemaName, itemName);
+                    break;
+                case STORED_PROC:
+                    database.dropStoredProcedure(schemaName, itemName);
+                    break;
+                case TRIGGER:
+                    database.dropTrigger(schemaName, itemName);
+                    break;
+                case TYPE:
+                    database.dropType(schemaName, itemName);
+                    break;
+                default:
+                    throw new DbMaintainException("Unable to drop " + type + " " + itemName + ": unsupported type of item");
+            }
+        } catch (RuntimeException e) {
+            multiPassErrorHandler.get().addError(e);
         }
     }
 
@@ -141,7 +507,7 @@ public class DefaultDBClearer implements DBClearer {
             try {
                 database.dropTable(schemaName, tableName);
             } catch (RuntimeException e) {
-                multiPassErrorHandler.addError(e);
+                multiPassErrorHandler.get().addError(e);
             }
         }
     }
@@ -163,7 +529,7 @@ public class DefaultDBClearer implements DBClearer {
             try {
                 database.dropView(schemaName, viewName);
             } catch (RuntimeException e) {
-                multiPassErrorHandler.addError(e);
+                multiPassErrorHandler.get().addError(e);
             }
         }
     }
@@ -188,7 +554,7 @@ public class DefaultDBClearer implements DBClearer {
             try {
                 database.dropMaterializedView(schemaName, materializedViewName);
             } catch (RuntimeException e) {
-                multiPassErrorHandler.addError(e);
+                multiPassErrorHandler.get().addError(e);
             }
         }
     }
@@ -213,7 +579,7 @@ public class DefaultDBClearer implements DBClearer {
             try {
                 database.dropSynonym(schemaName, synonymName);
             } catch (RuntimeException e) {
-                multiPassErrorHandler.addError(e);
+                multiPassErrorHandler.get().addError(e);
             }
 
         }
@@ -239,7 +605,7 @@ public class DefaultDBClearer implements DBClearer {
             try {
                 database.dropSequence(schemaName, sequenceName);
             } catch (RuntimeException e) {
-                multiPassErrorHandler.addError(e);
+                multiPassErrorHandler.get().addError(e);
             }
         }
     }
@@ -264,7 +630,7 @@ public class DefaultDBClearer implements DBClearer {
             try {
                 database.dropTrigger(schemaName, triggerName);
             } catch (RuntimeException e) {
-                multiPassErrorHandler.addError(e);
+                multiPassErrorHandler.get().addError(e);
             }
         }
     }
@@ -283,7 +649,7 @@ public class DefaultDBClearer implements DBClearer {
             try {
                 database.dropStoredProcedure(schemaName, storedProcedureName);
             } catch (RuntimeException e) {
-                multiPassErrorHandler.addError(e);
+                multiPassErrorHandler.get().addError(e);
             }
         }
     }
@@ -308,7 +674,7 @@ public class DefaultDBClearer implements DBClearer {
             try {
                 database.dropType(schemaName, typeName);
             } catch (RuntimeException e) {
-                multiPassErrorHandler.addError(e);
+                multiPassErrorHandler.get().addError(e);
             }
         }
     }
@@ -333,7 +699,7 @@ public class DefaultDBClearer implements DBClearer {
             try {
                 database.dropRule(schemaName, ruleName);
             } catch (RuntimeException e) {
-                multiPassErrorHandler.addError(e);
+                multiPassErrorHandler.get().addError(e);
             }
         }
     }
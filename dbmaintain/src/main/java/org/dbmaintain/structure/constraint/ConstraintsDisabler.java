@@ -15,6 +15,9 @@
  */
 package org.dbmaintain.structure.constraint;
 
+import org.dbmaintain.structure.model.DbItemIdentifier;
+
+import java.util.Set;
 
 /**
  * A task for disabling all foreign key, check and not-null constraints on a database schema.
@@ -32,6 +35,13 @@ public interface ConstraintsDisabler {
      */
     void disableConstraints();
 
+    /**
+     * Disables all constraints of the given tables.
+     *
+     * @param tables The identifiers of the tables, not null
+     */
+    void disableConstraints(Set<DbItemIdentifier> tables);
+
     void disableReferentialConstraints();
 
     void disableValueConstraints();
@@ -20,6 +20,12 @@ import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.Databases;
 import org.dbmaintain.structure.constraint.ConstraintsDisabler;
+import org.dbmaintain.structure.model.DbItemIdentifier;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Default implementation of {@link ConstraintsDisabler}.
@@ -58,6 +64,35 @@ public class DefaultConstraintsDisabler implements ConstraintsDisabler {
         disableValueConstraints();
     }
 
+    /**
+     * Disable every foreign key or not-null constraint of the given tables
+     *
+     * @param tables The identifiers of the tables, not null
+     */
+    public void disableConstraints(Set<DbItemIdentifier> tables) {
+        Map<DbItemIdentifier, Set<String>> tableNamesPerSchema = new HashMap<DbItemIdentifier, Set<String>>();
+        for (DbItemIdentifier table : tables) {
+            Set<String> tableNames = tableNamesPerSchema.get(table.getSchema());
+            if (tableNames == null) {
+                tableNames = new HashSet<String>();
+                tableNamesPerSchema.put(table.getSchema(), tableNames);
+            }
+            tableNames.add(table.getItemName());
+        }
+        // first disable referential constraints to avoid conflicts
+        for (Map.Entry<DbItemIdentifier, Set<String>> entry : tableNamesPerSchema.entrySet()) {
+            String schemaName = entry.getKey().getSchemaName();
+            logger.info("Disabling referential constraints of " + entry.getValue().size() + " tables in database schema " + schemaName);
+            getDatabase(entry.getKey()).disableReferentialConstraints(schemaName, entry.getValue());
+        }
+        // disable not-null and check constraints
+        for (Map.Entry<DbItemIdentifier, Set<String>> entry : tableNamesPerSchema.entrySet()) {
+            String schemaName = entry.getKey().getSchemaName();
+            logger.info("Disabling value constraints of " + entry.getValue().size() + " tables in database schema " + schemaName);
+            getDatabase(entry.getKey()).disableValueConstraints(schemaName, entry.getValue());
+        }
+    }
+
     @Override
     public void disableReferentialConstraints() {
          for (Database database : databases.getDatabases()) {
@@ -79,4 +114,13 @@ public class DefaultConstraintsDisabler implements ConstraintsDisabler {
     }
 
 
+    protected Database getDatabase(DbItemIdentifier schema) {
+        String databaseName = schema.getDatabaseName();
+        if (databaseName == null) {
+            return databases.getDefaultDatabase();
+        }
+        return databases.getDatabase(databaseName);
+    }
+
+
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.structure.image;
+
+import org.dbmaintain.script.Script;
+
+import java.util.List;
+import java.util.SortedSet;
+
+/**
+ * Keeps images of the database schemas, i.e. their structure and data, as they are after executing the update scripts
+ * from scratch. Images can be kept for prefixes of the scripts, i.e. after executing the first scripts. When the
+ * database is updated from scratch again, the image of the longest prefix is restored and only the remaining scripts
+ * need to be executed.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public interface SchemaImageCache {
+
+
+    /**
+     * Restores the image of the longest prefix of the given scripts for which an image was stored. The database
+     * schemas should be cleared before calling this method. If an exception is thrown, the schemas can be partially
+     * restored.
+     *
+     * @param scripts All update scripts, in the order of execution, not null
+     * @return The nr of scripts of the restored prefix, 0 if no image was restored
+     */
+    int restoreImage(SortedSet<Script> scripts);
+
+
+    /**
+     * Gets the checkpoints at which an image should be stored when executing the given scripts.
+     *
+     * @param scripts All update scripts, in the order of execution, not null
+     * @return The nr of scripts after which an image should be stored, in ascending order, not null
+     */
+    List<Integer> getCheckpoints(SortedSet<Script> scripts);
+
+
+    /**
+     * Stores an image of the current database schemas for the given prefix of the scripts. This should be called right
+     * after the scripts were executed on cleared schemas. Failing to store an image does not result in an exception:
+     * the scripts will simply be executed again the next time.
+     *
+     * @param scripts The update scripts that were executed, in the order of execution, not null
+     */
+    void storeImage(SortedSet<Script> scripts);
+
+}
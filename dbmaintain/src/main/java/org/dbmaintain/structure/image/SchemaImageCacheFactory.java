@@ -0,0 +1,45 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.structure.image;
+
+import org.dbmaintain.config.FactoryWithDatabase;
+import org.dbmaintain.config.PropertyUtils;
+import org.dbmaintain.structure.image.impl.DefaultSchemaImageCache;
+import org.dbmaintain.structure.image.impl.NoOpSchemaImageCache;
+
+import java.io.File;
+
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_SCHEMA_IMAGE_CACHE_CHECKPOINT_INTERVAL;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_SCHEMA_IMAGE_CACHE_DIRECTORY;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_SCHEMA_IMAGE_CACHE_MAX_SIZE_IN_MB;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class SchemaImageCacheFactory extends FactoryWithDatabase<SchemaImageCache> {
+
+
+    public SchemaImageCache createInstance() {
+        String imageDirectoryName = PropertyUtils.getString(PROPERTY_SCHEMA_IMAGE_CACHE_DIRECTORY, null, getConfiguration());
+        if (imageDirectoryName == null) {
+            return new NoOpSchemaImageCache();
+        }
+        int checkpointInterval = PropertyUtils.getInt(PROPERTY_SCHEMA_IMAGE_CACHE_CHECKPOINT_INTERVAL, getConfiguration());
+        long maxSizeInMB = PropertyUtils.getLong(PROPERTY_SCHEMA_IMAGE_CACHE_MAX_SIZE_IN_MB, getConfiguration());
+        return new DefaultSchemaImageCache(getDatabases(), new File(imageDirectoryName), checkpointInterval, maxSizeInMB * 1024 * 1024);
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.structure.image.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.Databases;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.structure.image.SchemaImageCache;
+import org.dbmaintain.util.DbMaintainException;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedSet;
+
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.apache.commons.io.FileUtils.sizeOfDirectory;
+
+/**
+ * Schema image cache that stores the images in a local directory. The images are exported and imported by the
+ * databases themselves, see {@link Database#exportSchemaImage}. If one of the databases does not support images, no
+ * images are stored or restored.
+ * <p/>
+ * An image is stored after all scripts were executed and, if a checkpoint interval is set, after every interval of
+ * scripts. It is identified by a key: the cumulative hash of the names and checksums of the scripts of its prefix. Each
+ * image is a sub-directory of the image directory named after its key, containing one image file per database.
+ * <p/>
+ * If a maximum size is set, the least recently used images are removed when the images take more space.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultSchemaImageCache implements SchemaImageCache {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(DefaultSchemaImageCache.class);
+
+    /* The suffix of the directories in which images are written before they are complete */
+    protected static final String TEMP_DIRECTORY_SUFFIX = ".tmp";
+
+    /* The db support instances, not null */
+    protected Databases databases;
+    /* The directory that contains the images, not null */
+    protected File imageDirectory;
+    /* The nr of scripts after which an image is stored, 0 to only store an image after all scripts */
+    protected int checkpointInterval;
+    /* The maximum nr of bytes of all images together, 0 for no maximum */
+    protected long maxSizeInBytes;
+
+
+    /**
+     * @param databases      The db support instances, not null
+     * @param imageDirectory The directory that contains the images, created if it does not exist yet, not null
+     */
+    public DefaultSchemaImageCache(Databases databases, File imageDirectory) {
+        this(databases, imageDirectory, 0, 0);
+    }
+
+    /**
+     * @param databases          The db support instances, not null
+     * @param imageDirectory     The directory that contains the images, created if it does not exist yet, not null
+     * @param checkpointInterval The nr of scripts after which an image is stored, 0 to only store an image after all scripts
+     * @param maxSizeInBytes     The maximum nr of bytes of all images together, 0 for no maximum
+     */
+    public DefaultSchemaImageCache(Databases databases, File imageDirectory, int checkpointInterval, long maxSizeInBytes) {
+        this.databases = databases;
+        this.imageDirectory = imageDirectory;
+        this.checkpointInterval = checkpointInterval;
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+
+    public int restoreImage(SortedSet<Script> scripts) {
+        List<Database> imageDatabases = getImageDatabases();
+        if (imageDatabases == null) {
+            return 0;
+        }
+        List<String> imageKeys = getImageKeys(scripts);
+        for (int nrOfScripts = imageKeys.size(); nrOfScripts > 0; nrOfScripts--) {
+            String imageKey = imageKeys.get(nrOfScripts - 1);
+            File keyDirectory = new File(imageDirectory, imageKey);
+            if (!isCompleteImage(keyDirectory, imageDatabases)) {
+                continue;
+            }
+            logger.info("Restoring schema image " + imageKey + " instead of executing the first " + nrOfScripts + " of " + scripts.size() + " scripts.");
+            // keeps track of the last use for removing the least recently used images
+            keyDirectory.setLastModified(currentTimeMillis());
+            for (Database database : imageDatabases) {
+                database.importSchemaImage(getImageFile(keyDirectory, database));
+            }
+            return nrOfScripts;
+        }
+        logger.info("No schema image found for the current scripts.");
+        return 0;
+    }
+
+
+    public List<Integer> getCheckpoints(SortedSet<Script> scripts) {
+        List<Integer> checkpoints = new ArrayList<Integer>();
+        if (getImageDatabases() == null) {
+            return checkpoints;
+        }
+        if (checkpointInterval > 0) {
+            for (int checkpoint = checkpointInterval; checkpoint < scripts.size(); checkpoint += checkpointInterval) {
+                checkpoints.add(checkpoint);
+            }
+        }
+        if (!scripts.isEmpty()) {
+            checkpoints.add(scripts.size());
+        }
+        return checkpoints;
+    }
+
+
+    public void storeImage(SortedSet<Script> scripts) {
+        List<Database> imageDatabases = getImageDatabases();
+        if (imageDatabases == null || scripts.isEmpty()) {
+            return;
+        }
+        List<String> imageKeys = getImageKeys(scripts);
+        String imageKey = imageKeys.get(imageKeys.size() - 1);
+        File keyDirectory = new File(imageDirectory, imageKey);
+        if (keyDirectory.exists()) {
+            return;
+        }
+        // the image is first written to a temporary directory, so that other builds never see an incomplete image
+        File tempDirectory = new File(imageDirectory, imageKey + TEMP_DIRECTORY_SUFFIX + nanoTime());
+        try {
+            if (!tempDirectory.mkdirs()) {
+                throw new DbMaintainException("Unable to create schema image directory " + tempDirectory);
+            }
+            for (Database database : imageDatabases) {
+                database.exportSchemaImage(getImageFile(tempDirectory, database));
+            }
+            if (tempDirectory.renameTo(keyDirectory)) {
+                logger.info("Stored schema image " + imageKey + " of the first " + scripts.size() + " scripts.");
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Unable to store schema image " + imageKey + ". The scripts will be executed again during the next update from scratch.", e);
+        } finally {
+            deleteQuietly(tempDirectory);
+        }
+        removeLeastRecentlyUsedImages(keyDirectory);
+    }
+
+
+    /**
+     * Removes the least recently used images until the images no longer take more than the maximum size.
+     *
+     * @param imageToKeep The image that was just stored, this image is never removed, not null
+     */
+    protected void removeLeastRecentlyUsedImages(File imageToKeep) {
+        if (maxSizeInBytes <= 0) {
+            return;
+        }
+        File[] keyDirectories = imageDirectory.listFiles();
+        if (keyDirectories == null) {
+            return;
+        }
+        Arrays.sort(keyDirectories, new Comparator<File>() {
+            public int compare(File file1, File file2) {
+                long lastModified1 = file1.lastModified();
+                long lastModified2 = file2.lastModified();
+                return lastModified1 < lastModified2 ? -1 : (lastModified1 == lastModified2 ? 0 : 1);
+            }
+        });
+        long totalSizeInBytes = 0;
+        for (File keyDirectory : keyDirectories) {
+            totalSizeInBytes += sizeOfDirectory(keyDirectory);
+        }
+        for (File keyDirectory : keyDirectories) {
+            if (totalSizeInBytes <= maxSizeInBytes) {
+                break;
+            }
+            if (keyDirectory.equals(imageToKeep) || keyDirectory.getName().contains(TEMP_DIRECTORY_SUFFIX)) {
+                continue;
+            }
+            long sizeInBytes = sizeOfDirectory(keyDirectory);
+            if (deleteQuietly(keyDirectory)) {
+                logger.debug("Removed least recently used schema image " + keyDirectory.getName());
+                totalSizeInBytes -= sizeInBytes;
+            }
+        }
+    }
+
+    /**
+     * @return The databases of which an image is taken, null if one of the databases does not support images
+     */
+    protected List<Database> getImageDatabases() {
+        List<Database> imageDatabases = new ArrayList<Database>();
+        for (Database database : databases.getDatabases()) {
+            if (database == null) {
+                continue;
+            }
+            if (!database.supportsSchemaImages()) {
+                logger.debug("Schema images are not supported for " + database.getSupportedDatabaseDialect() + ". All scripts are executed.");
+                return null;
+            }
+            imageDatabases.add(database);
+        }
+        return imageDatabases;
+    }
+
+    /**
+     * @param keyDirectory   The directory of the image, not null
+     * @param imageDatabases The databases of which an image is taken, not null
+     * @return True if the directory contains an image file for every database
+     */
+    protected boolean isCompleteImage(File keyDirectory, List<Database> imageDatabases) {
+        for (Database database : imageDatabases) {
+            if (!getImageFile(keyDirectory, database).isFile()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param directory The directory of the image, not null
+     * @param database  The database, not null
+     * @return The image file of the given database, not null
+     */
+    protected File getImageFile(File directory, Database database) {
+        String databaseName = database.getDatabaseName();
+        return new File(directory, (databaseName == null ? "default" : databaseName) + ".image");
+    }
+
+    /**
+     * Gets the keys of the images of all prefixes of the given scripts. The key of a prefix is a hash of the key of the
+     * previous prefix and the name and checksum of its last script.
+     *
+     * @param scripts The scripts, not null
+     * @return The keys, the first for a prefix of 1 script, the last for all scripts, not null
+     */
+    protected List<String> getImageKeys(SortedSet<Script> scripts) {
+        List<String> imageKeys = new ArrayList<String>();
+        try {
+            String imageKey = "";
+            for (Script script : scripts) {
+                MessageDigest digest = MessageDigest.getInstance("MD5");
+                digest.update((imageKey + "\n" + script.getFileName() + "\n" + script.getCheckSum()).getBytes("UTF-8"));
+                imageKey = getHexPresentation(digest.digest());
+                imageKeys.add(imageKey);
+            }
+            return imageKeys;
+        } catch (NoSuchAlgorithmException e) {
+            throw new DbMaintainException("Unable to calculate schema image key", e);
+        } catch (UnsupportedEncodingException e) {
+            throw new DbMaintainException("Unable to calculate schema image key", e);
+        }
+    }
+
+
+    private String getHexPresentation(byte[] byteArray) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : byteArray) {
+            result.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.structure.image.impl;
+
+import org.dbmaintain.script.Script;
+import org.dbmaintain.structure.image.SchemaImageCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+
+/**
+ * Schema image cache that does not keep any images. This is the default.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class NoOpSchemaImageCache implements SchemaImageCache {
+
+
+    public int restoreImage(SortedSet<Script> scripts) {
+        return 0;
+    }
+
+    public List<Integer> getCheckpoints(SortedSet<Script> scripts) {
+        return new ArrayList<Integer>();
+    }
+
+    public void storeImage(SortedSet<Script> scripts) {
+        // nothing to store
+    }
+}
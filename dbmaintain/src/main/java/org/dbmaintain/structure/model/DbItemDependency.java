@@ -0,0 +1,76 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.structure.model;
+
+/**
+ * A dependency between two database items of the same schema, e.g. a view that uses a table, a table with a foreign key
+ * to another table or a trigger that is defined on a table. When clearing a schema, the dependent item is dropped before
+ * the item it depends on.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DbItemDependency {
+
+    /* The type of the dependent item, not null */
+    private DbItemType type;
+
+    /* The name of the dependent item, not null */
+    private String itemName;
+
+    /* The type of the item it depends on, not null */
+    private DbItemType referencedType;
+
+    /* The name of the item it depends on, not null */
+    private String referencedItemName;
+
+
+    /**
+     * @param type               The type of the dependent item, not null
+     * @param itemName           The name of the dependent item, not null
+     * @param referencedType     The type of the item it depends on, not null
+     * @param referencedItemName The name of the item it depends on, not null
+     */
+    public DbItemDependency(DbItemType type, String itemName, DbItemType referencedType, String referencedItemName) {
+        this.type = type;
+        this.itemName = itemName;
+        this.referencedType = referencedType;
+        this.referencedItemName = referencedItemName;
+    }
+
+
+    public DbItemType getType() {
+        return type;
+    }
+
+    public String getItemName() {
+        return itemName;
+    }
+
+    public DbItemType getReferencedType() {
+        return referencedType;
+    }
+
+    public String getReferencedItemName() {
+        return referencedItemName;
+    }
+
+
+    @Override
+    public String toString() {
+        return type + " " + itemName + " -> " + referencedType + " " + referencedItemName;
+    }
+}
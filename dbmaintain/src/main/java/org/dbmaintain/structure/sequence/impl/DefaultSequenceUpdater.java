@@ -19,10 +19,12 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.Databases;
+import org.dbmaintain.database.IdentityColumn;
 import org.dbmaintain.structure.sequence.SequenceUpdater;
 import org.dbmaintain.util.DbMaintainException;
 
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Implementation of {@link SequenceUpdater}. All sequences and identity columns that have a value lower than the given value.
@@ -63,7 +65,8 @@ public class DefaultSequenceUpdater implements SequenceUpdater {
 
 
     /**
-     * Increments all sequences in the given schema whose value is too low.
+     * Increments all sequences in the given schema whose value is too low. The values of all sequences are retrieved
+     * at once.
      *
      * @param database   The database support, not null
      * @param schemaName The schema, not null
@@ -72,9 +75,10 @@ public class DefaultSequenceUpdater implements SequenceUpdater {
         if (!database.supportsSequences()) {
             return;
         }
-        Set<String> sequenceNames = database.getSequenceNames(schemaName);
-        for (String sequenceName : sequenceNames) {
-            if (database.getSequenceValue(schemaName, sequenceName) < lowestAcceptableSequenceValue) {
+        Map<String, Long> sequenceValues = database.getSequenceValues(schemaName);
+        for (Map.Entry<String, Long> entry : sequenceValues.entrySet()) {
+            String sequenceName = entry.getKey();
+            if (entry.getValue() < lowestAcceptableSequenceValue) {
                 logger.debug("Incrementing value for sequence " + sequenceName + " in database schema " + schemaName);
                 database.incrementSequenceToValue(schemaName, sequenceName, lowestAcceptableSequenceValue);
             }
@@ -83,7 +87,9 @@ public class DefaultSequenceUpdater implements SequenceUpdater {
 
 
     /**
-     * Increments the next value for identity columns in the given schema whose next value is too low
+     * Increments the next value for identity columns in the given schema whose next value is too low. The identity
+     * columns of all tables are retrieved at once. Columns of which the current value is known to be high enough
+     * are skipped.
      *
      * @param database   The database support, not null
      * @param schemaName The schema, not null
@@ -92,18 +98,20 @@ public class DefaultSequenceUpdater implements SequenceUpdater {
         if (!database.supportsIdentityColumns()) {
             return;
         }
-        Set<String> tableNames = database.getTableNames(schemaName);
-        for (String tableName : tableNames) {
-            Set<String> identityColumnNames = database.getIdentityColumnNames(schemaName, tableName);
-            for (String identityColumnName : identityColumnNames) {
-                try {
-                    database.incrementIdentityColumnToValue(schemaName, tableName, identityColumnName, lowestAcceptableSequenceValue);
-                    logger.debug("Incrementing value for identity column " + identityColumnName + " in database schema " + schemaName);
+        List<IdentityColumn> identityColumns = database.getIdentityColumns(schemaName);
+        for (IdentityColumn identityColumn : identityColumns) {
+            Long currentValue = identityColumn.getCurrentValue();
+            if (currentValue != null && currentValue >= lowestAcceptableSequenceValue) {
+                continue;
+            }
+            String identityColumnName = identityColumn.getColumnName();
+            try {
+                database.incrementIdentityColumnToValue(schemaName, identityColumn.getTableName(), identityColumnName, lowestAcceptableSequenceValue);
+                logger.debug("Incrementing value for identity column " + identityColumnName + " in database schema " + schemaName);
 
-                } catch (DbMaintainException e) {
-                    // primary key is not an identity column
-                    // skip column
-                }
+            } catch (DbMaintainException e) {
+                // primary key is not an identity column
+                // skip column
             }
         }
     }
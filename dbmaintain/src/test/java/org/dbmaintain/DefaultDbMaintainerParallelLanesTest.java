@@ -0,0 +1,114 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain;
+
+import org.dbmaintain.database.impl.DefaultSQLHandler;
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.runner.ScriptRunner;
+import org.dbmaintain.util.DbMaintainException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static java.util.Arrays.asList;
+import static org.dbmaintain.util.TestUtils.createScriptWithContent;
+import static org.dbmaintain.util.TestUtils.getExecutedScriptInfoSource;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the execution of scripts in one lane per target database.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultDbMaintainerParallelLanesTest {
+
+    /* Tested object */
+    private DefaultDbMaintainer defaultDbMaintainer;
+
+    /* The names of the executed scripts per target database */
+    private Map<String, List<String>> executedScripts;
+    /* The name of the script that should fail, null for none */
+    private String failingScriptName;
+
+
+    @Before
+    public void initialize() {
+        executedScripts = new HashMap<String, List<String>>();
+        defaultDbMaintainer = new DefaultDbMaintainer(new RecordingScriptRunner(), null, getExecutedScriptInfoSource(new TreeSet<ExecutedScript>()),
+                false, false, false, false, false, false, null, null, null, null, null, new DefaultSQLHandler(), 0, null);
+        defaultDbMaintainer.setParallelDatabaseLanes(true, "db1");
+    }
+
+
+    @Test
+    public void scriptsAreExecutedInOrderPerTargetDatabase() {
+        defaultDbMaintainer.executeScripts(scripts("01_a.sql", "02_@db2_b.sql", "03_@db1_c.sql", "04_@db2_d.sql", "05_@db3_e.sql"));
+
+        assertEquals(asList("01_a.sql", "03_@db1_c.sql"), executedScripts.get("db1"));
+        assertEquals(asList("02_@db2_b.sql", "04_@db2_d.sql"), executedScripts.get("db2"));
+        assertEquals(asList("05_@db3_e.sql"), executedScripts.get("db3"));
+    }
+
+    @Test
+    public void failureStopsLane() {
+        failingScriptName = "02_@db2_b.sql";
+        try {
+            defaultDbMaintainer.executeScripts(scripts("01_a.sql", "02_@db2_b.sql", "03_@db1_c.sql", "04_@db2_d.sql"));
+            fail("DbMaintainException expected");
+
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage().contains("02_@db2_b.sql"));
+        }
+        assertEquals(asList("02_@db2_b.sql"), executedScripts.get("db2"));
+    }
+
+
+    private SortedSet<Script> scripts(String... fileNames) {
+        SortedSet<Script> scripts = new TreeSet<Script>();
+        for (String fileName : fileNames) {
+            scripts.add(createScriptWithContent(fileName, "content"));
+        }
+        return scripts;
+    }
+
+
+    private class RecordingScriptRunner implements ScriptRunner {
+
+        public void execute(Script script) {
+            String targetDatabaseName = script.getTargetDatabaseName() == null ? "db1" : script.getTargetDatabaseName();
+            synchronized (executedScripts) {
+                List<String> scriptNames = executedScripts.get(targetDatabaseName);
+                if (scriptNames == null) {
+                    scriptNames = new ArrayList<String>();
+                    executedScripts.put(targetDatabaseName, scriptNames);
+                }
+                scriptNames.add(script.getFileName());
+            }
+            if (script.getFileName().equals(failingScriptName)) {
+                throw new DbMaintainException("error message");
+            }
+        }
+
+        public void initialize() {
+        }
+
+        public void close() {
+        }
+    }
+}
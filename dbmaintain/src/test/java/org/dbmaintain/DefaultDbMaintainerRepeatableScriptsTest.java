@@ -0,0 +1,149 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain;
+
+import org.dbmaintain.database.impl.DefaultSQLHandler;
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.analyzer.ScriptDependencyAnalyzer;
+import org.dbmaintain.script.analyzer.ScriptUpdate;
+import org.dbmaintain.script.analyzer.ScriptUpdatesFormatter;
+import org.dbmaintain.script.runner.ScriptRunner;
+import org.dbmaintain.util.DbMaintainException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static java.util.Arrays.asList;
+import static org.dbmaintain.script.analyzer.ScriptUpdateType.HIGHER_INDEX_SCRIPT_ADDED;
+import static org.dbmaintain.script.analyzer.ScriptUpdateType.REPEATABLE_SCRIPT_ADDED;
+import static org.dbmaintain.util.TestUtils.createScriptWithContent;
+import static org.dbmaintain.util.TestUtils.getExecutedScriptInfoSource;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the concurrent execution of repeatable scripts.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultDbMaintainerRepeatableScriptsTest {
+
+    /* Tested object */
+    private DefaultDbMaintainer defaultDbMaintainer;
+
+    /* The names of the executed scripts, in order of execution */
+    private List<String> executedScripts;
+    /* The name of the script that should fail, null for none */
+    private String failingScriptName;
+    /* The names of the lanes the script threads were bound to */
+    private Set<String> boundLanes;
+
+
+    @Before
+    public void initialize() {
+        executedScripts = new ArrayList<String>();
+        boundLanes = Collections.synchronizedSet(new HashSet<String>());
+        DefaultSQLHandler sqlHandler = new DefaultSQLHandler() {
+            @Override
+            public void bindLane(String laneName) {
+                boundLanes.add(laneName);
+                super.bindLane(laneName);
+            }
+        };
+        defaultDbMaintainer = new DefaultDbMaintainer(new RecordingScriptRunner(), null, getExecutedScriptInfoSource(new TreeSet<ExecutedScript>()),
+                false, false, false, false, false, false, null, null, null, null, new ScriptUpdatesFormatter(), sqlHandler, 0, null);
+        defaultDbMaintainer.setRepeatableScriptThreads(4, new ScriptDependencyAnalyzer(false));
+    }
+
+
+    @Test
+    public void dependenciesAreExecutedFirst() {
+        SortedSet<ScriptUpdate> scriptUpdates = new TreeSet<ScriptUpdate>();
+        scriptUpdates.add(incremental("01_table.sql"));
+        scriptUpdates.add(repeatable("repeatable/view_a.sql", "-- @dependsOn view_c.sql\nselect 1;"));
+        scriptUpdates.add(repeatable("repeatable/view_b.sql", "-- @dependsOn view_a.sql\nselect 1;"));
+        scriptUpdates.add(repeatable("repeatable/view_c.sql", "select 1;"));
+        scriptUpdates.add(incremental("02_data.sql"));
+
+        defaultDbMaintainer.executeScriptUpdates(scriptUpdates);
+
+        assertEquals(5, executedScripts.size());
+        assertTrue(executedScripts.indexOf("repeatable/view_c.sql") < executedScripts.indexOf("repeatable/view_a.sql"));
+        assertTrue(executedScripts.indexOf("repeatable/view_a.sql") < executedScripts.indexOf("repeatable/view_b.sql"));
+        assertTrue(executedScripts.indexOf("01_table.sql") < executedScripts.indexOf("02_data.sql"));
+    }
+
+    @Test
+    public void dependentScriptsAreNotExecutedAfterFailure() {
+        failingScriptName = "view_c.sql";
+        SortedSet<ScriptUpdate> scriptUpdates = new TreeSet<ScriptUpdate>();
+        scriptUpdates.add(repeatable("view_a.sql", "-- @dependsOn view_c.sql\nselect 1;"));
+        scriptUpdates.add(repeatable("view_c.sql", "select 1;"));
+        try {
+            defaultDbMaintainer.executeScriptUpdates(scriptUpdates);
+            fail("DbMaintainException expected");
+
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage().contains("view_c.sql"));
+        }
+        assertFalse(executedScripts.contains("view_a.sql"));
+    }
+
+    @Test
+    public void threadsAreBoundToReusableLanes() {
+        SortedSet<ScriptUpdate> scriptUpdates = new TreeSet<ScriptUpdate>();
+        for (int i = 1; i <= 10; i++) {
+            scriptUpdates.add(repeatable("repeatable/view_" + i + ".sql", "select 1;"));
+        }
+        defaultDbMaintainer.executeScriptUpdates(scriptUpdates);
+
+        assertEquals(10, executedScripts.size());
+        assertFalse(boundLanes.isEmpty());
+        for (String boundLane : boundLanes) {
+            assertTrue(boundLane, asList("repeatable-1", "repeatable-2", "repeatable-3", "repeatable-4").contains(boundLane));
+        }
+    }
+
+
+    private ScriptUpdate incremental(String fileName) {
+        return new ScriptUpdate(HIGHER_INDEX_SCRIPT_ADDED, createScriptWithContent(fileName, "select 1;"));
+    }
+
+    private ScriptUpdate repeatable(String fileName, String content) {
+        return new ScriptUpdate(REPEATABLE_SCRIPT_ADDED, createScriptWithContent(fileName, content));
+    }
+
+
+    private class RecordingScriptRunner implements ScriptRunner {
+
+        public void execute(Script script) {
+            synchronized (executedScripts) {
+                executedScripts.add(script.getFileName());
+            }
+            if (script.getFileName().equals(failingScriptName)) {
+                throw new DbMaintainException("error message");
+            }
+        }
+
+        public void initialize() {
+        }
+
+        public void close() {
+        }
+    }
+}
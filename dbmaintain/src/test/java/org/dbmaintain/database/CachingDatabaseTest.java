@@ -0,0 +1,202 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.database;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.structure.model.DbItemDependency;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.dbmaintain.util.CollectionUtils.asSet;
+import static org.dbmaintain.util.SQLTestUtils.*;
+import static org.dbmaintain.util.TestUtils.getDatabases;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the {@link CachingDatabase}, decorating the database of the test database.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class CachingDatabaseTest {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(CachingDatabaseTest.class);
+
+    /* Tested object */
+    private CachingDatabase cachingDatabase;
+
+    private DataSource dataSource;
+    private Database defaultDatabase;
+
+
+    @Before
+    public void setUp() throws Exception {
+        defaultDatabase = getDatabases("PUBLIC", "SCHEMA_A").getDefaultDatabase();
+        dataSource = defaultDatabase.getDataSource();
+        cachingDatabase = new CachingDatabase(defaultDatabase);
+
+        cleanupTestDatabase();
+        createTestDatabase();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cleanupTestDatabase();
+    }
+
+
+    @Test
+    public void namesAreOnlyRetrievedOnce() {
+        cachingDatabase.getTableNames("PUBLIC");
+        createTable3();
+        Set<String> result = cachingDatabase.getTableNames("PUBLIC");
+
+        assertEquals(asSet("TABLE1", "TABLE2"), result);
+        assertTrue(defaultDatabase.getTableNames("PUBLIC").contains("TABLE3"));
+    }
+
+    @Test
+    public void namesAreRetrievedPerSchema() {
+        cachingDatabase.getTableNames("PUBLIC");
+        Set<String> result = cachingDatabase.getTableNames("SCHEMA_A");
+
+        assertEquals(asSet("TABLE_A"), result);
+    }
+
+    @Test
+    public void returnedNamesCanBeModified() {
+        cachingDatabase.getTableNames("PUBLIC").clear();
+        Set<String> result = cachingDatabase.getTableNames("PUBLIC");
+
+        assertEquals(asSet("TABLE1", "TABLE2"), result);
+    }
+
+    @Test
+    public void invalidateCatalogCache() {
+        cachingDatabase.getTableNames("PUBLIC");
+        createTable3();
+        cachingDatabase.invalidateCatalogCache();
+        Set<String> result = cachingDatabase.getTableNames("PUBLIC");
+
+        assertEquals(asSet("TABLE1", "TABLE2", "TABLE3"), result);
+    }
+
+    @Test
+    public void droppedTableIsRemovedFromCachedNames() {
+        cachingDatabase.getTableNames("PUBLIC");
+        createTable3();
+        cachingDatabase.dropTable("PUBLIC", "TABLE1");
+        Set<String> result = cachingDatabase.getTableNames("PUBLIC");
+
+        assertEquals(asSet("TABLE2"), result);
+    }
+
+    @Test
+    public void otherNamesOfSchemaAreDiscardedWhenTableIsDropped() {
+        assertEquals(asSet("VIEW1"), cachingDatabase.getViewNames("PUBLIC"));
+        // the view on the table is dropped by the cascade
+        cachingDatabase.dropTable("PUBLIC", "TABLE1");
+        Set<String> result = cachingDatabase.getViewNames("PUBLIC");
+
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void clearSchemaInvalidatesCatalogCache() {
+        cachingDatabase.getTableNames("PUBLIC");
+        createTable3();
+        cachingDatabase.clearSchema("PUBLIC", new HashSet<String>());
+        Set<String> result = cachingDatabase.getTableNames("PUBLIC");
+
+        assertTrue(result.contains("TABLE3"));
+    }
+
+    @Test
+    public void importSchemaImageInvalidatesCatalogCache() throws Exception {
+        if (!cachingDatabase.supportsSchemaImages()) {
+            logger.warn("Current database version does not support schema images. Skipping test.");
+            return;
+        }
+        File imageFile = File.createTempFile("schemaImage", ".image");
+        imageFile.delete();
+        try {
+            cachingDatabase.exportSchemaImage(imageFile);
+            cachingDatabase.getTableNames("PUBLIC");
+            executeUpdate("drop view VIEW1", dataSource);
+            executeUpdate("drop table TABLE1", dataSource);
+            cachingDatabase.importSchemaImage(imageFile);
+            createTable3();
+            Set<String> result = cachingDatabase.getTableNames("PUBLIC");
+
+            assertEquals(asSet("TABLE1", "TABLE2", "TABLE3"), result);
+        } finally {
+            deleteQuietly(imageFile);
+        }
+    }
+
+    @Test
+    public void dependenciesAreRetrievedFromDecoratedDatabase() {
+        Set<String> result = new HashSet<String>();
+        for (DbItemDependency tableReference : cachingDatabase.getTableReferences("PUBLIC")) {
+            result.add(tableReference.toString());
+        }
+        assertEquals(asSet("TABLE TABLE1 -> TABLE TABLE2"), result);
+    }
+
+    @Test
+    public void truncatedTableIsEmpty() {
+        assertEquals(asSet("TABLE1"), cachingDatabase.getNonEmptyTableNames("PUBLIC", asSet("TABLE1", "TABLE2")));
+        cachingDatabase.truncateTable("PUBLIC", "TABLE1");
+
+        assertTrue(cachingDatabase.getNonEmptyTableNames("PUBLIC", asSet("TABLE1", "TABLE2")).isEmpty());
+    }
+
+
+    private void createTable3() {
+        executeUpdate("create table TABLE3 (ID int)", dataSource);
+    }
+
+
+    /**
+     * Creates two tables with a foreign key, a view and a table in another schema
+     */
+    private void createTestDatabase() throws Exception {
+        executeUpdate("create table TABLE2 (ID int not null primary key)", dataSource);
+        executeUpdate("create table TABLE1 (ID int not null primary key, TABLE2_ID int, foreign key (TABLE2_ID) references TABLE2(ID))", dataSource);
+        executeUpdate("create view VIEW1 as select ID from TABLE1", dataSource);
+        executeUpdate("insert into TABLE1 values (1, null)", dataSource);
+        executeUpdate("create schema SCHEMA_A AUTHORIZATION DBA", dataSource);
+        executeUpdate("create table SCHEMA_A.TABLE_A (ID int)", dataSource);
+    }
+
+    /**
+     * Drops the test items
+     */
+    private void cleanupTestDatabase() throws Exception {
+        executeUpdateQuietly("drop schema SCHEMA_A cascade", dataSource);
+        dropTestViews(defaultDatabase, "VIEW1");
+        dropTestTables(defaultDatabase, "TABLE1", "TABLE2", "TABLE3");
+    }
+}
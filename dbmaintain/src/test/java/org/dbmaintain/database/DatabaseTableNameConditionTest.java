@@ -0,0 +1,77 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.database;
+
+import org.dbmaintain.util.TestUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.dbmaintain.database.Database.MAX_NR_OF_IN_LIST_VALUES;
+import static org.dbmaintain.util.CollectionUtils.asSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the condition that restricts the catalog queries to the updated tables.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DatabaseTableNameConditionTest {
+
+    /* Tested object */
+    private Database database;
+
+
+    @Before
+    public void initialize() {
+        database = TestUtils.getDatabases().getDefaultDatabase();
+    }
+
+
+    @Test
+    public void noRestriction() {
+        assertEquals("", database.getTableNameCondition("TABLE_NAME", null));
+    }
+
+    @Test
+    public void noTables() {
+        assertEquals(" and 1 = 0", database.getTableNameCondition("TABLE_NAME", new TreeSet<String>()));
+    }
+
+    @Test
+    public void tables() {
+        assertEquals(" and (TABLE_NAME in ('O''NEIL', 'TABLE1'))", database.getTableNameCondition("TABLE_NAME", new TreeSet<String>(asSet("TABLE1", "O'NEIL"))));
+    }
+
+    @Test
+    public void moreTablesThanAllowedInOneInList() {
+        Set<String> tableNames = new TreeSet<String>();
+        for (int i = 0; i < 2 * MAX_NR_OF_IN_LIST_VALUES + 1; i++) {
+            tableNames.add("TABLE" + i);
+        }
+        String condition = database.getTableNameCondition("TABLE_NAME", tableNames);
+
+        assertTrue(condition.startsWith(" and (TABLE_NAME in ('TABLE0', "));
+        assertEquals(3, condition.split(" in \\(").length - 1);
+        assertEquals(2, condition.split("\\) or TABLE_NAME in \\(").length - 1);
+        assertEquals(2 * MAX_NR_OF_IN_LIST_VALUES + 1, condition.split("'TABLE").length - 1);
+        assertTrue(condition.endsWith("'))"));
+    }
+}
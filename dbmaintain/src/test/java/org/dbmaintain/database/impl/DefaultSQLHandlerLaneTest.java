@@ -0,0 +1,164 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.database.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static org.dbmaintain.datasource.SimpleDataSource.createDataSource;
+import static org.dbmaintain.util.TestUtils.getHsqlDatabaseInfo;
+import static org.junit.Assert.*;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultSQLHandlerLaneTest {
+
+    /* Tested object */
+    private DefaultSQLHandler defaultSQLHandler;
+
+    private DataSource dataSource;
+
+
+    @Before
+    public void initialize() {
+        defaultSQLHandler = new DefaultSQLHandler();
+        dataSource = createDataSource(getHsqlDatabaseInfo());
+    }
+
+    @After
+    public void cleanUp() {
+        defaultSQLHandler.closeAllConnections();
+    }
+
+
+    @Test
+    public void sameConnectionForSameThread() {
+        Connection connection1 = defaultSQLHandler.getConnection(dataSource);
+        Connection connection2 = defaultSQLHandler.getConnection(dataSource);
+        assertSame(connection1, connection2);
+    }
+
+    @Test
+    public void otherConnectionForOtherThread() throws Exception {
+        Connection connection = defaultSQLHandler.getConnection(dataSource);
+        Connection otherThreadConnection = getConnectionInOtherThread(null);
+        assertNotSame(connection, otherThreadConnection);
+    }
+
+    @Test
+    public void sameConnectionForSameLaneInOtherThread() throws Exception {
+        defaultSQLHandler.bindLane("lane1");
+        Connection connection;
+        try {
+            connection = defaultSQLHandler.getConnection(dataSource);
+        } finally {
+            defaultSQLHandler.unbindLane();
+        }
+        Connection otherThreadConnection = getConnectionInOtherThread("lane1");
+        assertSame(connection, otherThreadConnection);
+    }
+
+    @Test
+    public void otherConnectionForOtherLane() throws Exception {
+        Connection lane1Connection = getConnectionInOtherThread("lane1");
+        Connection lane2Connection = getConnectionInOtherThread("lane2");
+        assertNotSame(lane1Connection, lane2Connection);
+    }
+
+    @Test
+    public void threadUsesOwnConnectionAfterUnbind() {
+        Connection connection = defaultSQLHandler.getConnection(dataSource);
+        defaultSQLHandler.bindLane("lane1");
+        Connection laneConnection = defaultSQLHandler.getConnection(dataSource);
+        defaultSQLHandler.unbindLane();
+
+        assertNotSame(connection, laneConnection);
+        assertSame(connection, defaultSQLHandler.getConnection(dataSource));
+    }
+
+    @Test
+    public void closeAllConnectionsOfAllLanes() throws Exception {
+        Connection connection = defaultSQLHandler.getConnection(dataSource);
+        Connection laneConnection = getConnectionInOtherThread("lane1");
+        defaultSQLHandler.bindLane("lane2");
+        defaultSQLHandler.startTransaction(dataSource);
+        Connection transactionConnection = defaultSQLHandler.getConnection(dataSource);
+        defaultSQLHandler.unbindLane();
+
+        defaultSQLHandler.closeAllConnections();
+
+        assertTrue(connection.isClosed());
+        assertTrue(laneConnection.isClosed());
+        assertTrue(transactionConnection.isClosed());
+        assertNotSame(connection, defaultSQLHandler.getConnection(dataSource));
+    }
+
+    @Test
+    public void releaseConnectionsOfCurrentThread() throws Exception {
+        Connection connection = defaultSQLHandler.getConnection(dataSource);
+        Connection laneConnection = getConnectionInOtherThread("lane1");
+
+        defaultSQLHandler.releaseConnections(dataSource);
+
+        assertTrue(connection.isClosed());
+        assertFalse(laneConnection.isClosed());
+        assertNotSame(connection, defaultSQLHandler.getConnection(dataSource));
+    }
+
+    @Test
+    public void releaseConnectionsOfCurrentLane() throws Exception {
+        Connection connection = defaultSQLHandler.getConnection(dataSource);
+        defaultSQLHandler.bindLane("lane1");
+        Connection laneConnection = defaultSQLHandler.getConnection(dataSource);
+        defaultSQLHandler.releaseConnections(dataSource);
+        defaultSQLHandler.unbindLane();
+
+        assertTrue(laneConnection.isClosed());
+        assertFalse(connection.isClosed());
+    }
+
+    @Test
+    public void releaseConnectionsWithoutConnection() {
+        defaultSQLHandler.releaseConnections(dataSource);
+    }
+
+
+    private Connection getConnectionInOtherThread(final String laneName) throws InterruptedException {
+        final Connection[] result = new Connection[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                if (laneName != null) {
+                    defaultSQLHandler.bindLane(laneName);
+                }
+                try {
+                    result[0] = defaultSQLHandler.getConnection(dataSource);
+                } finally {
+                    defaultSQLHandler.unbindLane();
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        return result[0];
+    }
+}
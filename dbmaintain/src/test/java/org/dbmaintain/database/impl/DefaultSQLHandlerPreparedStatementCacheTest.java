@@ -0,0 +1,88 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.database.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import static org.dbmaintain.datasource.SimpleDataSource.createDataSource;
+import static org.dbmaintain.util.TestUtils.getHsqlDatabaseInfo;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultSQLHandlerPreparedStatementCacheTest {
+
+    /* Tested object */
+    private DefaultSQLHandler defaultSQLHandler;
+
+    private DataSource dataSource;
+
+
+    @Before
+    public void initialize() {
+        defaultSQLHandler = new DefaultSQLHandler(true, 2);
+        dataSource = createDataSource(getHsqlDatabaseInfo());
+    }
+
+    @After
+    public void cleanUp() {
+        defaultSQLHandler.closeAllConnections();
+    }
+
+
+    @Test
+    public void preparedStatementIsReused() throws Exception {
+        Connection connection = defaultSQLHandler.getConnection(dataSource);
+        DefaultSQLHandler.PreparedStatementCache preparedStatementCache = defaultSQLHandler.getPreparedStatementCache(connection);
+
+        PreparedStatement preparedStatement1 = preparedStatementCache.getPreparedStatement("select 1 from table1 where a = ?");
+        PreparedStatement preparedStatement2 = preparedStatementCache.getPreparedStatement("select 1 from table1 where a = ?");
+        assertSame(preparedStatement1, preparedStatement2);
+    }
+
+    @Test
+    public void leastRecentlyUsedStatementIsEvicted() throws Exception {
+        Connection connection = defaultSQLHandler.getConnection(dataSource);
+        DefaultSQLHandler.PreparedStatementCache preparedStatementCache = defaultSQLHandler.getPreparedStatementCache(connection);
+
+        PreparedStatement preparedStatement1 = preparedStatementCache.getPreparedStatement("select 1 from table1 where a = ?");
+        PreparedStatement preparedStatement2 = preparedStatementCache.getPreparedStatement("select 1 from table1 where b = ?");
+        preparedStatementCache.getPreparedStatement("select 1 from table1 where a = ?");
+        preparedStatementCache.getPreparedStatement("select 1 from table1 where c = ?");
+
+        assertSame(preparedStatement1, preparedStatementCache.getPreparedStatement("select 1 from table1 where a = ?"));
+        assertNotSame(preparedStatement2, preparedStatementCache.getPreparedStatement("select 1 from table1 where b = ?"));
+    }
+
+    @Test
+    public void statementsAreDiscardedWithConnections() throws Exception {
+        Connection connection = defaultSQLHandler.getConnection(dataSource);
+        PreparedStatement preparedStatement = defaultSQLHandler.getPreparedStatementCache(connection).getPreparedStatement("select 1 from table1 where a = ?");
+
+        defaultSQLHandler.closeAllConnections();
+        Connection newConnection = defaultSQLHandler.getConnection(dataSource);
+        assertNotSame(preparedStatement, defaultSQLHandler.getPreparedStatementCache(newConnection).getPreparedStatement("select 1 from table1 where a = ?"));
+    }
+}
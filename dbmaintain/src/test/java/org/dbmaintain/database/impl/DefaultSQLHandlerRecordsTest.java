@@ -0,0 +1,74 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.database.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.dbmaintain.datasource.SimpleDataSource.createDataSource;
+import static org.dbmaintain.util.SQLTestUtils.executeUpdate;
+import static org.dbmaintain.util.SQLTestUtils.executeUpdateQuietly;
+import static org.dbmaintain.util.TestUtils.getHsqlDatabaseInfo;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests executing a batch of statements and retrieving records with several columns.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultSQLHandlerRecordsTest {
+
+    /* Tested object */
+    private DefaultSQLHandler defaultSQLHandler;
+
+    private DataSource dataSource;
+
+
+    @Before
+    public void initialize() {
+        defaultSQLHandler = new DefaultSQLHandler();
+        dataSource = createDataSource(getHsqlDatabaseInfo());
+        executeUpdateQuietly("drop table test_records", dataSource);
+        executeUpdate("create table test_records (name varchar(10), value integer)", dataSource);
+    }
+
+    @After
+    public void cleanUp() {
+        defaultSQLHandler.closeAllConnections();
+        executeUpdateQuietly("drop table test_records", dataSource);
+    }
+
+
+    @Test
+    public void batchOfStatementsAndRecords() {
+        defaultSQLHandler.executeBatch(asList("insert into test_records values ('a', 1)", "insert into test_records values ('b', null)", "insert into test_records values ('c', 3)"), dataSource);
+
+        List<List<String>> records = defaultSQLHandler.getRecordsAsStrings("select name, value from test_records where name <> ? order by name", dataSource, "c");
+        assertEquals(asList(asList("a", "1"), asList("b", null)), records);
+    }
+
+    @Test
+    public void noRecords() {
+        List<List<String>> records = defaultSQLHandler.getRecordsAsStrings("select name, value from test_records where name = ?", dataSource, "x");
+        assertEquals(0, records.size());
+    }
+}
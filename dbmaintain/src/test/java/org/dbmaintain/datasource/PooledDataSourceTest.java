@@ -0,0 +1,164 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.datasource;
+
+import org.dbmaintain.database.DatabaseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.dbmaintain.util.TestUtils.getHsqlDatabaseInfo;
+import static org.junit.Assert.*;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class PooledDataSourceTest {
+
+    /* Tested object */
+    private DataSource dataSource;
+
+
+    @Before
+    public void initialize() {
+        dataSource = PooledDataSource.createDataSource(getHsqlDatabaseInfo(), 2, 60000, 100, "call 1");
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        ((Closeable) dataSource).close();
+    }
+
+
+    @Test
+    public void connectionIsReusedAfterClose() throws Exception {
+        Connection connection1 = dataSource.getConnection();
+        Connection physicalConnection1 = getPhysicalConnection(connection1);
+        connection1.close();
+
+        Connection connection2 = dataSource.getConnection();
+        assertSame(physicalConnection1, getPhysicalConnection(connection2));
+        connection2.close();
+    }
+
+    @Test
+    public void closedConnectionCanNoLongerBeUsed() throws Exception {
+        Connection connection = dataSource.getConnection();
+        connection.close();
+
+        assertTrue(connection.isClosed());
+        try {
+            connection.createStatement();
+            fail("Expected SQLException");
+        } catch (SQLException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void closingTwiceReturnsConnectionOnlyOnce() throws Exception {
+        Connection connection1 = dataSource.getConnection();
+        connection1.close();
+        connection1.close();
+
+        Connection connection2 = dataSource.getConnection();
+        Connection connection3 = dataSource.getConnection();
+        assertNotSame(getPhysicalConnection(connection2), getPhysicalConnection(connection3));
+        connection2.close();
+        connection3.close();
+    }
+
+    @Test
+    public void maxSizeReached() throws Exception {
+        Connection connection1 = dataSource.getConnection();
+        Connection connection2 = dataSource.getConnection();
+        try {
+            dataSource.getConnection();
+            fail("Expected DatabaseException");
+        } catch (DatabaseException e) {
+            // expected
+        } finally {
+            connection1.close();
+            connection2.close();
+        }
+    }
+
+    @Test
+    public void autoCommitIsRestoredWhenReturned() throws Exception {
+        Connection connection1 = dataSource.getConnection();
+        connection1.setAutoCommit(false);
+        connection1.close();
+
+        Connection connection2 = dataSource.getConnection();
+        assertTrue(connection2.getAutoCommit());
+        connection2.close();
+    }
+
+    @Test
+    public void transactionIsolationIsRestoredWhenReturned() throws Exception {
+        Connection connection1 = dataSource.getConnection();
+        int transactionIsolation = connection1.getTransactionIsolation();
+        connection1.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        connection1.close();
+
+        Connection connection2 = dataSource.getConnection();
+        assertEquals(transactionIsolation, connection2.getTransactionIsolation());
+        connection2.close();
+    }
+
+    @Test
+    public void idleConnectionsAreClosedWhenPoolIsClosed() throws Exception {
+        Connection connection = dataSource.getConnection();
+        Connection physicalConnection = getPhysicalConnection(connection);
+        connection.close();
+
+        ((Closeable) dataSource).close();
+        assertTrue(physicalConnection.isClosed());
+    }
+
+    @Test
+    public void connectionInUseIsClosedWhenReturnedToClosedPool() throws Exception {
+        Connection connection = dataSource.getConnection();
+        Connection physicalConnection = getPhysicalConnection(connection);
+
+        ((Closeable) dataSource).close();
+        assertFalse(physicalConnection.isClosed());
+        connection.close();
+        assertTrue(physicalConnection.isClosed());
+    }
+
+    @Test
+    public void noConnectionAfterPoolIsClosed() throws Exception {
+        ((Closeable) dataSource).close();
+        try {
+            dataSource.getConnection();
+            fail("Expected DatabaseException");
+        } catch (DatabaseException e) {
+            // expected
+        }
+    }
+
+
+    private Connection getPhysicalConnection(Connection connection) throws SQLException {
+        return connection.getMetaData().getConnection();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.launch.task;
+
+import org.dbmaintain.MainFactory;
+import org.dbmaintain.metrics.MetricsRecorder;
+import org.dbmaintain.metrics.impl.NoOpMetricsRecorder;
+import org.dbmaintain.util.DbMaintainException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the closing of the factory and the writing of the metrics at the end of a task.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DbMaintainTaskTest {
+
+    /* Tested object */
+    private TestDbMaintainTask dbMaintainTask;
+
+    /* True if the main factory was closed */
+    private boolean closed;
+
+
+    @Before
+    public void initialize() {
+        dbMaintainTask = new TestDbMaintainTask();
+    }
+
+
+    @Test
+    public void factoryClosedWhenMetricsCannotBeWritten() {
+        boolean result = dbMaintainTask.execute();
+
+        assertTrue(result);
+        assertTrue(closed);
+    }
+
+    @Test
+    public void exceptionOfTaskNotHiddenWhenMetricsCannotBeWritten() {
+        dbMaintainTask.failure = new DbMaintainException("task failure");
+        try {
+            dbMaintainTask.execute();
+            fail("DbMaintainException expected");
+
+        } catch (DbMaintainException e) {
+            assertEquals("task failure", e.getMessage());
+        }
+        assertTrue(closed);
+    }
+
+
+    private class TestDbMaintainTask extends DbMaintainTask {
+
+        private RuntimeException failure;
+
+        @Override
+        protected void addTaskConfiguration(TaskConfiguration configuration) {
+        }
+
+        @Override
+        protected boolean doExecute(MainFactory mainFactory) {
+            if (failure != null) {
+                throw failure;
+            }
+            return true;
+        }
+
+        @Override
+        protected MainFactory createMainFactory(TaskConfiguration taskConfiguration) {
+            return new MainFactory(new Properties()) {
+                @Override
+                public synchronized MetricsRecorder getMetricsRecorder() {
+                    return new NoOpMetricsRecorder() {
+                        @Override
+                        public void writeMetrics() {
+                            throw new DbMaintainException("metrics failure");
+                        }
+                    };
+                }
+
+                @Override
+                public void close() {
+                    closed = true;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.lock.impl;
+
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.impl.DefaultSQLHandler;
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.util.DbMaintainException;
+import org.dbmaintain.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.Date;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+import static org.dbmaintain.util.SQLTestUtils.executeUpdate;
+import static org.dbmaintain.util.SQLTestUtils.executeUpdateQuietly;
+import static org.dbmaintain.util.TestUtils.createScript;
+import static org.dbmaintain.util.TestUtils.createScriptWithCheckSum;
+
+/**
+ * Test class for {@link DefaultUpdateLock}. Each instance plays the role of a separate process.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultUpdateLockTest {
+
+    private DataSource dataSource;
+    private Database defaultDatabase;
+
+    private SortedSet<Script> scripts;
+
+
+    @Before
+    public void initialize() {
+        defaultDatabase = TestUtils.getDatabases().getDefaultDatabase();
+        dataSource = defaultDatabase.getDataSource();
+
+        scripts = new TreeSet<Script>();
+        scripts.add(createScript("1_script1.sql"));
+        scripts.add(createScript("2_script2.sql"));
+
+        dropTables();
+    }
+
+    @After
+    public void cleanUp() {
+        dropTables();
+    }
+
+
+    @Test
+    public void lockIsExclusive() {
+        DefaultUpdateLock updateLock1 = createUpdateLock(60);
+        DefaultUpdateLock updateLock2 = createUpdateLock(60);
+
+        assertTrue(updateLock1.acquire(scripts));
+        assertLockNotAcquired(updateLock2);
+
+        updateLock1.release(scripts, false);
+        assertTrue(updateLock2.acquire(scripts));
+        updateLock2.release(scripts, false);
+    }
+
+    @Test
+    public void staleLockIsReclaimed() {
+        DefaultUpdateLock updateLock1 = createUpdateLock(60);
+        DefaultUpdateLock updateLock2 = createUpdateLock(60);
+
+        assertTrue(updateLock1.acquire(scripts));
+        // simulate a process that was killed while holding the lock
+        updateLock1.stopLeaseRenewal();
+        executeUpdate("update dbmaintain_lock set locked_at = 0", dataSource);
+
+        assertTrue(updateLock2.acquire(scripts));
+        updateLock2.release(scripts, false);
+    }
+
+    @Test
+    public void updateSkippedForSameFingerprint() {
+        registerExecutedScript();
+        DefaultUpdateLock updateLock1 = createUpdateLock(60);
+        DefaultUpdateLock updateLock2 = createUpdateLock(60);
+
+        assertTrue(updateLock1.acquire(scripts));
+        updateLock1.release(scripts, true);
+
+        assertFalse(updateLock2.acquire(scripts));
+    }
+
+    @Test
+    public void updateNotSkippedForOtherScripts() {
+        registerExecutedScript();
+        DefaultUpdateLock updateLock1 = createUpdateLock(60);
+        DefaultUpdateLock updateLock2 = createUpdateLock(60);
+
+        assertTrue(updateLock1.acquire(scripts));
+        updateLock1.release(scripts, true);
+
+        scripts.add(createScript("3_script3.sql"));
+        assertTrue(updateLock2.acquire(scripts));
+        updateLock2.release(scripts, true);
+    }
+
+    @Test
+    public void updateNotSkippedForChangedScriptContentWithSameModificationDate() {
+        registerExecutedScript();
+        DefaultUpdateLock updateLock1 = createUpdateLock(60);
+        DefaultUpdateLock updateLock2 = createUpdateLock(60);
+
+        assertTrue(updateLock1.acquire(scripts));
+        updateLock1.release(scripts, true);
+
+        SortedSet<Script> changedScripts = new TreeSet<Script>();
+        changedScripts.add(createScript("1_script1.sql"));
+        changedScripts.add(createScriptWithCheckSum("2_script2.sql", "changed checksum"));
+        assertTrue(updateLock2.acquire(changedScripts));
+        updateLock2.release(changedScripts, true);
+    }
+
+    @Test
+    public void updateNotSkippedAfterFailedUpdate() {
+        registerExecutedScript();
+        DefaultUpdateLock updateLock1 = createUpdateLock(60);
+        DefaultUpdateLock updateLock2 = createUpdateLock(60);
+
+        assertTrue(updateLock1.acquire(scripts));
+        updateLock1.release(scripts, false);
+
+        assertTrue(updateLock2.acquire(scripts));
+        updateLock2.release(scripts, false);
+    }
+
+    @Test
+    public void lockTableNotCreatedAutomatically() {
+        DefaultUpdateLock updateLock = new DefaultUpdateLock(defaultDatabase, new DefaultSQLHandler(), false, "dbmaintain_lock",
+                "dbmaintain_scripts", "executed_at", 60000, 0, false);
+        try {
+            updateLock.acquire(scripts);
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage().contains("create table"));
+        }
+    }
+
+
+    private DefaultUpdateLock createUpdateLock(long leaseTimeoutInSeconds) {
+        return new DefaultUpdateLock(defaultDatabase, new DefaultSQLHandler(), true, "dbmaintain_lock",
+                "dbmaintain_scripts", "executed_at", leaseTimeoutInSeconds * 1000, 0, false);
+    }
+
+    private void assertLockNotAcquired(DefaultUpdateLock updateLock) {
+        try {
+            updateLock.acquire(scripts);
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            // expected
+        }
+    }
+
+    private void registerExecutedScript() {
+        TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, true).registerExecutedScript(new ExecutedScript(scripts.first(), new Date(), true));
+    }
+
+    private void dropTables() {
+        executeUpdateQuietly("drop table dbmaintain_lock", dataSource);
+        executeUpdateQuietly("drop table dbmaintain_scripts", dataSource);
+    }
+}
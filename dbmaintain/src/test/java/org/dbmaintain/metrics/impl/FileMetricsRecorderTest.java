@@ -0,0 +1,105 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.metrics.impl;
+
+import org.dbmaintain.util.DbMaintainException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import static org.dbmaintain.metrics.Metric.SCRIPT_BYTES_READ;
+import static org.dbmaintain.metrics.Metric.STATEMENT_DURATION;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class FileMetricsRecorderTest {
+
+    private File metricsFile;
+
+
+    @Before
+    public void initialize() throws Exception {
+        metricsFile = File.createTempFile("dbmaintain-metrics", ".txt");
+    }
+
+    @After
+    public void cleanUp() {
+        metricsFile.delete();
+    }
+
+
+    @Test
+    public void prometheusFormat() throws Exception {
+        FileMetricsRecorder fileMetricsRecorder = new FileMetricsRecorder(metricsFile, "prometheus");
+        fileMetricsRecorder.recordDuration(STATEMENT_DURATION, "create", 3000000L);
+        fileMetricsRecorder.recordDuration(STATEMENT_DURATION, "create", 200000000L);
+        fileMetricsRecorder.recordCount(SCRIPT_BYTES_READ, null, 10);
+        fileMetricsRecorder.recordCount(SCRIPT_BYTES_READ, null, 5);
+        fileMetricsRecorder.writeMetrics();
+
+        String content = readMetricsFile();
+        assertTrue(content.contains("# TYPE dbmaintain_statement_duration_seconds histogram\n"));
+        assertTrue(content.contains("dbmaintain_statement_duration_seconds_bucket{kind=\"create\",le=\"0.001\"} 0\n"));
+        assertTrue(content.contains("dbmaintain_statement_duration_seconds_bucket{kind=\"create\",le=\"0.005\"} 1\n"));
+        assertTrue(content.contains("dbmaintain_statement_duration_seconds_bucket{kind=\"create\",le=\"0.25\"} 2\n"));
+        assertTrue(content.contains("dbmaintain_statement_duration_seconds_bucket{kind=\"create\",le=\"+Inf\"} 2\n"));
+        assertTrue(content.contains("dbmaintain_statement_duration_seconds_sum{kind=\"create\"} 0.203\n"));
+        assertTrue(content.contains("dbmaintain_statement_duration_seconds_count{kind=\"create\"} 2\n"));
+        assertTrue(content.contains("# TYPE dbmaintain_script_bytes_read_total counter\ndbmaintain_script_bytes_read_total 15\n"));
+    }
+
+    @Test
+    public void jsonFormat() throws Exception {
+        FileMetricsRecorder fileMetricsRecorder = new FileMetricsRecorder(metricsFile, "json");
+        fileMetricsRecorder.recordDuration(STATEMENT_DURATION, "in\"sert", 3000000L);
+        fileMetricsRecorder.recordCount(SCRIPT_BYTES_READ, null, 10);
+        fileMetricsRecorder.writeMetrics();
+
+        String content = readMetricsFile();
+        assertTrue(content.contains("{\"name\": \"dbmaintain_statement_duration_seconds\", \"labels\": {\"kind\": \"in\\\"sert\"}, \"count\": 1, \"sum\": 0.003"));
+        assertTrue(content.contains("{\"le\": 0.005, \"count\": 1}"));
+        assertTrue(content.contains("{\"name\": \"dbmaintain_script_bytes_read_total\", \"labels\": {}, \"value\": 10}"));
+    }
+
+    @Test(expected = DbMaintainException.class)
+    public void invalidFormat() {
+        new FileMetricsRecorder(metricsFile, "xxx");
+    }
+
+
+    private String readMetricsFile() throws Exception {
+        Reader reader = new InputStreamReader(new FileInputStream(metricsFile), "UTF-8");
+        try {
+            StringBuilder result = new StringBuilder();
+            char[] buffer = new char[1024];
+            int nrOfChars;
+            while ((nrOfChars = reader.read(buffer)) != -1) {
+                result.append(buffer, 0, nrOfChars);
+            }
+            return result.toString();
+        } finally {
+            reader.close();
+        }
+    }
+}
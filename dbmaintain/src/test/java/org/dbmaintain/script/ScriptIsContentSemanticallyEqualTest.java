@@ -0,0 +1,102 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static org.dbmaintain.util.TestUtils.createScriptWithCheckSum;
+import static org.dbmaintain.util.TestUtils.createScriptWithContent;
+
+/**
+ * Tests for checking whether 2 scripts only differ in comments, whitespace or case => checks for semantic check sums
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptIsContentSemanticallyEqualTest {
+
+    private static final String CONTENT = "create view x as select a, b from y where c = 'Value  1';\n";
+
+
+    @Test
+    public void sameContent() {
+        assertSemanticallyEqual(CONTENT, CONTENT);
+    }
+
+    @Test
+    public void differentWhitespace() {
+        assertSemanticallyEqual(CONTENT, "create   view x\n\tas select a,b\r\nfrom y where c='Value  1' ;");
+    }
+
+    @Test
+    public void differentComments() {
+        assertSemanticallyEqual(CONTENT, "-- the view\ncreate view x as /* all columns */ select a, b from y -- filtered\nwhere c = 'Value  1';");
+    }
+
+    @Test
+    public void differentCase() {
+        assertSemanticallyEqual(CONTENT, "CREATE VIEW X AS SELECT A, B FROM Y WHERE C = 'Value  1';");
+    }
+
+    @Test
+    public void differentLiteral() {
+        assertNotSemanticallyEqual(CONTENT, "create view x as select a, b from y where c = 'value 1';");
+    }
+
+    @Test
+    public void differentQuotedIdentifier() {
+        assertNotSemanticallyEqual("select \"Col\" from y", "select \"COL\" from y");
+    }
+
+    @Test
+    public void commentMarkersInLiteralAreKept() {
+        assertNotSemanticallyEqual("select '--x' from y", "select '' from y");
+        assertNotSemanticallyEqual("select '/* x */' from y", "select '' from y");
+    }
+
+    @Test
+    public void whitespaceBetweenWordsIsKept() {
+        assertNotSemanticallyEqual("select a b from y", "select ab from y");
+    }
+
+    @Test
+    public void hintsAreKept() {
+        assertNotSemanticallyEqual("select /*+ index(y) */ a from y", "select a from y");
+    }
+
+    @Test
+    public void unknownSemanticCheckSum() {
+        Script script = createScriptWithContent("fileName", CONTENT);
+        Script scriptWithoutContent = createScriptWithCheckSum("fileName", script.getCheckSum());
+        assertFalse(script.isScriptContentSemanticallyEqualTo(scriptWithoutContent));
+        assertFalse(scriptWithoutContent.isScriptContentSemanticallyEqualTo(script));
+    }
+
+
+    private void assertSemanticallyEqual(String content1, String content2) {
+        Script script1 = createScriptWithContent("fileName", content1);
+        Script script2 = createScriptWithContent("fileName", content2);
+        assertTrue(script1.isScriptContentSemanticallyEqualTo(script2));
+    }
+
+    private void assertNotSemanticallyEqual(String content1, String content2) {
+        Script script1 = createScriptWithContent("fileName", content1);
+        Script script2 = createScriptWithContent("fileName", content2);
+        assertFalse(script1.isScriptContentSemanticallyEqualTo(script2));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.analyzer;
+
+import org.dbmaintain.script.Script;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.dbmaintain.util.TestUtils.createScriptWithContent;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class PostprocessingScriptTriggerAnalyzerTest {
+
+    private PostprocessingScriptTriggerAnalyzer postprocessingScriptTriggerAnalyzer;
+
+    private Script tableScript;
+    private Script procedureScript;
+    private Script patchScript;
+
+
+    @Before
+    public void initialize() {
+        postprocessingScriptTriggerAnalyzer = new PostprocessingScriptTriggerAnalyzer();
+
+        tableScript = createScriptWithContent("01_schema/01_tables.sql", "create table table_a (id int);");
+        procedureScript = createScriptWithContent("02_procedures/01_customer_procedures.sql", "create procedure proc_a as begin null; end;");
+        patchScript = createScriptWithContent("03_data/01_#patch_data.sql", "insert into table_a values (1);");
+    }
+
+
+    @Test
+    public void triggeredByFolder() {
+        Script postprocessingScript = createScriptWithContent("postprocessing/01_statistics.sql", "-- Gathers statistics\n-- @triggeredBy 01_schema/\nexec gather_stats;");
+
+        assertTrue(postprocessingScriptTriggerAnalyzer.isTriggered(postprocessingScript, asList(procedureScript, tableScript)));
+        assertFalse(postprocessingScriptTriggerAnalyzer.isTriggered(postprocessingScript, asList(procedureScript, patchScript)));
+    }
+
+    @Test
+    public void triggeredByScriptName() {
+        Script postprocessingScript = createScriptWithContent("postprocessing/01_recompile.sql", "-- @triggeredBy 01_customer_procedures.sql, 02_procedures/02_order_procedures.sql\nexec recompile;");
+
+        assertTrue(postprocessingScriptTriggerAnalyzer.isTriggered(postprocessingScript, asList(procedureScript)));
+        assertFalse(postprocessingScriptTriggerAnalyzer.isTriggered(postprocessingScript, asList(tableScript)));
+    }
+
+    @Test
+    public void triggeredByQualifier() {
+        Script postprocessingScript = createScriptWithContent("postprocessing/01_statistics.sql", "-- @triggeredBy #PATCH\nexec gather_stats;");
+
+        assertTrue(postprocessingScriptTriggerAnalyzer.isTriggered(postprocessingScript, asList(patchScript)));
+        assertFalse(postprocessingScriptTriggerAnalyzer.isTriggered(postprocessingScript, asList(tableScript, procedureScript)));
+    }
+
+    @Test
+    public void alwaysTriggeredWithoutDeclaration() {
+        Script postprocessingScript = createScriptWithContent("postprocessing/01_statistics.sql", "exec gather_stats;\n-- @triggeredBy 01_schema/");
+
+        assertTrue("triggers are only declared in the header", postprocessingScriptTriggerAnalyzer.isTriggered(postprocessingScript, asList(procedureScript)));
+    }
+
+    @Test
+    public void alwaysRun() {
+        Script postprocessingScript = createScriptWithContent("postprocessing/01_statistics.sql", "-- @triggeredBy 01_schema/\n-- @alwaysRun\nexec gather_stats;");
+
+        assertTrue(postprocessingScriptTriggerAnalyzer.isTriggered(postprocessingScript, asList(procedureScript)));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.analyzer;
+
+import org.dbmaintain.script.Script;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static org.dbmaintain.util.CollectionUtils.asSet;
+import static org.dbmaintain.util.TestUtils.createScriptWithContent;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptDependencyAnalyzerTest {
+
+    private Script viewA;
+    private Script viewB;
+    private Script viewC;
+
+
+    @Before
+    public void initialize() {
+        viewA = createScriptWithContent("repeatable/view_a.sql", "create or replace view view_a as select * from table_x;");
+        viewB = createScriptWithContent("repeatable/view_b.sql", "-- Creates view b\n\n-- @dependsOn view_a.sql, repeatable/unknown.sql\ncreate view view_b as select * from view_a;");
+        viewC = createScriptWithContent("repeatable/view_c.sql", "create view VIEW_C as select * from schema_x.view_b;\n-- @dependsOn view_x.sql");
+    }
+
+
+    @Test
+    public void declaredDependencies() {
+        Map<Script, Set<Script>> result = new ScriptDependencyAnalyzer(false).getDependencies(scripts());
+
+        assertTrue(result.get(viewA).isEmpty());
+        assertEquals(asSet(viewA), result.get(viewB));
+        assertTrue("dependencies are only declared in the header", result.get(viewC).isEmpty());
+    }
+
+    @Test
+    public void inferredDependencies() {
+        Map<Script, Set<Script>> result = new ScriptDependencyAnalyzer(true).getDependencies(scripts());
+
+        assertTrue(result.get(viewA).isEmpty());
+        assertEquals(asSet(viewA), result.get(viewB));
+        assertEquals(asSet(viewB), result.get(viewC));
+    }
+
+
+    private List<Script> scripts() {
+        return asList(viewA, viewB, viewC);
+    }
+}
@@ -52,6 +52,16 @@ public class ScriptUpdatesAnalyzerTest {
     private static final Script POSTPROCESSING_3 = createScript("postprocessing/3_postprocessing3.sql", false);
     private static final Script POSTPROCESSING_3_RENAMED_WITH_INDEX_1 = createRenamedScript(POSTPROCESSING_3, "postprocessing/1_postprocessing3.sql");
     private static final Script POSTPROCESSING_1_UPDATED = createScript("postprocessing/1_postprocessing1.sql", true);
+    private static final Script REPEATABLE_3 = createScriptWithContent("repeatable3.sql", "create view v as select 1 from dual;");
+    private static final Script REPEATABLE_3_REFORMATTED = createScriptWithContent("repeatable3.sql", "-- view\ncreate view v as\n    select 1 from dual;");
+    private static final Script POSTPROCESSING_4 = createScriptWithContent("postprocessing/4_postprocessing4.sql", "update t set a = 1;");
+    private static final Script POSTPROCESSING_4_REFORMATTED = createScriptWithContent("postprocessing/4_postprocessing4.sql", "/* set a */ update t\nset a = 1;");
+    private static final Script REPEATABLE_4 = createScriptWithContent("repeatable4.sql", "insert into t values ($$Hello$$, $tag$it's$tag$);");
+    private static final Script REPEATABLE_4_REFORMATTED = createScriptWithContent("repeatable4.sql", "INSERT INTO t\nVALUES ($$Hello$$, $tag$it's$tag$);");
+    private static final Script REPEATABLE_4_LITERAL_CHANGED = createScriptWithContent("repeatable4.sql", "insert into t values ($$HELLO$$, $tag$it's$tag$);");
+    private static final Script REPEATABLE_5 = createScriptWithContent("repeatable5.sql", "insert into t values ('it\\'s a test');");
+    private static final Script REPEATABLE_5_REFORMATTED = createScriptWithContent("repeatable5.sql", "INSERT INTO t VALUES\n('it\\'s a test');");
+    private static final Script REPEATABLE_5_LITERAL_CHANGED = createScriptWithContent("repeatable5.sql", "insert into t values ('it\\'s a TEST');");
 
     private ScriptUpdates scriptUpdates;
 
@@ -198,6 +208,78 @@ public class ScriptUpdatesAnalyzerTest {
         assertPostProcessingScriptUpdate(POSTPROCESSING_SCRIPT_RENAMED, POSTPROCESSING_3, POSTPROCESSING_3_RENAMED_WITH_INDEX_1);
     }
 
+    @Test
+    public void repeatableScriptOnlyFormattingChanged() {
+        executedScripts(REPEATABLE_3);
+        scripts(REPEATABLE_3_REFORMATTED);
+        calculateScriptUpdatesWithSemanticCheckSums(true);
+        assertTrue(scriptUpdates.isEmpty());
+    }
+
+    @Test
+    public void repeatableScriptOnlyFormattingChanged_semanticCheckSumsDisabled() {
+        executedScripts(REPEATABLE_3);
+        scripts(REPEATABLE_3_REFORMATTED);
+        calculateScriptUpdatesWithSemanticCheckSums(false);
+        assertRegularScriptUpdate(REPEATABLE_SCRIPT_UPDATED, REPEATABLE_3_REFORMATTED);
+    }
+
+    @Test
+    public void repeatableScriptOnlyFormattingChanged_lastExecutionFailed() {
+        failedExecutedScripts(REPEATABLE_3);
+        scripts(REPEATABLE_3_REFORMATTED);
+        calculateScriptUpdatesWithSemanticCheckSums(true);
+        assertRegularScriptUpdate(REPEATABLE_SCRIPT_UPDATED, REPEATABLE_3_REFORMATTED);
+    }
+
+    @Test
+    public void postprocessingScriptOnlyFormattingChanged() {
+        executedScripts(POSTPROCESSING_4);
+        scripts(POSTPROCESSING_4_REFORMATTED);
+        calculateScriptUpdatesWithSemanticCheckSums(true);
+        assertTrue(scriptUpdates.isEmpty());
+    }
+
+    @Test
+    public void postprocessingScriptOnlyFormattingChanged_lastExecutionFailed() {
+        failedExecutedScripts(POSTPROCESSING_4);
+        scripts(POSTPROCESSING_4_REFORMATTED);
+        calculateScriptUpdatesWithSemanticCheckSums(true);
+        assertPostProcessingScriptUpdate(POSTPROCESSING_SCRIPT_UPDATED, POSTPROCESSING_4_REFORMATTED);
+    }
+
+    @Test
+    public void repeatableScriptWithDollarQuotesOnlyFormattingChanged() {
+        executedScripts(REPEATABLE_4);
+        scripts(REPEATABLE_4_REFORMATTED);
+        calculateScriptUpdatesWithSemanticCheckSums(true);
+        assertTrue(scriptUpdates.isEmpty());
+    }
+
+    @Test
+    public void repeatableScriptWithDollarQuotesLiteralChanged() {
+        executedScripts(REPEATABLE_4);
+        scripts(REPEATABLE_4_LITERAL_CHANGED);
+        calculateScriptUpdatesWithSemanticCheckSums(true);
+        assertRegularScriptUpdate(REPEATABLE_SCRIPT_UPDATED, REPEATABLE_4_LITERAL_CHANGED);
+    }
+
+    @Test
+    public void repeatableScriptWithBackslashEscapeOnlyFormattingChanged() {
+        executedScripts(REPEATABLE_5);
+        scripts(REPEATABLE_5_REFORMATTED);
+        calculateScriptUpdatesWithSemanticCheckSums(true);
+        assertTrue(scriptUpdates.isEmpty());
+    }
+
+    @Test
+    public void repeatableScriptWithBackslashEscapeLiteralChanged() {
+        executedScripts(REPEATABLE_5);
+        scripts(REPEATABLE_5_LITERAL_CHANGED);
+        calculateScriptUpdatesWithSemanticCheckSums(true);
+        assertRegularScriptUpdate(REPEATABLE_SCRIPT_UPDATED, REPEATABLE_5_LITERAL_CHANGED);
+    }
+
     private void scripts(Script... scripts) {
         this.scripts.addAll(Arrays.asList(scripts));
     }
@@ -208,6 +290,12 @@ public class ScriptUpdatesAnalyzerTest {
         }
     }
 
+    private void failedExecutedScripts(Script... scripts) {
+        for (Script script : scripts) {
+            executedScripts.add(new ExecutedScript(script, new Date(), false));
+        }
+    }
+
     private void assertRegularScriptUpdate(ScriptUpdateType scriptUpdateType, Script script) {
         assertTrue(scriptUpdates.getRegularlyAddedOrModifiedScripts().contains(new ScriptUpdate(scriptUpdateType, script)));
     }
@@ -258,6 +346,12 @@ public class ScriptUpdatesAnalyzerTest {
         ).calculateScriptUpdates();
     }
 
+    private void calculateScriptUpdatesWithSemanticCheckSums(boolean semanticCheckSums) {
+        scriptUpdates = new ScriptUpdatesAnalyzer(getScriptRepository(scripts),
+                getExecutedScriptInfoSource(executedScripts), false, true, semanticCheckSums, semanticCheckSums
+        ).calculateScriptUpdates();
+    }
+
     private static Script createScript(String scriptName, boolean modified) {
         String checkSum = scriptName + (modified ? (++sequence) : "");
         Long lastModifiedAt = modified ? 1L : 0L;
@@ -0,0 +1,77 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.analyzer;
+
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.Databases;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.structure.model.DbItemIdentifier;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static org.dbmaintain.structure.model.DbItemIdentifier.getItemIdentifier;
+import static org.dbmaintain.structure.model.DbItemType.TABLE;
+import static org.dbmaintain.util.CollectionUtils.asSet;
+import static org.dbmaintain.util.TestUtils.createScriptWithContent;
+import static org.dbmaintain.util.TestUtils.getDatabases;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class UpdatedTablesAnalyzerTest {
+
+    private Database database;
+    private UpdatedTablesAnalyzer updatedTablesAnalyzer;
+
+
+    @Before
+    public void initialize() {
+        Databases databases = getDatabases("PUBLIC", "OTHER");
+        database = databases.getDefaultDatabase();
+        updatedTablesAnalyzer = new UpdatedTablesAnalyzer(databases);
+    }
+
+
+    @Test
+    public void createdAndAlteredTables() {
+        Script script1 = createScriptWithContent("01_tables.sql", "create table table_a (id int);\ncreate global temporary table temp_b (id int);\nALTER TABLE other.table_c add column x int;\ninsert into table_d values (1);");
+        Script script2 = createScriptWithContent("02_tables.sql", "alter table \"Mixed\" add constraint c1 unique (id);\ncreate view view_e as select * from table_f;");
+
+        Set<DbItemIdentifier> result = updatedTablesAnalyzer.getUpdatedTables(asList(script1, script2));
+
+        assertEquals(asSet(table("PUBLIC", "TABLE_A"), table("PUBLIC", "TEMP_B"), table("OTHER", "TABLE_C"), table("PUBLIC", "\"Mixed\"")), result);
+    }
+
+    @Test
+    public void tablesOfOtherSchemasAreIgnored() {
+        Script script = createScriptWithContent("01_tables.sql", "create table unknown.table_a (id int);");
+
+        Set<DbItemIdentifier> result = updatedTablesAnalyzer.getUpdatedTables(asList(script));
+
+        assertTrue(result.isEmpty());
+    }
+
+
+    private DbItemIdentifier table(String schemaName, String tableName) {
+        return getItemIdentifier(TABLE, schemaName, tableName, database);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.executedscriptinfo.impl;
+
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.impl.DefaultSQLHandler;
+import org.dbmaintain.metrics.impl.NoOpMetricsRecorder;
+import org.dbmaintain.script.ScriptFactory;
+import org.dbmaintain.script.qualifier.Qualifier;
+import org.dbmaintain.util.DbMaintainException;
+import org.dbmaintain.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.dbmaintain.util.CollectionUtils.asSet;
+import static org.dbmaintain.util.SQLTestUtils.executeUpdate;
+import static org.dbmaintain.util.SQLTestUtils.executeUpdateQuietly;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the semantic checksum column of the {@link DefaultExecutedScriptInfoSource}. This column was added
+ * later on, so existing executed scripts tables should be migrated instead of re-created.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultExecutedScriptInfoSourceSemanticChecksumColumnTest {
+
+    private DataSource dataSource;
+    private Database defaultDatabase;
+
+
+    @Before
+    public void initialize() {
+        defaultDatabase = TestUtils.getDatabases().getDefaultDatabase();
+        dataSource = defaultDatabase.getDataSource();
+
+        dropExecutedScriptsTable();
+        executeUpdate("create table dbmaintain_scripts (file_name varchar(150), file_last_modified_at bigint, checksum varchar(50), executed_at varchar(50), succeeded bigint)", dataSource);
+        executeUpdate("insert into dbmaintain_scripts values ('1_script1.sql', 0, 'checksum', '20/05/2008', 1)", dataSource);
+        defaultDatabase.invalidateCatalogCache();
+    }
+
+    @After
+    public void cleanUp() {
+        dropExecutedScriptsTable();
+    }
+
+
+    @Test
+    public void columnIsAddedToExistingTable() {
+        DefaultExecutedScriptInfoSource executedScriptInfoSource = createExecutedScriptInfoSource(true);
+
+        assertEquals(1, executedScriptInfoSource.getExecutedScripts().size());
+        assertTrue(getColumnNames().contains("SEMANTIC_CHECKSUM"));
+    }
+
+    @Test
+    public void columnIsMissingAndNoAutoCreate() {
+        DefaultExecutedScriptInfoSource executedScriptInfoSource = createExecutedScriptInfoSource(false);
+        try {
+            executedScriptInfoSource.getExecutedScripts();
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage().contains("alter table"));
+        }
+        assertFalse(getColumnNames().contains("SEMANTIC_CHECKSUM"));
+    }
+
+    @Test
+    public void columnNotUsed() {
+        DefaultExecutedScriptInfoSource executedScriptInfoSource = TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, false);
+
+        assertEquals(1, executedScriptInfoSource.getExecutedScripts().size());
+        assertFalse(getColumnNames().contains("SEMANTIC_CHECKSUM"));
+    }
+
+
+    private DefaultExecutedScriptInfoSource createExecutedScriptInfoSource(boolean autoCreateExecutedScriptsTable) {
+        ScriptFactory scriptFactory = new ScriptFactory("^([0-9]+)_", "(?:\\\\G|_)@([a-zA-Z0-9]+)_", "(?:\\\\G|_)#([a-zA-Z0-9]+)_", Collections.<Qualifier>emptySet(),
+                asSet(new Qualifier("patch")), "postprocessing", null);
+        return new DefaultExecutedScriptInfoSource(autoCreateExecutedScriptsTable, "dbmaintain_scripts", "file_name", 150, "file_last_modified_at",
+                "checksum", 50, "semantic_checksum", "executed_at", 50, "succeeded", new SimpleDateFormat("dd/MM/yyyy"), defaultDatabase,
+                new DefaultSQLHandler(), scriptFactory, new NoOpMetricsRecorder());
+    }
+
+    private Set<String> getColumnNames() {
+        defaultDatabase.invalidateCatalogCache();
+        return defaultDatabase.getColumnNames(defaultDatabase.getDefaultSchemaName(), "DBMAINTAIN_SCRIPTS");
+    }
+
+    private void dropExecutedScriptsTable() {
+        executeUpdateQuietly("drop table dbmaintain_scripts", dataSource);
+    }
+
+}
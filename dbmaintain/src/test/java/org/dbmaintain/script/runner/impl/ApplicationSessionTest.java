@@ -0,0 +1,212 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.runner.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the session with a fake process of which the test writes the output.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ApplicationSessionTest {
+
+    /* Tested object */
+    private ApplicationSession applicationSession;
+
+    private FakeProcess fakeProcess;
+    private Writer processOutput;
+
+
+    @Before
+    public void initialize() throws Exception {
+        PipedInputStream processOutputStream = new PipedInputStream();
+        processOutput = new OutputStreamWriter(new PipedOutputStream(processOutputStream));
+        fakeProcess = new FakeProcess(processOutputStream);
+        applicationSession = new ApplicationSession("test", fakeProcess, 100);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        processOutput.close();
+    }
+
+
+    @Test
+    public void inputIsSentToProcess() throws Exception {
+        applicationSession.write("select 1 from dual;\n");
+        applicationSession.write(new StringReader("exit\n"));
+
+        assertEquals("select 1 from dual;\nexit\n", fakeProcess.getInput());
+    }
+
+    @Test
+    public void outputUntilMarker() throws Exception {
+        String marker1 = applicationSession.createMarker();
+        String marker2 = applicationSession.createMarker();
+        writeOutput("line 1");
+        writeOutput("");
+        writeOutput("line 2");
+        writeOutput("  " + marker1 + "  ");
+        writeOutput("line 3");
+        writeOutput(marker2);
+
+        ApplicationSession.SessionOutput sessionOutput1 = applicationSession.readUntil(marker1);
+        assertTrue(sessionOutput1.isMarkerFound());
+        assertEquals("line 1\nline 2\n", sessionOutput1.getOutput());
+
+        ApplicationSession.SessionOutput sessionOutput2 = applicationSession.readUntil(marker2);
+        assertTrue(sessionOutput2.isMarkerFound());
+        assertEquals("line 3\n", sessionOutput2.getOutput());
+    }
+
+    @Test
+    public void lineContainingMarkerIsNoMarkerLine() throws Exception {
+        String marker = applicationSession.createMarker();
+        writeOutput("SQL> prompt " + marker);
+        writeOutput(marker);
+
+        ApplicationSession.SessionOutput sessionOutput = applicationSession.readUntil(marker);
+        assertTrue(sessionOutput.isMarkerFound());
+        assertEquals("SQL> prompt " + marker + "\n", sessionOutput.getOutput());
+    }
+
+    @Test
+    public void processEndsBeforeMarker() throws Exception {
+        String marker = applicationSession.createMarker();
+        writeOutput("ORA-00942: table or view does not exist");
+        processOutput.close();
+
+        ApplicationSession.SessionOutput sessionOutput = applicationSession.readUntil(marker);
+        assertFalse(sessionOutput.isMarkerFound());
+        assertEquals("ORA-00942: table or view does not exist\n", sessionOutput.getOutput());
+
+        // subsequent reads do not block
+        ApplicationSession.SessionOutput closeOutput = applicationSession.close();
+        assertFalse(closeOutput.isMarkerFound());
+        assertEquals("", closeOutput.getOutput());
+    }
+
+    @Test
+    public void timeoutBeforeMarker() throws Exception {
+        String marker = applicationSession.createMarker();
+        writeOutput("SQL> begin");
+
+        ApplicationSession.SessionOutput sessionOutput = applicationSession.readUntil(marker, 100);
+        assertFalse(sessionOutput.isMarkerFound());
+        assertTrue(sessionOutput.isTimedOut());
+    }
+
+    @Test
+    public void markerFoundBeforeTimeout() throws Exception {
+        String marker = applicationSession.createMarker();
+        writeOutput("line 1");
+        writeOutput(marker);
+
+        ApplicationSession.SessionOutput sessionOutput = applicationSession.readUntil(marker, 10000);
+        assertTrue(sessionOutput.isMarkerFound());
+        assertFalse(sessionOutput.isTimedOut());
+        assertEquals("line 1\n", sessionOutput.getOutput());
+    }
+
+    @Test
+    public void closeReturnsRemainingOutput() throws Exception {
+        writeOutput("Disconnected");
+        processOutput.close();
+
+        ApplicationSession.SessionOutput sessionOutput = applicationSession.close();
+        assertEquals("Disconnected\n", sessionOutput.getOutput());
+    }
+
+    @Test
+    public void outputIsBoundedBeforeItIsRead() throws Exception {
+        String marker = applicationSession.createMarker();
+        writeOutput("start");
+        for (int i = 0; i < 10000; i++) {
+            writeOutput("xxxxxxxxxx");
+        }
+        writeOutput("error");
+        writeOutput(marker);
+
+        ApplicationSession.SessionOutput sessionOutput = applicationSession.readUntil(marker);
+        assertTrue(sessionOutput.isMarkerFound());
+        assertTrue(sessionOutput.getOutput().startsWith("start\n"));
+        assertTrue(sessionOutput.getOutput().endsWith("error\n"));
+        assertTrue(sessionOutput.getOutput().length() < 200);
+    }
+
+
+    private void writeOutput(String line) throws IOException {
+        processOutput.write(line + "\n");
+        processOutput.flush();
+    }
+
+
+    /**
+     * A process of which the output is given and of which the input is kept.
+     */
+    private static class FakeProcess extends Process {
+
+        private InputStream processOutput;
+        private ByteArrayOutputStream processInput = new ByteArrayOutputStream();
+
+        public FakeProcess(InputStream processOutput) {
+            this.processOutput = processOutput;
+        }
+
+        public String getInput() {
+            return new String(processInput.toByteArray());
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return processInput;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return processOutput;
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public int waitFor() {
+            return 0;
+        }
+
+        @Override
+        public int exitValue() {
+            return 0;
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+}
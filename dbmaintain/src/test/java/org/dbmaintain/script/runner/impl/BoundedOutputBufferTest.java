@@ -0,0 +1,62 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.runner.impl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class BoundedOutputBufferTest {
+
+
+    @Test
+    public void outputSmallerThanBuffer() {
+        BoundedOutputBuffer boundedOutputBuffer = new BoundedOutputBuffer(20);
+        boundedOutputBuffer.appendLine("line 1");
+        boundedOutputBuffer.appendLine("line 2");
+
+        assertEquals("line 1\nline 2\n", boundedOutputBuffer.toString());
+        assertFalse(boundedOutputBuffer.isTruncated());
+    }
+
+    @Test
+    public void outputFillsBufferExactly() {
+        BoundedOutputBuffer boundedOutputBuffer = new BoundedOutputBuffer(10);
+        boundedOutputBuffer.append("0123456789");
+
+        assertEquals("0123456789", boundedOutputBuffer.toString());
+        assertFalse(boundedOutputBuffer.isTruncated());
+    }
+
+    @Test
+    public void headAndTailKeptWhenOutputIsLarger() {
+        BoundedOutputBuffer boundedOutputBuffer = new BoundedOutputBuffer(10);
+        boundedOutputBuffer.append("start");
+        for (int i = 0; i < 1000; i++) {
+            boundedOutputBuffer.append("xxxxxxxxxx");
+        }
+        boundedOutputBuffer.append("error");
+
+        assertEquals("start\n... 10000 characters of output omitted ...\nerror", boundedOutputBuffer.toString());
+        assertTrue(boundedOutputBuffer.isTruncated());
+    }
+}
@@ -0,0 +1,8 @@
+create table table4 (col1 integer, col2 varchar(20), col3 varchar(20));
+insert into table4 (col1, col2, col3) values (1, 'a', 'x');
+insert into table4 (col1, col2, col3) values (2, 'it''s', null);
+insert into table4 (col1, col2, col3) values (3, 'c', null);
+insert into table4 (col1,col2,col3) values (4, 'd', null);
+update table4 set col3 = 'updated' where col1 = 2;
+insert into table4 (col1, col2, col3) values (5 + 1, 'e', 'y');
+insert into table4 (col1, col2, col3) values (7, 'f', 'z');
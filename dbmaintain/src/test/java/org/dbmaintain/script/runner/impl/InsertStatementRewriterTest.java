@@ -0,0 +1,86 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.runner.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class InsertStatementRewriterTest {
+
+    /* Tested object */
+    private InsertStatementRewriter insertStatementRewriter;
+
+
+    @Before
+    public void initialize() {
+        insertStatementRewriter = new InsertStatementRewriter();
+    }
+
+
+    @Test
+    public void literalValues() {
+        InsertStatementRewriter.RewrittenInsert result = insertStatementRewriter.rewrite("INSERT INTO my_schema.person(id,name , amount)\nVALUES ( 1, 'O''Brien', -1.5E2 )");
+
+        assertEquals("insert into my_schema.person (id, name, amount) values (?, ?, ?)", result.getSql());
+        assertEquals(asList(new BigDecimal("1"), "O'Brien", new BigDecimal("-1.5E2")), result.getParameters());
+    }
+
+    @Test
+    public void nullValuesAreKeptInline() {
+        InsertStatementRewriter.RewrittenInsert result = insertStatementRewriter.rewrite("insert into person (id, name) values (1, NULL)");
+
+        assertEquals("insert into person (id, name) values (?, null)", result.getSql());
+        assertEquals(asList((Object) new BigDecimal("1")), result.getParameters());
+    }
+
+    @Test
+    public void sameShapeForDifferentValues() {
+        InsertStatementRewriter.RewrittenInsert result1 = insertStatementRewriter.rewrite("insert into person (id, name) values (1, 'a')");
+        InsertStatementRewriter.RewrittenInsert result2 = insertStatementRewriter.rewrite("insert into person(id,name) values (2,'b')");
+
+        assertEquals(result1.getSql(), result2.getSql());
+    }
+
+    @Test
+    public void stringContainingSpecialChars() {
+        InsertStatementRewriter.RewrittenInsert result = insertStatementRewriter.rewrite("insert into person (name) values ('a, b); null')");
+
+        assertEquals(asList((Object) "a, b); null"), result.getParameters());
+    }
+
+    @Test
+    public void notRewritable() {
+        assertNull(insertStatementRewriter.rewrite("update person set name = 'a'"));
+        assertNull(insertStatementRewriter.rewrite("insert into person values (1, 'a')"));
+        assertNull(insertStatementRewriter.rewrite("insert into person (id, name) values (1, upper('a'))"));
+        assertNull(insertStatementRewriter.rewrite("insert into person (id, name) values (1 + 1, 'a')"));
+        assertNull(insertStatementRewriter.rewrite("insert into person (id, name) values (1, 'a'), (2, 'b')"));
+        assertNull(insertStatementRewriter.rewrite("insert into person (id, name) values (1, 'a\\'b')"));
+        assertNull(insertStatementRewriter.rewrite("insert into person (id, name) values (1, nullvalue)"));
+        assertNull(insertStatementRewriter.rewrite("insert into person (id, name) values (1)"));
+        assertNull(insertStatementRewriter.rewrite("insert into person (id, name) select id, name from other"));
+    }
+}
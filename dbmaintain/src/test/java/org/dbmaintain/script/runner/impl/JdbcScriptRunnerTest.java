@@ -66,6 +66,8 @@ public class JdbcScriptRunnerTest {
     private Script scriptWithQuery;
     /* An empty test script */
     private Script emptyScript;
+    /* A test script performing inserts that can be batched */
+    private Script batchedInserts;
 
 
     @Before
@@ -85,6 +87,7 @@ public class JdbcScriptRunnerTest {
         insertsWithRollback = createScript("inserts-with-rollback.sql");
         scriptWithQuery = createScript("script-with-query.sql");
         emptyScript = createScript("empty-script.sql");
+        batchedInserts = createScript("batched-inserts.sql");
 
         cleanupTestDatabase();
     }
@@ -152,10 +155,30 @@ public class JdbcScriptRunnerTest {
     }
 
 
+    @Test
+    public void batchInserts() throws Exception {
+        Databases databases = TestUtils.getDatabases();
+        Map<String, ScriptParserFactory> databaseDialectScriptParserClassMap = new HashMap<String, ScriptParserFactory>();
+        databaseDialectScriptParserClassMap.put("hsqldb", new DefaultScriptParserFactory(false, null));
+        JdbcScriptRunner batchingScriptRunner = new JdbcScriptRunner(databaseDialectScriptParserClassMap, databases, new DefaultSQLHandler());
+        batchingScriptRunner.setBatchInsertsEnabled(true);
+        batchingScriptRunner.setMaxInsertBatchSize(2);
+
+        batchingScriptRunner.execute(batchedInserts);
+
+        assertEquals(6, getItemAsLong("select count(1) from table4", dataSource));
+        assertEquals("it's", getItemAsString("select col2 from table4 where col1 = 2", dataSource));
+        assertEquals("updated", getItemAsString("select col3 from table4 where col1 = 2", dataSource));
+        assertEquals(1, getItemAsLong("select count(1) from table4 where col1 = 3 and col3 is null", dataSource));
+        assertEquals(1, getItemAsLong("select count(1) from table4 where col1 = 6", dataSource));
+    }
+
+
     private void cleanupTestDatabase() {
         executeUpdateQuietly("drop table table1", dataSource);
         executeUpdateQuietly("drop table table2", dataSource);
         executeUpdateQuietly("drop table table3", dataSource);
+        executeUpdateQuietly("drop table table4", dataSource);
     }
 
     private Script createScript(String scriptName) {
@@ -0,0 +1,91 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.runner.impl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class PlSqlBlockTrackingReaderTest {
+
+
+    @Test
+    public void statementsOnly() throws Exception {
+        assertFalse(endsInsidePlSqlBlock("create table my_table (id number);\ninsert into my_table values (1);\n"));
+    }
+
+    @Test
+    public void blockEndedBySlash() throws Exception {
+        assertFalse(endsInsidePlSqlBlock("begin\n  null;\nend;\n/\n"));
+    }
+
+    @Test
+    public void blockEndedByPeriod() throws Exception {
+        assertFalse(endsInsidePlSqlBlock("declare\n  x number;\nbegin\n  null;\nend;\n.\n"));
+    }
+
+    @Test
+    public void blockWithoutSlash() throws Exception {
+        assertTrue(endsInsidePlSqlBlock("create table my_table (id number);\nbegin\n  null;\nend;"));
+    }
+
+    @Test
+    public void createOrReplaceWithoutSlash() throws Exception {
+        assertTrue(endsInsidePlSqlBlock("CREATE OR REPLACE PROCEDURE my_proc AS\nBEGIN\n  NULL;\nEND;\n"));
+    }
+
+    @Test
+    public void blockAfterSqlPlusCommand() throws Exception {
+        assertTrue(endsInsidePlSqlBlock("set define off\nbegin\n  null;\nend;\n"));
+    }
+
+    @Test
+    public void keywordInsideStatementIsNoBlock() throws Exception {
+        assertFalse(endsInsidePlSqlBlock("select id,\nbegin\nfrom my_table;\n"));
+    }
+
+    @Test
+    public void contentIsPassedOn() throws Exception {
+        String content = "begin\r\n  null;\r\nend;\r\n/\r\n";
+        PlSqlBlockTrackingReader reader = new PlSqlBlockTrackingReader(new StringReader(content));
+        StringWriter writer = new StringWriter();
+        char[] buffer = new char[3];
+        int nrOfChars;
+        while ((nrOfChars = reader.read(buffer, 0, buffer.length)) != -1) {
+            writer.write(buffer, 0, nrOfChars);
+        }
+        assertEquals(content, writer.toString());
+        assertFalse(reader.isInsidePlSqlBlock());
+    }
+
+
+    private boolean endsInsidePlSqlBlock(String content) throws IOException {
+        PlSqlBlockTrackingReader reader = new PlSqlBlockTrackingReader(new StringReader(content));
+        while (reader.read() != -1) {
+        }
+        return reader.isInsidePlSqlBlock();
+    }
+}
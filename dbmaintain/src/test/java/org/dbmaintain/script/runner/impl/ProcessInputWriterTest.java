@@ -0,0 +1,77 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.runner.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ProcessInputWriterTest {
+
+    /* Tested object */
+    private ProcessInputWriter processInputWriter;
+
+    private ByteArrayOutputStream processInput;
+    private Charset charset = Charset.forName("UTF-8");
+
+
+    @Before
+    public void initialize() {
+        processInput = new ByteArrayOutputStream();
+        processInputWriter = new ProcessInputWriter(processInput, charset);
+    }
+
+
+    @Test
+    public void textAndReaderContent() throws Exception {
+        processInputWriter.write("header\n");
+        processInputWriter.write(new StringReader("script content é€\n"));
+        processInputWriter.write("footer\n");
+        processInputWriter.close();
+
+        assertEquals("header\nscript content é€\nfooter\n", new String(processInput.toByteArray(), charset));
+    }
+
+    @Test
+    public void contentLargerThanBuffer() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append("line ").append(i).append(" é\n");
+        }
+        processInputWriter.write(new StringReader(content.toString()));
+        processInputWriter.close();
+
+        assertEquals(content.toString(), new String(processInput.toByteArray(), charset));
+    }
+
+    @Test
+    public void nothingSentBeforeFlush() throws Exception {
+        processInputWriter.write("text");
+        assertEquals(0, processInput.size());
+
+        processInputWriter.flush();
+        assertEquals("text", new String(processInput.toByteArray(), charset));
+    }
+}
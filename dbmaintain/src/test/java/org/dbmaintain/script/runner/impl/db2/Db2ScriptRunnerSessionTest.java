@@ -0,0 +1,221 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.runner.impl.db2;
+
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.Databases;
+import org.dbmaintain.script.runner.impl.ApplicationSession;
+import org.dbmaintain.util.DbMaintainException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.dbmaintain.script.runner.impl.db2.Db2ScriptRunner.ERROR_MESSAGE_PATTERN;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the commands of the persistent CLP sessions of the {@link Db2ScriptRunner}, using a fake CLP process.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class Db2ScriptRunnerSessionTest {
+
+    /* Tested object */
+    private Db2ScriptRunner db2ScriptRunner;
+
+    private FakeClpProcess fakeClpProcess;
+    private ApplicationSession applicationSession;
+
+
+    @Before
+    public void initialize() throws Exception {
+        db2ScriptRunner = new Db2ScriptRunner(null, "db2") {
+            @Override
+            protected Map<Database, Db2ConnectionInfo> getDb2ConnectionInfos(Databases databases) {
+                return new HashMap<Database, Db2ConnectionInfo>();
+            }
+        };
+        fakeClpProcess = new FakeClpProcess();
+        applicationSession = new ApplicationSession("DB2 CLP", fakeClpProcess);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        fakeClpProcess.end();
+    }
+
+
+    @Test
+    public void errorMessages() {
+        assertTrue(isErrorMessage("SQL0204N  \"MYSCHEMA.PERSON\" is an undefined name.  SQLSTATE=42704"));
+        assertTrue(isErrorMessage("DB21034E  The command was processed as an SQL statement because it was not a valid Command Line Processor command."));
+        assertTrue(isErrorMessage("   SQL10007N Message \"-1390\" could not be retrieved."));
+        assertTrue(isErrorMessage("output\nSQL0104N  An unexpected token \"x\" was found."));
+    }
+
+    @Test
+    public void noErrorMessages() {
+        assertFalse(isErrorMessage("DB20000I  The SQL command completed successfully."));
+        assertFalse(isErrorMessage("SQL0100W  No row was found for FETCH, UPDATE or DELETE."));
+        assertFalse(isErrorMessage("NAME = 'SQL0204N'"));
+        assertFalse(isErrorMessage("SQL0204NX"));
+    }
+
+    @Test
+    public void commandSucceeds() {
+        fakeClpProcess.setStatementOutput("DB20000I  The SQL command completed successfully.");
+
+        db2ScriptRunner.executeSessionCommand(applicationSession, "insert into person values (1, 'john')");
+        assertTrue(fakeClpProcess.getInput().startsWith("insert into person values (1, 'john')\n@\necho DBMAINTAIN-END-"));
+    }
+
+    @Test
+    public void commandFails() {
+        fakeClpProcess.setStatementOutput("SQL0204N  \"MYSCHEMA.PERSON\" is an undefined name.  SQLSTATE=42704");
+        try {
+            db2ScriptRunner.executeSessionCommand(applicationSession, "insert into person values (1, 'john')");
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage().contains("DB2 CLP returned an error"));
+            assertTrue(e.getMessage().contains("SQL0204N"));
+        }
+    }
+
+    @Test
+    public void processEndsBeforeMarker() throws Exception {
+        fakeClpProcess.end();
+        try {
+            db2ScriptRunner.executeSessionCommand(applicationSession, "insert into person values (1, 'john')");
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void lineEndingWithStatementTerminatorIsRefused() {
+        try {
+            db2ScriptRunner.executeSessionCommand(applicationSession, "insert into person values (1, 'john@\nexample.com')");
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage().contains("john@"));
+        }
+        assertEquals("", fakeClpProcess.getInput());
+    }
+
+    @Test
+    public void statementTerminatorInsideLineIsAllowed() {
+        fakeClpProcess.setStatementOutput("DB20000I  The SQL command completed successfully.");
+
+        db2ScriptRunner.executeSessionCommand(applicationSession, "insert into person values (1, 'john@example.com')");
+    }
+
+
+    private boolean isErrorMessage(String output) {
+        return ERROR_MESSAGE_PATTERN.matcher(output).find();
+    }
+
+
+    /**
+     * Fake DB2 CLP process: prints the statement output after every statement and echoes the echo commands.
+     */
+    private static class FakeClpProcess extends Process {
+
+        private String statementOutput = "";
+        private StringBuilder input = new StringBuilder();
+        private StringBuilder currentLine = new StringBuilder();
+        private PipedInputStream processOutput = new PipedInputStream();
+        private Writer processOutputWriter;
+
+        public FakeClpProcess() throws IOException {
+            processOutputWriter = new OutputStreamWriter(new PipedOutputStream(processOutput));
+        }
+
+        public void setStatementOutput(String statementOutput) {
+            this.statementOutput = statementOutput;
+        }
+
+        public synchronized String getInput() {
+            return input.toString();
+        }
+
+        public void end() throws IOException {
+            processOutputWriter.close();
+        }
+
+        protected synchronized void handleInput(char c) throws IOException {
+            if (c == '\r') {
+                return;
+            }
+            input.append(c);
+            if (c != '\n') {
+                currentLine.append(c);
+                return;
+            }
+            String line = currentLine.toString();
+            currentLine.setLength(0);
+            if (line.startsWith("echo ") && line.endsWith("@")) {
+                writeOutput(line.substring(5, line.length() - 1));
+            } else if ("@".equals(line)) {
+                writeOutput(statementOutput);
+            }
+        }
+
+        protected void writeOutput(String line) throws IOException {
+            processOutputWriter.write(line + "\n");
+            processOutputWriter.flush();
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    handleInput((char) b);
+                }
+            };
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return processOutput;
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public int waitFor() {
+            return 0;
+        }
+
+        @Override
+        public int exitValue() {
+            return 0;
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+}
@@ -121,6 +121,24 @@ public class ConstraintsDisablerTest {
     }
 
 
+    /**
+     * Tests disabling a table with several constraints, which are dropped using a single statement on some dbms's, and
+     * a not null column with a name that needs to be quoted.
+     */
+    @Test
+    public void testDisableConstraints_severalConstraintsOnOneTable() throws Exception {
+        try {
+            SQLTestUtils.executeUpdate("insert into table4 (col1, col2, \"Mixed Case\") values ('test', 'test', null)", dataSource);
+            fail("DbMaintainException should have been thrown");
+        } catch (DbMaintainException e) {
+            // Expected foreign key and not null violations
+        }
+        constraintsDisabler.disableConstraints();
+        // Should not throw exception anymore
+        SQLTestUtils.executeUpdate("insert into table4 (col1, col2, \"Mixed Case\") values ('test', 'test', null)", dataSource);
+    }
+
+
     /**
      * Creates the test tables
      */
@@ -128,6 +146,8 @@ public class ConstraintsDisablerTest {
         SQLTestUtils.executeUpdate("create table table1 (col1 varchar(10) not null primary key, col2 varchar(10) not null, unique (col2))", dataSource);
         SQLTestUtils.executeUpdate("create table table2 (col1 varchar(10), foreign key (col1) references table1(col1))", dataSource);
         SQLTestUtils.executeUpdate("create table table3 (col1 varchar(10), foreign key (col1) references table1(col2))", dataSource);
+        SQLTestUtils.executeUpdate("create table table4 (col1 varchar(10), col2 varchar(10), \"Mixed Case\" varchar(10) not null, " +
+                "foreign key (col1) references table1(col1), foreign key (col2) references table1(col2))", dataSource);
     }
 
 
@@ -135,6 +155,7 @@ public class ConstraintsDisablerTest {
      * Drops the test tables
      */
     protected void cleanupTestDatabase() {
+        SQLTestUtils.executeUpdateQuietly("drop table table4", dataSource);
         SQLTestUtils.executeUpdateQuietly("drop table table3", dataSource);
         SQLTestUtils.executeUpdateQuietly("drop table table2", dataSource);
         SQLTestUtils.executeUpdateQuietly("drop table table1", dataSource);
@@ -0,0 +1,69 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.structure.clean;
+
+import org.dbmaintain.config.DbMaintainConfigurationLoader;
+import org.dbmaintain.config.FactoryWithDatabaseContext;
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.Databases;
+import org.dbmaintain.database.impl.DefaultSQLHandler;
+import org.dbmaintain.structure.model.DbItemIdentifier;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.Set;
+
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_UPDATE_LOCK_TABLE_NAME;
+import static org.dbmaintain.structure.model.DbItemIdentifier.getItemIdentifier;
+import static org.dbmaintain.structure.model.DbItemType.TABLE;
+import static org.dbmaintain.util.TestUtils.getDatabases;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the {@link DBCleanerFactory}.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DBCleanerFactoryTest {
+
+    /* Tested object */
+    private DBCleanerFactory dbCleanerFactory;
+
+    private Database defaultDatabase;
+
+
+    @Before
+    public void setUp() {
+        Properties configuration = new DbMaintainConfigurationLoader().loadDefaultConfiguration();
+        configuration.setProperty(PROPERTY_UPDATE_LOCK_TABLE_NAME, "my_lock");
+        Databases databases = getDatabases();
+        defaultDatabase = databases.getDefaultDatabase();
+
+        dbCleanerFactory = new DBCleanerFactory();
+        dbCleanerFactory.init(new FactoryWithDatabaseContext(configuration, null, databases, new DefaultSQLHandler()));
+    }
+
+
+    @Test
+    public void dbMaintainTablesArePreserved() {
+        Set<DbItemIdentifier> result = dbCleanerFactory.getItemsToPreserve();
+
+        assertTrue(result.contains(getItemIdentifier(TABLE, "PUBLIC", "DBMAINTAIN_SCRIPTS", defaultDatabase)));
+        assertTrue(result.contains(getItemIdentifier(TABLE, "PUBLIC", "MY_LOCK", defaultDatabase)));
+    }
+}
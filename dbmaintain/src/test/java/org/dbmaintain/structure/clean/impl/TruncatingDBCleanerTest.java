@@ -0,0 +1,221 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.structure.clean.impl;
+
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.Databases;
+import org.dbmaintain.database.impl.DefaultSQLHandler;
+import org.dbmaintain.metrics.impl.NoOpMetricsRecorder;
+import org.dbmaintain.structure.model.DbItemIdentifier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.dbmaintain.structure.model.DbItemIdentifier.getItemIdentifier;
+import static org.dbmaintain.structure.model.DbItemType.TABLE;
+import static org.dbmaintain.util.CollectionUtils.asSet;
+import static org.dbmaintain.util.SQLTestUtils.*;
+import static org.dbmaintain.util.TestUtils.getDatabases;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the {@link TruncatingDBCleaner}.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class TruncatingDBCleanerTest {
+
+    private DataSource dataSource;
+    private Databases databases;
+    private Database defaultDatabase;
+    private Set<DbItemIdentifier> itemsToPreserve;
+
+    /* The names of the tables in the order in which they were cleaned */
+    private List<String> cleanedTableNames = Collections.synchronizedList(new ArrayList<String>());
+    /* The names of the tables that the cleaner tried to truncate */
+    private Set<String> truncatedTableNames = Collections.synchronizedSet(new HashSet<String>());
+    /* The names of the tables of which the records were deleted */
+    private Set<String> deletedTableNames = Collections.synchronizedSet(new HashSet<String>());
+    /* The thread that cleaned each table */
+    private Map<String, Thread> cleaningThreads = new ConcurrentHashMap<String, Thread>();
+
+
+    @Before
+    public void setUp() throws Exception {
+        databases = getDatabases();
+        defaultDatabase = databases.getDefaultDatabase();
+        dataSource = defaultDatabase.getDataSource();
+        itemsToPreserve = new HashSet<DbItemIdentifier>();
+
+        cleanupTestDatabase();
+        createTestDatabase();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cleanupTestDatabase();
+    }
+
+
+    @Test
+    public void tablesAreTruncated() {
+        cleanDatabase(1);
+
+        assertEquals(asSet("TABLE_A", "TABLE_C", "TABLE_D"), truncatedTableNames);
+        assertTablesAreEmpty("TABLE_A", "TABLE_B", "TABLE_C", "TABLE_D");
+    }
+
+    @Test
+    public void referencedTableIsDeletedAfterReferencingTable() {
+        cleanDatabase(1);
+
+        assertEquals(asSet("TABLE_B"), deletedTableNames);
+        assertTrue(cleanedTableNames.indexOf("TABLE_A") < cleanedTableNames.indexOf("TABLE_B"));
+    }
+
+    @Test
+    public void tableThatOnlyReferencesItselfIsTruncated() {
+        cleanDatabase(1);
+
+        assertTrue(truncatedTableNames.contains("TABLE_C"));
+        assertTablesAreEmpty("TABLE_C");
+    }
+
+    @Test
+    public void preservedTableIsNotCleaned() {
+        itemsToPreserve.add(getItemIdentifier(TABLE, "PUBLIC", "TABLE_D", defaultDatabase));
+        cleanDatabase(1);
+
+        assertFalse(cleanedTableNames.contains("TABLE_D"));
+        assertFalse(isEmpty("TABLE_D", dataSource));
+    }
+
+    @Test
+    public void recordsAreDeletedWhenTruncateFails() {
+        // foreign keys of tables of other schemas are not taken into account, but do not allow the table to be truncated
+        executeUpdate("create schema SCHEMA_B AUTHORIZATION DBA", dataSource);
+        executeUpdate("create table SCHEMA_B.TABLE_E (ID int not null primary key, D_ID int, foreign key (D_ID) references PUBLIC.TABLE_D(ID))", dataSource);
+        cleanDatabase(1);
+
+        assertTrue(truncatedTableNames.contains("TABLE_D"));
+        assertTrue(deletedTableNames.contains("TABLE_D"));
+        assertTablesAreEmpty("TABLE_D");
+    }
+
+    @Test
+    public void emptyTablesAreSkipped() {
+        executeUpdate("delete from TABLE_A", dataSource);
+        executeUpdate("delete from TABLE_D", dataSource);
+        cleanDatabase(1);
+
+        assertEquals(asSet("TABLE_B", "TABLE_C"), new HashSet<String>(cleanedTableNames));
+        assertTablesAreEmpty("TABLE_B", "TABLE_C");
+    }
+
+    @Test
+    public void nonEmptyTablesAreFound() {
+        executeUpdate("delete from TABLE_D", dataSource);
+
+        assertEquals(asSet("TABLE_A", "TABLE_B", "TABLE_C"), defaultDatabase.getNonEmptyTableNames("PUBLIC", asSet("TABLE_A", "TABLE_B", "TABLE_C", "TABLE_D")));
+    }
+
+    @Test
+    public void tablesAreCleanedConcurrently() {
+        cleanDatabase(3);
+
+        assertEquals("TABLE_B", cleanedTableNames.get(cleanedTableNames.size() - 1));
+        assertEquals(asSet("TABLE_B"), deletedTableNames);
+        assertTablesAreEmpty("TABLE_A", "TABLE_B", "TABLE_C", "TABLE_D");
+    }
+
+    @Test
+    public void tablesOfCycleAreCleanedOneByOneOnSameConnection() {
+        // the records of the cycle do not reference each other, so that they can be deleted in any order
+        executeUpdate("update TABLE_A set B_ID = null", dataSource);
+        executeUpdate("alter table TABLE_B add constraint TABLE_B_FK foreign key (A_ID) references TABLE_A(ID)", dataSource);
+        cleanDatabase(3);
+
+        assertEquals(asSet("TABLE_A", "TABLE_B"), deletedTableNames);
+        assertSame(Thread.currentThread(), cleaningThreads.get("TABLE_A"));
+        assertSame(Thread.currentThread(), cleaningThreads.get("TABLE_B"));
+        assertTablesAreEmpty("TABLE_A", "TABLE_B", "TABLE_C", "TABLE_D");
+    }
+
+
+    private void cleanDatabase(int maxNrOfThreads) {
+        TruncatingDBCleaner truncatingDBCleaner = new TruncatingDBCleaner(databases, itemsToPreserve, new DefaultSQLHandler(), new NoOpMetricsRecorder(), maxNrOfThreads) {
+            @Override
+            protected void cleanTable(Database database, String schemaName, String tableName, boolean truncate) {
+                cleanedTableNames.add(tableName);
+                cleaningThreads.put(tableName, Thread.currentThread());
+                if (truncate) {
+                    truncatedTableNames.add(tableName);
+                }
+                super.cleanTable(database, schemaName, tableName, truncate);
+            }
+
+            @Override
+            protected void cleanTable(Database database, String schemaName, String tableName) {
+                deletedTableNames.add(tableName);
+                super.cleanTable(database, schemaName, tableName);
+            }
+        };
+        truncatingDBCleaner.cleanDatabase();
+    }
+
+    private void assertTablesAreEmpty(String... tableNames) {
+        for (String tableName : tableNames) {
+            assertTrue(tableName, isEmpty(tableName, dataSource));
+        }
+    }
+
+
+    /**
+     * Creates the test tables with a record in each table: table A references table B, table C references itself
+     * and table D has no foreign keys.
+     */
+    private void createTestDatabase() throws Exception {
+        executeUpdate("create table TABLE_B (ID int not null primary key, A_ID int)", dataSource);
+        executeUpdate("create table TABLE_A (ID int not null primary key, B_ID int, foreign key (B_ID) references TABLE_B(ID))", dataSource);
+        executeUpdate("create table TABLE_C (ID int not null primary key, PARENT_ID int)", dataSource);
+        executeUpdate("alter table TABLE_C add constraint TABLE_C_FK foreign key (PARENT_ID) references TABLE_C(ID)", dataSource);
+        executeUpdate("create table TABLE_D (ID int not null primary key)", dataSource);
+
+        executeUpdate("insert into TABLE_B values (1, null)", dataSource);
+        executeUpdate("insert into TABLE_A values (1, 1)", dataSource);
+        executeUpdate("insert into TABLE_C values (1, null)", dataSource);
+        executeUpdate("insert into TABLE_C values (2, 1)", dataSource);
+        executeUpdate("insert into TABLE_D values (1)", dataSource);
+    }
+
+    /**
+     * Removes the test tables
+     */
+    private void cleanupTestDatabase() throws Exception {
+        executeUpdateQuietly("drop schema SCHEMA_B cascade", dataSource);
+        dropTestTables(defaultDatabase, "TABLE_A", "TABLE_B", "TABLE_C", "TABLE_D");
+    }
+}
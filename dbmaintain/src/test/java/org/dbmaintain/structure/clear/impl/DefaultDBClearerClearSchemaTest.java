@@ -0,0 +1,195 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.structure.clear.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.Databases;
+import org.dbmaintain.structure.constraint.impl.DefaultConstraintsDisabler;
+import org.dbmaintain.structure.model.DbItemIdentifier;
+import org.dbmaintain.structure.model.DbItemType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.apache.commons.dbutils.DbUtils.closeQuietly;
+import static org.dbmaintain.structure.model.DbItemIdentifier.getItemIdentifier;
+import static org.dbmaintain.structure.model.DbItemType.TABLE;
+import static org.dbmaintain.util.CollectionUtils.asSet;
+import static org.dbmaintain.util.SQLTestUtils.*;
+import static org.dbmaintain.util.TestUtils.getDatabases;
+import static org.dbmaintain.util.TestUtils.getDefaultExecutedScriptInfoSource;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the {@link DefaultDBClearer} to verify that a schema is cleared at once if no items need to be preserved.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultDBClearerClearSchemaTest {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(DefaultDBClearerClearSchemaTest.class);
+
+    private DataSource dataSource;
+    private Databases databases;
+    private Database defaultDatabase;
+    private Set<DbItemIdentifier> itemsToPreserve;
+
+    /* The schemas that were cleared at once */
+    private Set<String> clearedSchemaNames = new HashSet<String>();
+    /* The items that were dropped one by one, as schema.item */
+    private List<String> droppedItems = new ArrayList<String>();
+
+
+    @Before
+    public void setUp() throws Exception {
+        databases = getDatabases("PUBLIC", "SCHEMA_A");
+        defaultDatabase = databases.getDefaultDatabase();
+        dataSource = defaultDatabase.getDataSource();
+        itemsToPreserve = new HashSet<DbItemIdentifier>();
+
+        cleanupTestDatabase();
+        createTestDatabase();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cleanupTestDatabase();
+    }
+
+
+    @Test
+    public void schemaIsClearedAtOnce() throws Exception {
+        if (!isClearSchemaSupported()) {
+            logger.warn("Clearing a schema at once is not supported for this version of the database. Skipping test.");
+            return;
+        }
+        clearDatabase();
+
+        assertEquals(asSet("SCHEMA_A"), clearedSchemaNames);
+        assertTrue(defaultDatabase.getTableNames("SCHEMA_A").isEmpty());
+        assertTrue(defaultDatabase.getViewNames("SCHEMA_A").isEmpty());
+        // the schema is created again
+        executeUpdate("create table SCHEMA_A.TABLE1 (ID int)", dataSource);
+    }
+
+    @Test
+    public void defaultSchemaIsNotClearedAtOnce() {
+        clearDatabase();
+
+        assertFalse(clearedSchemaNames.contains("PUBLIC"));
+        assertFalse(defaultDatabase.clearSchema("PUBLIC", new HashSet<String>()));
+    }
+
+    @Test
+    public void executedScriptsTableIsKept() {
+        itemsToPreserve.add(getItemIdentifier(TABLE, "SCHEMA_A", "DBMAINTAIN_SCRIPTS", defaultDatabase, true));
+        clearDatabase();
+
+        assertEquals(asSet("DBMAINTAIN_SCRIPTS"), defaultDatabase.getTableNames("SCHEMA_A"));
+        assertTrue(defaultDatabase.getViewNames("SCHEMA_A").isEmpty());
+    }
+
+    @Test
+    public void itemsAreDroppedOneByOneWhenItemsArePreserved() {
+        itemsToPreserve.add(getItemIdentifier(TABLE, "SCHEMA_A", "TABLE1", defaultDatabase));
+        clearDatabase();
+
+        assertTrue(clearedSchemaNames.isEmpty());
+        assertTrue(droppedItems.contains("SCHEMA_A.TABLE2"));
+        assertEquals(asSet("TABLE1"), defaultDatabase.getTableNames("SCHEMA_A"));
+        assertFalse(isEmpty("SCHEMA_A.TABLE1", dataSource));
+    }
+
+    @Test
+    public void itemsAreDroppedOneByOneWhenClearingSchemaFails() throws Exception {
+        if (!isClearSchemaSupported()) {
+            logger.warn("Clearing a schema at once is not supported for this version of the database. Skipping test.");
+            return;
+        }
+        // the owner of a schema that does not exist cannot be found
+        databases = getDatabases("PUBLIC", "SCHEMA_A", "SCHEMA_UNKNOWN");
+        defaultDatabase = databases.getDefaultDatabase();
+        clearDatabase();
+
+        assertFalse(clearedSchemaNames.contains("SCHEMA_UNKNOWN"));
+        assertTrue(defaultDatabase.getTableNames("SCHEMA_A").isEmpty());
+    }
+
+
+    private void clearDatabase() {
+        DefaultDBClearer defaultDBClearer = new DefaultDBClearer(databases, itemsToPreserve, new DefaultConstraintsDisabler(databases), getDefaultExecutedScriptInfoSource(defaultDatabase, true)) {
+            @Override
+            protected boolean clearSchemaAtOnce(Database database, String schemaName) {
+                boolean cleared = super.clearSchemaAtOnce(database, schemaName);
+                if (cleared) {
+                    clearedSchemaNames.add(schemaName);
+                }
+                return cleared;
+            }
+
+            @Override
+            protected void dropItem(Database database, String schemaName, DbItemType type, String itemName) {
+                droppedItems.add(schemaName + "." + itemName);
+                super.dropItem(database, schemaName, type, itemName);
+            }
+        };
+        defaultDBClearer.clearDatabase();
+    }
+
+    /**
+     * @return True if the database is HSQLDB 2.0 or higher, in which schemas can be dropped and created again
+     */
+    private boolean isClearSchemaSupported() throws Exception {
+        Connection connection = dataSource.getConnection();
+        try {
+            return connection.getMetaData().getDatabaseMajorVersion() >= 2;
+        } finally {
+            closeQuietly(connection);
+        }
+    }
+
+
+    /**
+     * Creates a schema with two tables with a foreign key, a view and an executed scripts table
+     */
+    private void createTestDatabase() throws Exception {
+        executeUpdate("create schema SCHEMA_A AUTHORIZATION DBA", dataSource);
+        executeUpdate("create table SCHEMA_A.TABLE2 (ID int not null primary key)", dataSource);
+        executeUpdate("create table SCHEMA_A.TABLE1 (ID int not null primary key, TABLE2_ID int, foreign key (TABLE2_ID) references SCHEMA_A.TABLE2(ID))", dataSource);
+        executeUpdate("create view SCHEMA_A.VIEW1 as select ID from SCHEMA_A.TABLE1", dataSource);
+        executeUpdate("create table SCHEMA_A.DBMAINTAIN_SCRIPTS (FILE_NAME varchar(150))", dataSource);
+        executeUpdate("insert into SCHEMA_A.TABLE1 values (1, null)", dataSource);
+    }
+
+    /**
+     * Drops the test schema and the executed scripts table
+     */
+    private void cleanupTestDatabase() throws Exception {
+        executeUpdateQuietly("drop table dbmaintain_scripts", dataSource);
+        executeUpdateQuietly("drop schema SCHEMA_A cascade", dataSource);
+    }
+}
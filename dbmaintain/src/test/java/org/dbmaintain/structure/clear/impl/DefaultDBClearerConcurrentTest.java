@@ -0,0 +1,155 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.structure.clear.impl;
+
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.Databases;
+import org.dbmaintain.metrics.impl.NoOpMetricsRecorder;
+import org.dbmaintain.structure.constraint.impl.DefaultConstraintsDisabler;
+import org.dbmaintain.structure.model.DbItemIdentifier;
+import org.dbmaintain.util.DbMaintainException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.dbmaintain.util.SQLTestUtils.executeUpdate;
+import static org.dbmaintain.util.SQLTestUtils.executeUpdateQuietly;
+import static org.dbmaintain.util.TestUtils.getDatabases;
+import static org.dbmaintain.util.TestUtils.getDefaultExecutedScriptInfoSource;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the {@link DefaultDBClearer} to verify that schemas can be cleared concurrently.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultDBClearerConcurrentTest {
+
+    private DataSource dataSource;
+    private Databases databases;
+    private Database defaultDatabase;
+
+    /* The names of the schemas that fail every time they are cleared */
+    private List<String> failingSchemaNames = new ArrayList<String>();
+    /* The names of the schemas that fail the first time they are cleared */
+    private List<String> failingOnceSchemaNames = Collections.synchronizedList(new ArrayList<String>());
+
+
+    @Before
+    public void setUp() throws Exception {
+        databases = getDatabases("PUBLIC", "SCHEMA_A", "SCHEMA_B", "SCHEMA_C");
+        defaultDatabase = databases.getDefaultDatabase();
+        dataSource = defaultDatabase.getDataSource();
+
+        cleanupTestDatabase();
+        createTestDatabase();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cleanupTestDatabase();
+    }
+
+
+    @Test
+    public void allSchemasAreCleared() {
+        clearDatabase();
+
+        assertCleared("SCHEMA_A", "SCHEMA_B", "SCHEMA_C");
+    }
+
+    @Test
+    public void schemaThatDependsOnOtherSchemaIsCleared() {
+        executeUpdate("create view SCHEMA_A.VIEW_C as select ID from SCHEMA_C.TABLE1", dataSource);
+        clearDatabase();
+
+        assertCleared("SCHEMA_A", "SCHEMA_B", "SCHEMA_C");
+    }
+
+    @Test
+    public void schemaThatFailsIsClearedAgain() {
+        failingOnceSchemaNames.add("SCHEMA_C");
+        clearDatabase();
+
+        assertCleared("SCHEMA_A", "SCHEMA_B", "SCHEMA_C");
+    }
+
+    @Test
+    public void failingSchemaIsReported() {
+        failingSchemaNames.add("SCHEMA_B");
+        try {
+            clearDatabase();
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("SCHEMA_B"));
+        }
+        assertCleared("SCHEMA_A", "SCHEMA_C");
+    }
+
+
+    private void clearDatabase() {
+        DefaultDBClearer defaultDBClearer = new DefaultDBClearer(databases, new HashSet<DbItemIdentifier>(), new DefaultConstraintsDisabler(databases),
+                getDefaultExecutedScriptInfoSource(defaultDatabase, true), new NoOpMetricsRecorder(), 3) {
+            @Override
+            protected void clearDatabaseSchema(Database database, String schemaName) {
+                if (failingSchemaNames.contains(schemaName) || failingOnceSchemaNames.remove(schemaName)) {
+                    throw new DbMaintainException("Unable to clear schema " + schemaName);
+                }
+                super.clearDatabaseSchema(database, schemaName);
+            }
+        };
+        defaultDBClearer.clearDatabase();
+    }
+
+    private void assertCleared(String... schemaNames) {
+        for (String schemaName : schemaNames) {
+            assertTrue(schemaName, defaultDatabase.getTableNames(schemaName).isEmpty());
+            assertTrue(schemaName, defaultDatabase.getViewNames(schemaName).isEmpty());
+        }
+    }
+
+
+    /**
+     * Creates 3 schemas, each with two tables with a foreign key and a view
+     */
+    private void createTestDatabase() throws Exception {
+        for (String schemaName : asList("SCHEMA_A", "SCHEMA_B", "SCHEMA_C")) {
+            executeUpdate("create schema " + schemaName + " AUTHORIZATION DBA", dataSource);
+            executeUpdate("create table " + schemaName + ".TABLE2 (ID int not null primary key)", dataSource);
+            executeUpdate("create table " + schemaName + ".TABLE1 (ID int not null primary key, TABLE2_ID int, foreign key (TABLE2_ID) references " + schemaName + ".TABLE2(ID))", dataSource);
+            executeUpdate("create view " + schemaName + ".VIEW1 as select ID from " + schemaName + ".TABLE1", dataSource);
+        }
+    }
+
+    /**
+     * Drops the test schemas and the executed scripts table
+     */
+    private void cleanupTestDatabase() throws Exception {
+        executeUpdateQuietly("drop table dbmaintain_scripts", dataSource);
+        for (String schemaName : asList("SCHEMA_A", "SCHEMA_B", "SCHEMA_C")) {
+            executeUpdateQuietly("drop schema " + schemaName + " cascade", dataSource);
+        }
+    }
+}
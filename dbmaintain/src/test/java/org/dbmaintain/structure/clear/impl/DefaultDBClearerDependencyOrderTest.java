@@ -0,0 +1,170 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.structure.clear.impl;
+
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.Databases;
+import org.dbmaintain.structure.constraint.impl.DefaultConstraintsDisabler;
+import org.dbmaintain.structure.model.DbItemDependency;
+import org.dbmaintain.structure.model.DbItemIdentifier;
+import org.dbmaintain.structure.model.DbItemType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.dbmaintain.util.CollectionUtils.asSet;
+import static org.dbmaintain.util.SQLTestUtils.*;
+import static org.dbmaintain.util.TestUtils.getDatabases;
+import static org.dbmaintain.util.TestUtils.getDefaultExecutedScriptInfoSource;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the {@link DefaultDBClearer} to verify that items are dropped in the order of their dependencies
+ * if the database can tell these dependencies.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultDBClearerDependencyOrderTest {
+
+    /* Tested object */
+    private DefaultDBClearer defaultDBClearer;
+
+    private DataSource dataSource;
+    private Database defaultDatabase;
+
+    /* The items that were dropped by the clearer, in the order in which they were dropped */
+    private List<String> droppedItems = new ArrayList<String>();
+    /* An item that cannot be dropped the first time it is tried, null if all items can be dropped */
+    private String failingItem;
+
+
+    @Before
+    public void setUp() throws Exception {
+        Databases databases = getDatabases();
+        defaultDatabase = databases.getDefaultDatabase();
+        dataSource = defaultDatabase.getDataSource();
+
+        defaultDBClearer = new DefaultDBClearer(databases, new HashSet<DbItemIdentifier>(), new DefaultConstraintsDisabler(databases), getDefaultExecutedScriptInfoSource(defaultDatabase, true)) {
+            @Override
+            protected void dropItem(Database database, String schemaName, DbItemType type, String itemName) {
+                String item = type + " " + itemName;
+                if (item.equals(failingItem)) {
+                    failingItem = null;
+                    super.dropItem(database, schemaName, type, itemName + "_UNKNOWN");
+                    return;
+                }
+                droppedItems.add(item);
+                super.dropItem(database, schemaName, type, itemName);
+            }
+        };
+
+        cleanupTestDatabase();
+        createTestDatabase();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cleanupTestDatabase();
+    }
+
+
+    @Test
+    public void dependenciesAreRetrieved() {
+        Set<String> dependencies = new HashSet<String>();
+        for (DbItemDependency dependency : defaultDatabase.getDependencies("PUBLIC")) {
+            dependencies.add(dependency.toString());
+        }
+        assertTrue(dependencies.containsAll(asSet("TABLE TABLE1 -> TABLE TABLE2", "VIEW VIEW1 -> TABLE TABLE1", "VIEW VIEW2 -> VIEW VIEW1", "TRIGGER TRIGGER1 -> TABLE TABLE2")));
+    }
+
+    @Test
+    public void dependentItemsAreDroppedFirst() {
+        defaultDBClearer.clearDatabase();
+
+        assertTrue(droppedItems.indexOf("VIEW VIEW2") < droppedItems.indexOf("VIEW VIEW1"));
+        assertTrue(droppedItems.indexOf("VIEW VIEW1") < droppedItems.indexOf("TABLE TABLE1"));
+        assertTrue(droppedItems.indexOf("TABLE TABLE1") < droppedItems.indexOf("TABLE TABLE2"));
+        assertClearedDatabase();
+    }
+
+    @Test
+    public void triggersOfDroppedTablesAreNotDroppedSeparately() {
+        defaultDBClearer.clearDatabase();
+
+        assertFalse(droppedItems.contains("TRIGGER TRIGGER1"));
+        assertTrue(defaultDatabase.getTriggerNames("PUBLIC").isEmpty());
+    }
+
+    @Test
+    public void itemsOfCycleAreDroppedLast() {
+        executeUpdate("alter table TABLE2 add constraint TABLE2_FK foreign key (TABLE1_ID) references TABLE1(ID)", dataSource);
+        defaultDBClearer.clearDatabase();
+
+        assertTrue(droppedItems.indexOf("VIEW VIEW1") < droppedItems.indexOf("TABLE TABLE1"));
+        assertTrue(droppedItems.indexOf("SEQUENCE SEQUENCE1") < droppedItems.indexOf("TABLE TABLE1"));
+        assertTrue(droppedItems.indexOf("SEQUENCE SEQUENCE1") < droppedItems.indexOf("TABLE TABLE2"));
+        assertClearedDatabase();
+    }
+
+    @Test
+    public void failedItemsAreRetriedInNextPass() {
+        failingItem = "TABLE TABLE2";
+        defaultDBClearer.clearDatabase();
+
+        assertFalse(droppedItems.contains("TABLE TABLE2"));
+        assertClearedDatabase();
+    }
+
+
+    private void assertClearedDatabase() {
+        assertTrue(defaultDatabase.getTableNames("PUBLIC").isEmpty());
+        assertTrue(defaultDatabase.getViewNames("PUBLIC").isEmpty());
+        assertTrue(defaultDatabase.getSequenceNames("PUBLIC").isEmpty());
+    }
+
+
+    /**
+     * Creates two tables with a foreign key, a view that uses one of the tables, a view that uses this view, a
+     * sequence and a trigger
+     */
+    private void createTestDatabase() throws Exception {
+        executeUpdate("create table TABLE2 (ID int not null primary key, TABLE1_ID int)", dataSource);
+        executeUpdate("create table TABLE1 (ID int not null primary key, TABLE2_ID int, foreign key (TABLE2_ID) references TABLE2(ID))", dataSource);
+        executeUpdate("create view VIEW1 as select ID from TABLE1", dataSource);
+        executeUpdate("create view VIEW2 as select ID from VIEW1", dataSource);
+        executeUpdate("create sequence SEQUENCE1", dataSource);
+        executeUpdate("create trigger TRIGGER1 before insert on TABLE2 call \"org.dbmaintain.structure.clear.impl.DefaultDBClearerTest.TestTrigger\"", dataSource);
+    }
+
+    /**
+     * Drops the test items and the executed scripts table
+     */
+    private void cleanupTestDatabase() throws Exception {
+        executeUpdateQuietly("drop table dbmaintain_scripts", dataSource);
+        dropTestViews(defaultDatabase, "VIEW2", "VIEW1");
+        dropTestTriggers(defaultDatabase, "TRIGGER1");
+        dropTestSequences(defaultDatabase, "SEQUENCE1");
+        dropTestTables(defaultDatabase, "TABLE1", "TABLE2");
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.structure.image.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.Databases;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.structure.clear.impl.DefaultDBClearer;
+import org.dbmaintain.structure.constraint.impl.DefaultConstraintsDisabler;
+import org.dbmaintain.structure.model.DbItemIdentifier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static java.util.Arrays.asList;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.apache.commons.io.FileUtils.sizeOfDirectory;
+import static org.dbmaintain.structure.model.DbItemIdentifier.getItemIdentifier;
+import static org.dbmaintain.structure.model.DbItemType.TABLE;
+import static org.dbmaintain.util.CollectionUtils.asSet;
+import static org.dbmaintain.util.FileUtils.createFile;
+import static org.dbmaintain.util.SQLTestUtils.*;
+import static org.dbmaintain.util.TestUtils.createScriptWithCheckSum;
+import static org.dbmaintain.util.TestUtils.getDatabases;
+import static org.dbmaintain.util.TestUtils.getDefaultExecutedScriptInfoSource;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the {@link DefaultSchemaImageCache}. The images are exported from and imported in the test database.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultSchemaImageCacheTest {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(DefaultSchemaImageCacheTest.class);
+
+    /* Tested object */
+    private DefaultSchemaImageCache defaultSchemaImageCache;
+
+    private File imageDirectory;
+    private DataSource dataSource;
+    private Databases databases;
+    private Database defaultDatabase;
+
+
+    @Before
+    public void setUp() throws Exception {
+        imageDirectory = File.createTempFile("schemaImages", "");
+        imageDirectory.delete();
+
+        databases = getDatabases();
+        defaultDatabase = databases.getDefaultDatabase();
+        dataSource = defaultDatabase.getDataSource();
+        defaultSchemaImageCache = new DefaultSchemaImageCache(databases, imageDirectory);
+
+        cleanupTestDatabase();
+        createTestDatabase();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cleanupTestDatabase();
+        deleteQuietly(imageDirectory);
+    }
+
+
+    @Test
+    public void noImageStored() {
+        assertEquals(0, defaultSchemaImageCache.restoreImage(getScripts("checksum1")));
+    }
+
+    @Test
+    public void exportClearAndImportImage() {
+        if (!isSchemaImagesSupported()) {
+            return;
+        }
+        defaultSchemaImageCache.storeImage(getScripts("checksum1"));
+        clearDatabase();
+        assertTrue(defaultDatabase.getTableNames("PUBLIC").isEmpty());
+
+        int result = defaultSchemaImageCache.restoreImage(getScripts("checksum1"));
+        assertEquals(2, result);
+        assertEquals(asSet("TEST_TABLE", "TEST_PRESERVE"), defaultDatabase.getTableNames("PUBLIC"));
+        assertEquals(asSet("TEST_VIEW"), defaultDatabase.getViewNames("PUBLIC"));
+        assertEquals(asSet("value1", "value2"), getItemsAsStringSet("select NAME from TEST_TABLE", dataSource));
+    }
+
+    @Test
+    public void preservedTableIsNotImported() {
+        if (!isSchemaImagesSupported()) {
+            return;
+        }
+        defaultSchemaImageCache.storeImage(getScripts("checksum1"));
+        executeUpdate("delete from TEST_PRESERVE", dataSource);
+        clearDatabase(getItemIdentifier(TABLE, "PUBLIC", "TEST_PRESERVE", defaultDatabase));
+
+        defaultSchemaImageCache.restoreImage(getScripts("checksum1"));
+        assertTrue(isEmpty("TEST_PRESERVE", dataSource));
+        assertFalse(isEmpty("TEST_TABLE", dataSource));
+    }
+
+    @Test
+    public void imageIsNotRestoredWhenChecksumChanged() {
+        if (!isSchemaImagesSupported()) {
+            return;
+        }
+        defaultSchemaImageCache.storeImage(getScripts("checksum1"));
+        int result = defaultSchemaImageCache.restoreImage(getScripts("checksum2"));
+
+        assertEquals(0, result);
+    }
+
+    @Test
+    public void longestPrefixIsRestored() {
+        if (!isSchemaImagesSupported()) {
+            return;
+        }
+        SortedSet<Script> scripts = getScripts("checksum1");
+        defaultSchemaImageCache.storeImage(new TreeSet<Script>(asList(scripts.first())));
+        executeUpdate("create table TEST_TABLE2 (ID int)", dataSource);
+        defaultSchemaImageCache.storeImage(scripts);
+        clearDatabase();
+
+        int result = defaultSchemaImageCache.restoreImage(getScripts("checksum2"));
+        assertEquals(1, result);
+        assertEquals(asSet("TEST_TABLE", "TEST_PRESERVE"), defaultDatabase.getTableNames("PUBLIC"));
+    }
+
+    @Test
+    public void checkpoints() {
+        if (!isSchemaImagesSupported()) {
+            return;
+        }
+        defaultSchemaImageCache.checkpointInterval = 2;
+        List<Integer> result = defaultSchemaImageCache.getCheckpoints(getScripts(5));
+
+        assertEquals(asList(2, 4, 5), result);
+    }
+
+    @Test
+    public void onlyAllScriptsAreACheckpointWhenNoInterval() {
+        if (!isSchemaImagesSupported()) {
+            return;
+        }
+        List<Integer> result = defaultSchemaImageCache.getCheckpoints(getScripts(5));
+
+        assertEquals(asList(5), result);
+    }
+
+    @Test
+    public void leastRecentlyUsedImagesAreRemoved() {
+        if (!isSchemaImagesSupported()) {
+            return;
+        }
+        defaultSchemaImageCache.storeImage(getScripts(1));
+        // room for 2 images of the same database
+        defaultSchemaImageCache.maxSizeInBytes = sizeOfDirectory(getImageKeyDirectory(getScripts(1))) * 5 / 2;
+        defaultSchemaImageCache.storeImage(getScripts(2));
+        getImageKeyDirectory(getScripts(1)).setLastModified(System.currentTimeMillis() - 20000);
+        getImageKeyDirectory(getScripts(2)).setLastModified(System.currentTimeMillis() - 10000);
+        clearDatabase();
+        defaultSchemaImageCache.restoreImage(getScripts(1));
+        defaultSchemaImageCache.storeImage(getScripts(3));
+
+        assertTrue(getImageKeyDirectory(getScripts(1)).exists());
+        assertFalse(getImageKeyDirectory(getScripts(2)).exists());
+        assertTrue(getImageKeyDirectory(getScripts(3)).exists());
+    }
+
+    @Test
+    public void existingImageIsNotStoredAgain() {
+        if (!isSchemaImagesSupported()) {
+            return;
+        }
+        defaultSchemaImageCache.storeImage(getScripts("checksum1"));
+        File imageKeyDirectory = getImageKeyDirectory(getScripts("checksum1"));
+        imageKeyDirectory.setLastModified(System.currentTimeMillis() - 20000);
+        long lastModified = imageKeyDirectory.lastModified();
+        defaultSchemaImageCache.storeImage(getScripts("checksum1"));
+
+        assertEquals(lastModified, imageKeyDirectory.lastModified());
+        assertEquals(1, imageDirectory.list().length);
+    }
+
+    @Test
+    public void failureWhileStoringIsIgnored() throws IOException {
+        if (!isSchemaImagesSupported()) {
+            return;
+        }
+        // the image directory cannot be created
+        createFile(imageDirectory, "not a directory");
+        defaultSchemaImageCache.storeImage(getScripts("checksum1"));
+
+        assertEquals(0, defaultSchemaImageCache.restoreImage(getScripts("checksum1")));
+        assertTrue(imageDirectory.isFile());
+    }
+
+    @Test
+    public void imagesNotSupported() {
+        if (defaultDatabase.supportsSchemaImages()) {
+            logger.warn("Current database version supports schema images. Skipping test.");
+            return;
+        }
+        defaultSchemaImageCache.storeImage(getScripts("checksum1"));
+
+        assertEquals(0, defaultSchemaImageCache.restoreImage(getScripts("checksum1")));
+        assertTrue(defaultSchemaImageCache.getCheckpoints(getScripts("checksum1")).isEmpty());
+        assertFalse(imageDirectory.exists());
+    }
+
+
+    private boolean isSchemaImagesSupported() {
+        if (!defaultDatabase.supportsSchemaImages()) {
+            logger.warn("Current database version does not support schema images. Skipping test.");
+            return false;
+        }
+        return true;
+    }
+
+    private void clearDatabase(DbItemIdentifier... itemsToPreserve) {
+        Set<DbItemIdentifier> items = new HashSet<DbItemIdentifier>(asList(itemsToPreserve));
+        DefaultDBClearer defaultDBClearer = new DefaultDBClearer(databases, items, new DefaultConstraintsDisabler(databases), getDefaultExecutedScriptInfoSource(defaultDatabase, true));
+        defaultDBClearer.clearDatabase();
+    }
+
+    private SortedSet<Script> getScripts(String checkSum) {
+        SortedSet<Script> scripts = new TreeSet<Script>();
+        scripts.add(createScriptWithCheckSum("01_script1.sql", "checksum0"));
+        scripts.add(createScriptWithCheckSum("02_script2.sql", checkSum));
+        return scripts;
+    }
+
+    private SortedSet<Script> getScripts(int nrOfScripts) {
+        SortedSet<Script> scripts = new TreeSet<Script>();
+        for (int i = 1; i <= nrOfScripts; i++) {
+            scripts.add(createScriptWithCheckSum("0" + i + "_script" + i + ".sql", "checksum" + i));
+        }
+        return scripts;
+    }
+
+    private File getImageKeyDirectory(SortedSet<Script> scripts) {
+        List<String> imageKeys = defaultSchemaImageCache.getImageKeys(scripts);
+        return new File(imageDirectory, imageKeys.get(imageKeys.size() - 1));
+    }
+
+
+    /**
+     * Creates a table with data, a table to preserve and a view
+     */
+    private void createTestDatabase() throws Exception {
+        executeUpdate("create table TEST_TABLE (ID int not null primary key, NAME varchar(20))", dataSource);
+        executeUpdate("create table TEST_PRESERVE (ID int not null primary key, TEST_ID int, foreign key (TEST_ID) references TEST_TABLE(ID))", dataSource);
+        executeUpdate("create view TEST_VIEW as select NAME from TEST_TABLE", dataSource);
+        executeUpdate("insert into TEST_TABLE values (1, 'value1')", dataSource);
+        executeUpdate("insert into TEST_TABLE values (2, 'value2')", dataSource);
+        executeUpdate("insert into TEST_PRESERVE values (1, 1)", dataSource);
+    }
+
+    /**
+     * Drops the test items and the executed scripts table
+     */
+    private void cleanupTestDatabase() throws Exception {
+        executeUpdateQuietly("drop table dbmaintain_scripts", dataSource);
+        dropTestViews(defaultDatabase, "TEST_VIEW");
+        dropTestTables(defaultDatabase, "TEST_PRESERVE", "TEST_TABLE", "TEST_TABLE2");
+    }
+}